@@ -0,0 +1,253 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqBenchFixtures
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: The code the JMH benchmarks in essmq.bench time (see
+//           essmq.bench.Fixture for why it lives here).
+//
+//           Every fixture runs over its own EssMqMemoryBroker, so the
+//           numbers are for our code and not the network or the queue
+//           manager, and works in a temporary directory that close()
+//           removes. Logging is at WARN, as in production.
+//
+//           Queues that only fill (put) are emptied every DRAIN
+//           operations and queues that only empty (get) are refilled
+//           just as often, so the broker holds a few thousand messages
+//           at most.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.varia.NullAppender;
+import essmq.bench.Fixture;
+
+public class EssMqBenchFixtures
+{
+	static final int DRAIN = 1024;
+
+	static
+	{
+		Logger root = Logger.getRootLogger();
+		root.removeAllAppenders();
+		root.addAppender(new NullAppender());
+		root.setLevel(Level.WARN);
+	}
+
+	/**
+	 * Base
+	 * A broker, a client on it and a scratch directory.
+	 */
+	abstract static class Base implements Fixture
+	{
+		final EssMqMemoryBroker _broker = new EssMqMemoryBroker();
+		final EssMqClient _client = new EssMqClient(_broker, 2);
+		final Path _dir;
+
+		Base() throws IOException
+		{
+			_dir = Files.createTempDirectory("essmq-bench");
+		}
+
+		/**
+		 * newEssMq
+		 * An EssMq that runs over this fixture's client.
+		 */
+		EssMq newEssMq(String queue, Path msgFile)
+		{
+			EssMq mq = new EssMq();
+			mq.setClient(_client);
+			mq.setQueue(queue);
+			mq.setMessageFile(msgFile.toString());
+			return mq;
+		}
+
+		Path write(String name, byte[] data) throws IOException
+		{
+			return Files.write(_dir.resolve(name), data);
+		}
+
+		public void close() throws IOException
+		{
+			_client.close();
+			delete(_dir.toFile());
+		}
+
+		private static void delete(File f)
+		{
+			File[] children = f.listFiles();
+			if (children != null)
+			{
+				for (File child : children)
+					delete(child);
+			}
+			f.delete();
+		}
+	}
+
+	static byte[] payload(int bytes)
+	{
+		byte[] data = new byte[bytes];
+		for (int i = 0; i < bytes; i++)
+			data[i] = (byte) ('A' + i % 26);
+		return data;
+	}
+
+	/**
+	 * HexId
+	 * EssMq.convertHexId() on a message id.
+	 */
+	public static class HexId implements Fixture
+	{
+		private final byte[] _id = new byte[24];
+
+		public HexId(Properties p)
+		{
+			new Random(24).nextBytes(_id);
+		}
+
+		public Object run()
+		{
+			return EssMq.convertHexId(_id);
+		}
+
+		public void close()
+		{
+		}
+	}
+
+	/**
+	 * Put
+	 * EssMq.putMessage(): reading a messageBytes file into a message and
+	 * putting it.
+	 */
+	public static class Put extends Base
+	{
+		private final EssMq _mq;
+		private int _count;
+
+		public Put(Properties p) throws IOException
+		{
+			int bytes = Integer.parseInt(p.getProperty("messageBytes"));
+			_mq = newEssMq("BENCH.PUT", write("put.msg", payload(bytes)));
+		}
+
+		public Object run()
+		{
+			boolean ok = _mq.putMessage();
+			if (++_count % DRAIN == 0)
+				_broker.deleteQueue("BENCH.PUT");
+			return ok;
+		}
+	}
+
+	/**
+	 * Get
+	 * EssMq.getMessage(): getting a messageBytes message, writing it to
+	 * the message file and reading it back as the String result.
+	 */
+	public static class Get extends Base
+	{
+		private final EssMq  _mq;
+		private final byte[] _data;
+		private int _left;
+
+		public Get(Properties p) throws IOException
+		{
+			_data = payload(Integer.parseInt(p.getProperty("messageBytes")));
+			_mq = newEssMq("BENCH.GET", _dir.resolve("get.msg"));
+		}
+
+		public Object run()
+		{
+			if (_left == 0)
+			{
+				for (int i = 0; i < DRAIN; i++)
+					_client.put("BENCH.GET", _data);
+				_left = DRAIN;
+			}
+			_left--;
+			return _mq.getMessage();
+		}
+	}
+
+	/**
+	 * Manifest
+	 * EssMq.processManifest() over a manifest of lines put and get lines
+	 * in turn, so the queue stays empty between runs.
+	 */
+	public static class Manifest extends Base
+	{
+		private final EssMq  _mq;
+		private final String _manifest;
+
+		public Manifest(Properties p) throws IOException
+		{
+			int lines = Integer.parseInt(p.getProperty("lines"));
+			Path msg = write("in.msg", payload(Integer.parseInt(
+				p.getProperty("messageBytes", "1024"))));
+			Path got = _dir.resolve("out.msg");
+
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < lines; i++)
+			{
+				if (i % 2 == 0)
+					sb.append("put,BENCH.MANIFEST,").append(msg).append('\n');
+				else
+					sb.append("get,BENCH.MANIFEST,").append(got).append('\n');
+			}
+			_manifest = write("bench.mf", sb.toString().getBytes()).toString();
+			_mq = newEssMq("BENCH.MANIFEST", msg);
+		}
+
+		public Object run()
+		{
+			return _mq.processManifest(_manifest);
+		}
+	}
+
+	/**
+	 * BuildXml
+	 * EssDelMsg.buildXml() on items delete lines, with filesPerDocument
+	 * items to a document and the given XmlWriter.
+	 */
+	public static class BuildXml extends Base
+	{
+		private final EssDelMsg _dm = new EssDelMsg();
+
+		public BuildXml(Properties p) throws IOException
+		{
+			int items = Integer.parseInt(p.getProperty("items"));
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < items; i++)
+				sb.append(String.format("COLL%02d %020d%n", i % 20, i));
+			Path in = write("items.txt", sb.toString().getBytes());
+
+			_dm.setXmlWriter(p.getProperty("writer"));
+			_dm.setFilesPerDocument(Integer.parseInt(p.getProperty("filesPerDocument")));
+			_dm.setInFile(in.toString());
+			_dm.setOutFile(_dir.resolve("items.mf").toString());
+			_dm.setXmlStub(_dir.resolve("items_").toString());
+
+			// look the host up now rather than in the first run
+			_dm.getHostName();
+			_dm.getHostAddress();
+		}
+
+		public Object run()
+		{
+			if (!_dm.buildXml())
+				throw new IllegalStateException("buildXml failed");
+			return _dm.getDocumentCount();
+		}
+	}
+}
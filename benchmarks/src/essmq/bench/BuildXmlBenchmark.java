@@ -0,0 +1,56 @@
+// --------------------------------------------------------------------------
+// Class:    BuildXmlBenchmark
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssDelMsg.buildXml() on a 2,000 item delete list with each
+//           XmlWriter, from one document per item up to the most items
+//           a document may hold.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+package essmq.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BuildXmlBenchmark
+{
+	public static final int ITEMS = 2000;
+
+	@Param({"1", "10", "99"})
+	public int filesPerDocument;
+
+	@Param({"dom", "stax", "template"})
+	public String writer;
+
+	private Fixture _fixture;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		_fixture = Fixture.load("BuildXml", "items", ITEMS,
+								"filesPerDocument", filesPerDocument,
+								"writer", writer);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception
+	{
+		_fixture.close();
+	}
+
+	@Benchmark
+	public Object buildXml() throws Exception
+	{
+		return _fixture.run();
+	}
+}
@@ -0,0 +1,59 @@
+// --------------------------------------------------------------------------
+// Class:    Fixture
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: The work one benchmark measures.
+//
+//           JMH will not generate benchmarks in the default package, and
+//           a class in a named package cannot refer to the default
+//           package, where EssMq and friends live. So the benchmarks in
+//           this package only time run(), and the fixtures that call
+//           EssMq (EssMqBenchFixtures, in the default package) are
+//           loaded by name. Each benchmark runs in its own fork with a
+//           single Fixture class, so the interface call is inlined.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp close() throws IOException, not Exception, so that
+//                -Xlint:try is clean.
+//
+// --------------------------------------------------------------------------
+
+package essmq.bench;
+
+import java.io.IOException;
+import java.util.Properties;
+
+public interface Fixture extends AutoCloseable
+{
+	/**
+	 * run
+	 * One operation. The result is handed to the blackhole.
+	 */
+	Object run() throws Exception;
+
+	/**
+	 * close
+	 * Releases what the fixture holds. Narrower than
+	 * AutoCloseable.close(), which may throw InterruptedException.
+	 */
+	void close() throws IOException;
+
+	/**
+	 * load
+	 * Makes the fixture EssMqBenchFixtures$name with the given
+	 * name/value pairs as its parameters.
+	 */
+	static Fixture load(String name, Object... params) throws Exception
+	{
+		Properties p = new Properties();
+		for (int i = 0; i + 1 < params.length; i += 2)
+			p.setProperty(String.valueOf(params[i]), String.valueOf(params[i + 1]));
+
+		Class<?> c = Class.forName("EssMqBenchFixtures$" + name);
+		return (Fixture) c.getDeclaredConstructor(Properties.class).newInstance(p);
+	}
+}
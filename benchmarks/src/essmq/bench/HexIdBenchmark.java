@@ -0,0 +1,45 @@
+// --------------------------------------------------------------------------
+// Class:    HexIdBenchmark
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssMq.convertHexId(), which formats every message id we
+//           log, return or write to a manifest .out file.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+package essmq.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HexIdBenchmark
+{
+	private Fixture _fixture;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		_fixture = Fixture.load("HexId");
+	}
+
+	@TearDown
+	public void tearDown() throws Exception
+	{
+		_fixture.close();
+	}
+
+	@Benchmark
+	public Object convertHexId() throws Exception
+	{
+		return _fixture.run();
+	}
+}
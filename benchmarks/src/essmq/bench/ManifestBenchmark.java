@@ -0,0 +1,50 @@
+// --------------------------------------------------------------------------
+// Class:    ManifestBenchmark
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssMq.processManifest(): reading the manifest, parsing each
+//           line, dispatching the put or get and writing the .out line.
+//           One operation is a whole manifest of the given number of
+//           lines, half puts and half gets of 1KB messages.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+package essmq.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManifestBenchmark
+{
+	@Param({"10", "1000"})
+	public int lines;
+
+	private Fixture _fixture;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		_fixture = Fixture.load("Manifest", "lines", lines);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception
+	{
+		_fixture.close();
+	}
+
+	@Benchmark
+	public Object processManifest() throws Exception
+	{
+		return _fixture.run();
+	}
+}
@@ -0,0 +1,58 @@
+// --------------------------------------------------------------------------
+// Class:    PutGetBenchmark
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssMq.putMessage() (message file to queue) and
+//           EssMq.getMessage() (queue to message file and String) over
+//           the memory transport, for a range of message sizes.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+package essmq.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PutGetBenchmark
+{
+	@Param({"256", "4096", "65536", "1048576"})
+	public int messageBytes;
+
+	private Fixture _put;
+	private Fixture _get;
+
+	@Setup
+	public void setUp() throws Exception
+	{
+		_put = Fixture.load("Put", "messageBytes", messageBytes);
+		_get = Fixture.load("Get", "messageBytes", messageBytes);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception
+	{
+		_put.close();
+		_get.close();
+	}
+
+	@Benchmark
+	public Object putMessage() throws Exception
+	{
+		return _put.run();
+	}
+
+	@Benchmark
+	public Object getMessage() throws Exception
+	{
+		return _get.run();
+	}
+}
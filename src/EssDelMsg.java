@@ -3,37 +3,83 @@
  * 
  * Generate an XML Request for the UnumProvident Unified Batch System.
  * 
+ * The XML is written by an EssDelMsgWriter chosen with the XmlWriter
+ * setting in EssDelMsg.conf: "dom" (the default) builds each Request
+ * as a dom4j Document, "stax" streams it to the file item by item and
+ * "template" writes precompiled byte fragments (EssDelMsgTemplate).
+ * PrettyPrint=false writes compact XML instead of indented XML.
+ * 
+ * With Transport=direct the documents are built in memory and put on
+ * the request queue as they are finished (EssDelMsgSender) rather than
+ * written to XML files for postToMq(). The manifest and its .out file
+ * are then only written as an audit trail, and only if Audit=true.
+ * 
+ * Threads=n (n > 1) builds documents on n worker threads. Numbering and
+ * manifest order do not depend on the number of threads.
+ * 
+ * Dedupe=true skips repeated (Collection, ObjectID) pairs, and with
+ * DedupeHistory=<file> pairs sent by earlier runs too.
+ * 
+ * GroupByCollection=true sorts the input by Collection first
+ * (EssDelMsgSorter, spilling to SortDirectory past SortMemory bytes)
+ * so that every document holds items of a single collection.
+ * 
+ * SentIndex=<file> records the message id each item was sent in, and
+ * "EssDelMsg -r[:report]" later drains the ReconcileQueues and reports
+ * outstanding, succeeded and failed deletes (EssDelMsgReconciler).
+ * 
+ * "EssDelMsg -s" runs as a service that takes delete lists from a queue
+ * or spool directory (EssDelMsgService).
+ * 
+ * A first argument of --transport=memory runs against the in-process
+ * EssMqMemoryBroker instead of MQ (see EssMqTransport).
+ * 
+ * Each document built is an essmq.XmlDocument flight recorder event,
+ * and the puts are EssMqClient's events (see EssMqEvents).
+ * 
  * @author $ivap, Andrew Pierce
  * 
  */
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.text.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.LongConsumer;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.xml.DOMConfigurator;
-import org.dom4j.Document;
-import org.dom4j.DocumentHelper;
-import org.dom4j.Element;
-import org.dom4j.Namespace;
-import org.dom4j.io.*;
+import com.ibm.mq.MQException;
 
 public class EssDelMsg
 {
     private static final Logger _log = Logger.getLogger(EssDelMsg.class);
     private static final int MAX_FILES_PER_DOCUMENT = 99;
 
+    public static final String TRANSPORT_FILES  = "files";
+    public static final String TRANSPORT_DIRECT = "direct";
+
+    public static final long   DEFAULT_DEDUPE_CAPACITY = 10000000L;
+    public static final double DEFAULT_DEDUPE_FALSE_POSITIVE = 0.0001;
+
+    public static final String DEFAULT_RESPONSE_STATUS  = "Status";
+    public static final String DEFAULT_RESPONSE_SUCCESS = "0,OK,SUCCESS,COMPLETE,COMPLETED";
+
     private String _inFile;
     private String _outFile;
     private String _xmlFile;
-    private int    _sequence;
     private int    _fileCount;
+    private long   _itemCount;
     private String _objectId;
     private String _collection;
     
-    private Element _delivery;
-    private Element _root;
-    private Document _doc;
+    private EssDelMsgWriter _writer;
+    private OutputStream    _xmlOut;
+    private EssMqEvents.XmlDocument _docEvent;
+    private DocumentBuffer  _buffer;
+    private EssDelMsgSender _sender;
+    private EssMqClient     _client;
 
     private String _mqHost;
     private long   _mqPort;
@@ -43,6 +89,41 @@ public class EssDelMsg
     private String _mqResponse;
     private String _mqQueueServer;
     private int    _filesPerDocument;
+    private String _xmlWriter;
+    private boolean _prettyPrint;
+    private String  _transport;
+    private int     _pipelineDepth;
+    private int     _threads;
+    private long    _maxDocumentBytes;
+    private boolean _dedupe;
+    private String  _dedupeHistory;
+    private long    _dedupeCapacity;
+    private double  _dedupeFalsePositive;
+    private EssDelMsgIdSet       _seen;
+    private EssDelMsgBloomFilter _history;
+    private EssDelMsgIdSet       _unposted;
+    private long    _runDuplicates;
+    private long    _historyDuplicates;
+    private String[] _carry;
+    private boolean _groupByCollection;
+    private long    _sortMemory;
+    private String  _sortDirectory;
+    private String  _sentIndex;
+    private String  _reconcileQueues;
+    private String  _responseStatus;
+    private String  _responseSuccess;
+    private EssDelMsgSentIndex _index;
+    private String  _serviceQueue;
+    private String  _spoolDirectory;
+    private String  _workDirectory;
+    private int     _pollInterval;
+    private long[]  _docItems;
+    private int     _docItemCount;
+    private boolean _audit;
+
+    private String _hostName;
+    private String _hostAddress;
+    private String _runDate;
 
     public void setMqHost(String host) 
     { 
@@ -109,10 +190,19 @@ public class EssDelMsg
     
     public String getXmlFile()
     {
-        String xmlfile = _xmlFile + _fileCount + ".xml";
+        String xmlfile = getXmlFile(_fileCount);
 	_log.debug("XML Output file: " + xmlfile);
         return xmlfile;
     }
+
+    /**
+     * getXmlFile
+     * The name of document number n.
+     */
+    String getXmlFile(int n)
+    {
+	return _xmlFile + n + ".xml";
+    }
     
     public void setXmlStub(String xmlFile)
     {
@@ -151,35 +241,364 @@ public class EssDelMsg
 
     public int getFilesPerDocument() { return _filesPerDocument; }
 
-    private String getHostName()
+    /**
+     * getDocumentCount
+     * Documents built by the last buildXml().
+     */
+    public int getDocumentCount() { return _fileCount; }
+
+    /**
+     * getItemCount
+     * Items written by the last buildXml(), duplicates not included.
+     */
+    public long getItemCount() { return _itemCount; }
+
+    /**
+     * setClient
+     * Sends over the given client, which stays open between runs,
+     * instead of connecting for each run. The caller closes it.
+     */
+    public void setClient(EssMqClient client) { _client = client; }
+
+    EssMqClient newClient()
     {
-        try
-        {
-           return java.net.InetAddress.getLocalHost().getHostName();
-        }
-        catch(java.net.UnknownHostException e)
-        {
-            return "Unknown";
-        }
+	return new EssMqClient(getMqHost(), getMqPort(), getMqChannel(),
+			       getMqManager(), 1);
+    }
+
+    /**
+     * setMaxDocumentBytes
+     * Upper limit on the size of each document, e.g. the request queue's
+     * MAXMSGL less some headroom. Documents are filled up to it (and to
+     * FilesPerDocument items). 0 turns it off.
+     */
+    public void setMaxDocumentBytes(long n)
+    {
+	_log.debug("Setting max document bytes to: " + n);
+	_maxDocumentBytes = n;
+    }
+
+    public long getMaxDocumentBytes() { return _maxDocumentBytes; }
+
+    /**
+     * setDedupe
+     * Skip items whose (Collection, ObjectID) has already been seen in
+     * this input, or in earlier runs if there is a DedupeHistory file.
+     */
+    public void setDedupe(boolean dedupe)
+    {
+	_log.debug("Setting dedupe to: " + dedupe);
+	_dedupe = dedupe;
+    }
+
+    public boolean getDedupe() { return _dedupe; }
+
+    /**
+     * setDedupeHistory
+     * Bloom filter file of the items sent by earlier runs; created with
+     * DedupeCapacity and DedupeFalsePositive if it does not exist.
+     */
+    public void setDedupeHistory(String file)
+    {
+	_log.debug("Setting dedupe history to: " + file);
+	_dedupeHistory = file;
+    }
+
+    public String getDedupeHistory() { return _dedupeHistory; }
+
+    public void setDedupeCapacity(long n)
+    {
+	_log.debug("Setting dedupe capacity to: " + n);
+	_dedupeCapacity = n;
+    }
+
+    public long getDedupeCapacity() { return _dedupeCapacity; }
+
+    public void setDedupeFalsePositive(double p)
+    {
+	_log.debug("Setting dedupe false positive rate to: " + p);
+	_dedupeFalsePositive = p;
+    }
+
+    public double getDedupeFalsePositive() { return _dedupeFalsePositive; }
+
+    /**
+     * setGroupByCollection
+     * Sort the input by Collection so each document holds one
+     * collection. Items keep their input order within a collection.
+     */
+    public void setGroupByCollection(boolean group)
+    {
+	_log.debug("Setting group by collection to: " + group);
+	_groupByCollection = group;
+    }
+
+    public boolean getGroupByCollection() { return _groupByCollection; }
+
+    /**
+     * setSortMemory
+     * Bytes of input to sort in memory before spilling a run to disk.
+     */
+    public void setSortMemory(long n)
+    {
+	_log.debug("Setting sort memory to: " + n);
+	_sortMemory = n;
+    }
+
+    public long getSortMemory() { return _sortMemory; }
+
+    /**
+     * setSortDirectory
+     * Where sort runs are written; java.io.tmpdir if not set.
+     */
+    public void setSortDirectory(String dir)
+    {
+	_log.debug("Setting sort directory to: " + dir);
+	_sortDirectory = dir;
+    }
+
+    public String getSortDirectory() { return _sortDirectory; }
+
+    /**
+     * setSentIndex
+     * File to record the message id of every item sent in, for
+     * reconcile(). Not set, nothing is recorded.
+     */
+    public void setSentIndex(String file)
+    {
+	_log.debug("Setting sent index to: " + file);
+	_sentIndex = file;
+    }
+
+    public String getSentIndex() { return _sentIndex; }
+
+    /**
+     * setReconcileQueues
+     * Comma separated queues reconcile() reads responses from; the
+     * ResponseQueue if not set.
+     */
+    public void setReconcileQueues(String queues)
+    {
+	_log.debug("Setting reconcile queues to: " + queues);
+	_reconcileQueues = queues;
+    }
+
+    public String getReconcileQueues()
+    {
+	return _reconcileQueues != null ? _reconcileQueues : getMqResponseQueue();
+    }
+
+    /**
+     * setResponseStatus
+     * Name of the element (or Item Key) holding a response's status.
+     */
+    public void setResponseStatus(String name)
+    {
+	_log.debug("Setting response status to: " + name);
+	_responseStatus = name;
+    }
+
+    public String getResponseStatus() { return _responseStatus; }
+
+    /**
+     * setResponseSuccess
+     * Comma separated status values that mean the delete succeeded.
+     */
+    public void setResponseSuccess(String values)
+    {
+	_log.debug("Setting response success to: " + values);
+	_responseSuccess = values;
+    }
+
+    public String getResponseSuccess() { return _responseSuccess; }
+
+    /**
+     * setServiceQueue
+     * Service mode: queue to take delete lists from.
+     */
+    public void setServiceQueue(String q)
+    {
+	_log.debug("Setting service queue to: " + q);
+	_serviceQueue = q;
+    }
+
+    public String getServiceQueue() { return _serviceQueue; }
+
+    /**
+     * setSpoolDirectory
+     * Service mode: directory to take *.txt delete lists from.
+     */
+    public void setSpoolDirectory(String dir)
+    {
+	_log.debug("Setting spool directory to: " + dir);
+	_spoolDirectory = dir;
+    }
+
+    public String getSpoolDirectory() { return _spoolDirectory; }
+
+    /**
+     * setWorkDirectory
+     * Service mode: where batches are built; the spool directory (or
+     * the current one) if not set.
+     */
+    public void setWorkDirectory(String dir)
+    {
+	_log.debug("Setting work directory to: " + dir);
+	_workDirectory = dir;
+    }
+
+    public String getWorkDirectory() { return _workDirectory; }
+
+    /**
+     * setPollInterval
+     * Service mode: milliseconds to wait for work when there is none.
+     */
+    public void setPollInterval(int millis)
+    {
+	_log.debug("Setting poll interval to: " + millis);
+	_pollInterval = millis;
+    }
+
+    public int getPollInterval() { return _pollInterval; }
+
+    public long getRunDuplicates() { return _runDuplicates; }
+    public long getHistoryDuplicates() { return _historyDuplicates; }
+
+    /**
+     * setXmlWriter
+     * "dom" (the default), "stax" or "template"; see EssDelMsgWriter.
+     */
+    public void setXmlWriter(String kind)
+    {
+	_log.debug("Setting XML writer to: " + kind);
+	_xmlWriter = kind;
+    }
+
+    public String getXmlWriter() { return _xmlWriter; }
+
+    public void setPrettyPrint(boolean pretty)
+    {
+	_log.debug("Setting pretty print to: " + pretty);
+	_prettyPrint = pretty;
+    }
+
+    public boolean getPrettyPrint() { return _prettyPrint; }
+
+    /**
+     * setTransport
+     * "files" (write XML files and a manifest for postToMq) or "direct"
+     * (put each document on the request queue as it is built).
+     */
+    public void setTransport(String transport)
+    {
+	_log.debug("Setting transport to: " + transport);
+	_transport = transport;
+    }
+
+    public String getTransport() { return _transport; }
+
+    public boolean isDirect()
+    {
+	return TRANSPORT_DIRECT.equalsIgnoreCase(_transport);
+    }
+
+    /**
+     * setPipelineDepth
+     * Direct transport only: how many documents may be waiting for the
+     * queue manager before building pauses.
+     */
+    public void setPipelineDepth(int n)
+    {
+	_log.debug("Setting pipeline depth to: " + n);
+	_pipelineDepth = n;
+    }
+
+    public int getPipelineDepth() { return _pipelineDepth; }
+
+    /**
+     * setAudit
+     * Direct transport only: whether to still write the manifest and
+     * its .out results file.
+     */
+    public void setAudit(boolean audit)
+    {
+	_log.debug("Setting audit to: " + audit);
+	_audit = audit;
+    }
+
+    public boolean getAudit() { return _audit; }
+
+    /**
+     * setThreads
+     * More than one builds the documents in parallel; see buildParallel.
+     */
+    public void setThreads(int n)
+    {
+	_log.debug("Setting threads to: " + n);
+	_threads = n;
+    }
+
+    public int getThreads() { return _threads; }
+
+    /**
+     * getHostName
+     * Looked up once per run; every document and item uses the same name.
+     */
+    String getHostName()
+    {
+	if(_hostName == null)
+	{
+	    try
+	    {
+		_hostName = java.net.InetAddress.getLocalHost().getHostName();
+	    }
+	    catch(java.net.UnknownHostException e)
+	    {
+		_hostName = "Unknown";
+	    }
+	}
+	return _hostName;
     }
     
-    private String getHostAddress()
+    String getHostAddress()
     {
-        try
-        {
-            return java.net.Inet4Address.getLocalHost().getHostAddress();
-        }
-        catch(java.net.UnknownHostException e)
-        {
-            return "Unknown";
-        }
+	if(_hostAddress == null)
+	{
+	    try
+	    {
+		_hostAddress = java.net.Inet4Address.getLocalHost().getHostAddress();
+	    }
+	    catch(java.net.UnknownHostException e)
+	    {
+		_hostAddress = "Unknown";
+	    }
+	}
+	return _hostAddress;
     }
 
+    /**
+     * getRunDate
+     * The DeleteDate and TranDate for this run, fixed when it started.
+     */
+    String getRunDate() { return _runDate; }
+
     protected void init()
     {
 	_outFile = "";
 	_fileCount = 0;
 	_filesPerDocument = MAX_FILES_PER_DOCUMENT;
+	_xmlWriter = EssDelMsgWriter.DOM;
+	_prettyPrint = true;
+	_transport = TRANSPORT_FILES;
+	_pipelineDepth = EssDelMsgSender.DEFAULT_PIPELINE_DEPTH;
+	_audit = true;
+	_threads = 1;
+	_dedupeCapacity = DEFAULT_DEDUPE_CAPACITY;
+	_dedupeFalsePositive = DEFAULT_DEDUPE_FALSE_POSITIVE;
+	_sortMemory = EssDelMsgSorter.DEFAULT_MEMORY;
+	_responseStatus = DEFAULT_RESPONSE_STATUS;
+	_responseSuccess = DEFAULT_RESPONSE_SUCCESS;
+	_pollInterval = EssDelMsgService.DEFAULT_POLL_INTERVAL;
     }
     
     public EssDelMsg()
@@ -254,6 +673,94 @@ public class EssDelMsg
 		    {
 			setFilesPerDocument(Integer.parseInt(args[1]));
 		    }
+		    else if(args[0].equals("MaxDocumentBytes"))
+		    {
+			setMaxDocumentBytes(Long.parseLong(args[1]));
+		    }
+		    else if(args[0].equals("Dedupe"))
+		    {
+			setDedupe(Boolean.parseBoolean(args[1]));
+		    }
+		    else if(args[0].equals("DedupeHistory"))
+		    {
+			setDedupeHistory(args[1]);
+		    }
+		    else if(args[0].equals("DedupeCapacity"))
+		    {
+			setDedupeCapacity(Long.parseLong(args[1]));
+		    }
+		    else if(args[0].equals("DedupeFalsePositive"))
+		    {
+			setDedupeFalsePositive(Double.parseDouble(args[1]));
+		    }
+		    else if(args[0].equals("GroupByCollection"))
+		    {
+			setGroupByCollection(Boolean.parseBoolean(args[1]));
+		    }
+		    else if(args[0].equals("SortMemory"))
+		    {
+			setSortMemory(Long.parseLong(args[1]));
+		    }
+		    else if(args[0].equals("SortDirectory"))
+		    {
+			setSortDirectory(args[1]);
+		    }
+		    else if(args[0].equals("SentIndex"))
+		    {
+			setSentIndex(args[1]);
+		    }
+		    else if(args[0].equals("ReconcileQueues"))
+		    {
+			setReconcileQueues(args[1]);
+		    }
+		    else if(args[0].equals("ResponseStatus"))
+		    {
+			setResponseStatus(args[1]);
+		    }
+		    else if(args[0].equals("ResponseSuccess"))
+		    {
+			setResponseSuccess(args[1]);
+		    }
+		    else if(args[0].equals("ServiceQueue"))
+		    {
+			setServiceQueue(args[1]);
+		    }
+		    else if(args[0].equals("SpoolDirectory"))
+		    {
+			setSpoolDirectory(args[1]);
+		    }
+		    else if(args[0].equals("WorkDirectory"))
+		    {
+			setWorkDirectory(args[1]);
+		    }
+		    else if(args[0].equals("PollInterval"))
+		    {
+			setPollInterval(Integer.parseInt(args[1]));
+		    }
+		    else if(args[0].equals("XmlWriter"))
+		    {
+			setXmlWriter(args[1]);
+		    }
+		    else if(args[0].equals("PrettyPrint"))
+		    {
+			setPrettyPrint(Boolean.parseBoolean(args[1]));
+		    }
+		    else if(args[0].equals("Transport"))
+		    {
+			setTransport(args[1]);
+		    }
+		    else if(args[0].equals("PipelineDepth"))
+		    {
+			setPipelineDepth(Integer.parseInt(args[1]));
+		    }
+		    else if(args[0].equals("Audit"))
+		    {
+			setAudit(Boolean.parseBoolean(args[1]));
+		    }
+		    else if(args[0].equals("Threads"))
+		    {
+			setThreads(Integer.parseInt(args[1]));
+		    }
 		}
 	    }
 	    bis.close();
@@ -291,241 +798,673 @@ public class EssDelMsg
 
     /**
      * buildXml
-     * 
+     * Builds (and for the direct transport sends) the documents for
+     * the input file. Can be called again for another input. Returns
+     * true if every document was built and sent.
      */
-    protected void buildXml()
+    protected boolean buildXml()
     {
+	boolean completed = false;
+	EssDelMsgSorter sorter = null;
+	EssMqClient client = null;
+	BufferedReader bis = null;
+	PrintWriter manifest = null;
+
+	_fileCount = 0;
+	_itemCount = 0;
+	_docItemCount = 0;
+	_runDate = new SimpleDateFormat("MM/dd/yyyy").format(new java.util.Date());
+
         // open the input file
         try
         {
 	    _log.debug("Opening input file: " + getInFile());
 
             File f = new File(getInFile());
-            BufferedReader bis = new BufferedReader(new FileReader(f));
+            bis = new BufferedReader(new FileReader(f));
 
-	    PrintWriter manifest = new PrintWriter(new BufferedWriter(new FileWriter(getOutFile())));
+	    if(getGroupByCollection())
+	    {
+		File dir = getSortDirectory() == null ? null : new File(getSortDirectory());
+		sorter = new EssDelMsgSorter(getSortMemory(), dir);
+		BufferedReader unsorted = bis;
+		bis = sorter.sort(unsorted);
+		unsorted.close();
+	    }
 
-            //beginDocument();
-            
-            // read line by line until eof
-            String inputLine;
-            _sequence = 0;
+	    if(!isDirect() || getAudit())
+		manifest = new PrintWriter(new BufferedWriter(new FileWriter(getOutFile())));
 
-            while((inputLine = bis.readLine()) != null)
-            {
-                if(_sequence == 0)
-		{
-		    beginDocument();
-		}
-                
-                if(inputLine.length() == 0)
-                    continue;
-                
-                addDeliveryItem(inputLine);
-		//addDeliveryItem();
-                
-                if(_sequence++ > getFilesPerDocument())
-                {
-                    endDocument();
-                    _sequence = 0;
-
-		    // write a line to the manifest file
-		    String mf_line = "put," + this.getMqRequestQueue() + "," + getXmlFile() + "\n";
-		    _log.debug("Writing to manifest: " + mf_line);
-		    manifest.write(mf_line);
-                }
-
-		//endDocument();
-
-            }
-
-	    if(_sequence > 0)
+	    _writer = EssDelMsgWriter.create(getXmlWriter(), this, getPrettyPrint());
+
+	    if(isDirect())
 	    {
-		endDocument();
-		String mf_line = "put," + this.getMqRequestQueue() + "," + getXmlFile() + "\n";
-		_log.debug("Writing to manifest: " + mf_line);
-		manifest.write(mf_line);
+		Writer audit = null;
+		if(getAudit())
+		    audit = new BufferedWriter(new FileWriter(getOutFile() + ".out"));
+
+		if(getSentIndex() != null)
+		    _index = EssDelMsgSentIndex.open(new File(getSentIndex()).toPath());
+
+		client = _client != null ? _client : newClient();
+		_buffer = new DocumentBuffer();
+		_sender = new EssDelMsgSender(this, client, getPipelineDepth(), audit, _index);
 	    }
 
-	    manifest.flush();
-	    manifest.close();
+	    openDedupe();
+
+	    if(getThreads() > 1)
+		buildParallel(bis, manifest);
+	    else
+		buildSequential(bis, manifest);
+
+	    if(manifest != null)
+	    {
+		manifest.flush();
+		manifest.close();
+	    }
+	    completed = true;
         }
         catch(IOException e)
         {
 	    _log.error("Error processing input document! " + e.getMessage());
         }
-    }
-    
-    protected void beginDocument()
-    {
-        _log.info("beginDocument");
-
-	// increment our file count variable
-	_fileCount++;
-
-        _doc = DocumentHelper.createDocument();
-        _root = _doc.addElement("Request");
-        Namespace ns = new Namespace("xsi",
-                "http://www.w3.org/2001/XMLSchema-instance");
-        _root.add(ns);
-
-        // -- RequestInfo
-        Element reqInfo = _root.addElement("RequestInfo");
-        Element cust = reqInfo.addElement("Customer");
-        cust.addText("ISS OMF TMP Delete");
-        Element env = reqInfo.addElement("Environment");
-        env.addText("Development");
-        Element userId = reqInfo.addElement("UserID");
-        userId.addText("ESS");
-        
-        Element compName = reqInfo.addElement("ComputerName");
-        compName.addText(getHostName());
-
-        // -- Sources
-        Element sources = _root.addElement("Sources");
-
-        Element source = sources.addElement("Source");
-        source.addAttribute("Type", "OMF");
-        source.addAttribute("Format", "TIF");
-        source.addAttribute("Name", "NA");
-
-        // collection and objectid are not used but are required
-        // therefore, use the test object
-        Element coll = source.addElement("Collection");
-        coll.addText("OMFADMIN");
-        Element objId = source.addElement("ObjectID");
-        objId.addText("00000000000000000000");
-        
-        _delivery = _root.addElement("Delivery");
+	catch(MQException e)
+	{
+	    _log.error("Unable to connect to request queue " + getMqRequestQueue() +
+		       ": completion code " + e.completionCode +
+		       ", reason " + e.reasonCode);
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	}
+	finally
+	{
+	    // a service runs many batches, so nothing may be left open
+	    if(manifest != null)
+		manifest.close();
+	    if(bis != null)
+	    {
+		try
+		{
+		    bis.close();
+		}
+		catch(IOException e)
+		{
+		    // only reading
+		}
+	    }
+	    if(sorter != null)
+		sorter.close();
+
+	    if(_sender != null)
+	    {
+		try
+		{
+		    _sender.close();
+		}
+		catch(IOException e)
+		{
+		    _log.error("Error writing audit file! " + e.getMessage());
+		}
+		if(_sender.getFailed() > 0)
+		    completed = false;
+		_sender = null;
+	    }
+	    if(client != null && client != _client)
+		client.close();
+	    if(_index != null)
+	    {
+		try
+		{
+		    _index.close();
+		}
+		catch(IOException e)
+		{
+		    _log.error("Error writing sent index! " + e.getMessage());
+		}
+		_index = null;
+	    }
+	    closeDedupe(completed);
+	}
+	return completed;
+    }
+
+    /**
+     * openDedupe
+     * Sets up the duplicate check for this run when Dedupe is on.
+     */
+    private void openDedupe() throws IOException
+    {
+	_runDuplicates = 0;
+	_historyDuplicates = 0;
+	_unposted = null;
+	if(!getDedupe())
+	    return;
+
+	_seen = new EssDelMsgIdSet();
+	if(getDedupeHistory() != null)
+	{
+	    _history = EssDelMsgBloomFilter.open(new File(getDedupeHistory()).toPath(),
+						 getDedupeCapacity(),
+						 getDedupeFalsePositive());
+	    _log.info("Dedupe history " + getDedupeHistory() + " holds about " +
+		      _history.getCount() + " items");
+	}
+    }
+
+    /**
+     * closeDedupe
+     * Adds this run's items to the history, but only if every document
+     * was built and put. For the direct transport that is known here;
+     * for the files transport the items are kept for postToMq(), which
+     * adds them once the manifest has been put (recordHistory). A run
+     * that fails part way records nothing, so its items are sent again
+     * next time.
+     */
+    private void closeDedupe(boolean record)
+    {
+	if(_seen == null)
+	    return;
+
+	_log.info("Skipped " + (_runDuplicates + _historyDuplicates) +
+		  " duplicate items: " + _runDuplicates + " repeated in this input, " +
+		  _historyDuplicates + " sent by earlier runs");
+
+	if(_history != null)
+	{
+	    try
+	    {
+		if(record && isDirect())
+		    addAll(_history, _seen);
+		else if(record)
+		    _unposted = _seen;
+		else
+		{
+		    _log.warn("Run did not complete; not adding its items to the dedupe history");
+		}
+		_history.close();
+	    }
+	    catch(IOException e)
+	    {
+		_log.error("Error writing dedupe history! " + e.getMessage());
+	    }
+	}
+	_history = null;
+	_seen = null;
+    }
+
+    /**
+     * recordHistory
+     * Adds the items of a files transport run to the dedupe history if
+     * every document was put.
+     */
+    private void recordHistory(boolean posted)
+    {
+	EssDelMsgIdSet items = _unposted;
+	_unposted = null;
+	if(items == null)
+	    return;
+
+	if(!posted)
+	{
+	    _log.warn("Documents were not all put; not adding their items to the dedupe history");
+	    return;
+	}
+
+	try
+	{
+	    EssDelMsgBloomFilter history =
+		EssDelMsgBloomFilter.open(new File(getDedupeHistory()).toPath(),
+					  getDedupeCapacity(), getDedupeFalsePositive());
+	    try
+	    {
+		addAll(history, items);
+	    }
+	    finally
+	    {
+		history.close();
+	    }
+	}
+	catch(IOException e)
+	{
+	    _log.error("Error writing dedupe history! " + e.getMessage());
+	}
+    }
+
+    private static void addAll(final EssDelMsgBloomFilter history, EssDelMsgIdSet items)
+    {
+	items.forEach(new LongConsumer()
+	{
+	    public void accept(long fp)
+	    {
+		history.add(fp);
+	    }
+	});
+    }
+
+    /**
+     * isDuplicate
+     * True, and counted, if the item was already seen in this input or
+     * (probably) sent by an earlier run.
+     */
+    private boolean isDuplicate(String[] tokens)
+    {
+	if(_seen == null)
+	    return false;
+
+	long fp = EssDelMsgIdSet.fingerprint(tokens[0], tokens[1]);
+	if(_seen.contains(fp))
+	{
+	    _runDuplicates++;
+	    return true;
+	}
+	if(_history != null && _history.mightContain(fp))
+	{
+	    _historyDuplicates++;
+	    return true;
+	}
+	_seen.add(fp);
+	return false;
+    }
+
+    /**
+     * splitLine
+     * The Collection and ObjectID on an input line, or null (logged) if
+     * the line does not have both.
+     */
+    private String[] splitLine(String inputLine)
+    {
+	String[] tokens = inputLine.split(" ");
+	if(tokens.length < 2)
+	{
+	    _log.warn("Skipping malformed input line: " + inputLine);
+	    return null;
+	}
+	return tokens;
+    }
+
+    private void buildSequential(BufferedReader bis, PrintWriter manifest)
+	throws IOException
+    {
+	EssDelMsgSplitter splitter = newSplitter();
+
+	// read line by line until eof
+	String inputLine;
+
+	while((inputLine = bis.readLine()) != null)
+	{
+	    if(inputLine.length() == 0)
+		continue;
+
+	    String[] tokens = splitLine(inputLine);
+	    if(tokens == null || isDuplicate(tokens))
+		continue;
+
+	    if(!splitter.fits(tokens[0], tokens[1]))
+	    {
+		endDocument();
+		splitter.reset();
+
+		// write a line to the manifest file
+		writeManifest(manifest);
+	    }
+
+	    if(splitter.isEmpty())
+		beginDocument();
+
+	    addDeliveryItem(tokens[0], tokens[1]);
+	    splitter.add(tokens[0], tokens[1]);
+	    trackItem(tokens[0], tokens[1]);
+	    _itemCount++;
+	}
+
+	if(!splitter.isEmpty())
+	{
+	    endDocument();
+	    writeManifest(manifest);
+	}
+    }
+
+    /**
+     * trackItem
+     * Direct transport with a sent index: remembers the items of the
+     * document being built so the sender can record them once it is
+     * put.
+     */
+    private void trackItem(String collection, String objectId)
+    {
+	if(_index == null)
+	    return;
+
+	if(_docItems == null)
+	    _docItems = new long[Math.min(getFilesPerDocument(), 1024)];
+	else if(_docItemCount == _docItems.length)
+	    _docItems = Arrays.copyOf(_docItems, _docItemCount * 2);
+	_docItems[_docItemCount++] = EssDelMsgIdSet.fingerprint(collection, objectId);
+    }
+
+    /**
+     * fingerprints
+     * The sent index keys of the items, or null without an index.
+     */
+    private long[] fingerprints(List<String[]> items)
+    {
+	if(_index == null)
+	    return null;
+
+	long[] fps = new long[items.size()];
+	for(int i = 0; i < fps.length; i++)
+	    fps[i] = EssDelMsgIdSet.fingerprint(items.get(i)[0], items.get(i)[1]);
+	return fps;
+    }
+
+    private EssDelMsgSplitter newSplitter()
+    {
+	return new EssDelMsgSplitter(this, getFilesPerDocument(),
+				     getMaxDocumentBytes(), getGroupByCollection());
+    }
+
+    /**
+     * buildParallel
+     * Reads the input once, cuts it into documents and builds them on a
+     * pool of Threads workers, each with its own writer. Documents are
+     * numbered in input order as they are read and finished (manifest
+     * line, put) in that order, so a run gives the same files, manifest
+     * and queue order however many threads it uses. At most two
+     * documents per thread are held in memory.
+     */
+    private void buildParallel(BufferedReader in, PrintWriter manifest)
+	throws IOException, InterruptedException
+    {
+	final int threads = getThreads();
+	_log.info("Building documents on " + threads + " threads");
+
+	// resolve the per-run values before the workers share them
+	getHostName();
+	getHostAddress();
+
+	final ThreadLocal<EssDelMsgWriter> writers = new ThreadLocal<EssDelMsgWriter>()
+	{
+	    protected EssDelMsgWriter initialValue()
+	    {
+		return EssDelMsgWriter.create(getXmlWriter(), EssDelMsg.this,
+					      getPrettyPrint());
+	    }
+	};
+
+	ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory()
+	{
+	    private int _count;
+
+	    public synchronized Thread newThread(Runnable r)
+	    {
+		Thread t = new Thread(r, "EssDelMsg-" + _count++);
+		t.setDaemon(true);
+		return t;
+	    }
+	});
+
+	ArrayDeque<Future<ByteBuffer>> window = new ArrayDeque<Future<ByteBuffer>>();
+	ArrayDeque<Integer> numbers = new ArrayDeque<Integer>();
+	ArrayDeque<List<String[]>> chunks = new ArrayDeque<List<String[]>>();
+	EssDelMsgSplitter splitter = newSplitter();
+	_carry = null;
+	try
+	{
+	    List<String[]> chunk;
+	    while((chunk = readDocument(in, splitter)) != null)
+	    {
+		final int number = ++_fileCount;
+		final List<String[]> items = chunk;
+		_itemCount += items.size();
+		window.add(pool.submit(new Callable<ByteBuffer>()
+		{
+		    public ByteBuffer call() throws IOException
+		    {
+			return buildDocument(writers.get(), number, items);
+		    }
+		}));
+		numbers.add(number);
+		chunks.add(items);
+
+		if(window.size() >= threads * 2)
+		    finishDocument(numbers.poll(), window.poll(), chunks.poll(), manifest);
+	    }
+
+	    while(!window.isEmpty())
+		finishDocument(numbers.poll(), window.poll(), chunks.poll(), manifest);
+	}
+	finally
+	{
+	    pool.shutdownNow();
+	}
+    }
+
+    /**
+     * readDocument
+     * The items (collection, object id) for the next document, split
+     * the same way as buildSequential, or null at end of input.
+     */
+    private List<String[]> readDocument(BufferedReader in,
+					EssDelMsgSplitter splitter)
+	throws IOException
+    {
+	List<String[]> items = new ArrayList<String[]>();
+	splitter.reset();
+
+	// the item that did not fit in the last document
+	if(_carry != null)
+	{
+	    splitter.fits(_carry[0], _carry[1]);
+	    splitter.add(_carry[0], _carry[1]);
+	    items.add(_carry);
+	    _carry = null;
+	}
+
+	String inputLine;
+	while((inputLine = in.readLine()) != null)
+	{
+	    if(inputLine.length() == 0)
+		continue;
+
+	    String[] tokens = splitLine(inputLine);
+	    if(tokens == null || isDuplicate(tokens))
+		continue;
+
+	    if(!splitter.fits(tokens[0], tokens[1]))
+	    {
+		_carry = tokens;
+		break;
+	    }
+	    splitter.add(tokens[0], tokens[1]);
+	    items.add(tokens);
+	}
+	return items.isEmpty() ? null : items;
+    }
+
+    /**
+     * buildDocument
+     * Runs on a worker. Writes document number to its XML file, or for
+     * the direct transport returns it as a buffer.
+     */
+    private ByteBuffer buildDocument(EssDelMsgWriter writer, int number,
+				     List<String[]> items) throws IOException
+    {
+	EssMqEvents.XmlDocument event = new EssMqEvents.XmlDocument();
+	event.begin();
+	event.items = items.size();
+
+	OutputStream out;
+	ByteArrayOutputStream bytes = null;
+	if(isDirect())
+	    out = bytes = new ByteArrayOutputStream(64 * 1024);
+	else
+	    out = new BufferedOutputStream(new FileOutputStream(getXmlFile(number)));
+
+	try
+	{
+	    writer.beginDocument(out);
+	    for(String[] item : items)
+		writer.addDeliveryItem(item[0], item[1]);
+	    writer.endDocument();
+	}
+	finally
+	{
+	    out.close();
+	}
+
+	if(bytes == null)
+	{
+	    event.done(new File(getXmlFile(number)));
+	    return null;
+	}
+	event.done(getXmlFile(number), bytes.size());
+	return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * finishDocument
+     * Waits for a worker's document, then writes its manifest line and
+     * sends it.
+     */
+    private void finishDocument(int number, Future<ByteBuffer> built,
+				List<String[]> items, PrintWriter manifest)
+	throws IOException, InterruptedException
+    {
+	ByteBuffer document;
+	try
+	{
+	    document = built.get();
+	}
+	catch(ExecutionException e)
+	{
+	    Throwable cause = e.getCause();
+	    if(cause instanceof IOException)
+		throw (IOException) cause;
+	    throw new IOException("Unable to build " + getXmlFile(number), cause);
+	}
+
+	String name = getXmlFile(number);
+	if(isDirect())
+	    _sender.send(name, document, fingerprints(items));
+	writeManifest(manifest, name);
+    }
+
+    private void writeManifest(PrintWriter manifest)
+    {
+	writeManifest(manifest, getXmlFile());
+    }
+
+    private void writeManifest(PrintWriter manifest, String xmlfile)
+    {
+	if(manifest == null)
+	    return;
+
+	String mf_line = "put," + this.getMqRequestQueue() + "," + xmlfile + "\n";
+	_log.debug("Writing to manifest: " + mf_line);
+	manifest.write(mf_line);
+    }
+    
+    protected void beginDocument() throws IOException
+    {
+        _log.info("beginDocument");
+
+	// increment our file count variable
+	_fileCount++;
+	_docEvent = new EssMqEvents.XmlDocument();
+	_docEvent.begin();
+
+	if(isDirect())
+	{
+	    _buffer.reset();
+	    _xmlOut = _buffer;
+	}
+	else
+	{
+	    String xmlfile = getXmlFile();
+	    _log.debug("Writing XML output file: " + xmlfile);
+
+	    _xmlOut = new BufferedOutputStream(new FileOutputStream(xmlfile));
+	}
+	_writer.beginDocument(_xmlOut);
     }
 
     /**
      * addDeliveryItems
      * 
      */
-    private void addDeliveryItem(String inputLine)
+    private void addDeliveryItem(String collection, String objectId)
+	throws IOException
     {
 	_log.debug("Adding deliverable to XML output. " );
 
-        String[] tokens = inputLine.split(" ");
-                
-	// -- Delivery
-	
-	Element passThru = _delivery.addElement("PassThru");
-	Element stitch = passThru.addElement("Stitch");
-	stitch.addAttribute("Type", "None");
-	Element item = stitch.addElement("Item");
-	item.addText("TMP Deleted Items");
-
-	// -- Information, this is the data section
-	Element info = passThru.addElement("Information");
-	Element itm = info.addElement("Item");
-	itm.addAttribute("Key", "OMFTransID");
-	itm.addText("NA");
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "ObjectID");
-	//itm.addText(getObjectId());
-	itm.addText(tokens[1]);
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "Collection");
-	//itm.addText(getCollection());
-	itm.addText(tokens[0]);
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "ReqMachine");
-	itm.addText(getHostName());
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "ReqIP");
-	itm.addText(getHostAddress()); 
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "ReqUserID");
-	itm.addText("ddpomf");
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "DeleteDate");
-	SimpleDateFormat df = new SimpleDateFormat("MM/dd/yyyy");
-	String myDate = df.format(new java.util.Date()); 
-	itm.addText(myDate);
-	
-	itm = info.addElement("Item");
-	itm.addAttribute("Key", "TranDate");
-	itm.addText(myDate);
-
-	// -- Notification section for passing to QPE
-	Element notify = passThru.addElement("Notification");
-	notify.addAttribute("Method", "MQSeries");
-	
-	Element target = notify.addElement("Target");
-	target.addText( this.getMqResponseQueue() );
-	item = notify.addElement("Item");
-	item.addAttribute("Key", "QueueManager");
-	item.addText(this.getMqManager());
-
-	item = notify.addElement("Item");
-	item.addAttribute("Key", "QueueServer");
-	item.addText(this.getMqQueueServer());
-
-	// -- Notification section for getting our results back from DocDirector
-	notify = passThru.addElement("Notification");
-	notify.addAttribute("Method", "MQSeries");
-
-	target = notify.addElement("Target");
-	target.addText("ISS.OMF.DELETE");
-
-	item = notify.addElement("Item");
-	item.addAttribute("Key", "QueueManager");
-	item.addText(this.getMqManager());
-
-	item = notify.addElement("Item");
-	item.addAttribute("Key", "QueueServer");
-	item.addText(this.getMqQueueServer());
+	_writer.addDeliveryItem(collection, objectId);
+	_docEvent.items++;
     }
     
-    protected void endDocument()
+    protected void endDocument() throws IOException
     {
-        // Pretty print the document
-        OutputFormat format = OutputFormat.createPrettyPrint();
-        
-        try
-        {
-	    String xmlfile = getXmlFile();
-	    _log.debug("Writing XML output file: " + xmlfile);
+	try
+	{
+	    _writer.endDocument();
 
-            BufferedOutputStream ous = new BufferedOutputStream(
-                    new FileOutputStream(xmlfile));
-            XMLWriter writer = new XMLWriter(ous, format);
-            writer.write(_doc);
-
-//             _log.debug("Writing output file to message queue");
-//             EssMq mq = new EssMq();
-//             mq.setHost(getMqHost());
-//             mq.setPort(getMqPort());
-//             mq.setQueue(getMqRequestQueue());
-//             mq.setChannel(getMqChannel());
-//             mq.setQueueManager(getMqManager());
-//             mq.setMessageFile(outfile);
-//             mq.putMessage();
-//
-//             _log.info("Message ID: " + mq.getMessageId());
-//
-        } catch (UnsupportedEncodingException e)
-        {
-	    _log.error("EncodingException: " + e.getMessage());
-        } catch (IOException ioe)
-        {
-            _log.error("IOException: " + ioe.getMessage());
-        }
+	    if(isDirect())
+	    {
+		_docEvent.done(getXmlFile(), _buffer.size());
+		long[] items = _index == null ? null : Arrays.copyOf(_docItems, _docItemCount);
+		_docItemCount = 0;
+		_sender.send(getXmlFile(), _buffer.toByteBuffer(), items);
+	    }
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Interrupted sending " + getXmlFile());
+	}
+	finally
+	{
+	    _xmlOut.close();
+	    _xmlOut = null;
+	}
+
+	if(!isDirect())
+	    _docEvent.done(new File(getXmlFile()));
+    }
+
+    /**
+     * DocumentBuffer
+     * Holds the document being built for the direct transport. It is
+     * reused for every document and handed to the sender without a copy.
+     */
+    private static final class DocumentBuffer extends ByteArrayOutputStream
+    {
+	DocumentBuffer()
+	{
+	    super(64 * 1024);
+	}
+
+	ByteBuffer toByteBuffer()
+	{
+	    return ByteBuffer.wrap(buf, 0, count);
+	}
     }
 
     /**
      * postToMq
+     * Puts the documents named in the manifest on the request queue.
+     * Returns false if the manifest could not be processed or any of
+     * its documents could not be put.
      */
-    public void postToMq()
+    public boolean postToMq()
     {
+	if(isDirect())
+	{
+	    _log.debug("Documents were sent as they were built");
+	    return true;
+	}
+
 	_log.debug("Writing output file to message queue");
         EssMq mq = new EssMq();
         mq.setHost(getMqHost());
@@ -533,28 +1472,131 @@ public class EssDelMsg
         mq.setQueue(getMqRequestQueue());
         mq.setChannel(getMqChannel());
         mq.setQueueManager(getMqManager());
+	if(_client != null)
+	    mq.setClient(_client);
 
         //mq.setMessageFile(outfile);
         //mq.putMessage();
 
-	mq.processManifest(getOutFile());
-
-	// open manifest.out file
-
-	// loop
-
-	// split line on commas
+	long sent = System.currentTimeMillis();
+	int rc = mq.processManifest(getOutFile());
+	if(rc != 0)
+	{
+	    _log.error("Error processing manifest " + getOutFile() + "! rc=" + rc);
+	    recordHistory(false);
+	    return false;
+	}
 
-	// if element 1 is 0 and element 2 is message id
+	int failed = countFailedPuts(getOutFile() + ".out");
+	if(failed != 0)
+	    _log.error(failed + " documents of " + getOutFile() + " were not put" +
+		       (failed < 0 ? "" : ", see " + getOutFile() + ".out"));
+	recordHistory(failed == 0);
 
-	// write out all object id's
+	if(getSentIndex() == null)
+	    return failed == 0;
 
-	// read xml file specified in element 0
+	// record the object ids of every document put for reconcile()
+	try
+	{
+	    EssDelMsgSentIndex index = EssDelMsgSentIndex.open(new File(getSentIndex()).toPath());
+	    try
+	    {
+		new EssDelMsgReconciler(this, index).recordManifest(getOutFile() + ".out", sent);
+	    }
+	    finally
+	    {
+		index.close();
+	    }
+	}
+	catch(IOException e)
+	{
+	    _log.error("Error recording sent items in " + getSentIndex() + "! " +
+		       e.getMessage());
+	}
+	return failed == 0;
+    }
 
-	// select nodes
+    /**
+     * countFailedPuts
+     * Counts the error lines (xmlfile,cc,rc) in a manifest's .out file,
+     * or returns -1 if it cannot be read.
+     */
+    private int countFailedPuts(String outFile)
+    {
+	int failed = 0;
+	try
+	{
+	    BufferedReader in = new BufferedReader(new FileReader(outFile));
+	    try
+	    {
+		String line;
+		while((line = in.readLine()) != null)
+		{
+		    String[] fields = line.split(",");
+		    if(fields.length < 3 || !fields[1].equals("0"))
+			failed++;
+		}
+	    }
+	    finally
+	    {
+		in.close();
+	    }
+	}
+	catch(IOException e)
+	{
+	    _log.error("Error reading " + outFile + "! " + e.getMessage());
+	    return -1;
+	}
+	return failed;
+    }
 
-	// for 
+    /**
+     * reconcile
+     * Reads the responses waiting on the ReconcileQueues, marks the
+     * items in the sent index succeeded or failed and reports on them.
+     * report, if not null, gets a line per failed item and per document
+     * still outstanding. Returns false if it could not run.
+     */
+    public boolean reconcile(String report)
+    {
+	if(getSentIndex() == null)
+	{
+	    _log.error("No SentIndex configured; nothing to reconcile");
+	    return false;
+	}
 
+	EssMqClient client = _client != null ? _client : newClient();
+	try
+	{
+	    EssDelMsgSentIndex index = EssDelMsgSentIndex.open(new File(getSentIndex()).toPath());
+	    Writer out = report == null ? null :
+		new BufferedWriter(new FileWriter(report));
+	    try
+	    {
+		EssDelMsgReconciler reconciler = new EssDelMsgReconciler(this, index);
+		reconciler.reconcile(client, Arrays.asList(getReconcileQueues().split(",")),
+				     EssMqClient.DEFAULT_WAIT_INTERVAL, out);
+		reconciler.report(out);
+	    }
+	    finally
+	    {
+		if(out != null)
+		    out.close();
+		index.close();
+	    }
+	    return true;
+	}
+	catch(IOException e)
+	{
+	    _log.error("Error reconciling responses! " + e.getMessage());
+	    return false;
+	}
+	finally
+	{
+	    if(client != _client)
+		client.close();
+	}
     }
     
     
@@ -567,17 +1609,29 @@ public class EssDelMsg
         System.out.println("EssDelMsg\n");
 
         EssDelMsg dm = new EssDelMsg();
+	args = EssMqTransport.takeOption(args);
 
-        // parse command line
-	if(dm.parseCommandLine(args))
+	// -s runs as a service until stopped
+	if(args.length > 0 && args[0].equals("-s"))
 	{
-	    // build the XML message
-	    dm.buildXml();
+	    new EssDelMsgService(dm).run();
+	    return;
+	}
 
-	    // post to mq via manifest
-	    dm.postToMq();
+	// -r[:report] reconciles the responses to earlier runs
+	if(args.length > 0 && args[0].startsWith("-r"))
+	{
+	    String report = args[0].startsWith("-r:") ? args[0].substring(3) : null;
+	    System.exit(dm.reconcile(report) ? 0 : -1);
+	}
 
-	    System.exit(0);
+        // parse command line
+	if(dm.parseCommandLine(args))
+	{
+	    // build the XML message, then post to mq via manifest
+	    if(dm.buildXml() && dm.postToMq())
+		System.exit(0);
+	    System.exit(-1);
 	}
 	else
 	{
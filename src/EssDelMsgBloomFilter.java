@@ -0,0 +1,195 @@
+/**
+ * EssDelMsgBloomFilter
+ *
+ * Persistent Bloom filter of the item fingerprints submitted by earlier
+ * EssDelMsg runs. The bit array lives in a memory-mapped file, so the
+ * history takes no heap and opening it reads nothing up front; about
+ * 19 bits per item at a 1 in 10,000 false positive rate, so 10 million
+ * items take 24MB.
+ *
+ * mightContain() never misses an item that was added. A false positive
+ * makes EssDelMsg skip an item that was never sent, so the rate is
+ * kept low and the filter warns once it holds more items than it was
+ * sized for.
+ *
+ * File layout: the magic "EDMBLOOM", a version, the number of hash
+ * functions, the number of bits, the item count and the capacity, then
+ * the bits as longs.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+class EssDelMsgBloomFilter implements Closeable
+{
+    private static final Logger _log = Logger.getLogger(EssDelMsgBloomFilter.class);
+
+    private static final byte[] MAGIC = "EDMBLOOM".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER = 48;
+
+    private final FileChannel      _channel;
+    private final MappedByteBuffer _map;
+    private final LongBuffer       _bits;
+    private final int  _hashes;
+    private final long _bitCount;
+    private final long _capacity;
+    private long _count;
+
+    /**
+     * open
+     * Opens the history file, creating one sized for capacity items at
+     * the given false positive rate if it does not exist. An existing
+     * file keeps the size it was created with.
+     */
+    static EssDelMsgBloomFilter open(Path file, long capacity, double fpp)
+	throws IOException
+    {
+	if(Files.exists(file))
+	    return new EssDelMsgBloomFilter(file, 0, 0, 0);
+
+	if(capacity < 1 || fpp <= 0 || fpp >= 1)
+	    throw new IllegalArgumentException("Bad Bloom filter size: " +
+					       capacity + " items at " + fpp);
+
+	double ln2 = Math.log(2);
+	long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (ln2 * ln2));
+	bits = (bits + 63) / 64 * 64;
+	int hashes = Math.max(1, (int) Math.round((double) bits / capacity * ln2));
+
+	_log.info("Creating dedupe history " + file + ": " + bits + " bits, " +
+		  hashes + " hashes for " + capacity + " items");
+	return new EssDelMsgBloomFilter(file, bits, hashes, capacity);
+    }
+
+    private EssDelMsgBloomFilter(Path file, long bits, int hashes, long capacity)
+	throws IOException
+    {
+	boolean create = bits > 0;
+	_channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				    StandardOpenOption.READ,
+				    StandardOpenOption.WRITE);
+	try
+	{
+	    if(!create)
+	    {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while(header.hasRemaining() && _channel.read(header) >= 0)
+		    ;
+		header.flip();
+
+		byte[] magic = new byte[MAGIC.length];
+		if(header.remaining() < HEADER)
+		    throw new IOException(file + " is not a dedupe history file");
+		header.get(magic);
+		if(!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION)
+		    throw new IOException(file + " is not a dedupe history file");
+
+		hashes = header.getInt();
+		bits = header.getLong();
+		_count = header.getLong();
+		capacity = header.getLong();
+	    }
+
+	    long length = HEADER + bits / 8;
+	    if(length > Integer.MAX_VALUE)
+		throw new IOException("Dedupe history is too large to map: " + length);
+
+	    _hashes = hashes;
+	    _bitCount = bits;
+	    _capacity = capacity;
+	    _map = _channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+	    _map.position(HEADER);
+	    _bits = _map.slice().asLongBuffer();
+
+	    if(create)
+		writeHeader();
+	}
+	catch(IOException | RuntimeException e)
+	{
+	    _channel.close();
+	    throw e;
+	}
+    }
+
+    long getCount() { return _count; }
+    long getCapacity() { return _capacity; }
+
+    /**
+     * mightContain
+     * False if the fingerprint was certainly never added.
+     */
+    boolean mightContain(long fp)
+    {
+	long h1 = fp;
+	long h2 = EssDelMsgIdSet.mix(fp) | 1;
+	for(int i = 0; i < _hashes; i++)
+	{
+	    long bit = Long.remainderUnsigned(h1 + i * h2, _bitCount);
+	    if((_bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+		return false;
+	}
+	return true;
+    }
+
+    void add(long fp)
+    {
+	long h1 = fp;
+	long h2 = EssDelMsgIdSet.mix(fp) | 1;
+	boolean added = false;
+	for(int i = 0; i < _hashes; i++)
+	{
+	    long bit = Long.remainderUnsigned(h1 + i * h2, _bitCount);
+	    int word = (int) (bit >>> 6);
+	    long value = _bits.get(word);
+	    if((value & (1L << bit)) == 0)
+	    {
+		_bits.put(word, value | (1L << bit));
+		added = true;
+	    }
+	}
+
+	if(added && ++_count == _capacity + 1)
+	    _log.warn("Dedupe history holds more than the " + _capacity +
+		      " items it was sized for; false positives will increase");
+    }
+
+    /**
+     * close
+     * Writes the header and flushes the bits to disk.
+     */
+    public void close() throws IOException
+    {
+	try
+	{
+	    writeHeader();
+	    _map.force();
+	}
+	finally
+	{
+	    _channel.close();
+	}
+    }
+
+    private void writeHeader()
+    {
+	_map.position(0);
+	_map.put(MAGIC);
+	_map.putInt(VERSION);
+	_map.putInt(_hashes);
+	_map.putLong(_bitCount);
+	_map.putLong(_count);
+	_map.putLong(_capacity);
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * EssDelMsgDomWriter
+ *
+ * The original EssDelMsg writer: builds each Request as a dom4j
+ * Document and serializes it with XMLWriter when the document ends.
+ *
+ * @author $ivap, Andrew Pierce
+ *
+ */
+
+import java.io.*;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Namespace;
+import org.dom4j.io.*;
+
+class EssDelMsgDomWriter extends EssDelMsgWriter
+{
+    private OutputStream _out;
+    private Document     _doc;
+    private Element      _root;
+    private Element      _delivery;
+
+    EssDelMsgDomWriter(EssDelMsg dm, boolean pretty)
+    {
+	super(dm, pretty);
+    }
+
+    void beginDocument(OutputStream out)
+    {
+	_out = out;
+
+	_doc = DocumentHelper.createDocument();
+	_root = _doc.addElement("Request");
+	Namespace ns = new Namespace("xsi",
+		"http://www.w3.org/2001/XMLSchema-instance");
+	_root.add(ns);
+
+	// -- RequestInfo
+	Element reqInfo = _root.addElement("RequestInfo");
+	Element cust = reqInfo.addElement("Customer");
+	cust.addText("ISS OMF TMP Delete");
+	Element env = reqInfo.addElement("Environment");
+	env.addText("Development");
+	Element userId = reqInfo.addElement("UserID");
+	userId.addText("ESS");
+
+	Element compName = reqInfo.addElement("ComputerName");
+	compName.addText(_dm.getHostName());
+
+	// -- Sources
+	Element sources = _root.addElement("Sources");
+
+	Element source = sources.addElement("Source");
+	source.addAttribute("Type", "OMF");
+	source.addAttribute("Format", "TIF");
+	source.addAttribute("Name", "NA");
+
+	// collection and objectid are not used but are required
+	// therefore, use the test object
+	Element coll = source.addElement("Collection");
+	coll.addText("OMFADMIN");
+	Element objId = source.addElement("ObjectID");
+	objId.addText("00000000000000000000");
+
+	_delivery = _root.addElement("Delivery");
+    }
+
+    void addDeliveryItem(String collection, String objectId)
+    {
+	// -- Delivery
+
+	Element passThru = _delivery.addElement("PassThru");
+	Element stitch = passThru.addElement("Stitch");
+	stitch.addAttribute("Type", "None");
+	Element item = stitch.addElement("Item");
+	item.addText("TMP Deleted Items");
+
+	// -- Information, this is the data section
+	Element info = passThru.addElement("Information");
+	Element itm = info.addElement("Item");
+	itm.addAttribute("Key", "OMFTransID");
+	itm.addText("NA");
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "ObjectID");
+	itm.addText(objectId);
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "Collection");
+	itm.addText(collection);
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "ReqMachine");
+	itm.addText(_dm.getHostName());
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "ReqIP");
+	itm.addText(_dm.getHostAddress());
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "ReqUserID");
+	itm.addText("ddpomf");
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "DeleteDate");
+	String myDate = _dm.getRunDate();
+	itm.addText(myDate);
+
+	itm = info.addElement("Item");
+	itm.addAttribute("Key", "TranDate");
+	itm.addText(myDate);
+
+	// -- Notification section for passing to QPE
+	Element notify = passThru.addElement("Notification");
+	notify.addAttribute("Method", "MQSeries");
+
+	Element target = notify.addElement("Target");
+	target.addText(_dm.getMqResponseQueue());
+	item = notify.addElement("Item");
+	item.addAttribute("Key", "QueueManager");
+	item.addText(_dm.getMqManager());
+
+	item = notify.addElement("Item");
+	item.addAttribute("Key", "QueueServer");
+	item.addText(_dm.getMqQueueServer());
+
+	// -- Notification section for getting our results back from DocDirector
+	notify = passThru.addElement("Notification");
+	notify.addAttribute("Method", "MQSeries");
+
+	target = notify.addElement("Target");
+	target.addText("ISS.OMF.DELETE");
+
+	item = notify.addElement("Item");
+	item.addAttribute("Key", "QueueManager");
+	item.addText(_dm.getMqManager());
+
+	item = notify.addElement("Item");
+	item.addAttribute("Key", "QueueServer");
+	item.addText(_dm.getMqQueueServer());
+    }
+
+    void endDocument() throws IOException
+    {
+	OutputFormat format = _pretty ? OutputFormat.createPrettyPrint()
+				      : OutputFormat.createCompactFormat();
+
+	XMLWriter writer = new XMLWriter(_out, format);
+	writer.write(_doc);
+	writer.flush();
+
+	_doc = null;
+	_root = null;
+	_delivery = null;
+	_out = null;
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * EssDelMsgIdSet
+ *
+ * Open addressing hash set of 64-bit item fingerprints (see
+ * fingerprint()), kept in a direct buffer off the Java heap. A million
+ * items take 16MB at most and create no objects, where a HashSet of
+ * the Collection/ObjectID strings would hold several million.
+ *
+ * Two different items share a fingerprint with a probability of about
+ * n^2 / 2^65, e.g. 3 in a million for a 10 million item run.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.function.LongConsumer;
+
+class EssDelMsgIdSet
+{
+    private static final int  INITIAL_CAPACITY = 1 << 16;
+
+    // an empty slot; fingerprint() never returns 0
+    private static final long EMPTY = 0L;
+
+    private LongBuffer _slots;
+    private int _mask;
+    private int _size;
+
+    EssDelMsgIdSet()
+    {
+	allocate(INITIAL_CAPACITY);
+    }
+
+    int size() { return _size; }
+
+    /**
+     * add
+     * Adds the fingerprint. Returns false if it was already present.
+     */
+    boolean add(long fp)
+    {
+	if(fp == EMPTY)
+	    throw new IllegalArgumentException("0 is not a fingerprint");
+
+	int i = index(fp);
+	long slot;
+	while((slot = _slots.get(i)) != EMPTY)
+	{
+	    if(slot == fp)
+		return false;
+	    i = (i + 1) & _mask;
+	}
+	_slots.put(i, fp);
+
+	// keep the table at most half full
+	if(++_size > (_mask + 1) / 2)
+	    grow();
+	return true;
+    }
+
+    boolean contains(long fp)
+    {
+	int i = index(fp);
+	long slot;
+	while((slot = _slots.get(i)) != EMPTY)
+	{
+	    if(slot == fp)
+		return true;
+	    i = (i + 1) & _mask;
+	}
+	return false;
+    }
+
+    /**
+     * forEach
+     * Passes every fingerprint in the set to the visitor.
+     */
+    void forEach(LongConsumer visitor)
+    {
+	for(int i = 0; i <= _mask; i++)
+	{
+	    long slot = _slots.get(i);
+	    if(slot != EMPTY)
+		visitor.accept(slot);
+	}
+    }
+
+    /**
+     * fingerprint
+     * 64-bit hash of a (Collection, ObjectID) pair: FNV-1a over both
+     * strings, then the murmur3 finalizer to spread the bits.
+     */
+    static long fingerprint(String collection, String objectId)
+    {
+	long h = 0xcbf29ce484222325L;
+	for(int i = 0; i < collection.length(); i++)
+	    h = (h ^ collection.charAt(i)) * 0x100000001b3L;
+
+	// separator, so ("AB", "C") and ("A", "BC") differ
+	h = (h ^ 0xffff) * 0x100000001b3L;
+
+	for(int i = 0; i < objectId.length(); i++)
+	    h = (h ^ objectId.charAt(i)) * 0x100000001b3L;
+
+	h = mix(h);
+	return h == EMPTY ? 1L : h;
+    }
+
+    static long mix(long h)
+    {
+	h ^= h >>> 33;
+	h *= 0xff51afd7ed558ccdL;
+	h ^= h >>> 33;
+	h *= 0xc4ceb9fe1a85ec53L;
+	h ^= h >>> 33;
+	return h;
+    }
+
+    private int index(long fp)
+    {
+	return (int) (fp ^ (fp >>> 32)) & _mask;
+    }
+
+    private void allocate(int capacity)
+    {
+	_slots = ByteBuffer.allocateDirect(capacity * 8).asLongBuffer();
+	_mask = capacity - 1;
+	_size = 0;
+    }
+
+    private void grow()
+    {
+	if(_mask + 1 >= (1 << 28))
+	    throw new IllegalStateException("EssDelMsgIdSet is full");
+
+	LongBuffer old = _slots;
+	int oldCapacity = _mask + 1;
+	allocate(oldCapacity * 2);
+
+	for(int i = 0; i < oldCapacity; i++)
+	{
+	    long slot = old.get(i);
+	    if(slot == EMPTY)
+		continue;
+
+	    int j = index(slot);
+	    while(_slots.get(j) != EMPTY)
+		j = (j + 1) & _mask;
+	    _slots.put(j, slot);
+	    _size++;
+	}
+    }
+}
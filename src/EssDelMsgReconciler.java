@@ -0,0 +1,330 @@
+/**
+ * EssDelMsgReconciler
+ *
+ * Matches the responses to EssDelMsg delete requests with what was
+ * sent. Every item that goes out is recorded in an EssDelMsgSentIndex
+ * with the message id of its document: straight from the put for the
+ * direct transport, or by reading back the manifest .out file and the
+ * XML files it names for the files transport (recordManifest).
+ *
+ * reconcile() then drains the response queues. Each response is read
+ * with a streaming parser that picks out the ObjectID and Collection
+ * items (as in the PassThru that was sent) and the status, so nothing
+ * but the current message is held in memory. The item is marked
+ * succeeded or failed in the index, and the time from the put of its
+ * request to the put of the response goes into a latency histogram.
+ *
+ * A response whose status is missing or one of ResponseSuccess counts
+ * as a successful delete. The status is the text of the element, or
+ * of the <Item Key="...">, named by ResponseStatus.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+
+class EssDelMsgReconciler
+{
+    private static final Logger _log = Logger.getLogger(EssDelMsgReconciler.class);
+
+    private final EssDelMsgSentIndex _index;
+    private final XMLInputFactory    _factory;
+    private final String             _statusKey;
+    private final Set<String>        _success = new HashSet<String>();
+    private final EssMqHistogram     _latency = new EssMqHistogram();
+
+    private long _responses;
+    private long _succeeded;
+    private long _failed;
+    private long _repeated;
+    private long _unmatched;
+    private long _unreadable;
+
+    /**
+     * Items
+     * Receives the items found in a document or response.
+     */
+    private interface Items
+    {
+	void item(String collection, String objectId) throws IOException;
+    }
+
+    EssDelMsgReconciler(EssDelMsg dm, EssDelMsgSentIndex index)
+    {
+	_index = index;
+	_statusKey = dm.getResponseStatus();
+	for(String s : dm.getResponseSuccess().split(","))
+	    _success.add(s.trim().toUpperCase());
+
+	_factory = XMLInputFactory.newInstance();
+	_factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+	_factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+			     Boolean.FALSE);
+    }
+
+    EssMqHistogram getLatency() { return _latency; }
+
+    /**
+     * recordManifest
+     * Files transport: for each document the .out file shows as put,
+     * records its items against the message id. sentMillis stands in
+     * for the put time, which the .out file does not have.
+     */
+    void recordManifest(String outFile, long sentMillis) throws IOException
+    {
+	BufferedReader in = new BufferedReader(new FileReader(outFile));
+	try
+	{
+	    int documents = 0;
+	    String line;
+	    while((line = in.readLine()) != null)
+	    {
+		// xmlfile,0,msgid or xmlfile,cc,rc
+		String[] fields = line.split(",");
+		if(fields.length < 3 || !fields[1].equals("0"))
+		    continue;
+
+		final int document = _index.addDocument(fields[2], sentMillis);
+		InputStream xml = new BufferedInputStream(new FileInputStream(fields[0]));
+		try
+		{
+		    parse(xml, new Items()
+		    {
+			public void item(String collection, String objectId)
+			    throws IOException
+			{
+			    _index.addItem(EssDelMsgIdSet.fingerprint(collection, objectId),
+					   document);
+			}
+		    });
+		}
+		finally
+		{
+		    xml.close();
+		}
+		documents++;
+	    }
+	    _log.info("Recorded " + documents + " sent documents from " + outFile);
+	}
+	finally
+	{
+	    in.close();
+	}
+    }
+
+    /**
+     * reconcile
+     * Takes every response off the queues, waiting waitInterval
+     * milliseconds for more before moving on, and updates the index.
+     * Failed deletes are written to report as they are found.
+     */
+    void reconcile(EssMqClient client, List<String> queues, int waitInterval,
+		   Writer report) throws IOException
+    {
+	for(String queue : queues)
+	{
+	    long before = _responses;
+	    for(;;)
+	    {
+		EssMqResult result = client.get(queue, waitInterval);
+		if(result.isNoMessage())
+		    break;
+		if(!result.isSuccess())
+		{
+		    _log.error("Unable to get a response from " + queue + ": " +
+			       "completion code " + result.getCompletionCode() +
+			       ", reason " + result.getReasonCode());
+		    break;
+		}
+
+		try
+		{
+		    long putTime = result.getPutTime() != 0 ?
+			result.getPutTime() : result.getStartTime();
+		    respond(result, putTime, report);
+		}
+		finally
+		{
+		    if(result.isSpilled())
+			result.getFile().toFile().delete();
+		}
+	    }
+	    _log.info("Read " + (_responses - before) + " responses from " + queue);
+	}
+    }
+
+    /**
+     * report
+     * Logs the totals and writes a line per document that still has
+     * outstanding items: outstanding,msgid,count.
+     */
+    void report(Writer report) throws IOException
+    {
+	final long[] states = new long[3];
+	final int[] outstanding = new int[_index.getDocuments()];
+	_index.forEach(new EssDelMsgSentIndex.Visitor()
+	{
+	    public void visit(long fp, int document, int state)
+	    {
+		states[state]++;
+		if(state == EssDelMsgSentIndex.OUTSTANDING)
+		    outstanding[document]++;
+	    }
+	});
+
+	if(report != null)
+	{
+	    for(int document = 0; document < outstanding.length; document++)
+	    {
+		if(outstanding[document] > 0)
+		    report.write("outstanding," + _index.getMessageId(document) +
+				 "," + outstanding[document] + "\n");
+	    }
+	}
+
+	_log.info("Read " + _responses + " responses: " + _succeeded +
+		  " succeeded, " + _failed + " failed, " + _repeated +
+		  " repeated, " + _unmatched + " not sent by us, " +
+		  _unreadable + " unreadable");
+	_log.info("Sent items: " + states[EssDelMsgSentIndex.OUTSTANDING] +
+		  " outstanding, " + states[EssDelMsgSentIndex.SUCCEEDED] +
+		  " succeeded, " + states[EssDelMsgSentIndex.FAILED] + " failed");
+	_log.info("Response latency: " + _latency.summary("ms"));
+    }
+
+    /**
+     * respond
+     * Applies one response to the index.
+     */
+    private void respond(EssMqResult result, final long putTime,
+			 final Writer report) throws IOException
+    {
+	_responses++;
+
+	final List<String[]> items = new ArrayList<String[]>(1);
+	String status;
+	InputStream in = result.openData();
+	try
+	{
+	    status = parse(in, new Items()
+	    {
+		public void item(String collection, String objectId)
+		{
+		    items.add(new String[] { collection, objectId });
+		}
+	    });
+	}
+	catch(IOException e)
+	{
+	    _unreadable++;
+	    _log.warn("Unreadable response " + result.getMessageId() + " on " +
+		      result.getQueue() + ": " + e.getMessage());
+	    return;
+	}
+	finally
+	{
+	    in.close();
+	}
+
+	boolean ok = status == null || _success.contains(status.trim().toUpperCase());
+	for(String[] item : items)
+	{
+	    int slot = _index.find(EssDelMsgIdSet.fingerprint(item[0], item[1]));
+	    if(slot < 0)
+	    {
+		_unmatched++;
+		continue;
+	    }
+
+	    int state = _index.getState(slot);
+	    if(state == EssDelMsgSentIndex.OUTSTANDING)
+	    {
+		_latency.record(putTime - _index.getSentTime(_index.getDocument(slot)));
+		if(ok)
+		    _succeeded++;
+	    }
+	    else
+	    {
+		_repeated++;
+	    }
+
+	    // a failure reported on any queue wins
+	    if(!ok)
+	    {
+		if(state != EssDelMsgSentIndex.FAILED)
+		{
+		    _failed++;
+		    if(report != null)
+			report.write("failed," + item[0] + "," + item[1] + "," +
+				     status + "\n");
+		}
+		_index.setState(slot, EssDelMsgSentIndex.FAILED);
+	    }
+	    else if(state == EssDelMsgSentIndex.OUTSTANDING)
+	    {
+		_index.setState(slot, EssDelMsgSentIndex.SUCCEEDED);
+	    }
+	}
+    }
+
+    /**
+     * parse
+     * Streams through a Request or response, passing each ObjectID and
+     * Collection pair to items. Returns the status, or null if there is
+     * none.
+     */
+    private String parse(InputStream in, Items items) throws IOException
+    {
+	String objectId = null;
+	String collection = null;
+	String status = null;
+	try
+	{
+	    XMLStreamReader r = _factory.createXMLStreamReader(in);
+	    try
+	    {
+		while(r.hasNext())
+		{
+		    if(r.next() != XMLStreamConstants.START_ELEMENT)
+			continue;
+
+		    String name = r.getLocalName();
+		    String key = name.equals("Item") ? r.getAttributeValue(null, "Key") : null;
+
+		    if("ObjectID".equals(key))
+			objectId = r.getElementText();
+		    else if("Collection".equals(key))
+			collection = r.getElementText();
+		    else if(status == null &&
+			    (name.equals(_statusKey) || _statusKey.equals(key)))
+			status = r.getElementText();
+
+		    if(objectId != null && collection != null)
+		    {
+			items.item(collection, objectId);
+			objectId = null;
+			collection = null;
+		    }
+		}
+	    }
+	    finally
+	    {
+		r.close();
+	    }
+	}
+	catch(XMLStreamException e)
+	{
+	    throw new IOException(e.getMessage(), e);
+	}
+	return status;
+    }
+}
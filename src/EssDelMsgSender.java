@@ -0,0 +1,177 @@
+/**
+ * EssDelMsgSender
+ *
+ * Puts EssDelMsg documents straight onto the request queue as they are
+ * built, instead of writing XML files for EssMq.processManifest to read
+ * back. All puts go over one connection of the caller's EssMqClient,
+ * through an EssMqAsyncProducer,
+ * so the next document is built while the queue manager is still
+ * taking the last. At most pipelineDepth documents are unconfirmed at a
+ * time; send() waits when the pipeline is full.
+ *
+ * If an audit file is given, a line is written for each document in
+ * the same format as the processManifest .out file: the document name,
+ * then 0 and the message id, or the completion and reason codes.
+ *
+ * If a sent index is given, the items of each document that is put
+ * are recorded in it against the message id for EssDelMsgReconciler.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.log4j.Logger;
+import com.ibm.mq.MQException;
+
+class EssDelMsgSender implements AutoCloseable
+{
+    public static final int DEFAULT_PIPELINE_DEPTH = 8;
+
+    private static final Logger _log = Logger.getLogger(EssDelMsgSender.class);
+
+    private final EssMqAsyncProducer  _producer;
+    private final Writer              _audit;
+    private final EssDelMsgSentIndex  _index;
+    private final ArrayDeque<Pending> _pending = new ArrayDeque<Pending>();
+    private int _sent;
+    private int _failed;
+
+    private static final class Pending
+    {
+	final String _name;
+	final CompletableFuture<String> _future;
+	final long[] _items;
+	final long   _sent;
+
+	Pending(String name, CompletableFuture<String> future, long[] items)
+	{
+	    _name = name;
+	    _future = future;
+	    _items = items;
+	    _sent = System.currentTimeMillis();
+	}
+    }
+
+    /**
+     * EssDelMsgSender
+     * Puts to dm's request queue over the client, which stays open
+     * when the sender is closed. audit and index may be null.
+     */
+    EssDelMsgSender(EssDelMsg dm, EssMqClient client, int pipelineDepth,
+		    Writer audit, EssDelMsgSentIndex index)
+	throws MQException, InterruptedException
+    {
+	try
+	{
+	    _producer = new EssMqAsyncProducer(client, dm.getMqRequestQueue(),
+					       pipelineDepth, pipelineDepth,
+					       EssMqAsyncProducer.DEFAULT_RECONCILE_MILLIS);
+	}
+	catch(MQException | InterruptedException e)
+	{
+	    closeQuietly(audit);
+	    throw e;
+	}
+	_audit = audit;
+	_index = index;
+    }
+
+    int getSent() { return _sent; }
+    int getFailed() { return _failed; }
+
+    /**
+     * send
+     * Puts the document. The buffer may be reused once this returns.
+     * items are the fingerprints of its items for the sent index, or
+     * null.
+     */
+    void send(String name, ByteBuffer document, long[] items)
+	throws IOException, InterruptedException
+    {
+	_pending.add(new Pending(name, _producer.putAsync(document), items));
+	drain(false);
+    }
+
+    /**
+     * close
+     * Waits for the last documents to be confirmed, gives the
+     * connection back to the client and closes the audit file.
+     */
+    public void close() throws IOException
+    {
+	try
+	{
+	    _producer.close();
+	    drain(true);
+	}
+	finally
+	{
+	    if(_audit != null)
+		_audit.close();
+	    _log.info("Sent " + _sent + " documents, " + _failed + " failed");
+	}
+    }
+
+    /**
+     * drain
+     * Records the results of finished puts, oldest first, so the audit
+     * lines are in document order.
+     */
+    private void drain(boolean all) throws IOException
+    {
+	while(!_pending.isEmpty() && (all || _pending.peek()._future.isDone()))
+	{
+	    Pending p = _pending.poll();
+	    String line;
+	    try
+	    {
+		String msgId = p._future.join();
+		line = p._name + ",0," + msgId;
+		_sent++;
+
+		if(_index != null && p._items != null)
+		{
+		    int document = _index.addDocument(msgId, p._sent);
+		    for(long fp : p._items)
+			_index.addItem(fp, document);
+		}
+	    }
+	    catch(CompletionException e)
+	    {
+		_failed++;
+		Throwable cause = e.getCause();
+		if(cause instanceof MQException)
+		{
+		    MQException mqe = (MQException) cause;
+		    line = p._name + "," + mqe.completionCode + "," + mqe.reasonCode;
+		}
+		else
+		{
+		    line = p._name + "," + EssMq.ESSMQ_FILEIOERROR + ",0";
+		}
+		_log.error("Unable to put " + p._name + ": " + cause);
+	    }
+
+	    if(_audit != null)
+		_audit.write(line + "\n");
+	}
+    }
+
+    private static void closeQuietly(Closeable c)
+    {
+	try
+	{
+	    if(c != null)
+		c.close();
+	}
+	catch(IOException e)
+	{
+	    // nothing more we can do
+	}
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * EssDelMsgSentIndex
+ *
+ * On-disk record of the request message each item was sent in, kept
+ * so the responses can be reconciled later (EssDelMsgReconciler). It
+ * is two files:
+ *
+ *   <name>       a memory-mapped open addressing table of 16 byte
+ *                entries: the item's fingerprint (see EssDelMsgIdSet),
+ *                the document it went out in and its state
+ *   <name>.docs  32 bytes per document in the order they were put: the
+ *                24 byte MQ message id and the time it was sent
+ *
+ * Nothing is held on the heap but the send times (8 bytes a document),
+ * so reconciling a run with many thousands of outstanding items costs
+ * a few pages of file rather than a map of documents. The table is
+ * kept at most half full and doubles into a new file when it fills, up
+ * to MAX_SLOTS (2^26 slots, 1GB, for 2^25 items), which keeps the one
+ * mapping under the 2GB FileChannel.map() allows.
+ *
+ * The item count in the header is written as it changes, so a table
+ * reopened after a crash still knows how full it is.
+ *
+ * An item sent again points at the newer document and is outstanding
+ * again.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+class EssDelMsgSentIndex implements Closeable
+{
+    static final int OUTSTANDING = 0;
+    static final int SUCCEEDED   = 1;
+    static final int FAILED      = 2;
+
+    private static final Logger _log = Logger.getLogger(EssDelMsgSentIndex.class);
+
+    private static final byte[] MAGIC = "EDMSENT1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int ENTRY = 16;
+    private static final int DOCUMENT = 32;
+    private static final int MSGID = 24;
+    private static final int INITIAL_SLOTS = 1 << 16;
+    private static final int MAX_SLOTS = 1 << 26;
+
+    // where the item count is in the header
+    private static final int ITEMS_AT = 24;
+
+    // an empty slot; fingerprints are never 0
+    private static final long EMPTY = 0L;
+
+    /**
+     * Visitor
+     * See forEach().
+     */
+    interface Visitor
+    {
+	void visit(long fp, int document, int state);
+    }
+
+    private final Path _file;
+    private final RandomAccessFile _docs;
+    private FileChannel      _channel;
+    private MappedByteBuffer _map;
+    private int  _mask;
+    private long _items;
+    private long[] _sent;
+    private int    _documents;
+
+    /**
+     * open
+     * Opens the index, creating an empty one if the file does not
+     * exist.
+     */
+    static EssDelMsgSentIndex open(Path file) throws IOException
+    {
+	return new EssDelMsgSentIndex(file);
+    }
+
+    private EssDelMsgSentIndex(Path file) throws IOException
+    {
+	_file = file;
+	_docs = new RandomAccessFile(docsFile(file).toFile(), "rw");
+	try
+	{
+	    loadDocuments();
+
+	    if(Files.exists(file))
+	    {
+		_channel = FileChannel.open(file, StandardOpenOption.READ,
+					    StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		while(header.hasRemaining() && _channel.read(header) >= 0)
+		    ;
+		header.flip();
+
+		byte[] magic = new byte[MAGIC.length];
+		if(header.remaining() < HEADER)
+		    throw new IOException(file + " is not a sent index");
+		header.get(magic);
+		if(!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION)
+		    throw new IOException(file + " is not a sent index");
+		header.getInt();
+		int slots = (int) header.getLong();
+		_items = header.getLong();
+
+		_map = map(_channel, slots);
+		_mask = slots - 1;
+	    }
+	    else
+	    {
+		_channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+					    StandardOpenOption.READ,
+					    StandardOpenOption.WRITE);
+		_map = map(_channel, INITIAL_SLOTS);
+		_mask = INITIAL_SLOTS - 1;
+		writeHeader();
+	    }
+	}
+	catch(IOException | RuntimeException e)
+	{
+	    if(_channel != null)
+		_channel.close();
+	    _docs.close();
+	    throw e;
+	}
+    }
+
+    long getItems() { return _items; }
+    int getDocuments() { return _documents; }
+
+    /**
+     * addDocument
+     * Records a document that was put with the given (hex) message id
+     * and returns its number for addItem().
+     */
+    int addDocument(String msgId, long sentMillis) throws IOException
+    {
+	byte[] record = new byte[DOCUMENT];
+	byte[] id = fromHex(msgId);
+	System.arraycopy(id, 0, record, 0, Math.min(id.length, MSGID));
+	ByteBuffer.wrap(record, MSGID, 8).putLong(sentMillis);
+
+	_docs.seek((long) _documents * DOCUMENT);
+	_docs.write(record);
+
+	if(_documents == _sent.length)
+	    _sent = Arrays.copyOf(_sent, Math.max(16, _sent.length * 2));
+	_sent[_documents] = sentMillis;
+	return _documents++;
+    }
+
+    /**
+     * addItem
+     * Records that the item went out in the document, as outstanding.
+     */
+    void addItem(long fp, int document) throws IOException
+    {
+	int slot = slot(fp);
+	if(getFingerprint(slot) == EMPTY)
+	{
+	    _map.putLong(offset(slot), fp);
+	    _items++;
+	    _map.putLong(ITEMS_AT, _items);
+	}
+	_map.putInt(offset(slot) + 8, document);
+	_map.putInt(offset(slot) + 12, OUTSTANDING);
+
+	if(_items > (_mask + 1) / 2)
+	    grow();
+    }
+
+    /**
+     * find
+     * The slot holding the item, or -1 if it was never sent.
+     */
+    int find(long fp)
+    {
+	int slot = slot(fp);
+	return getFingerprint(slot) == EMPTY ? -1 : slot;
+    }
+
+    int getDocument(int slot) { return _map.getInt(offset(slot) + 8); }
+    int getState(int slot) { return _map.getInt(offset(slot) + 12); }
+
+    void setState(int slot, int state)
+    {
+	_map.putInt(offset(slot) + 12, state);
+    }
+
+    long getSentTime(int document) { return _sent[document]; }
+
+    String getMessageId(int document) throws IOException
+    {
+	byte[] id = new byte[MSGID];
+	_docs.seek((long) document * DOCUMENT);
+	_docs.readFully(id);
+	return EssMq.convertHexId(id);
+    }
+
+    /**
+     * forEach
+     * Passes every item in the index to the visitor.
+     */
+    void forEach(Visitor visitor)
+    {
+	for(int slot = 0; slot <= _mask; slot++)
+	{
+	    long fp = getFingerprint(slot);
+	    if(fp != EMPTY)
+		visitor.visit(fp, getDocument(slot), getState(slot));
+	}
+    }
+
+    /**
+     * close
+     * Writes the header and flushes both files.
+     */
+    public void close() throws IOException
+    {
+	try
+	{
+	    writeHeader();
+	    _map.force();
+	}
+	finally
+	{
+	    _channel.close();
+	    _docs.close();
+	}
+    }
+
+    static Path docsFile(Path file)
+    {
+	return file.resolveSibling(file.getFileName() + ".docs");
+    }
+
+    private void loadDocuments() throws IOException
+    {
+	_documents = (int) (_docs.length() / DOCUMENT);
+	_sent = new long[Math.max(16, _documents)];
+
+	DataInputStream in = new DataInputStream(new BufferedInputStream(
+	    new FileInputStream(_docs.getFD()), 64 * 1024));
+	for(int i = 0; i < _documents; i++)
+	{
+	    in.skipBytes(MSGID);
+	    _sent[i] = in.readLong();
+	}
+    }
+
+    private long getFingerprint(int slot)
+    {
+	return _map.getLong(offset(slot));
+    }
+
+    private static int offset(int slot)
+    {
+	return HEADER + slot * ENTRY;
+    }
+
+    /**
+     * slot
+     * The slot holding fp, or the empty slot where it would go.
+     */
+    private int slot(long fp)
+    {
+	int slot = (int) (fp ^ (fp >>> 32)) & _mask;
+	long found;
+	while((found = getFingerprint(slot)) != EMPTY && found != fp)
+	    slot = (slot + 1) & _mask;
+	return slot;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int slots)
+	throws IOException
+    {
+	return channel.map(FileChannel.MapMode.READ_WRITE, 0,
+			   HEADER + (long) slots * ENTRY);
+    }
+
+    /**
+     * grow
+     * Rehashes into a table twice the size, written to a new file that
+     * then replaces the old one.
+     */
+    private void grow() throws IOException
+    {
+	int slots = (_mask + 1) * 2;
+	if(slots > MAX_SLOTS)
+	    throw new IOException("Sent index " + _file + " is full");
+
+	Path next = _file.resolveSibling(_file.getFileName() + ".grow");
+	FileChannel channel = FileChannel.open(next, StandardOpenOption.CREATE,
+					       StandardOpenOption.TRUNCATE_EXISTING,
+					       StandardOpenOption.READ,
+					       StandardOpenOption.WRITE);
+	MappedByteBuffer old = _map;
+	int oldMask = _mask;
+	try
+	{
+	    _map = map(channel, slots);
+	    _mask = slots - 1;
+	    for(int i = 0; i <= oldMask; i++)
+	    {
+		int from = offset(i);
+		long fp = old.getLong(from);
+		if(fp == EMPTY)
+		    continue;
+
+		int to = offset(slot(fp));
+		_map.putLong(to, fp);
+		_map.putInt(to + 8, old.getInt(from + 8));
+		_map.putInt(to + 12, old.getInt(from + 12));
+	    }
+	    writeHeader();
+	    _map.force();
+	}
+	catch(IOException | RuntimeException e)
+	{
+	    _map = old;
+	    _mask = oldMask;
+	    channel.close();
+	    Files.deleteIfExists(next);
+	    throw e;
+	}
+
+	_channel.close();
+	_channel = channel;
+	Files.move(next, _file, StandardCopyOption.REPLACE_EXISTING,
+		   StandardCopyOption.ATOMIC_MOVE);
+	_log.debug("Sent index " + _file + " grown to " + slots + " slots");
+    }
+
+    private void writeHeader()
+    {
+	_map.position(0);
+	_map.put(MAGIC);
+	_map.putInt(VERSION);
+	_map.putInt(0);
+	_map.putLong(_mask + 1);
+	_map.putLong(ITEMS_AT, _items);
+    }
+
+    private static byte[] fromHex(String hex)
+    {
+	byte[] bytes = new byte[hex.length() / 2];
+	for(int i = 0; i < bytes.length; i++)
+	    bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+	return bytes;
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * EssDelMsgService
+ *
+ * Long-running EssDelMsg ("EssDelMsg -s"). Rather than a new JVM for
+ * every purge batch, one process reads EssDelMsg.conf, configures
+ * logging, resolves the host name and connects to MQ once, then runs
+ * each delete list through buildXml() and postToMq() as it arrives:
+ *
+ *   ServiceQueue=<queue>    each message on the queue is a delete list
+ *   SpoolDirectory=<dir>    each *.txt file that appears is a delete
+ *                           list; write it under another name and
+ *                           rename it when it is complete
+ *
+ * A list is first moved (or, from the queue, written) into the
+ * WorkDirectory as <batch>.txt, so a batch that is running belongs to
+ * this process only. Its manifest is <batch>.mf and its documents
+ * <batch>_n.xml, as for a command line run with those arguments. When
+ * it is done the list goes to the done subdirectory, or to failed if
+ * it could not be built or any of its documents could not be put, and
+ * the items, documents and throughput of the batch are logged.
+ *
+ * The service stops after the batch in hand when the JVM is shut down
+ * (SIGTERM, Ctrl-C). While it runs, its put and get phase latencies
+ * can be watched over JMX as EssMq:type=Timings (see EssMqTimings), and
+ * how long delete lists waited on the ServiceQueue as
+ * EssMq:type=Residency (EssMqResidency), and the message bytes held
+ * as EssMq:type=MemoryBudget (EssMqMemoryBudget).
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import org.apache.log4j.Logger;
+
+class EssDelMsgService implements Runnable
+{
+    public static final int DEFAULT_POLL_INTERVAL = 5000;
+
+    private static final Logger _log = Logger.getLogger(EssDelMsgService.class);
+
+    private final EssDelMsg _dm;
+    private final File      _work;
+    private final File      _done;
+    private final File      _failed;
+    private volatile boolean _stopping;
+
+    private int  _sequence;
+    private long _batches;
+    private long _items;
+    private long _documents;
+    private long _nanos;
+
+    EssDelMsgService(EssDelMsg dm)
+    {
+	_dm = dm;
+
+	String work = dm.getWorkDirectory();
+	if(work == null)
+	    work = dm.getSpoolDirectory() != null ? dm.getSpoolDirectory() : ".";
+	_work = new File(work);
+	_done = new File(_work, "done");
+	_failed = new File(_work, "failed");
+    }
+
+    /**
+     * run
+     * Takes batches until the JVM is shut down.
+     */
+    public void run()
+    {
+	if(_dm.getServiceQueue() == null && _dm.getSpoolDirectory() == null)
+	{
+	    _log.error("Neither ServiceQueue nor SpoolDirectory is configured");
+	    return;
+	}
+
+	_done.mkdirs();
+	_failed.mkdirs();
+
+	final Thread main = Thread.currentThread();
+	Runtime.getRuntime().addShutdownHook(new Thread("EssDelMsg-shutdown")
+	{
+	    public void run()
+	    {
+		_log.info("Stopping after the current batch");
+		_stopping = true;
+		try
+		{
+		    main.join();
+		}
+		catch(InterruptedException e)
+		{
+		    // exiting anyway
+		}
+	    }
+	});
+
+	// warm up the per-process state once
+	_dm.getHostName();
+	_dm.getHostAddress();
+
+	EssMqClient client = _dm.newClient();
+	_dm.setClient(client);
+	EssMqTimings.global().register();
+	EssMqResidency.global().register();
+	EssMqMemoryBudget.global().register();
+	_log.info("EssDelMsg service started: queue " + _dm.getServiceQueue() +
+		  ", spool " + _dm.getSpoolDirectory() + ", work " + _work);
+	try
+	{
+	    while(!_stopping)
+	    {
+		boolean worked = false;
+		if(_dm.getSpoolDirectory() != null)
+		    worked = takeSpooled();
+
+		if(_stopping)
+		    break;
+
+		if(_dm.getServiceQueue() != null)
+		    takeQueued(client, worked ? 0 : _dm.getPollInterval());
+		else if(!worked)
+		    Thread.sleep(_dm.getPollInterval());
+	    }
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	}
+	finally
+	{
+	    _dm.setClient(null);
+	    client.close();
+	    _log.info("EssDelMsg service stopped after " + _batches + " batches, " +
+		      _items + " items, " + _documents + " documents" + rate(_items, _nanos));
+	}
+    }
+
+    /**
+     * takeSpooled
+     * Runs every list waiting in the spool directory, oldest first.
+     * Returns true if there were any.
+     */
+    private boolean takeSpooled()
+    {
+	File[] lists = new File(_dm.getSpoolDirectory()).listFiles(new FileFilter()
+	{
+	    public boolean accept(File f)
+	    {
+		return f.isFile() && f.getName().endsWith(".txt");
+	    }
+	});
+	if(lists == null || lists.length == 0)
+	    return false;
+
+	Arrays.sort(lists, new Comparator<File>()
+	{
+	    public int compare(File a, File b)
+	    {
+		return Long.compare(a.lastModified(), b.lastModified());
+	    }
+	});
+
+	boolean worked = false;
+	for(File list : lists)
+	{
+	    if(_stopping)
+		break;
+
+	    // claiming by rename; another service may have got there first
+	    File claimed = new File(_work, list.getName());
+	    try
+	    {
+		if(!list.getCanonicalFile().equals(claimed.getCanonicalFile()))
+		    Files.move(list.toPath(), claimed.toPath(),
+			       StandardCopyOption.ATOMIC_MOVE);
+	    }
+	    catch(IOException e)
+	    {
+		_log.debug("Skipping " + list + ": " + e.getMessage());
+		continue;
+	    }
+	    runBatch(claimed);
+	    worked = true;
+	}
+	return worked;
+    }
+
+    /**
+     * takeQueued
+     * Waits up to waitInterval for a list on the service queue and runs
+     * it. The message is only removed once it has been written to the
+     * work directory.
+     */
+    private void takeQueued(EssMqClient client, int waitInterval)
+    {
+	String name = "q" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) +
+	    "-" + (++_sequence) + ".txt";
+	File list = new File(_work, name);
+
+	EssMqResult result = client.get(_dm.getServiceQueue(), list.toPath(), waitInterval);
+	if(result.isNoMessage())
+	    return;
+	if(!result.isSuccess())
+	{
+	    _log.error("Unable to get a delete list from " + _dm.getServiceQueue() +
+		       ": completion code " + result.getCompletionCode() +
+		       ", reason " + result.getReasonCode());
+	    list.delete();
+	    sleep(_dm.getPollInterval());
+	    return;
+	}
+
+	_log.debug("Delete list " + result.getMessageId() + " written to " + list);
+	runBatch(list);
+    }
+
+    /**
+     * runBatch
+     * Builds and posts one delete list, then files it away.
+     */
+    private void runBatch(File list)
+    {
+	String path = list.getPath();
+	String stem = path.substring(0, path.length() - ".txt".length());
+	_dm.setInFile(path);
+	_dm.setOutFile(stem + ".mf");
+	_dm.setXmlStub(stem + "_");
+
+	long t0 = System.nanoTime();
+	boolean ok = false;
+	try
+	{
+	    ok = _dm.buildXml() && _dm.postToMq();
+	}
+	catch(RuntimeException e)
+	{
+	    // one bad batch must not stop the service
+	    _log.error("Batch " + list.getName() + " failed", e);
+	}
+	long nanos = System.nanoTime() - t0;
+
+	// only batches that were posted count towards the throughput
+	_batches++;
+	if(ok)
+	{
+	    _items += _dm.getItemCount();
+	    _documents += _dm.getDocumentCount();
+	    _nanos += nanos;
+	}
+
+	_log.info("Batch " + list.getName() + (ok ? "" : " FAILED") + ": " +
+		  _dm.getItemCount() + " items, " + _dm.getDocumentCount() +
+		  " documents in " + String.format("%.3f", nanos / 1e9) + "s" +
+		  rate(_dm.getItemCount(), nanos));
+
+	File to = new File(ok ? _done : _failed, list.getName());
+	if(!list.renameTo(to))
+	    _log.warn("Unable to move " + list + " to " + to);
+    }
+
+    private static String rate(long items, long nanos)
+    {
+	if(nanos <= 0)
+	    return "";
+	return String.format(" (%.0f items/s)", items * 1e9 / nanos);
+    }
+
+    private static void sleep(long millis)
+    {
+	try
+	{
+	    Thread.sleep(millis);
+	}
+	catch(InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	}
+    }
+}
@@ -0,0 +1,355 @@
+/**
+ * EssDelMsgSorter
+ *
+ * Groups the EssDelMsg input lines by Collection so that each document
+ * holds a single collection. Input that fits in SortMemory is sorted in
+ * memory; anything larger is cut into sorted runs in temporary files
+ * and merged back, at most MAX_FAN_IN runs at a time, so the heap used
+ * does not depend on the size of the input.
+ *
+ * The sort is stable: within a collection, items keep their input
+ * order. Blank lines are dropped.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.apache.log4j.Logger;
+
+class EssDelMsgSorter implements Closeable
+{
+    public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+
+    static final int MAX_FAN_IN = 64;
+
+    private static final Logger _log = Logger.getLogger(EssDelMsgSorter.class);
+
+    // rough heap cost of a line held for sorting: the String, its
+    // array and the list slot
+    private static final int LINE_OVERHEAD = 64;
+
+    private static final Comparator<String> BY_COLLECTION = new Comparator<String>()
+    {
+	public int compare(String a, String b)
+	{
+	    return compareCollections(a, b);
+	}
+    };
+
+    private final long _memory;
+    private final File _directory;
+    private final List<File> _runs = new ArrayList<File>();
+    private final List<Reader> _open = new ArrayList<Reader>();
+
+    /**
+     * EssDelMsgSorter
+     * memory is the number of bytes of lines to hold before spilling a
+     * run; directory is where runs go, or null for java.io.tmpdir.
+     */
+    EssDelMsgSorter(long memory, File directory)
+    {
+	if(memory < 1)
+	    throw new IllegalArgumentException("SortMemory must be positive");
+
+	_memory = memory;
+	_directory = directory;
+    }
+
+    /**
+     * sort
+     * Reads all of in and returns its lines ordered by Collection. The
+     * returned reader is valid until close().
+     */
+    BufferedReader sort(BufferedReader in) throws IOException
+    {
+	List<String> lines = new ArrayList<String>();
+	long used = 0;
+	long count = 0;
+
+	String inputLine;
+	while((inputLine = in.readLine()) != null)
+	{
+	    if(inputLine.length() == 0)
+		continue;
+
+	    lines.add(inputLine);
+	    count++;
+	    used += LINE_OVERHEAD + 2L * inputLine.length();
+	    if(used >= _memory)
+	    {
+		writeRun(lines);
+		lines.clear();
+		used = 0;
+	    }
+	}
+
+	if(_runs.isEmpty())
+	{
+	    _log.info("Sorted " + count + " lines by collection in memory");
+	    Collections.sort(lines, BY_COLLECTION);
+	    final Iterator<String> it = lines.iterator();
+	    return new BufferedReader(new LineReader(new Lines()
+	    {
+		public String next()
+		{
+		    return it.hasNext() ? it.next() : null;
+		}
+	    }));
+	}
+
+	if(!lines.isEmpty())
+	    writeRun(lines);
+	lines = null;
+
+	_log.info("Sorted " + count + " lines by collection in " +
+		  _runs.size() + " runs");
+
+	// merge the oldest runs first so equal collections stay in
+	// input order
+	while(_runs.size() > MAX_FAN_IN)
+	{
+	    List<File> group = _runs.subList(0, MAX_FAN_IN);
+	    File merged = newRun();
+	    Writer out = openRun(merged);
+	    try
+	    {
+		Lines source = merge(group);
+		String line;
+		while((line = source.next()) != null)
+		{
+		    out.write(line);
+		    out.write('\n');
+		}
+	    }
+	    finally
+	    {
+		out.close();
+	    }
+	    closeOpen();
+	    for(File run : group)
+		run.delete();
+	    group.clear();
+	    _runs.add(0, merged);
+	}
+
+	return new BufferedReader(new LineReader(merge(_runs)));
+    }
+
+    /**
+     * close
+     * Closes and deletes the run files.
+     */
+    public void close()
+    {
+	closeOpen();
+	for(File run : _runs)
+	{
+	    if(!run.delete())
+		_log.warn("Unable to delete sort run " + run);
+	}
+	_runs.clear();
+    }
+
+    /**
+     * compareCollections
+     * Orders input lines by their first token, the Collection.
+     */
+    static int compareCollections(String a, String b)
+    {
+	int ea = collectionEnd(a);
+	int eb = collectionEnd(b);
+	int n = Math.min(ea, eb);
+	for(int i = 0; i < n; i++)
+	{
+	    int d = a.charAt(i) - b.charAt(i);
+	    if(d != 0)
+		return d;
+	}
+	return ea - eb;
+    }
+
+    private static int collectionEnd(String line)
+    {
+	int i = line.indexOf(' ');
+	return i < 0 ? line.length() : i;
+    }
+
+    private void writeRun(List<String> lines) throws IOException
+    {
+	Collections.sort(lines, BY_COLLECTION);
+
+	File run = newRun();
+	_runs.add(run);
+	_log.debug("Writing sort run " + run + ": " + lines.size() + " lines");
+
+	Writer out = openRun(run);
+	try
+	{
+	    for(String line : lines)
+	    {
+		out.write(line);
+		out.write('\n');
+	    }
+	}
+	finally
+	{
+	    out.close();
+	}
+    }
+
+    private File newRun() throws IOException
+    {
+	File run = File.createTempFile("EssDelMsg", ".run", _directory);
+	run.deleteOnExit();
+	return run;
+    }
+
+    private Writer openRun(File run) throws IOException
+    {
+	return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run),
+							 StandardCharsets.UTF_8),
+				  64 * 1024);
+    }
+
+    /**
+     * merge
+     * The lines of the runs in collection order; ties go to the earlier
+     * run.
+     */
+    private Lines merge(List<File> runs) throws IOException
+    {
+	// the read buffers come out of the same budget as the runs
+	int buffer = (int) Math.max(8 * 1024,
+				    Math.min(64 * 1024, _memory / 2 / runs.size()));
+
+	final PriorityQueue<Head> heads = new PriorityQueue<Head>();
+	for(int i = 0; i < runs.size(); i++)
+	{
+	    BufferedReader in = new BufferedReader(
+		new InputStreamReader(new FileInputStream(runs.get(i)),
+				      StandardCharsets.UTF_8), buffer);
+	    _open.add(in);
+
+	    Head head = new Head(in, i);
+	    if(head.advance())
+		heads.add(head);
+	}
+
+	return new Lines()
+	{
+	    public String next() throws IOException
+	    {
+		Head head = heads.poll();
+		if(head == null)
+		    return null;
+
+		String line = head._line;
+		if(head.advance())
+		    heads.add(head);
+		return line;
+	    }
+	};
+    }
+
+    private void closeOpen()
+    {
+	for(Reader in : _open)
+	{
+	    try
+	    {
+		in.close();
+	    }
+	    catch(IOException e)
+	    {
+		// only reading; nothing was lost
+	    }
+	}
+	_open.clear();
+    }
+
+    private interface Lines
+    {
+	String next() throws IOException;
+    }
+
+    /**
+     * Head
+     * The next line of one run during a merge.
+     */
+    private static final class Head implements Comparable<Head>
+    {
+	final BufferedReader _in;
+	final int _run;
+	String _line;
+
+	Head(BufferedReader in, int run)
+	{
+	    _in = in;
+	    _run = run;
+	}
+
+	boolean advance() throws IOException
+	{
+	    _line = _in.readLine();
+	    return _line != null;
+	}
+
+	public int compareTo(Head other)
+	{
+	    int c = compareCollections(_line, other._line);
+	    return c != 0 ? c : _run - other._run;
+	}
+    }
+
+    /**
+     * LineReader
+     * Presents a sequence of lines as a Reader, so the sorted input can
+     * be read the same way as the input file.
+     */
+    private static final class LineReader extends Reader
+    {
+	private final Lines _lines;
+	private String _line;
+	private int _pos;
+
+	LineReader(Lines lines)
+	{
+	    _lines = lines;
+	}
+
+	public int read(char[] buf, int off, int len) throws IOException
+	{
+	    if(len == 0)
+		return 0;
+
+	    if(_line == null || _pos > _line.length())
+	    {
+		_line = _lines.next();
+		_pos = 0;
+		if(_line == null)
+		    return -1;
+	    }
+
+	    // the line, then its newline
+	    if(_pos == _line.length())
+	    {
+		buf[off] = '\n';
+		_pos++;
+		return 1;
+	    }
+
+	    int n = Math.min(len, _line.length() - _pos);
+	    _line.getChars(_pos, _pos + n, buf, off);
+	    _pos += n;
+	    return n;
+	}
+
+	public void close()
+	{
+	}
+    }
+}
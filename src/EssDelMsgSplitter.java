@@ -0,0 +1,114 @@
+/**
+ * EssDelMsgSplitter
+ *
+ * Decides where one EssDelMsg document ends and the next begins. A
+ * document is closed when it holds FilesPerDocument items or, if
+ * MaxDocumentBytes is set, when the next item would take the finished
+ * document over that many bytes. Sizes are exact, header and footer
+ * included, so a document never exceeds the byte budget and is as
+ * large as the budget allows. When the input is grouped by collection
+ * (GroupByCollection) a document is also ended where the collection
+ * changes, so each holds a single collection.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+
+class EssDelMsgSplitter
+{
+    private final int  _maxItems;
+    private final long _maxBytes;
+    private final boolean _byCollection;
+    private final EssDelMsgTemplateWriter _sizer;
+
+    private int    _items;
+    private long   _bytes;
+    private String _collection;
+
+    /**
+     * EssDelMsgSplitter
+     * maxBytes of 0 or less splits by item count only.
+     */
+    EssDelMsgSplitter(EssDelMsg dm, int maxItems, long maxBytes,
+		      boolean byCollection)
+    {
+	if(maxItems < 1)
+	    throw new IllegalArgumentException("FilesPerDocument must be positive");
+
+	_maxItems = maxItems;
+	_maxBytes = maxBytes;
+	_byCollection = byCollection;
+	_sizer = maxBytes > 0 ? new EssDelMsgTemplateWriter(dm, dm.getPrettyPrint()) : null;
+    }
+
+    boolean isEmpty() { return _items == 0; }
+    int getItems() { return _items; }
+
+    /**
+     * getBytes
+     * Size of the current document once its footer is written; 0 when
+     * splitting by item count only.
+     */
+    long getBytes()
+    {
+	return _sizer == null ? 0 : _bytes + _sizer.getFooterLength();
+    }
+
+    /**
+     * fits
+     * True if the item can go into the current document, false if the
+     * document has to be ended first.
+     *
+     * @throws IOException if the item would not fit even in a document
+     *         of its own
+     */
+    boolean fits(String collection, String objectId) throws IOException
+    {
+	if(_items >= _maxItems)
+	    return false;
+	if(_byCollection && _items > 0 && !collection.equals(_collection))
+	    return false;
+	if(_sizer == null)
+	    return true;
+
+	long size = (_items == 0 ? _sizer.getHeaderLength() : _bytes) +
+	    _sizer.getItemLength(collection, objectId) + _sizer.getFooterLength();
+	if(size <= _maxBytes)
+	    return true;
+
+	if(_items == 0)
+	    throw new IOException("Item " + collection + " " + objectId +
+				  " needs a " + size + " byte document; " +
+				  "MaxDocumentBytes is " + _maxBytes);
+	return false;
+    }
+
+    /**
+     * add
+     * Counts an item that fits() accepted.
+     */
+    void add(String collection, String objectId)
+    {
+	_collection = collection;
+	if(_sizer != null)
+	{
+	    if(_items == 0)
+		_bytes = _sizer.getHeaderLength();
+	    _bytes += _sizer.getItemLength(collection, objectId);
+	}
+	_items++;
+    }
+
+    /**
+     * reset
+     * Starts the next document.
+     */
+    void reset()
+    {
+	_items = 0;
+	_bytes = 0;
+	_collection = null;
+    }
+}
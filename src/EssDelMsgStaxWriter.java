@@ -0,0 +1,206 @@
+/**
+ * EssDelMsgStaxWriter
+ *
+ * Streaming EssDelMsg writer. Each delivery item is written straight to
+ * the output stream through an XMLStreamWriter as it is added, so only
+ * the current item is ever held in memory however many items go into a
+ * document. The output has the same elements and layout as
+ * EssDelMsgDomWriter.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+class EssDelMsgStaxWriter extends EssDelMsgWriter
+{
+    private static final XMLOutputFactory _factory = XMLOutputFactory.newInstance();
+    private static final String INDENT = "  ";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private XMLStreamWriter _xml;
+    private int     _depth;
+    private boolean _hasChildren;
+
+    EssDelMsgStaxWriter(EssDelMsg dm, boolean pretty)
+    {
+	super(dm, pretty);
+    }
+
+    void beginDocument(OutputStream out) throws IOException
+    {
+	try
+	{
+	    // the JDK writer encodes a byte at a time onto an OutputStream;
+	    // give it a buffered Writer instead
+	    _xml = _factory.createXMLStreamWriter(new BufferedWriter(
+		    new OutputStreamWriter(out, "UTF-8"), BUFFER_SIZE));
+	    _xml.writeStartDocument("UTF-8", "1.0");
+	    _xml.writeCharacters("\n");
+
+	    start("Request");
+	    _xml.writeNamespace("xsi",
+		    "http://www.w3.org/2001/XMLSchema-instance");
+
+	    // -- RequestInfo
+	    start("RequestInfo");
+	    element("Customer", "ISS OMF TMP Delete");
+	    element("Environment", "Development");
+	    element("UserID", "ESS");
+	    element("ComputerName", _dm.getHostName());
+	    end();
+
+	    // -- Sources
+	    start("Sources");
+	    start("Source");
+	    _xml.writeAttribute("Type", "OMF");
+	    _xml.writeAttribute("Format", "TIF");
+	    _xml.writeAttribute("Name", "NA");
+
+	    // collection and objectid are not used but are required
+	    // therefore, use the test object
+	    element("Collection", "OMFADMIN");
+	    element("ObjectID", "00000000000000000000");
+	    end();
+	    end();
+
+	    start("Delivery");
+	}
+	catch(XMLStreamException e)
+	{
+	    throw new IOException(e.getMessage(), e);
+	}
+    }
+
+    void addDeliveryItem(String collection, String objectId)
+	throws IOException
+    {
+	try
+	{
+	    start("PassThru");
+	    start("Stitch");
+	    _xml.writeAttribute("Type", "None");
+	    element("Item", "TMP Deleted Items");
+	    end();
+
+	    // -- Information, this is the data section
+	    String myDate = _dm.getRunDate();
+
+	    start("Information");
+	    item("OMFTransID", "NA");
+	    item("ObjectID", objectId);
+	    item("Collection", collection);
+	    item("ReqMachine", _dm.getHostName());
+	    item("ReqIP", _dm.getHostAddress());
+	    item("ReqUserID", "ddpomf");
+	    item("DeleteDate", myDate);
+	    item("TranDate", myDate);
+	    end();
+
+	    // -- Notification section for passing to QPE
+	    notification(_dm.getMqResponseQueue());
+
+	    // -- Notification section for getting our results back from DocDirector
+	    notification("ISS.OMF.DELETE");
+	    end();
+	}
+	catch(XMLStreamException e)
+	{
+	    throw new IOException(e.getMessage(), e);
+	}
+    }
+
+    void endDocument() throws IOException
+    {
+	try
+	{
+	    end();      // Delivery
+	    end();      // Request
+	    _xml.writeEndDocument();
+	    if(_pretty)
+		_xml.writeCharacters("\n");
+	    _xml.flush();
+	    _xml.close();
+	}
+	catch(XMLStreamException e)
+	{
+	    throw new IOException(e.getMessage(), e);
+	}
+	finally
+	{
+	    _xml = null;
+	    _depth = 0;
+	}
+    }
+
+    private void notification(String target) throws XMLStreamException
+    {
+	start("Notification");
+	_xml.writeAttribute("Method", "MQSeries");
+	element("Target", target);
+	item("QueueManager", _dm.getMqManager());
+	item("QueueServer", _dm.getMqQueueServer());
+	end();
+    }
+
+    private void item(String key, String value) throws XMLStreamException
+    {
+	newLine();
+	_xml.writeStartElement("Item");
+	_xml.writeAttribute("Key", key);
+	text(value);
+	_xml.writeEndElement();
+	_hasChildren = true;
+    }
+
+    private void element(String name, String value) throws XMLStreamException
+    {
+	newLine();
+	_xml.writeStartElement(name);
+	text(value);
+	_xml.writeEndElement();
+	_hasChildren = true;
+    }
+
+    private void start(String name) throws XMLStreamException
+    {
+	newLine();
+	_xml.writeStartElement(name);
+	_depth++;
+	_hasChildren = false;
+    }
+
+    private void end() throws XMLStreamException
+    {
+	_depth--;
+	if(_hasChildren)
+	    newLine();
+	_xml.writeEndElement();
+	_hasChildren = true;
+    }
+
+    private void text(String value) throws XMLStreamException
+    {
+	if(value != null)
+	    _xml.writeCharacters(value);
+    }
+
+    /**
+     * newLine
+     * Indents the next tag when pretty printing.
+     */
+    private void newLine() throws XMLStreamException
+    {
+	if(!_pretty)
+	    return;
+
+	_xml.writeCharacters("\n");
+	for(int i = 0; i < _depth; i++)
+	    _xml.writeCharacters(INDENT);
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * EssDelMsgTemplate
+ *
+ * A piece of XML text with ${Name} placeholders, compiled once into
+ * UTF-8 byte fragments. Placeholders with a value in the constants map
+ * are filled in (escaped) at compile time; the rest become slots that
+ * are filled for each write() call. Writing a template is then one
+ * array copy per fragment plus the escaped slot values.
+ *
+ * Not thread-safe: write() encodes into a buffer owned by the template.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.util.*;
+
+class EssDelMsgTemplate
+{
+    private static final String OPEN  = "${";
+    private static final String CLOSE = "}";
+
+    private final byte[][] _fragments;
+    private final String[] _slots;
+    private byte[] _scratch = new byte[256];
+
+    EssDelMsgTemplate(String text, Map<String, String> constants)
+    {
+	List<byte[]> fragments = new ArrayList<byte[]>();
+	List<String> slots = new ArrayList<String>();
+	StringBuilder literal = new StringBuilder();
+
+	int pos = 0;
+	while(true)
+	{
+	    int start = text.indexOf(OPEN, pos);
+	    if(start < 0)
+		break;
+	    int end = text.indexOf(CLOSE, start);
+	    if(end < 0)
+		throw new IllegalArgumentException("Unterminated placeholder at " + start);
+
+	    literal.append(text, pos, start);
+	    String name = text.substring(start + OPEN.length(), end);
+	    if(constants.containsKey(name))
+	    {
+		escape(constants.get(name), literal);
+	    }
+	    else
+	    {
+		fragments.add(utf8(literal));
+		slots.add(name);
+		literal.setLength(0);
+	    }
+	    pos = end + CLOSE.length();
+	}
+	literal.append(text, pos, text.length());
+	fragments.add(utf8(literal));
+
+	_fragments = fragments.toArray(new byte[fragments.size()][]);
+	_slots = slots.toArray(new String[slots.size()]);
+    }
+
+    /**
+     * write
+     * Writes the template with values[i] escaped into slot i.
+     */
+    void write(OutputStream out, String... values) throws IOException
+    {
+	if(values.length != _slots.length)
+	    throw new IllegalArgumentException("Template has " + _slots.length +
+					       " slots, got " + values.length + " values");
+
+	for(int i = 0; i < _slots.length; i++)
+	{
+	    out.write(_fragments[i]);
+	    writeEscaped(out, values[i]);
+	}
+	out.write(_fragments[_slots.length]);
+    }
+
+    /**
+     * length
+     * The number of bytes write() would write for these values.
+     */
+    int length(String... values)
+    {
+	int n = 0;
+	for(byte[] fragment : _fragments)
+	    n += fragment.length;
+
+	for(String value : values)
+	{
+	    if(value == null)
+		continue;
+
+	    for(int i = 0; i < value.length(); i++)
+	    {
+		char c = value.charAt(i);
+		if(c == '&')
+		    n += 5;
+		else if(c == '<' || c == '>')
+		    n += 4;
+		else if(c < 0x80)
+		    n += 1;
+		else if(c < 0x800)
+		    n += 2;
+		else if(Character.isHighSurrogate(c) && i + 1 < value.length() &&
+			Character.isLowSurrogate(value.charAt(i + 1)))
+		{
+		    n += 4;
+		    i++;
+		}
+		else
+		    n += 3;
+	    }
+	}
+	return n;
+    }
+
+    /**
+     * writeEscaped
+     * Escapes and UTF-8 encodes text content into the scratch buffer
+     * without creating any intermediate strings.
+     */
+    private void writeEscaped(OutputStream out, String value) throws IOException
+    {
+	if(value == null)
+	    return;
+
+	int len = value.length();
+	if(_scratch.length < len * 5)
+	    _scratch = new byte[len * 5];
+
+	byte[] b = _scratch;
+	int n = 0;
+	for(int i = 0; i < len; i++)
+	{
+	    char c = value.charAt(i);
+	    if(c == '&')
+		n = put(b, n, "&amp;");
+	    else if(c == '<')
+		n = put(b, n, "&lt;");
+	    else if(c == '>')
+		n = put(b, n, "&gt;");
+	    else if(c < 0x80)
+		b[n++] = (byte) c;
+	    else if(c < 0x800)
+	    {
+		b[n++] = (byte) (0xc0 | (c >> 6));
+		b[n++] = (byte) (0x80 | (c & 0x3f));
+	    }
+	    else if(Character.isHighSurrogate(c) && i + 1 < len &&
+		    Character.isLowSurrogate(value.charAt(i + 1)))
+	    {
+		int cp = Character.toCodePoint(c, value.charAt(++i));
+		b[n++] = (byte) (0xf0 | (cp >> 18));
+		b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+		b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+		b[n++] = (byte) (0x80 | (cp & 0x3f));
+	    }
+	    else
+	    {
+		b[n++] = (byte) (0xe0 | (c >> 12));
+		b[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+		b[n++] = (byte) (0x80 | (c & 0x3f));
+	    }
+	}
+	out.write(b, 0, n);
+    }
+
+    private static int put(byte[] b, int n, String entity)
+    {
+	for(int i = 0; i < entity.length(); i++)
+	    b[n++] = (byte) entity.charAt(i);
+	return n;
+    }
+
+    private static void escape(String value, StringBuilder sb)
+    {
+	if(value == null)
+	    return;
+
+	for(int i = 0; i < value.length(); i++)
+	{
+	    char c = value.charAt(i);
+	    if(c == '&')
+		sb.append("&amp;");
+	    else if(c == '<')
+		sb.append("&lt;");
+	    else if(c == '>')
+		sb.append("&gt;");
+	    else
+		sb.append(c);
+	}
+    }
+
+    private static byte[] utf8(CharSequence s)
+    {
+	try
+	{
+	    return s.toString().getBytes("UTF-8");
+	}
+	catch(UnsupportedEncodingException e)
+	{
+	    throw new IllegalStateException(e);
+	}
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * EssDelMsgTemplateWriter
+ *
+ * EssDelMsg writer built on precompiled EssDelMsgTemplates. Everything
+ * in a Request except each item's ObjectID and Collection is the same
+ * for the whole run (host, address, date, queue names), so the header,
+ * the PassThru item and the footer are compiled to bytes once when the
+ * writer is created. Each item is then written by splicing the two
+ * escaped values between fixed fragments.
+ *
+ * The output is byte for byte the same as the dom and stax writers.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+import java.util.*;
+
+class EssDelMsgTemplateWriter extends EssDelMsgWriter
+{
+    private static final String DECLARATION =
+	"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private static final String HEADER =
+	"\n<Request xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">" +
+	"\n  <RequestInfo>" +
+	"\n    <Customer>ISS OMF TMP Delete</Customer>" +
+	"\n    <Environment>Development</Environment>" +
+	"\n    <UserID>ESS</UserID>" +
+	"\n    <ComputerName>${ComputerName}</ComputerName>" +
+	"\n  </RequestInfo>" +
+	"\n  <Sources>" +
+	"\n    <Source Type=\"OMF\" Format=\"TIF\" Name=\"NA\">" +
+	"\n      <Collection>OMFADMIN</Collection>" +
+	"\n      <ObjectID>00000000000000000000</ObjectID>" +
+	"\n    </Source>" +
+	"\n  </Sources>" +
+	"\n  <Delivery>";
+
+    private static final String ITEM =
+	"\n    <PassThru>" +
+	"\n      <Stitch Type=\"None\">" +
+	"\n        <Item>TMP Deleted Items</Item>" +
+	"\n      </Stitch>" +
+	"\n      <Information>" +
+	"\n        <Item Key=\"OMFTransID\">NA</Item>" +
+	"\n        <Item Key=\"ObjectID\">${ObjectID}</Item>" +
+	"\n        <Item Key=\"Collection\">${Collection}</Item>" +
+	"\n        <Item Key=\"ReqMachine\">${ComputerName}</Item>" +
+	"\n        <Item Key=\"ReqIP\">${ReqIP}</Item>" +
+	"\n        <Item Key=\"ReqUserID\">ddpomf</Item>" +
+	"\n        <Item Key=\"DeleteDate\">${Date}</Item>" +
+	"\n        <Item Key=\"TranDate\">${Date}</Item>" +
+	"\n      </Information>" +
+	"\n      <Notification Method=\"MQSeries\">" +
+	"\n        <Target>${ResponseQueue}</Target>" +
+	"\n        <Item Key=\"QueueManager\">${QueueManager}</Item>" +
+	"\n        <Item Key=\"QueueServer\">${QueueServer}</Item>" +
+	"\n      </Notification>" +
+	"\n      <Notification Method=\"MQSeries\">" +
+	"\n        <Target>ISS.OMF.DELETE</Target>" +
+	"\n        <Item Key=\"QueueManager\">${QueueManager}</Item>" +
+	"\n        <Item Key=\"QueueServer\">${QueueServer}</Item>" +
+	"\n      </Notification>" +
+	"\n    </PassThru>";
+
+    private static final String FOOTER =
+	"\n  </Delivery>" +
+	"\n</Request>\n";
+
+    private final EssDelMsgTemplate _header;
+    private final EssDelMsgTemplate _item;
+    private final EssDelMsgTemplate _footer;
+
+    private OutputStream _out;
+
+    EssDelMsgTemplateWriter(EssDelMsg dm, boolean pretty)
+    {
+	super(dm, pretty);
+
+	Map<String, String> constants = new HashMap<String, String>();
+	constants.put("ComputerName", dm.getHostName());
+	constants.put("ReqIP", dm.getHostAddress());
+	constants.put("Date", dm.getRunDate());
+	constants.put("ResponseQueue", dm.getMqResponseQueue());
+	constants.put("QueueManager", dm.getMqManager());
+	constants.put("QueueServer", dm.getMqQueueServer());
+
+	_header = new EssDelMsgTemplate(DECLARATION + layout(HEADER), constants);
+	_item = new EssDelMsgTemplate(layout(ITEM), constants);
+	_footer = new EssDelMsgTemplate(layout(FOOTER), constants);
+    }
+
+    /**
+     * getHeaderLength
+     * Bytes written by beginDocument(). With getItemLength() and
+     * getFooterLength() this gives the exact size of a document from
+     * any of the writers, since they all write the same bytes.
+     */
+    int getHeaderLength() { return _header.length(); }
+
+    int getItemLength(String collection, String objectId)
+    {
+	return _item.length(objectId, collection);
+    }
+
+    int getFooterLength() { return _footer.length(); }
+
+    void beginDocument(OutputStream out) throws IOException
+    {
+	_out = out;
+	_header.write(_out);
+    }
+
+    void addDeliveryItem(String collection, String objectId)
+	throws IOException
+    {
+	// slots are in template order
+	_item.write(_out, objectId, collection);
+    }
+
+    void endDocument() throws IOException
+    {
+	try
+	{
+	    _footer.write(_out);
+	    _out.flush();
+	}
+	finally
+	{
+	    _out = null;
+	}
+    }
+
+    /**
+     * layout
+     * The templates are written pretty printed; compact output drops
+     * the line breaks and indentation between tags.
+     */
+    private String layout(String text)
+    {
+	return _pretty ? text : text.replaceAll("\n *", "");
+    }
+}
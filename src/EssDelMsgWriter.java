@@ -0,0 +1,58 @@
+/**
+ * EssDelMsgWriter
+ *
+ * Serializes the delete Request documents built by EssDelMsg. A writer
+ * is given an output stream per document, then one call per delivery
+ * item, then endDocument(). The stream belongs to the caller.
+ *
+ * Writers keep per-document state and are not thread-safe; use one
+ * writer per thread.
+ *
+ * @author Andrew Pierce
+ *
+ */
+
+import java.io.*;
+
+abstract class EssDelMsgWriter
+{
+    public static final String DOM      = "dom";
+    public static final String STAX     = "stax";
+    public static final String TEMPLATE = "template";
+
+    protected final EssDelMsg _dm;
+    protected final boolean   _pretty;
+
+    protected EssDelMsgWriter(EssDelMsg dm, boolean pretty)
+    {
+	_dm = dm;
+	_pretty = pretty;
+    }
+
+    /**
+     * create
+     * Returns the writer for the XmlWriter configuration value.
+     */
+    static EssDelMsgWriter create(String kind, EssDelMsg dm, boolean pretty)
+    {
+	if(kind == null || kind.equalsIgnoreCase(DOM))
+	    return new EssDelMsgDomWriter(dm, pretty);
+	else if(kind.equalsIgnoreCase(STAX))
+	    return new EssDelMsgStaxWriter(dm, pretty);
+	else if(kind.equalsIgnoreCase(TEMPLATE))
+	    return new EssDelMsgTemplateWriter(dm, pretty);
+
+	throw new IllegalArgumentException("Unknown XmlWriter: " + kind);
+    }
+
+    abstract void beginDocument(OutputStream out) throws IOException;
+
+    abstract void addDeliveryItem(String collection, String objectId)
+	throws IOException;
+
+    /**
+     * endDocument
+     * Finishes and flushes the document. Does not close the stream.
+     */
+    abstract void endDocument() throws IOException;
+}
@@ -22,10 +22,25 @@
 //                line, and returing the MQ Message ID.
 // 2005-07-27 amp Included more error handling.
 // 2006-04-04 amp Added additional parameter to specify JMSReplyTo header
+// 2026-10-19 amp Rebuilt put, get and manifest processing on EssMqClient.
+//                A manifest now runs over a single connection.
+// 2026-10-19 amp Added setClient() so a long-running caller can keep its
+//                connection between calls.
+// 2026-10-19 amp Added the request operation (EssMqRequestor). Manifest
+//                requests are kept in flight together.
+// 2026-10-19 amp Added --transport=<name> (EssMqTransport).
+// 2026-10-19 amp A manifest run logs the put and get phase timings
+//                (EssMqTimings) at the end.
+// 2026-10-19 amp processManifest closes the manifest and .out file when
+//                it fails part way.
 // 
 // --------------------------------------------------------------------------
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.xml.DOMConfigurator;
@@ -52,6 +67,9 @@ public class EssMq
 	public static final int ESSMQ_MANIFESTFILEIOERROR = -104;
 	public static final int ESSMQ_MANIFESTNOTFOUND = -105;
 
+	// manifest requests waiting for their replies at any one time
+	private static final int MANIFEST_IN_FLIGHT = 256;
+
 	// log4j config file location
 	public static final String _log_config = "/ess/common/class/EssMq.xml";
 
@@ -65,7 +83,6 @@ public class EssMq
 	private String  _qManager;
 	private String  _queue;
 	private String  _msgFile;
-	private File    _file;
 	private String  _outFile;
 	private boolean _isPost;  // is this a post operation?
 	private String  _msgId;
@@ -73,9 +90,26 @@ public class EssMq
 	private int     _reasonCode;
 	private String  _exceptionSource;
 	private String  _replyTo;
+	private EssMqClient _client;
 
 	private static final Logger _log = Logger.getLogger(EssMq.class);
 
+	/**
+	 * ManifestRequest
+	 * A manifest request line waiting for its reply.
+	 */
+	private static final class ManifestRequest
+	{
+		final String _file;
+		final Future<EssMqResult> _reply;
+
+		ManifestRequest(String file, Future<EssMqResult> reply)
+		{
+			_file = file;
+			_reply = reply;
+		}
+	}
+
 	// accessor methods...
 
 	public void setErrorCode(int n) { _errorCode = n;}
@@ -156,6 +190,45 @@ public class EssMq
 	}
 
 
+	/**
+	 * newClient
+	 * The command line tools work one operation at a time, so a single
+	 * pooled connection is all they need.
+	 */
+	EssMqClient newClient()
+	{
+		if (_client != null)
+			return _client;
+
+		return new EssMqClient(getHost(), getPort(), getChannel(),
+							   getQueueManager(), 1);
+	}
+
+	/**
+	 * setClient
+	 * Runs every operation over the given client, which the caller
+	 * owns and closes, instead of connecting for each call.
+	 */
+	public void setClient(EssMqClient client) { _client = client; }
+
+	private void closeClient(EssMqClient client)
+	{
+		if (client != _client)
+			client.close();
+	}
+
+	/**
+	 * setResult
+	 * Copies the outcome of a client call into the legacy fields.
+	 */
+	private void setResult(EssMqResult result)
+	{
+		setMessageId(result.getMessageId());
+		setErrorCode(result.getCompletionCode());
+		setReasonCode(result.getReasonCode());
+		setExceptionSource(result.getExceptionSource());
+	}
+
 	// putMessage()
 	// This method writes the data in the message file
 	// to the specified queue.
@@ -163,230 +236,262 @@ public class EssMq
 	public boolean putMessage()
 	{
 		_log.debug("putMessage()");
+		EssMqClient client = newClient();
 		try
 		{
-			mqSetup();
-
-			_log.debug("Returned from mqSetup()");
-			_log.debug("Creating Queue Manager");
-
-			MQQueueManager qMgr = new MQQueueManager(getQueueManager());
-
-			_log.debug("Created the Queue Manager");
-
-			// Setup the open options to open the queue for output and
-			// additionally we have set the option to fail if the queue 
-			// manager is quiescing.
-			int openOptions = MQC.MQOO_OUTPUT | MQC.MQOO_FAIL_IF_QUIESCING;
-
-			MQQueue queue = qMgr.accessQueue(getQueue(),
-											 openOptions,
-											 null,
-											 null,
-											 null);
-
-			_log.debug("Called accessQueue() on the queue manager");
-
-			MQPutMessageOptions pmo = new MQPutMessageOptions();
-			MQMessage outMsg = new MQMessage();
-			outMsg.format = MQC.MQFMT_STRING;
-			outMsg.messageId = MQC.MQMI_NONE;
-
-			outMsg.replyToQueueName = this.getReplyTo();
+			return putMessage(client);
+		}
+		finally
+		{
+			closeClient(client);
+		}
+	}
 
-			_log.debug("Opening input file [" + 
-					   _msgFile + "] for reading.");
+	private boolean putMessage(EssMqClient client)
+	{
+		EssMqResult result = client.put(getQueue(), new File(_msgFile).toPath(),
+										getReplyTo());
+		setResult(result);
 
-			_file = new File(_msgFile);
-			FileInputStream fis = new FileInputStream(_file);
-			byte[] buffer = new byte[8192];
-			int bytes_read = 0;
+		if (!result.isSuccess())
+		{
+			dump();
+			return false;
+		}
 
-			// write the line we just read. limit the output
-			// to the number of bytes read. If you don't, 
-			// the full length of the buffer will be written
-			// resulting in padding of zeros (nulls) on the queue
-			// which is not pretty.
+		_log.info("Message successfully written to queue:" + getQueue());
+		return true;
+	}
 
-			_log.debug("Reading file and writing to message object.");
+	/**
+	 * getMessage
+	 */
+	public String getMessage()
+	{
+		EssMqClient client = newClient();
+		try
+		{
+			EssMqResult result = receive(client);
+			if (!result.isSuccess())
+				return null;
 
-			while ((bytes_read = fis.read(buffer)) != -1)
-				outMsg.write(buffer, 0, bytes_read);
+			// the legacy contract returns the body as well as writing it
+			return new String(Files.readAllBytes(result.getFile()));
+		}
+		catch (IOException ie)
+		{
+			_log.error("Unable to read back " + getMessageFile() + ": " +
+					   ie.getMessage());
+			return null;
+		}
+		finally
+		{
+			closeClient(client);
+		}
+	}
 
-			// now we put the message on the queue
-			_log.debug("Putting the message on the queue");
-			queue.put(outMsg, pmo);
+	/**
+	 * receive
+	 * Gets the next message straight into the message file, without
+	 * holding it in memory as a String.
+	 */
+	private EssMqResult receive(EssMqClient client)
+	{
+		EssMqResult result = client.get(getQueue(),
+										new File(getMessageFile()).toPath(),
+										EssMqClient.DEFAULT_WAIT_INTERVAL);
+		setResult(result);
+		return result;
+	}
 
-			// get the message id
-			byte[] msgid = outMsg.messageId;
-			String smsg = convertHexId(msgid);
-			_log.debug("The message id was " + smsg);
-			setMessageId(smsg);
+	/**
+	 * newRequestor
+	 * A shared mode requestor for the current queue. The reply consumer
+	 * keeps a connection of its own, so a client made here has two, and
+	 * so must one given to setClient(). Without a replyTo the replies
+	 * come back on a temporary dynamic queue.
+	 */
+	private EssMqRequestor newRequestor(EssMqClient client)
+		throws MQException, InterruptedException
+	{
+		String replyTo = getReplyTo().length() > 0 ? getReplyTo() : null;
+		return new EssMqRequestor(client, getQueue(), replyTo);
+	}
 
-			// commit the transaction
-			_log.debug("Committing the transaction");
-			qMgr.commit();
+	private EssMqClient newRequestClient()
+	{
+		if (_client != null)
+			return _client;
 
-			_log.info("Message successfully written to queue:" +
-					  getQueue());
+		return new EssMqClient(getHost(), getPort(), getChannel(),
+							   getQueueManager(), 2);
+	}
 
-			// Close the Queue and Queue manager objects.
-			_log.debug("Closing queue");
-			queue.close();
-			_log.debug("Disconnecting from queue manager");
-			qMgr.disconnect();
-		}
-		catch (FileNotFoundException fe)
+	/**
+	 * request
+	 * Puts the message file to the queue as a request, waits for the
+	 * reply and writes it to the message file name plus ".reply".
+	 */
+	public boolean request()
+	{
+		EssMqClient client = newRequestClient();
+		EssMqRequestor requestor = null;
+		try
 		{
-			_log.error("Unable to read specified file: " + _msgFile +
-					   ". " + fe.getMessage());
-
-			setErrorCode(ESSMQ_FILENOTFOUND);
-			setReasonCode(0);
-			dump();
-			return false;
-
+			requestor = newRequestor(client);
+			return awaitReply(getMessageFile(), send(requestor, getMessageFile()));
 		}
-		catch(IOException ie)
+		catch (MQException ex)
 		{
-			_log.error("Error reading from file: " + _msgFile +
-					   "." + ie.getMessage());
-
-			setErrorCode(ESSMQ_FILEIOERROR);
-			setReasonCode(0);
-			dump();
+			setError(ex.completionCode, ex.reasonCode, ex.getMessage());
 			return false;
 		}
-		catch (MQException ex)
+		catch (InterruptedException ie)
 		{
-			_log.error("An MQ error occurred: Completion Code is: " + 
-					   ex.completionCode + "\n\tThe reason code is: " + 
-					   ex.reasonCode + "\n\tException source: " +
-					   ex.exceptionSource);
-
-			setErrorCode(ex.completionCode);
-			setReasonCode(ex.reasonCode);
-			setExceptionSource(ex.exceptionSource.toString());
-
-			dump();
-
+			Thread.currentThread().interrupt();
+			setError(ESSMQ_ERR_UNKNOWN, 0, ie.toString());
 			return false;
 		}
-		catch (Exception e)
+		finally
 		{
-			_log.error("EssMq.putMessage(). Error: " +
-					   e.getMessage());
-
-			return false;
+			if (requestor != null)
+			{
+				requestor.close();
+				_log.info("Round trip: " + requestor.getLatency().summary("us"));
+			}
+			closeClient(client);
 		}
-		return true;
 	}
 
 	/**
-	 * mqSetup
-	 * 
+	 * send
+	 * Starts a request with the contents of msgFile. A file that cannot
+	 * be read gives a future that has failed already.
 	 */
-	private void mqSetup()
+	private CompletableFuture<EssMqResult> send(EssMqRequestor requestor,
+												String msgFile)
 	{
-		_log.debug("mqSetup() : setting host (" +
-				   getHost() + "), channel (" + getChannel() +
-				   "), and properties");
-
-		MQEnvironment.hostname = getHost();
-		MQEnvironment.channel  = getChannel();
-		MQEnvironment.properties.put(MQC.TRANSPORT_PROPERTY, 
-									 MQC.TRANSPORT_MQSERIES);
+		try
+		{
+			return requestor.request(Files.readAllBytes(new File(msgFile).toPath()),
+									 EssMqRequestor.DEFAULT_TIMEOUT_MILLIS);
+		}
+		catch (IOException ie)
+		{
+			return failed(ie);
+		}
 	}
 
+	private static CompletableFuture<EssMqResult> failed(Throwable t)
+	{
+		CompletableFuture<EssMqResult> f = new CompletableFuture<EssMqResult>();
+		f.completeExceptionally(t);
+		return f;
+	}
 
 	/**
-	 * getMessage
+	 * writeReplies
+	 * Writes the output lines of the manifest requests that have
+	 * finished, in manifest order, then waits for more until no more
+	 * than keep are left in flight.
 	 */
-	public String getMessage()
+	private void writeReplies(Deque<ManifestRequest> requests, Writer out,
+							  int keep) throws IOException
 	{
-		String msgString = null;
+		while (!requests.isEmpty() &&
+			   (requests.size() > keep || requests.peek()._reply.isDone()))
+		{
+			ManifestRequest r = requests.poll();
+			if (awaitReply(r._file, r._reply))
+				out.write(r._file + ",0," + getMessageId() + "\n");
+			else
+				out.write(r._file + "," + getErrorCode() + "," +
+						  getReasonCode() + "\n");
+		}
+	}
 
+	/**
+	 * awaitReply
+	 * Waits for a request to complete and writes the reply to msgFile
+	 * plus ".reply". A request that timed out reports
+	 * MQRC_NO_MSG_AVAILABLE, as a get would.
+	 */
+	private boolean awaitReply(String msgFile, Future<EssMqResult> reply)
+	{
+		initInstance();
 		try
 		{
-			mqSetup();
-
-			// Connection to the Queue Manager
-			MQQueueManager qMgr = new MQQueueManager(getQueueManager());
-
-			_log.debug("Created the Queue Manager");
-
-			int openOptions = MQC.MQOO_INPUT_SHARED | MQC.MQOO_FAIL_IF_QUIESCING;
-
-			// Open the queue
-			MQQueue queue = qMgr.accessQueue(getQueue(),
-											 openOptions,
-											 null, 
-											 null,
-											 null);
-
-			_log.debug("Called accessQueue() on the response queue");
-
-			// Set the put message options
-			MQGetMessageOptions gmo = new MQGetMessageOptions();
-			gmo.options = gmo.options + MQC.MQGMO_SYNCPOINT;
-			gmo.options = gmo.options + MQC.MQGMO_FAIL_IF_QUIESCING;
-			gmo.waitInterval = 3000;
-
-			MQMessage inMsg = new MQMessage();
-
-			// get the message from the queue on to the message buffer
-			queue.get(inMsg, gmo);
-
-			// read the User data from the message
-			msgString = inMsg.readString(inMsg.getMessageLength());
-
-			writeToFile(msgString);			 // write to specified file
-			qMgr.commit();					 // commit the transaction
-
-			// close the queue and queue manager objects
-			queue.close();
-			qMgr.disconnect();
+			EssMqResult result = reply.get();
+			setResult(result);
+			writeReply(result, new File(msgFile + ".reply"));
+			_log.info("Reply " + result.getMessageId() + " written to " +
+					  msgFile + ".reply");
+			return true;
 		}
-		catch (MQException ex)
+		catch (ExecutionException ee)
+		{
+			Throwable cause = ee.getCause();
+			if (cause instanceof MQException)
+				setError(((MQException) cause).completionCode,
+						 ((MQException) cause).reasonCode, cause.getMessage());
+			else if (cause instanceof TimeoutException)
+				setError(MQException.MQCC_FAILED, MQException.MQRC_NO_MSG_AVAILABLE,
+						 cause.getMessage());
+			else if (cause instanceof FileNotFoundException ||
+					 cause instanceof java.nio.file.NoSuchFileException)
+				setError(ESSMQ_FILENOTFOUND, 0, cause.getMessage());
+			else if (cause instanceof IOException)
+				setError(ESSMQ_FILEIOERROR, 0, cause.getMessage());
+			else
+				setError(ESSMQ_ERR_UNKNOWN, 0, String.valueOf(cause));
+		}
+		catch (CancellationException ce)
 		{
-			_log.error("An MQ Error Occurred: Completion code is : \t" +
-							   ex.completionCode + "\n\n The Reason Code is: \t" + 
-							   ex.reasonCode);
-			ex.printStackTrace();
-			setErrorCode(ex.completionCode);
-			setReasonCode(ex.reasonCode);
-			setExceptionSource(ex.exceptionSource.toString());
+			setError(ESSMQ_ERR_UNKNOWN, 0, ce.getMessage());
 		}
-		catch(IOException ie)
+		catch (InterruptedException ie)
 		{
-			_log.error("File IO error writing to file: " + getMessageFile());
-			setErrorCode(ESSMQ_FILEIOERROR);
-			setReasonCode(0);
+			Thread.currentThread().interrupt();
+			setError(ESSMQ_ERR_UNKNOWN, 0, ie.toString());
 		}
-		catch (Exception e)
+		catch (IOException ie)
 		{
-			e.printStackTrace();
-			setErrorCode(ESSMQ_ERR_UNKNOWN);
-			setReasonCode(0);
-			setExceptionSource(e.getMessage());
+			setError(ESSMQ_FILEIOERROR, 0, ie.getMessage());
 		}
-		return msgString;
+		_log.error("Request " + msgFile + " failed: completion code " +
+				   getErrorCode() + ", reason " + getReasonCode() + " (" +
+				   getExceptionSource() + ")");
+		return false;
 	}
 
-	private void writeToFile(String msg)
+	private void setError(int completionCode, int reasonCode, String source)
 	{
-		try
+		setErrorCode(completionCode);
+		setReasonCode(reasonCode);
+		setExceptionSource(source);
+	}
+
+	/**
+	 * writeReply
+	 * Moves a spilled reply into place, or writes the one in memory.
+	 */
+	private static void writeReply(EssMqResult result, File to) throws IOException
+	{
+		if (result.isSpilled())
 		{
-			BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(getMessageFile()));
+			Files.move(result.getFile(), to.toPath(),
+					   StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
 
-			os.write(msg.getBytes());
-			os.close();
+		InputStream in = result.openData();
+		try
+		{
+			Files.copy(in, to.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
-		catch (IOException e)
+		finally
 		{
-			_log.error("Error writing to file: " + getMessageFile());
-			setErrorCode(ESSMQ_FILEIOERROR);
-			setReasonCode(0);
+			in.close();
 		}
 	}
 
@@ -415,9 +520,14 @@ public class EssMq
 	 */
 	private static void showArgs()
 	{
-		System.out.println("Syntax: EssMq [-f:manifest | operation queue msgfile] " +
+		System.out.println("Syntax: EssMq [--transport=mq|memory[:micros]] " +
+						   "[-f:manifest | operation queue msgfile] " +
 						   "[host] [port] [channel] [manager] [replyTo]\n");
 
+		System.out.println("--transport  mq (the default) or memory, an in-process");
+		System.out.println("   broker for testing that lasts as long as the run; host,");
+		System.out.println("   port, channel and manager are then not needed");
+
 		System.out.println("-f Specifies a manifest file name for input. If this option");
 		System.out.println("   is used, the operation, queue and msgfile should be included");
 		System.out.println("   in the manifest file. The manifest file is a comma separated");
@@ -426,16 +536,19 @@ public class EssMq
 		System.out.println("   created with the same name but with an extension of '.out'");
 		System.out.println("   For example: java EssMq -f:afpmanifest");
 
-		System.out.println("operation  GET|PUT - case insensitive");
+		System.out.println("operation  GET|PUT|REQUEST - case insensitive");
 		System.out.println("queue      the queue name");
 		System.out.println("msgfile    input file name if PUT operation; " +
 						   "output file if GET operation");
+		System.out.println("           REQUEST puts msgfile and writes the reply");
+		System.out.println("           to msgfile.reply");
 
 		System.out.println("host       host name of the MQ server");
 		System.out.println("port       port number to connect to");
 		System.out.println("channel    MQ Channel");
 		System.out.println("manager    Queue manager name");
-		System.out.println("replyTo    Reply To Queue");
+		System.out.println("replyTo    Reply To Queue; for REQUEST a temporary");
+		System.out.println("           queue is used if none is given");
 	}
 
 	private void initInstance()
@@ -453,10 +566,16 @@ public class EssMq
 	{
 		File f_in = new File(infile);
 		File f_out = new File(infile + ".out");
+		EssMqClient client = newClient();
+		EssMqClient requestClient = null;
+		Map<String, EssMqRequestor> requestors = new HashMap<String, EssMqRequestor>();
+		Deque<ManifestRequest> requests = new ArrayDeque<ManifestRequest>();
+		BufferedReader in = null;
+		BufferedWriter out = null;
 		try
 		{
-			BufferedReader in = new BufferedReader(new FileReader(f_in));
-			BufferedWriter out = new BufferedWriter(new FileWriter(f_out));
+			in = new BufferedReader(new FileReader(f_in));
+			out = new BufferedWriter(new FileWriter(f_out));
 
 			String line = null;
 			int linenum = 0;
@@ -485,32 +604,59 @@ public class EssMq
 				setQueue(args[1]);
 				setMessageFile(args[2]);
 
-				if (args[0].equalsIgnoreCase("get"))
+				if (args[0].equalsIgnoreCase("request"))
 				{
+					// left in flight with the requests around it; the
+					// line is written when the reply comes
+					if (requestClient == null)
+						requestClient = newRequestClient();
 					try
 					{
-						String tmp = getMessage();
-						// write message to output file
-						BufferedWriter fout = new BufferedWriter(new FileWriter(args[2]));
-						fout.write(tmp);
-						fout.flush();
-						fout.close();
-
-						// write "success" line to output file...
-						out.write(args[2] + ",0," + 
-								  getReasonCode() + "\n");
+						EssMqRequestor requestor = requestors.get(args[1]);
+						if (requestor == null)
+						{
+							requestor = newRequestor(requestClient);
+							requestors.put(args[1], requestor);
+						}
+						requests.add(new ManifestRequest(args[2], send(requestor, args[2])));
+					}
+					catch (MQException ex)
+					{
+						requests.add(new ManifestRequest(args[2], failed(ex)));
+					}
+					catch (InterruptedException ie)
+					{
+						Thread.currentThread().interrupt();
+						requests.add(new ManifestRequest(args[2], failed(ie)));
 					}
-					catch (IOException ie)
+					writeReplies(requests, out, MANIFEST_IN_FLIGHT);
+					continue;
+				}
+
+				// anything else runs once the requests before it are done
+				writeReplies(requests, out, 0);
+
+				if (args[0].equalsIgnoreCase("get"))
+				{
+					// the client writes the message to the file
+					// before committing the get
+					if (!receive(client).isSuccess())
 					{
 						// write error line to output file...
 						out.write(args[2] + "," +
-								  ESSMQ_MANIFESTFILEIOERROR + "," + 
-								  ie.getMessage() + "\n");
+								  getErrorCode() + "," +
+								  getReasonCode() + "\n");
+					}
+					else
+					{
+						// write "success" line to output file...
+						out.write(args[2] + ",0," + 
+								  getReasonCode() + "\n");
 					}
 				}
 				else if (args[0].equalsIgnoreCase("put"))
 				{
-					if (!putMessage())
+					if (!putMessage(client))
 					{
 						// write error line to output file...
 						out.write(args[2] + "," +
@@ -524,8 +670,9 @@ public class EssMq
 					}
 				}
 			}
-			out.flush();
+			writeReplies(requests, out, 0);
 			out.close();
+			out = null;
 		}
 		catch (FileNotFoundException fnf)
 		{
@@ -541,6 +688,21 @@ public class EssMq
 
 			return ESSMQ_MANIFESTFILEIOERROR;
 		}
+		finally
+		{
+			EssMqClient.closeQuietly(in);
+			EssMqClient.closeQuietly(out);
+			for (EssMqRequestor requestor : requestors.values())
+			{
+				requestor.close();
+				_log.info("Round trip to " + requestor.getRequestQueue() + ": " +
+						  requestor.getLatency().summary("us"));
+			}
+			if (requestClient != null)
+				closeClient(requestClient);
+			closeClient(client);
+			EssMqTimings.global().log(_log);
+		}
 		return 0;
 	}
 
@@ -555,6 +717,9 @@ public class EssMq
 	{
 		_log.debug("Checking environment settings.");
 
+		// nothing to connect to
+		if (EssMqClient.getDefaultTransport().isLocal())
+			return true;
 
 		if(getHost().length() == 0)
 		{
@@ -593,6 +758,7 @@ public class EssMq
 		System.out.println("EssMq\n");
 
 		EssMq mq = new EssMq();
+		args = EssMqTransport.takeOption(args);
 
 		if (args.length == 0)
 		{
@@ -674,15 +840,28 @@ public class EssMq
 				System.exit(-1);
 			}
 
-			if (args[0].equalsIgnoreCase("get"))
+			EssMqClient client = mq.newClient();
+			try
 			{
-				mq.getMessage();
+				if (args[0].equalsIgnoreCase("get"))
+				{
+					mq.receive(client);
+				}
+				else if (args[0].equalsIgnoreCase("put"))
+				{
+					mq.putMessage(client);
+					_log.debug("Message id: " + mq.getMessageId());
+					System.out.println(mq.getMessageId());
+				}
+				else if (args[0].equalsIgnoreCase("request"))
+				{
+					if (mq.request())
+						System.out.println(mq.getMessageId());
+				}
 			}
-			else if (args[0].equalsIgnoreCase("put"))
+			finally
 			{
-				mq.putMessage();
-				_log.debug("Message id: " + mq.getMessageId());
-				System.out.println(mq.getMessageId());
+				client.close();
 			}
 		}
 		System.exit(0);
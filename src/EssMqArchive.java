@@ -0,0 +1,306 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqArchive
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: The file EssMqCapture writes and EssMqReplay reads: captured
+//           messages, body and MQMD, in the order they were captured.
+//
+//           The file is gzipped. After a header ("ESSMQARC" and a format
+//           version) each message is:
+//
+//             long    put time, epoch milliseconds (-1 if not set)
+//             byte[24] message id, correlation id, group id
+//             int     message type, persistence, priority, expiry,
+//                     feedback, encoding, character set, message flags,
+//                     message sequence number, put application type
+//             UTF     format, reply-to queue, reply-to queue manager,
+//                     user id, put application name, application
+//                     identity data (trailing blanks removed)
+//             int     body length
+//             byte[]  body
+//
+//           MQ keeps put times to the hundredth of a second, and that is
+//           the resolution replay can keep to as well.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import com.ibm.mq.*;
+
+final class EssMqArchive
+{
+	static final String MAGIC = "ESSMQARC";
+	static final int    VERSION = 1;
+
+	private static final int ID_LENGTH = 24;
+	private static final int BUFFER = 65536;
+
+	private EssMqArchive()
+	{
+	}
+
+	/**
+	 * Record
+	 * One captured message.
+	 */
+	static final class Record
+	{
+		long   putTime = -1;
+		byte[] messageId = new byte[ID_LENGTH];
+		byte[] correlationId = new byte[ID_LENGTH];
+		byte[] groupId = new byte[ID_LENGTH];
+		int    messageType;
+		int    persistence;
+		int    priority;
+		int    expiry;
+		int    feedback;
+		int    encoding;
+		int    characterSet;
+		int    messageFlags;
+		int    messageSequenceNumber;
+		int    putApplicationType;
+		String format = "";
+		String replyToQueueName = "";
+		String replyToQueueManagerName = "";
+		String userId = "";
+		String putApplicationName = "";
+		String applicationIdentityData = "";
+		byte[] body;
+
+		/**
+		 * from
+		 * The record for a got or browsed message, read from its current
+		 * position to the end.
+		 */
+		static Record from(MQMessage m) throws IOException
+		{
+			Record r = new Record();
+			if (m.putDateTime != null)
+				r.putTime = m.putDateTime.getTimeInMillis();
+			r.messageId = id(m.messageId);
+			r.correlationId = id(m.correlationId);
+			r.groupId = id(m.groupId);
+			r.messageType = m.messageType;
+			r.persistence = m.persistence;
+			r.priority = m.priority;
+			r.expiry = m.expiry;
+			r.feedback = m.feedback;
+			r.encoding = m.encoding;
+			r.characterSet = m.characterSet;
+			r.messageFlags = m.messageFlags;
+			r.messageSequenceNumber = m.messageSequenceNumber;
+			r.putApplicationType = m.putApplicationType;
+			r.format = trim(m.format);
+			r.replyToQueueName = trim(m.replyToQueueName);
+			r.replyToQueueManagerName = trim(m.replyToQueueManagerName);
+			r.userId = trim(m.userId);
+			r.putApplicationName = trim(m.putApplicationName);
+			r.applicationIdentityData = trim(m.applicationIdData);
+			r.body = new byte[m.getDataLength()];
+			m.readFully(r.body);
+			return r;
+		}
+
+		/**
+		 * toMessage
+		 * A message to put with this record's body and MQMD. The
+		 * identity context (user id, application names, put time) is
+		 * left for the queue manager to fill in, since setting it needs
+		 * authority a replay should not have to have.
+		 */
+		MQMessage toMessage() throws IOException
+		{
+			MQMessage m = new MQMessage();
+			m.messageId = messageId.clone();
+			m.correlationId = correlationId.clone();
+			m.groupId = groupId.clone();
+			m.messageType = messageType;
+			m.persistence = persistence;
+			m.priority = priority;
+			m.expiry = expiry;
+			m.feedback = feedback;
+			m.encoding = encoding;
+			m.characterSet = characterSet;
+			m.messageFlags = messageFlags;
+			m.messageSequenceNumber = messageSequenceNumber;
+			m.format = format;
+			m.replyToQueueName = replyToQueueName;
+			m.replyToQueueManagerName = replyToQueueManagerName;
+			m.write(body);
+			return m;
+		}
+
+		private static byte[] id(byte[] b)
+		{
+			byte[] id = new byte[ID_LENGTH];
+			if (b != null)
+				System.arraycopy(b, 0, id, 0, Math.min(b.length, ID_LENGTH));
+			return id;
+		}
+
+		private static String trim(String s)
+		{
+			if (s == null)
+				return "";
+
+			int end = s.length();
+			while (end > 0 && (s.charAt(end - 1) == ' ' || s.charAt(end - 1) == 0))
+				end--;
+			return s.substring(0, end);
+		}
+	}
+
+	/**
+	 * Writer
+	 * Appends records to a new archive. flush() pushes everything
+	 * written so far through to the file, so a capture can flush before
+	 * it commits the gets.
+	 */
+	static final class Writer implements Closeable, Flushable
+	{
+		private final DataOutputStream _out;
+		private long _count;
+
+		Writer(String file) throws IOException
+		{
+			OutputStream os = new FileOutputStream(file);
+			try
+			{
+				_out = new DataOutputStream(new BufferedOutputStream(
+					new GZIPOutputStream(os, BUFFER, true), BUFFER));
+			}
+			catch (IOException ie)
+			{
+				os.close();
+				throw ie;
+			}
+			_out.writeBytes(MAGIC);
+			_out.writeInt(VERSION);
+		}
+
+		void write(Record r) throws IOException
+		{
+			_out.writeLong(r.putTime);
+			_out.write(r.messageId);
+			_out.write(r.correlationId);
+			_out.write(r.groupId);
+			_out.writeInt(r.messageType);
+			_out.writeInt(r.persistence);
+			_out.writeInt(r.priority);
+			_out.writeInt(r.expiry);
+			_out.writeInt(r.feedback);
+			_out.writeInt(r.encoding);
+			_out.writeInt(r.characterSet);
+			_out.writeInt(r.messageFlags);
+			_out.writeInt(r.messageSequenceNumber);
+			_out.writeInt(r.putApplicationType);
+			_out.writeUTF(r.format);
+			_out.writeUTF(r.replyToQueueName);
+			_out.writeUTF(r.replyToQueueManagerName);
+			_out.writeUTF(r.userId);
+			_out.writeUTF(r.putApplicationName);
+			_out.writeUTF(r.applicationIdentityData);
+			_out.writeInt(r.body.length);
+			_out.write(r.body);
+			_count++;
+		}
+
+		long getCount() { return _count; }
+
+		public void flush() throws IOException
+		{
+			_out.flush();
+		}
+
+		public void close() throws IOException
+		{
+			_out.close();
+		}
+	}
+
+	/**
+	 * Reader
+	 * Reads an archive back in the order it was written.
+	 */
+	static final class Reader implements Closeable
+	{
+		private final DataInputStream _in;
+
+		Reader(String file) throws IOException
+		{
+			InputStream is = new FileInputStream(file);
+			try
+			{
+				_in = new DataInputStream(new BufferedInputStream(
+					new GZIPInputStream(is, BUFFER), BUFFER));
+
+				byte[] magic = new byte[MAGIC.length()];
+				_in.readFully(magic);
+				if (!MAGIC.equals(new String(magic, "US-ASCII")))
+					throw new IOException(file + " is not a message archive");
+
+				int version = _in.readInt();
+				if (version != VERSION)
+					throw new IOException(file + " is archive version " + version +
+										  ", expected " + VERSION);
+			}
+			catch (IOException ie)
+			{
+				is.close();
+				throw ie;
+			}
+		}
+
+		/**
+		 * read
+		 * The next record, or null at the end of the archive.
+		 */
+		Record read() throws IOException
+		{
+			Record r = new Record();
+			try
+			{
+				r.putTime = _in.readLong();
+			}
+			catch (EOFException eof)
+			{
+				return null;
+			}
+			_in.readFully(r.messageId);
+			_in.readFully(r.correlationId);
+			_in.readFully(r.groupId);
+			r.messageType = _in.readInt();
+			r.persistence = _in.readInt();
+			r.priority = _in.readInt();
+			r.expiry = _in.readInt();
+			r.feedback = _in.readInt();
+			r.encoding = _in.readInt();
+			r.characterSet = _in.readInt();
+			r.messageFlags = _in.readInt();
+			r.messageSequenceNumber = _in.readInt();
+			r.putApplicationType = _in.readInt();
+			r.format = _in.readUTF();
+			r.replyToQueueName = _in.readUTF();
+			r.replyToQueueManagerName = _in.readUTF();
+			r.userId = _in.readUTF();
+			r.putApplicationName = _in.readUTF();
+			r.applicationIdentityData = _in.readUTF();
+			r.body = new byte[_in.readInt()];
+			_in.readFully(r.body);
+			return r;
+		}
+
+		public void close() throws IOException
+		{
+			_in.close();
+		}
+	}
+}
@@ -0,0 +1,420 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqAsyncProducer
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Pipelined puts to a single queue over one connection.
+//
+//           Every put is issued with MQPMO_ASYNC_RESPONSE, so the client
+//           does not wait for the queue manager to acknowledge it. The
+//           message id is generated on the client (MQPMO_NEW_MSG_ID)
+//           and is known as soon as put() returns.
+//
+//           Asynchronous puts do not report individual failures. Instead
+//           the puts are grouped into units of work and, before each
+//           commit, the producer asks the queue manager for the put
+//           status (MQSTAT). If any put in the batch failed the whole
+//           batch is backed out and every future in it completes
+//           exceptionally; otherwise the batch is committed and every
+//           future completes with its message id. Either way a caller
+//           never sees a message id for a message that is not on the
+//           queue.
+//
+//           A batch is reconciled when it reaches batchSize puts or when
+//           the reconcile interval passes, whichever is first. The
+//           number of puts that are not yet reconciled is capped at
+//           maxInFlight; putAsync() blocks at the cap.
+//
+//           The producer is thread-safe. The puts themselves are
+//           serialized on the one connection. If that connection is lost
+//           (a connection level reason code, as EssMqClient judges it)
+//           it is handed back to the client to be closed and the next
+//           put borrows a fresh one.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Puts and MQSTAT go through the EssMqConnection, so the
+//                producer runs over any transport.
+// 2026-10-19 amp Puts, commits and backouts are flight recorder events.
+// 2026-10-19 amp A lost connection is replaced instead of failing every
+//                later put.
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqAsyncProducer implements AutoCloseable
+{
+	public static final int  DEFAULT_MAX_IN_FLIGHT = 2000;
+	public static final int  DEFAULT_BATCH_SIZE = 500;
+	public static final long DEFAULT_RECONCILE_MILLIS = 100;
+
+	private static final Logger _log = Logger.getLogger(EssMqAsyncProducer.class);
+
+	private final EssMqClient     _client;
+	private final String          _queue;
+	private final int             _batchSize;
+	private final Semaphore       _inFlight;
+	private final ScheduledExecutorService _timer;
+
+	// guarded by this
+	private EssMqConnection _conn;	// null once lost, until the next put
+	private List<Pending>   _batch = new ArrayList<Pending>();
+	private boolean         _closed;
+
+	/**
+	 * Pending
+	 * A put that has been sent but not yet reconciled.
+	 */
+	private static final class Pending
+	{
+		final String _msgId;
+		final CompletableFuture<String> _future;
+
+		Pending(String msgId, CompletableFuture<String> future)
+		{
+			_msgId = msgId;
+			_future = future;
+		}
+	}
+
+	public EssMqAsyncProducer(EssMqClient client, String queue)
+		throws MQException, InterruptedException
+	{
+		this(client, queue, DEFAULT_MAX_IN_FLIGHT, DEFAULT_BATCH_SIZE,
+			 DEFAULT_RECONCILE_MILLIS);
+	}
+
+	/**
+	 * EssMqAsyncProducer
+	 * Takes one connection from the client's pool and keeps it until
+	 * close(), or until it is lost. batchSize is capped at maxInFlight.
+	 */
+	public EssMqAsyncProducer(EssMqClient client, String queue,
+							  int maxInFlight, int batchSize,
+							  long reconcileMillis)
+		throws MQException, InterruptedException
+	{
+		if (maxInFlight < 1 || batchSize < 1 || reconcileMillis < 1)
+			throw new IllegalArgumentException("maxInFlight, batchSize and " +
+											   "reconcileMillis must be positive");
+
+		_client = client;
+		_queue = queue;
+		_batchSize = Math.min(batchSize, maxInFlight);
+		_inFlight = new Semaphore(maxInFlight);
+
+		_conn = client.borrow();
+
+		_timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "EssMqAsyncProducer-" + _queue);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		_timer.scheduleWithFixedDelay(new Runnable()
+		{
+			public void run()
+			{
+				flush();
+			}
+		}, reconcileMillis, reconcileMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public String getQueue() { return _queue; }
+
+	/**
+	 * getInFlight
+	 * Number of puts sent but not yet committed or failed.
+	 */
+	public synchronized int getInFlight() { return _batch.size(); }
+
+	public CompletableFuture<String> putAsync(byte[] data)
+		throws InterruptedException
+	{
+		return putAsync(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * putAsync
+	 * Sends the remaining bytes of the buffer. The bytes are copied
+	 * before this returns, so the buffer may be reused. Blocks while
+	 * maxInFlight puts are outstanding.
+	 *
+	 * @return a future completed with the message id once the put is
+	 *         committed, or exceptionally with an MQException
+	 */
+	public CompletableFuture<String> putAsync(ByteBuffer data)
+		throws InterruptedException
+	{
+		CompletableFuture<String> future = new CompletableFuture<String>();
+
+		// the message buffer is only held until the put returns
+		EssMqMemoryBudget budget = _client.getMemoryBudget();
+		int length = data.remaining();
+		budget.acquire(length);
+		try
+		{
+			return send(data, future);
+		}
+		finally
+		{
+			budget.release(length);
+		}
+	}
+
+	private CompletableFuture<String> send(ByteBuffer data,
+										   CompletableFuture<String> future)
+		throws InterruptedException
+	{
+		MQMessage outMsg = new MQMessage();
+		outMsg.format = MQC.MQFMT_STRING;
+		try
+		{
+			if (data.hasArray())
+			{
+				outMsg.write(data.array(), data.arrayOffset() + data.position(),
+							 data.remaining());
+			}
+			else
+			{
+				byte[] buffer = new byte[data.remaining()];
+				data.duplicate().get(buffer);
+				outMsg.write(buffer);
+			}
+		}
+		catch (IOException ie)
+		{
+			future.completeExceptionally(ie);
+			return future;
+		}
+
+		MQPutMessageOptions pmo = new MQPutMessageOptions();
+		pmo.options = MQC.MQPMO_ASYNC_RESPONSE | MQC.MQPMO_SYNCPOINT |
+			MQC.MQPMO_NEW_MSG_ID | MQC.MQPMO_FAIL_IF_QUIESCING;
+
+		_inFlight.acquire();
+
+		List<Pending> done = null;
+		MQException failure = null;
+		synchronized (this)
+		{
+			if (_closed)
+			{
+				_inFlight.release();
+				throw new IllegalStateException("EssMqAsyncProducer is closed");
+			}
+
+			EssMqEvents.Put event = new EssMqEvents.Put();
+			event.begin();
+			try
+			{
+				connection().put(_queue, outMsg, pmo);
+				event.done(_queue, outMsg.getTotalMessageLength());
+				_batch.add(new Pending(EssMq.convertHexId(outMsg.messageId),
+									   future));
+			}
+			catch (InterruptedException ie)
+			{
+				// waiting for a connection
+				_inFlight.release();
+				throw ie;
+			}
+			catch (MQException ex)
+			{
+				event.failed(_queue, ex);
+
+				// a put that fails synchronously only affects itself,
+				// unless the connection has gone
+				_inFlight.release();
+				future.completeExceptionally(ex);
+				if (!EssMqConnection.isConnectionError(ex))
+					return future;
+
+				if (_conn != null)
+				{
+					_conn.failed(ex);
+					dropIfBroken();
+				}
+
+				_log.error("Connection lost putting to " + _queue +
+						   ", reason " + ex.reasonCode);
+				done = _batch;
+				_batch = new ArrayList<Pending>();
+				failure = ex;
+			}
+
+			if (done == null && _batch.size() >= _batchSize)
+			{
+				done = _batch;
+				_batch = new ArrayList<Pending>();
+				failure = reconcile(done);
+			}
+		}
+
+		if (done != null)
+			complete(done, failure);
+
+		return future;
+	}
+
+	/**
+	 * flush
+	 * Reconciles and commits whatever is in the current batch.
+	 */
+	public void flush()
+	{
+		List<Pending> done;
+		MQException failure;
+		synchronized (this)
+		{
+			if (_closed || _batch.isEmpty())
+				return;
+
+			done = _batch;
+			_batch = new ArrayList<Pending>();
+			failure = reconcile(done);
+		}
+		complete(done, failure);
+	}
+
+	/**
+	 * close
+	 * Flushes the last batch and hands the connection back to the
+	 * client.
+	 */
+	public void close()
+	{
+		_timer.shutdown();
+		flush();
+
+		EssMqConnection conn;
+		synchronized (this)
+		{
+			if (_closed)
+				return;
+			_closed = true;
+			conn = _conn;
+			_conn = null;
+		}
+		_client.release(conn);
+	}
+
+	/**
+	 * connection
+	 * The producer's connection, borrowing a new one from the client if
+	 * the last was lost. Must be called holding the lock.
+	 */
+	private EssMqConnection connection()
+		throws MQException, InterruptedException
+	{
+		if (_conn == null)
+		{
+			_conn = _client.borrow();
+			_log.info("Reconnected for puts to " + _queue);
+		}
+		return _conn;
+	}
+
+	/**
+	 * dropIfBroken
+	 * Hands the connection back to the client, which closes it, if
+	 * failed() found it unusable. The puts in the batch went with it.
+	 * Must be called holding the lock.
+	 */
+	private void dropIfBroken()
+	{
+		if (_conn != null && _conn.isBroken())
+		{
+			_client.release(_conn);
+			_conn = null;
+		}
+	}
+
+	/**
+	 * reconcile
+	 * Checks the asynchronous put status and commits or backs out the
+	 * unit of work holding the batch. Must be called holding the lock.
+	 *
+	 * @return null if the batch was committed, otherwise the failure
+	 */
+	private MQException reconcile(List<Pending> batch)
+	{
+		if (_conn == null)
+		{
+			// lost with the puts in it
+			return new MQException(MQException.MQCC_FAILED,
+								   MQException.MQRC_CONNECTION_BROKEN, _queue);
+		}
+
+		EssMqEvents.Commit event = new EssMqEvents.Commit();
+		event.begin();
+		try
+		{
+			EssMqConnection.AsyncStatus status = _conn.getAsyncStatus();
+
+			if (status.putFailureCount > 0)
+			{
+				_log.error(status.putFailureCount + " of " + batch.size() +
+						   " asynchronous puts to " + _queue +
+						   " failed, reason " + status.reasonCode +
+						   ". Backing out the batch.");
+				EssMqEvents.Backout backout = new EssMqEvents.Backout();
+				backout.begin();
+				_conn.backout();
+				backout.done(_queue, 0, MQException.MQCC_FAILED, status.reasonCode);
+				return new MQException(MQException.MQCC_FAILED,
+									   status.reasonCode, _queue);
+			}
+
+			if (status.putWarningCount > 0)
+			{
+				_log.warn(status.putWarningCount + " asynchronous puts to " +
+						  _queue + " completed with warning, reason " +
+						  status.reasonCode);
+			}
+
+			_conn.commit();
+			event.done(_queue, 0);
+			_log.debug("Committed " + batch.size() + " puts to " + _queue);
+			return null;
+		}
+		catch (MQException ex)
+		{
+			_log.error("Unable to reconcile puts to " + _queue +
+					   ": completion code " + ex.completionCode +
+					   ", reason " + ex.reasonCode);
+			event.failed(_queue, ex);
+			_conn.failed(ex);
+			dropIfBroken();
+			return ex;
+		}
+	}
+
+	/**
+	 * complete
+	 * Completes the futures of a reconciled batch. Runs outside the
+	 * lock because completion may run the caller's continuations.
+	 */
+	private void complete(List<Pending> batch, MQException failure)
+	{
+		for (Pending p : batch)
+		{
+			if (failure == null)
+				p._future.complete(p._msgId);
+			else
+				p._future.completeExceptionally(failure);
+		}
+		_inFlight.release(batch.size());
+	}
+}
@@ -0,0 +1,309 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqCapture
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Records the messages on a queue, body and MQMD, into an
+//           EssMqArchive file for EssMqReplay to put somewhere else.
+//
+//           By default the messages are got, under syncpoint, and the
+//           gets are committed every batch only once the archive has been
+//           flushed, so nothing is taken off the queue that is not in the
+//           file. With -browse they are left on the queue; a browse sees
+//           at most -max bytes of each body.
+//
+//           Capture stops after -count messages, or once the queue has
+//           been empty for -wait seconds (0, the default, stops as soon
+//           as it is empty). A browse stops at the end of the queue.
+//
+//           Usage:
+//
+//             EssMqCapture [--transport=mq|memory] queue archive [host port
+//                          channel manager] [-option:value ...]
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.util.*;
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import com.ibm.mq.*;
+
+public class EssMqCapture
+{
+	public static final int DEFAULT_BATCH = 100;
+	public static final int DEFAULT_MAX = 4 * 1024 * 1024;
+
+	// log4j config file location
+	public static final String _log_config = "EssMqCapture.xml";
+
+	private static final Logger _log = Logger.getLogger(EssMqCapture.class);
+
+	private String  _queue;
+	private String  _archive;
+	private String  _host = "";
+	private long    _port;
+	private String  _channel = "";
+	private String  _qManager = "";
+	private boolean _browse;
+	private long    _count;
+	private int     _wait;
+	private int     _batch = DEFAULT_BATCH;
+	private int     _max = DEFAULT_MAX;
+
+	private long _captured;
+	private long _bytes;
+	private long _truncated;
+
+	public void setQueue(String q) { _queue = q; }
+	public void setArchive(String file) { _archive = file; }
+	public void setHost(String h) { _host = h; }
+	public void setPort(long p) { _port = p; }
+	public void setChannel(String c) { _channel = c; }
+	public void setQueueManager(String m) { _qManager = m; }
+	public void setBrowse(boolean b) { _browse = b; }
+	public void setCount(long n) { _count = n; }
+
+	/**
+	 * setWait
+	 * Seconds to wait for another message before stopping.
+	 */
+	public void setWait(int seconds) { _wait = seconds; }
+	public void setBatch(int n) { _batch = n; }
+
+	/**
+	 * setMaxLength
+	 * The most of each body a browse reads.
+	 */
+	public void setMaxLength(int bytes) { _max = bytes; }
+
+	/**
+	 * capture
+	 * Captures the queue into the archive and returns the number of
+	 * messages, or -1 on an error (logged).
+	 */
+	public long capture()
+	{
+		EssMqClient client = new EssMqClient(EssMqClient.getDefaultTransport(),
+											 _host, _port, _channel, _qManager, 1);
+		EssMqConnection conn = null;
+		EssMqArchive.Writer out = null;
+		try
+		{
+			_captured = _bytes = _truncated = 0;
+			out = new EssMqArchive.Writer(_archive);
+			conn = client.borrow();
+
+			int uncommitted = 0;
+			boolean first = true;
+			while (_count == 0 || out.getCount() < _count)
+			{
+				MQMessage inMsg;
+				try
+				{
+					if (_browse)
+						inMsg = conn.browse(_queue, first, _max);
+					else
+						inMsg = conn.get(_queue, _wait * 1000);
+				}
+				catch (MQException ex)
+				{
+					if (ex.reasonCode == MQException.MQRC_NO_MSG_AVAILABLE)
+						break;
+					throw ex;
+				}
+				first = false;
+
+				try
+				{
+					EssMqArchive.Record r = EssMqArchive.Record.from(inMsg);
+					if (inMsg.getTotalMessageLength() > r.body.length)
+						_truncated++;
+					out.write(r);
+					_bytes += r.body.length;
+				}
+				finally
+				{
+					if (!_browse)
+						client.getMemoryBudget().release(inMsg.getTotalMessageLength());
+				}
+
+				if (!_browse && ++uncommitted >= _batch)
+				{
+					out.flush();
+					conn.commit();
+					uncommitted = 0;
+				}
+			}
+
+			_captured = out.getCount();
+			out.close();
+			if (!_browse)
+				conn.commit();
+			out = null;
+		}
+		catch (MQException ex)
+		{
+			_log.error("Capture of " + _queue + " failed: completion code " +
+					   ex.completionCode + ", reason " + ex.reasonCode);
+			if (conn != null)
+				conn.failed(ex);
+			return -1;
+		}
+		catch (IOException ie)
+		{
+			_log.error("Unable to write " + _archive + ": " + ie.getMessage());
+			backout(conn);
+			return -1;
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			backout(conn);
+			return -1;
+		}
+		finally
+		{
+			closeQuietly(out);
+			client.release(conn);
+			client.close();
+		}
+
+		if (_truncated > 0)
+			_log.warn(_truncated + " messages were longer than " + _max +
+					  " bytes and were truncated");
+		return getCaptured();
+	}
+
+	/**
+	 * getCaptured
+	 * The number of messages the last capture() wrote.
+	 */
+	public long getCaptured() { return _captured; }
+	public long getBytes() { return _bytes; }
+	public long getTruncated() { return _truncated; }
+
+	private static void backout(EssMqConnection conn)
+	{
+		if (conn == null)
+			return;
+
+		try
+		{
+			conn.backout();
+		}
+		catch (MQException ex)
+		{
+			conn.failed(ex);
+		}
+	}
+
+	private static void closeQuietly(EssMqArchive.Writer out)
+	{
+		if (out == null)
+			return;
+		try
+		{
+			out.close();
+		}
+		catch (IOException ie)
+		{
+			// already failing
+		}
+	}
+
+	/**
+	 * showArgs display the command line options for this program.
+	 */
+	private static void showArgs()
+	{
+		System.out.println("Syntax: EssMqCapture [--transport=mq|memory] queue archive " +
+						   "[host port channel manager] [-option:value ...]\n");
+		System.out.println("-browse        leave the messages on the queue");
+		System.out.println("-count:n       stop after n messages");
+		System.out.println("-wait:s        seconds to wait for more before stopping (default 0)");
+		System.out.println("-batch:n       gets per commit (default 100)");
+		System.out.println("-max:bytes     most of each body a browse reads (default 4194304)");
+	}
+
+	/**
+	 * main
+	 */
+	public static void main(String [] args)
+	{
+		DOMConfigurator.configure(_log_config);
+		args = EssMqTransport.takeOption(args);
+
+		EssMqCapture capture = new EssMqCapture();
+		List<String> positional = new ArrayList<String>();
+		for (String arg : args)
+		{
+			if (!arg.startsWith("-"))
+			{
+				positional.add(arg);
+				continue;
+			}
+
+			int colon = arg.indexOf(':');
+			String name = colon < 0 ? arg.substring(1) : arg.substring(1, colon);
+			String value = colon < 0 ? "" : arg.substring(colon + 1);
+			try
+			{
+				if (name.equals("browse"))
+					capture.setBrowse(true);
+				else if (name.equals("count"))
+					capture.setCount(Long.parseLong(value));
+				else if (name.equals("wait"))
+					capture.setWait(Integer.parseInt(value));
+				else if (name.equals("batch"))
+					capture.setBatch(Math.max(1, Integer.parseInt(value)));
+				else if (name.equals("max"))
+					capture.setMaxLength(Integer.parseInt(value));
+				else
+					name = null;
+			}
+			catch (NumberFormatException nfe)
+			{
+				name = null;
+			}
+
+			if (name == null)
+			{
+				System.out.println("Bad option: " + arg);
+				showArgs();
+				System.exit(-1);
+			}
+		}
+
+		boolean local = EssMqClient.getDefaultTransport().isLocal();
+		if (positional.size() != 2 && (local || positional.size() != 6))
+		{
+			showArgs();
+			System.exit(-1);
+		}
+
+		capture.setQueue(positional.get(0));
+		capture.setArchive(positional.get(1));
+		if (positional.size() == 6)
+		{
+			capture.setHost(positional.get(2));
+			capture.setPort(Long.parseLong(positional.get(3)));
+			capture.setChannel(positional.get(4));
+			capture.setQueueManager(positional.get(5));
+		}
+
+		long n = capture.capture();
+		if (n < 0)
+			System.exit(-1);
+
+		System.out.println("Captured " + n + " messages (" + capture.getBytes() +
+						   " bytes) from " + positional.get(0) + " to " +
+						   positional.get(1));
+		System.exit(0);
+	}
+}
@@ -0,0 +1,792 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqClient
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Embeddable, thread-safe front end to MQSeries.
+//
+//           EssMq, EssMqPoll and EssMqDepth are command line tools that
+//           keep their state in setters. This class is the in-process
+//           API they are built on: it is configured once, can be shared
+//           by any number of threads and returns an immutable
+//           EssMqResult from every call instead of setting fields.
+//
+//           Connections are pooled. A thread borrows a connection for
+//           the length of one operation (open, put/get, commit), so no
+//           two threads ever share a unit of work. Queue handles stay
+//           open on the pooled connection between calls.
+//
+//           Usage:
+//
+//             try (EssMqClient mq = new EssMqClient(host, port, chl, qm))
+//             {
+//                 EssMqResult r = mq.put("MY.QUEUE", bytes);
+//                 ...
+//             }
+//
+//           The connections come from an EssMqTransport: a real queue
+//           manager unless the client is given another one, or
+//           setDefaultTransport() has changed the default (e.g. to an
+//           EssMqMemoryBroker).
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Connections come from an EssMqTransport.
+// 2026-10-19 amp Every phase of a put or get is timed in EssMqTimings.
+// 2026-10-19 amp Emits flight recorder events (EssMqEvents) for connect,
+//                put, get, commit, backout and file write.
+// 2026-10-19 amp Records how long each message got was on the queue
+//                (EssMqResidency).
+// 2026-10-19 amp Propagates W3C trace context through the traceparent
+//                message property when tracing is on (EssMqTrace).
+// 2026-10-19 amp closeQuietly() is shared with the manifest code.
+// 2026-10-19 amp release() backs out a unit of work left open.
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqClient implements AutoCloseable
+{
+	// the wait interval the command line tools have always asked for
+	public static final int DEFAULT_WAIT_INTERVAL = 3000;
+	public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+	private static final Logger _log = Logger.getLogger(EssMqClient.class);
+
+	private static volatile EssMqTransport _defaultTransport =
+		EssMqIbmConnection.TRANSPORT;
+
+	private final EssMqTransport _transport;
+	private final String _host;
+	private final long   _port;
+	private final String _channel;
+	private final String _qManager;
+
+	private final EssMqMemoryBudget _budget = EssMqMemoryBudget.global();
+	private final EssMqTimings _timings = EssMqTimings.global();
+	private final EssMqResidency _residency = EssMqResidency.global();
+	private final EssMqTrace _trace = EssMqTrace.global();
+	private final Semaphore _permits;
+	private final ConcurrentLinkedDeque<EssMqConnection> _idle =
+		new ConcurrentLinkedDeque<EssMqConnection>();
+	private volatile boolean _closed;
+
+	/**
+	 * EssMqClient
+	 */
+	public EssMqClient(String host, long port, String channel, String manager)
+	{
+		this(host, port, channel, manager, DEFAULT_MAX_CONNECTIONS);
+	}
+
+	/**
+	 * EssMqClient
+	 * maxConnections bounds the number of queue manager connections
+	 * (and so the number of operations running at once). Callers above
+	 * the bound wait for a connection to be returned.
+	 */
+	public EssMqClient(String host, long port, String channel, String manager,
+					   int maxConnections)
+	{
+		this(_defaultTransport, host, port, channel, manager, maxConnections);
+	}
+
+	/**
+	 * EssMqClient
+	 * A client of a transport that needs no connection details, such as
+	 * an EssMqMemoryBroker.
+	 */
+	public EssMqClient(EssMqTransport transport, int maxConnections)
+	{
+		this(transport, "", 0, "", "", maxConnections);
+	}
+
+	public EssMqClient(EssMqTransport transport, String host, long port,
+					   String channel, String manager, int maxConnections)
+	{
+		if (maxConnections < 1)
+			throw new IllegalArgumentException("maxConnections must be at least 1");
+
+		_transport = transport;
+		_host = host;
+		_port = port;
+		_channel = channel;
+		_qManager = manager;
+		_permits = new Semaphore(maxConnections, true);
+	}
+
+	/**
+	 * setDefaultTransport
+	 * The transport of clients made without one from now on.
+	 */
+	public static void setDefaultTransport(EssMqTransport transport)
+	{
+		_defaultTransport = transport;
+	}
+
+	public static EssMqTransport getDefaultTransport() { return _defaultTransport; }
+
+	public EssMqTransport getTransport() { return _transport; }
+	public String getHost() { return _host; }
+	public long getPort() { return _port; }
+	public String getChannel() { return _channel; }
+	public String getQueueManager() { return _qManager; }
+	public EssMqMemoryBudget getMemoryBudget() { return _budget; }
+
+	/**
+	 * put
+	 * Writes the bytes to the queue as a string format message.
+	 */
+	public EssMqResult put(String queue, byte[] data)
+	{
+		return put(queue, data, "");
+	}
+
+	public EssMqResult put(String queue, byte[] data, String replyTo)
+	{
+		return put(queue, ByteBuffer.wrap(data), replyTo);
+	}
+
+	/**
+	 * put
+	 * Writes the remaining bytes of the buffer. The buffer position is
+	 * not changed.
+	 */
+	public EssMqResult put(String queue, ByteBuffer data, String replyTo)
+	{
+		return put(queue, data, replyTo, null);
+	}
+
+	/**
+	 * put
+	 * As above. With a msgId the message is sent as a request with that
+	 * message id, so the caller can wait for the reply before the put
+	 * returns (see EssMqRequestor).
+	 */
+	EssMqResult put(String queue, ByteBuffer data, String replyTo,
+					byte[] msgId)
+	{
+		long start = System.currentTimeMillis();
+		long t0 = System.nanoTime();
+		int length = data.remaining();
+
+		try
+		{
+			_budget.acquire(length);
+		}
+		catch (InterruptedException ie)
+		{
+			return unknownFailure(queue, ie, start, t0);
+		}
+
+		try
+		{
+			long t = System.nanoTime();
+			MQMessage outMsg = newMessage(replyTo);
+			if (msgId != null)
+			{
+				outMsg.messageId = msgId;
+				outMsg.messageType = MQC.MQMT_REQUEST;
+			}
+			if (data.hasArray())
+			{
+				outMsg.write(data.array(), data.arrayOffset() + data.position(),
+							 length);
+			}
+			else
+			{
+				byte[] buffer = new byte[length];
+				data.duplicate().get(buffer);
+				outMsg.write(buffer);
+			}
+			_timings.record(EssMqTimings.READ, t);
+			return send(queue, outMsg, start, t0);
+		}
+		catch (IOException ie)
+		{
+			return EssMqResult.failure(queue, EssMq.ESSMQ_ERR_UNKNOWN, 0,
+									   ie.getMessage(), start,
+									   System.nanoTime() - t0);
+		}
+		finally
+		{
+			_budget.release(length);
+		}
+	}
+
+	/**
+	 * put
+	 * Writes the contents of the file to the queue.
+	 */
+	public EssMqResult put(String queue, Path file, String replyTo)
+	{
+		long start = System.currentTimeMillis();
+		long t0 = System.nanoTime();
+
+		MQMessage outMsg = newMessage(replyTo);
+
+		_log.debug("Opening input file [" + file + "] for reading.");
+
+		// charge the budget with the file size before buffering it
+		long length = file.toFile().length();
+		try
+		{
+			_budget.acquire(length);
+		}
+		catch (InterruptedException ie)
+		{
+			return unknownFailure(queue, ie, start, t0);
+		}
+
+		FileInputStream fis = null;
+		try
+		{
+			long t = System.nanoTime();
+			fis = new FileInputStream(file.toFile());
+			byte[] buffer = new byte[8192];
+			int bytes_read = 0;
+
+			// limit each write to the number of bytes read, otherwise
+			// the tail of the buffer pads the message with nulls
+			while ((bytes_read = fis.read(buffer)) != -1)
+				outMsg.write(buffer, 0, bytes_read);
+			_timings.record(EssMqTimings.READ, t);
+		}
+		catch (FileNotFoundException fe)
+		{
+			_budget.release(length);
+			_log.error("Unable to read specified file: " + file +
+					   ". " + fe.getMessage());
+			return EssMqResult.failure(queue, EssMq.ESSMQ_FILENOTFOUND, 0,
+									   fe.getMessage(), start,
+									   System.nanoTime() - t0);
+		}
+		catch (IOException ie)
+		{
+			_budget.release(length);
+			_log.error("Error reading from file: " + file +
+					   ". " + ie.getMessage());
+			return EssMqResult.failure(queue, EssMq.ESSMQ_FILEIOERROR, 0,
+									   ie.getMessage(), start,
+									   System.nanoTime() - t0);
+		}
+		finally
+		{
+			closeQuietly(fis);
+		}
+
+		try
+		{
+			return send(queue, outMsg, start, t0);
+		}
+		finally
+		{
+			_budget.release(length);
+		}
+	}
+
+	/**
+	 * get
+	 * Removes the next message from the queue and returns its body in
+	 * the result. waitInterval is in milliseconds; 0 does not wait.
+	 * A body over the memory budget's spill threshold is written to a
+	 * temporary file instead (EssMqResult.isSpilled()), which the
+	 * caller deletes when done.
+	 */
+	public EssMqResult get(String queue, int waitInterval)
+	{
+		return receive(queue, null, null, null, waitInterval);
+	}
+
+	/**
+	 * get
+	 * Removes the next message from the queue and writes its body to
+	 * the file. The get is only committed once the file has been
+	 * written; if the write fails the message is backed out onto the
+	 * queue.
+	 */
+	public EssMqResult get(String queue, Path file, int waitInterval)
+	{
+		return receive(queue, null, null, file, waitInterval);
+	}
+
+	/**
+	 * get
+	 * As above, but only removes the message with the given message id.
+	 * Used by consumers that browse first and get later.
+	 */
+	public EssMqResult get(String queue, byte[] msgId, Path file,
+						   int waitInterval)
+	{
+		return receive(queue, msgId, null, file, waitInterval);
+	}
+
+	/**
+	 * getReply
+	 * Removes the message whose correlation id is correlId, normally
+	 * the reply to the request that had correlId as its message id.
+	 */
+	public EssMqResult getReply(String queue, byte[] correlId, int waitInterval)
+	{
+		return receive(queue, null, correlId, null, waitInterval);
+	}
+
+	/**
+	 * depth
+	 * Returns the current depth of the queue in EssMqResult.getDepth().
+	 */
+	public EssMqResult depth(String queue)
+	{
+		long start = System.currentTimeMillis();
+		long t0 = System.nanoTime();
+		EssMqConnection conn = null;
+		try
+		{
+			conn = borrow();
+			int depth = conn.depth(queue);
+			return EssMqResult.depth(queue, depth, start, System.nanoTime() - t0);
+		}
+		catch (MQException ex)
+		{
+			return mqFailure(conn, queue, ex, start, t0);
+		}
+		catch (Exception e)
+		{
+			return unknownFailure(queue, e, start, t0);
+		}
+		finally
+		{
+			release(conn);
+		}
+	}
+
+	/**
+	 * close
+	 * Disconnects every idle connection. Connections that are in use
+	 * are disconnected as soon as they are returned.
+	 */
+	public void close()
+	{
+		_closed = true;
+		EssMqConnection conn;
+		while ((conn = _idle.poll()) != null)
+			disconnect(conn);
+	}
+
+	/**
+	 * recordCall
+	 * Records a put or get that started at t, less the time it spent
+	 * opening the queue, and returns the time now.
+	 */
+	private long recordCall(int phase, EssMqConnection conn, long t)
+	{
+		long now = System.nanoTime();
+		long open = conn.takeOpenNanos();
+		if (open > 0)
+			_timings.recordNanos(EssMqTimings.OPEN, open);
+		_timings.recordNanos(phase, now - t - open);
+		return now;
+	}
+
+	private void disconnect(EssMqConnection conn)
+	{
+		long t = System.nanoTime();
+		conn.close();
+		_timings.record(EssMqTimings.DISCONNECT, t);
+	}
+
+	private MQMessage newMessage(String replyTo)
+	{
+		MQMessage outMsg = new MQMessage();
+		outMsg.format = MQC.MQFMT_STRING;
+		outMsg.messageId = MQC.MQMI_NONE;
+		if (replyTo != null)
+			outMsg.replyToQueueName = replyTo;
+		return outMsg;
+	}
+
+	private EssMqResult send(String queue, MQMessage outMsg, long start, long t0)
+	{
+		EssMqConnection conn = null;
+		EssMqTrace.Span span = _trace.startPut(queue, outMsg);
+		try
+		{
+			conn = borrow();
+
+			_log.debug("Putting the message on the queue");
+			EssMqEvents.Put putEvent = new EssMqEvents.Put();
+			putEvent.begin();
+			long t = System.nanoTime();
+			try
+			{
+				conn.put(queue, outMsg, new MQPutMessageOptions());
+			}
+			catch (MQException ex)
+			{
+				putEvent.failed(queue, ex);
+				throw ex;
+			}
+			t = recordCall(EssMqTimings.PUT, conn, t);
+			putEvent.done(queue, outMsg.getMessageLength());
+
+			String msgId = EssMq.convertHexId(outMsg.messageId);
+			_log.debug("The message id was " + msgId);
+
+			t = System.nanoTime();
+			commit(conn, queue);
+			_timings.record(EssMqTimings.COMMIT, t);
+
+			if (span != null)
+			{
+				span.setMessageId(msgId);
+				span.end(MQException.MQCC_OK, 0);
+			}
+			return EssMqResult.put(queue, msgId, start, System.nanoTime() - t0);
+		}
+		catch (MQException ex)
+		{
+			if (span != null)
+				span.end(ex.completionCode, ex.reasonCode);
+			return mqFailure(conn, queue, ex, start, t0);
+		}
+		catch (Exception e)
+		{
+			if (span != null)
+				span.end(EssMq.ESSMQ_ERR_UNKNOWN, 0);
+			return unknownFailure(queue, e, start, t0);
+		}
+		finally
+		{
+			release(conn);
+		}
+	}
+
+	private EssMqResult receive(String queue, byte[] msgId, byte[] correlId,
+								Path file, int waitInterval)
+	{
+		long start = System.currentTimeMillis();
+		long t0 = System.nanoTime();
+		EssMqConnection conn = null;
+		try
+		{
+			conn = borrow();
+
+			EssMqEvents.Get getEvent = new EssMqEvents.Get();
+			getEvent.begin();
+			long t = System.nanoTime();
+			MQMessage inMsg;
+			try
+			{
+				inMsg = conn.get(queue, msgId, correlId, waitInterval);
+			}
+			catch (MQException ex)
+			{
+				getEvent.failed(queue, ex);
+				throw ex;
+			}
+			long gotAt = System.currentTimeMillis();
+			t = recordCall(EssMqTimings.GET, conn, t);
+			long gotNanos = t;
+			getEvent.done(queue, inMsg.getTotalMessageLength());
+			EssMqTrace.Context traced = _trace.extract(inMsg);
+			long tracedAt = traced == null ? 0 : EssMqTrace.now();
+			try
+			{
+				EssMqResult result;
+				try
+				{
+					result = readBody(queue, inMsg, file, start, t0);
+					t = _timings.record(EssMqTimings.WRITE, t);
+				}
+				catch (IOException ie)
+				{
+					_log.error("Error writing message from " + queue +
+							   ": " + ie.getMessage() + ". Backing out.");
+					EssMqEvents.Backout backoutEvent = new EssMqEvents.Backout();
+					backoutEvent.begin();
+					conn.backout();
+					backoutEvent.done(queue, 0, EssMq.ESSMQ_FILEIOERROR, 0);
+					_trace.consumed(traced, queue, EssMq.convertHexId(inMsg.messageId),
+									putTime(inMsg), tracedAt, EssMq.ESSMQ_FILEIOERROR, 0);
+					return EssMqResult.failure(queue, EssMq.ESSMQ_FILEIOERROR,
+											   0, ie.getMessage(), start,
+											   System.nanoTime() - t0);
+				}
+
+				commit(conn, queue);
+				t = _timings.record(EssMqTimings.COMMIT, t);
+				_residency.record(queue, result.getPutTime(), gotAt, t - gotNanos);
+				_trace.consumed(traced, queue, result.getMessageId(),
+								result.getPutTime(), tracedAt, MQException.MQCC_OK, 0);
+				return result;
+			}
+			finally
+			{
+				_budget.release(inMsg.getTotalMessageLength());
+			}
+		}
+		catch (MQException ex)
+		{
+			return mqFailure(conn, queue, ex, start, t0);
+		}
+		catch (Exception e)
+		{
+			return unknownFailure(queue, e, start, t0);
+		}
+		finally
+		{
+			release(conn);
+		}
+	}
+
+	private static void commit(EssMqConnection conn, String queue)
+		throws MQException
+	{
+		EssMqEvents.Commit event = new EssMqEvents.Commit();
+		event.begin();
+		try
+		{
+			conn.commit();
+		}
+		catch (MQException ex)
+		{
+			event.failed(queue, ex);
+			throw ex;
+		}
+		event.done(queue, 0);
+	}
+
+	/**
+	 * readBody
+	 * Turns a message that has been got into a result. The body goes
+	 * to the file when one is given, to a spill file when it is over
+	 * the spill threshold, and into a byte array otherwise. Nothing is
+	 * committed here.
+	 */
+	EssMqResult readBody(String queue, MQMessage inMsg, Path file,
+						 long start, long t0) throws IOException
+	{
+		String hexId = EssMq.convertHexId(inMsg.messageId);
+		int length = inMsg.getMessageLength();
+		long putTime = putTime(inMsg);
+
+		if (file != null)
+		{
+			writeFile(queue, file.toFile(), inMsg, length);
+			return EssMqResult.got(queue, hexId, null, file, false, putTime,
+								   start, System.nanoTime() - t0);
+		}
+
+		if (_budget.shouldSpill(length))
+		{
+			File spill = File.createTempFile("essmq", ".msg", _budget.getSpillDir());
+			try
+			{
+				writeFile(queue, spill, inMsg, length);
+			}
+			catch (IOException ie)
+			{
+				spill.delete();
+				throw ie;
+			}
+			_log.debug("Spilled " + length + " byte message " + hexId +
+					   " to " + spill);
+			return EssMqResult.got(queue, hexId, null, spill.toPath(), true,
+								   putTime, start, System.nanoTime() - t0);
+		}
+
+		byte[] data = new byte[length];
+		inMsg.readFully(data);
+		return EssMqResult.got(queue, hexId, data, null, false, putTime,
+							   start, System.nanoTime() - t0);
+	}
+
+	/**
+	 * putTime
+	 * The MQMD put time in epoch milliseconds, or 0 if there is none.
+	 */
+	private static long putTime(MQMessage msg)
+	{
+		return msg.putDateTime == null ? 0 : msg.putDateTime.getTimeInMillis();
+	}
+
+	/**
+	 * writeFile
+	 * Streams the message body to the file without copying the whole
+	 * body into another array.
+	 */
+	private static void writeFile(String queue, File file, MQMessage inMsg,
+								  int length)
+		throws IOException
+	{
+		_log.debug("Writing output to: " + file);
+		EssMqEvents.FileWrite event = new EssMqEvents.FileWrite();
+		event.begin();
+		try
+		{
+			BufferedOutputStream os = new BufferedOutputStream(
+				new FileOutputStream(file));
+			try
+			{
+				byte[] buffer = new byte[8192];
+				int remaining = length;
+				while (remaining > 0)
+				{
+					int n = Math.min(buffer.length, remaining);
+					inMsg.readFully(buffer, 0, n);
+					os.write(buffer, 0, n);
+					remaining -= n;
+				}
+			}
+			finally
+			{
+				os.close();
+			}
+		}
+		catch (IOException ie)
+		{
+			event.done(queue, 0, EssMq.ESSMQ_FILEIOERROR, 0);
+			throw ie;
+		}
+		event.done(queue, length);
+	}
+
+	private EssMqResult mqFailure(EssMqConnection conn, String queue,
+								  MQException ex, long start, long t0)
+	{
+		if (ex.reasonCode == MQException.MQRC_NO_MSG_AVAILABLE)
+		{
+			_log.debug("No message available on " + queue);
+		}
+		else
+		{
+			_log.error("An MQ error occurred on " + queue +
+					   ": Completion Code is: " + ex.completionCode +
+					   "\n\tThe reason code is: " + ex.reasonCode +
+					   "\n\tException source: " + ex.exceptionSource);
+		}
+
+		if (conn != null)
+			conn.failed(ex);
+
+		return EssMqResult.failure(queue, ex.completionCode, ex.reasonCode,
+								   String.valueOf(ex.exceptionSource),
+								   start, System.nanoTime() - t0);
+	}
+
+	private EssMqResult unknownFailure(String queue, Exception e,
+									   long start, long t0)
+	{
+		if (e instanceof InterruptedException)
+			Thread.currentThread().interrupt();
+
+		_log.error("EssMqClient error on " + queue + ": " + e.getMessage());
+		return EssMqResult.failure(queue, EssMq.ESSMQ_ERR_UNKNOWN, 0,
+								   String.valueOf(e.getMessage()),
+								   start, System.nanoTime() - t0);
+	}
+
+	/**
+	 * borrow
+	 * Hands out a connection for the exclusive use of the caller,
+	 * connecting if no idle one is available. Blocks while the pool is
+	 * at its limit.
+	 */
+	EssMqConnection borrow() throws MQException, InterruptedException
+	{
+		if (_closed)
+			throw new IllegalStateException("EssMqClient is closed");
+
+		long t = System.nanoTime();
+		_permits.acquire();
+
+		EssMqConnection conn = _idle.pollFirst();
+		if (conn == null)
+		{
+			EssMqEvents.Connect event = new EssMqEvents.Connect();
+			event.begin();
+			try
+			{
+				conn = _transport.connect(_host, _port, _channel, _qManager, _budget);
+				event.done(_qManager, 0);
+			}
+			catch (MQException ex)
+			{
+				event.failed(_qManager, ex);
+				_permits.release();
+				throw ex;
+			}
+			catch (RuntimeException re)
+			{
+				_permits.release();
+				throw re;
+			}
+		}
+		_timings.record(EssMqTimings.CONNECT, t);
+		return conn;
+	}
+
+	/**
+	 * release
+	 * Returns a borrowed connection. Broken connections, and any
+	 * connection returned after close(), are disconnected. A unit of
+	 * work the caller left open is backed out first, so that neither
+	 * the next borrower's commit nor the disconnect completes it.
+	 */
+	void release(EssMqConnection conn)
+	{
+		if (conn == null)
+			return;
+
+		if (!conn.isBroken() && conn.inUnitOfWork())
+		{
+			_log.warn("Connection returned with its unit of work open; backing out");
+			try
+			{
+				conn.backout();
+			}
+			catch (MQException ex)
+			{
+				conn.failed(ex);
+			}
+		}
+
+		if (_closed || conn.isBroken())
+			disconnect(conn);
+		else
+			_idle.offerFirst(conn);
+
+		_permits.release();
+
+		// close() may have run while this connection was being returned
+		if (_closed && _idle.remove(conn))
+			disconnect(conn);
+	}
+
+	/**
+	 * closeQuietly
+	 * Closes c, if there is one, logging any error. For the finally
+	 * blocks of the command line tools too.
+	 */
+	static void closeQuietly(Closeable c)
+	{
+		if (c == null)
+			return;
+		try
+		{
+			c.close();
+		}
+		catch (IOException ie)
+		{
+			_log.debug("Error closing stream: " + ie.getMessage());
+		}
+	}
+}
@@ -0,0 +1,235 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqConnection
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: One connection owned by an EssMqClient pool, over whichever
+//           transport the client was made with (see EssMqTransport):
+//           EssMqIbmConnection for a real queue manager, or a connection
+//           to an in-process EssMqMemoryBroker.
+//
+//           The operations are the few the clients need - put, get,
+//           browse, depth, syncpoint - in terms of the MQ classes
+//           themselves. An MQMessage does not need a queue manager, so
+//           the broker hands out the same messages and MQExceptions (with
+//           the same reason codes) as the real thing and nothing above
+//           this class can tell them apart.
+//
+//           A connection is only ever used by one thread at a time (the
+//           pool hands it out exclusively), so implementations need no
+//           locking of their own. Syncpoint is per connection, which is
+//           the other reason connections are never shared.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Made abstract; the MQ code moved to EssMqIbmConnection.
+// 2026-10-19 amp Added opened()/takeOpenNanos() for EssMqTimings.
+// 2026-10-19 amp The backout after an error is a flight recorder event.
+// 2026-10-19 amp Tracks whether a unit of work is open (inUnitOfWork()).
+//
+// --------------------------------------------------------------------------
+
+import com.ibm.mq.*;
+
+abstract class EssMqConnection
+{
+	private boolean _broken;
+	private boolean _inUnit;
+	private long    _openNanos;
+
+	/**
+	 * AsyncStatus
+	 * The outcome of the asynchronous puts since the last call
+	 * (MQSTAT), as reported by getAsyncStatus().
+	 */
+	static final class AsyncStatus
+	{
+		final int putSuccessCount;
+		final int putWarningCount;
+		final int putFailureCount;
+		final int reasonCode;
+
+		AsyncStatus(int successes, int warnings, int failures, int reason)
+		{
+			putSuccessCount = successes;
+			putWarningCount = warnings;
+			putFailureCount = failures;
+			reasonCode = reason;
+		}
+	}
+
+	/**
+	 * put
+	 * Puts the message with the given options. The message id the put
+	 * was given is left in msg.messageId.
+	 */
+	abstract void put(String queue, MQMessage msg, MQPutMessageOptions pmo)
+		throws MQException;
+
+	/**
+	 * get
+	 * Gets the next message from the queue under syncpoint. The caller
+	 * commits or backs out. waitInterval is in milliseconds; 0 does not
+	 * wait.
+	 *
+	 * The message length is charged to the memory budget. The caller
+	 * must release getTotalMessageLength() bytes once it is done with
+	 * the message.
+	 */
+	MQMessage get(String queue, int waitInterval)
+		throws MQException, InterruptedException
+	{
+		return get(queue, null, waitInterval);
+	}
+
+	/**
+	 * get
+	 * As above, but only takes the message with the given message id
+	 * when msgId is not null.
+	 */
+	MQMessage get(String queue, byte[] msgId, int waitInterval)
+		throws MQException, InterruptedException
+	{
+		return get(queue, msgId, null, waitInterval);
+	}
+
+	/**
+	 * get
+	 * As above, also matching the correlation id when correlId is not
+	 * null. Used to pick a reply out of a shared reply queue.
+	 */
+	abstract MQMessage get(String queue, byte[] msgId, byte[] correlId,
+						   int waitInterval)
+		throws MQException, InterruptedException;
+
+	/**
+	 * browse
+	 * Reads the first (or next) message on the queue without removing
+	 * it. Only the first maxLength bytes of the body are returned. A
+	 * connection should only run one browse per queue at a time.
+	 */
+	abstract MQMessage browse(String queue, boolean first, int maxLength)
+		throws MQException;
+
+	/**
+	 * depth
+	 * The current depth of the queue.
+	 */
+	abstract int depth(String queue) throws MQException;
+
+	/**
+	 * getAsyncStatus
+	 * See EssMqAsyncProducer.
+	 */
+	abstract AsyncStatus getAsyncStatus() throws MQException;
+
+	/**
+	 * openDynamic
+	 * Creates a temporary dynamic queue from the model queue and returns
+	 * its name. It can be read with get() on this connection only, and
+	 * is deleted when the connection is closed.
+	 */
+	abstract String openDynamic(String model, String prefix)
+		throws MQException;
+
+	/**
+	 * closeQueue
+	 * Closes the cached handles for the queue. For a temporary dynamic
+	 * queue this deletes it.
+	 */
+	abstract void closeQueue(String queue);
+
+	abstract void commit() throws MQException;
+	abstract void backout() throws MQException;
+
+	/**
+	 * close
+	 * Disconnects. Errors are logged and ignored since there is nothing
+	 * left to recover.
+	 */
+	abstract void close();
+
+	/**
+	 * failed
+	 * Records an MQ error seen on this connection. Errors that mean the
+	 * connection itself is gone mark it broken so the pool drops it.
+	 */
+	void failed(MQException ex)
+	{
+		if (isConnectionError(ex))
+		{
+			_broken = true;
+			return;
+		}
+
+		// nothing was done in the unit of work
+		if (ex.reasonCode == MQException.MQRC_NO_MSG_AVAILABLE)
+			return;
+
+		// the unit of work may hold a partial result
+		EssMqEvents.Backout event = new EssMqEvents.Backout();
+		event.begin();
+		try
+		{
+			backout();
+		}
+		catch (MQException be)
+		{
+			_broken = true;
+		}
+		event.failed(null, ex);
+	}
+
+	/**
+	 * isConnectionError
+	 * True for the reason codes that mean the connection is unusable.
+	 */
+	static boolean isConnectionError(MQException ex)
+	{
+		switch (ex.reasonCode)
+		{
+		case MQException.MQRC_CONNECTION_BROKEN:
+		case MQException.MQRC_HCONN_ERROR:
+		case MQException.MQRC_Q_MGR_NOT_AVAILABLE:
+		case MQException.MQRC_Q_MGR_QUIESCING:
+		case MQException.MQRC_CONNECTION_QUIESCING:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	boolean isBroken() { return _broken; }
+
+	/**
+	 * inUnitOfWork
+	 * True from a get, or a put under syncpoint, until the next commit
+	 * or backout. Implementations call joined() and settled() to keep
+	 * it.
+	 */
+	boolean inUnitOfWork() { return _inUnit; }
+
+	void joined() { _inUnit = true; }
+	void settled() { _inUnit = false; }
+
+	/**
+	 * opened
+	 * Implementations that open queues report the time it took here,
+	 * so the client can tell it apart from the put or get it was part
+	 * of.
+	 */
+	void opened(long nanos) { _openNanos += nanos; }
+
+	/**
+	 * takeOpenNanos
+	 * The open time reported since the last call.
+	 */
+	long takeOpenNanos()
+	{
+		long nanos = _openNanos;
+		_openNanos = 0;
+		return nanos;
+	}
+}
@@ -16,6 +16,7 @@
  * ---------------------------------------
  * Date       By  Description
  * ---------- --- -----------------------------------------------------------
+ * 2026-10-19 amp Rebuilt checkDepth() on EssMqClient.
  **/
 
 import java.io.*;
@@ -114,93 +115,39 @@ public class EssMqDepth
 	 * checkDepth
 	 * Determine the number of messages in the specified queue.
 	 * 
-	 * @return The number of messages in the queue
+	 * @return The number of messages in the queue, -1 on an MQ error
+	 *         and -2 on any other error
 	 * 
 	 */
 	public int checkDepth()
 	{
-		//System.out.println("checkDepth()");
-		int nRetVal = 0;
+		EssMqClient client = new EssMqClient(getHost(), getPort(),
+											 getChannel(),
+											 getQueueManager(), 1);
 		try
 		{
-			mqSetup();
+			EssMqResult result = client.depth(getQueue());
 
-			//System.out.println("Returned from mqSetup()");
-			//System.out.println("Creating Queue Manager");
+			setErrorCode(result.getCompletionCode());
+			setReasonCode(result.getReasonCode());
+			setExceptionSource(result.getExceptionSource());
 
-			MQQueueManager qMgr = new MQQueueManager(getQueueManager());
-
-			//System.out.println("Created the Queue Manager");
-
-			// Setup the open options to open the queue for output and
-			// additionally we have set the option to fail if the queue 
-			// manager is quiescing.
-			int openOptions = MQC.MQOO_INQUIRE | MQC.MQOO_FAIL_IF_QUIESCING;
-
-			MQQueue queue = qMgr.accessQueue(getQueue(),
-											 openOptions,
-											 null,
-											 null,
-											 null);
-
-			//System.out.println("Called accessQueue() on the queue manager");
-
-			nRetVal = queue.getCurrentDepth();
-
-			// Close the Queue and Queue manager objects.
-			//System.out.println("Closing queue");
-			queue.close();
-			//System.out.println("Disconnecting from queue manager");
-			qMgr.disconnect();
-		}
-		catch (MQException ex)
-		{
-			/*
-			System.out.println("An MQ error occurred: Completion Code is: " + 
-					   ex.completionCode + "\n\tThe reason code is: " + 
-					   ex.reasonCode + "\n\tException source: " +
-					   ex.exceptionSource);
-
-*/
-			setErrorCode(ex.completionCode);
-			setReasonCode(ex.reasonCode);
-			setExceptionSource(ex.exceptionSource.toString());
+			if (result.isSuccess())
+				return result.getDepth();
 
 			dump();
 
+			if (result.getCompletionCode() < 0)
+				return -2;
+
 			return -1;
 		}
-		catch (Exception e)
+		finally
 		{
-			/*
-			System.out.println("EssMq.putMessage(). Error: " +
-					   e.getMessage());
-					   */
-
-			return -2;
+			client.close();
 		}
-		return nRetVal;
 	}
 
-	/**
-	 * mqSetup
-	 * 
-	 */
-	private void mqSetup()
-	{
-		/*
-		System.out.println("mqSetup() : setting host (" +
-				   getHost() + "), channel (" + getChannel() +
-				   "), and properties");
-				   */
-
-		MQEnvironment.hostname = getHost();
-		MQEnvironment.channel  = getChannel();
-		MQEnvironment.properties.put(MQC.TRANSPORT_PROPERTY, 
-									 MQC.TRANSPORT_MQSERIES);
-	}
-
-
 	/**
 	 * showArgs display the command line options for this program.
 	 * 
@@ -0,0 +1,179 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqEvents
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Java Flight Recorder events for the MQ calls and file work
+//           of EssMq, EssMqPoll, EssMqDepth and EssDelMsg, so a stall on
+//           MQ can be lined up against GC, I/O and thread states in the
+//           same recording:
+//
+//             java -XX:StartFlightRecording=filename=run.jfr,settings=profile ...
+//             jfr print --events 'essmq.*' run.jfr
+//
+//           Every event has the queue (where there is one), the bytes
+//           moved, the completion and reason codes (0 and 0 when it
+//           worked) and its duration. The MQ events are emitted by
+//           EssMqClient and EssMqAsyncProducer, the open by
+//           EssMqIbmConnection and the XML document build by EssDelMsg.
+//
+//           With the recorder off, or an event disabled, an event costs
+//           one check: its fields are only filled in when shouldCommit()
+//           says it will be kept, and the event objects themselves do
+//           not escape, so the JIT does not allocate them.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.io.File;
+import jdk.jfr.*;
+import com.ibm.mq.MQException;
+
+final class EssMqEvents
+{
+	private EssMqEvents()
+	{
+	}
+
+	/**
+	 * Call
+	 * What every MQ event records.
+	 */
+	@Category({"EssMq", "MQ"})
+	abstract static class Call extends Event
+	{
+		@Label("Queue")
+		String queue;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Completion Code")
+		int completionCode;
+
+		@Label("Reason Code")
+		int reasonCode;
+
+		/**
+		 * done
+		 * Ends the event and commits it, if it is wanted.
+		 */
+		void done(String queue, long bytes)
+		{
+			done(queue, bytes, MQException.MQCC_OK, 0);
+		}
+
+		void done(String queue, long bytes, int completionCode, int reasonCode)
+		{
+			end();
+			if (!shouldCommit())
+				return;
+
+			this.queue = queue;
+			this.bytes = bytes;
+			this.completionCode = completionCode;
+			this.reasonCode = reasonCode;
+			commit();
+		}
+
+		void failed(String queue, MQException ex)
+		{
+			done(queue, 0, ex.completionCode, ex.reasonCode);
+		}
+	}
+
+	@Name("essmq.Connect")
+	@Label("MQ Connect")
+	@Description("Connecting to the queue manager (queue is the queue manager)")
+	static final class Connect extends Call
+	{
+	}
+
+	@Name("essmq.Open")
+	@Label("MQ Open")
+	@Description("Opening a queue that was not already open on the connection")
+	static final class Open extends Call
+	{
+	}
+
+	@Name("essmq.Put")
+	@Label("MQ Put")
+	static final class Put extends Call
+	{
+	}
+
+	@Name("essmq.Get")
+	@Label("MQ Get")
+	@Description("A get, including any wait for a message")
+	static final class Get extends Call
+	{
+	}
+
+	@Name("essmq.Commit")
+	@Label("MQ Commit")
+	static final class Commit extends Call
+	{
+	}
+
+	@Name("essmq.Backout")
+	@Label("MQ Backout")
+	@Description("Backing out a unit of work; the codes are the error that caused it")
+	static final class Backout extends Call
+	{
+	}
+
+	@Name("essmq.FileWrite")
+	@Label("Message File Write")
+	@Description("Writing a message that was got to its file (or spill file)")
+	static final class FileWrite extends Call
+	{
+	}
+
+	@Name("essmq.XmlDocument")
+	@Label("XML Document Build")
+	@Category({"EssMq", "EssDelMsg"})
+	static final class XmlDocument extends Event
+	{
+		@Label("Document")
+		String document;
+
+		@Label("Items")
+		int items;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		void done(String document, long bytes)
+		{
+			end();
+			if (!shouldCommit())
+				return;
+
+			this.document = document;
+			this.bytes = bytes;
+			commit();
+		}
+
+		/**
+		 * done
+		 * For a document written to a file, which is only looked at
+		 * if the event is kept.
+		 */
+		void done(File file)
+		{
+			end();
+			if (!shouldCommit())
+				return;
+
+			document = file.getPath();
+			bytes = file.length();
+			commit();
+		}
+	}
+}
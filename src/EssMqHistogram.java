@@ -0,0 +1,181 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqHistogram
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Fixed size histogram of latencies (or any non-negative
+//           longs) for percentile reporting.
+//
+//           Values below 128 get a bucket each. Above that every power
+//           of two is split into 64 buckets, so a percentile is reported
+//           to within 1/64 (about 1.6%) of the recorded value whatever
+//           its size. The whole long range takes 3,712 counters (29KB)
+//           and recording never allocates, so millions of samples cost
+//           no more than a few.
+//
+//           Not thread safe. Give each thread its own and add() them
+//           together for the report. EssMqTimings keeps its per-thread
+//           counters in atomic arrays of the same buckets instead, so
+//           they can be read while they are being written.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Added add() from atomic bucket counts, for EssMqTimings.
+//
+// --------------------------------------------------------------------------
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class EssMqHistogram
+{
+	private static final int SUB_BITS    = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int LINEAR      = SUB_BUCKETS * 2;
+
+	static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] _counts = new long[BUCKETS];
+	private long _count;
+	private long _sum;
+	private long _min = Long.MAX_VALUE;
+	private long _max;
+
+	/**
+	 * record
+	 * Adds one value. Negative values count as 0.
+	 */
+	public void record(long value)
+	{
+		if (value < 0)
+			value = 0;
+
+		_counts[bucket(value)]++;
+		_count++;
+		_sum += value;
+		if (value < _min)
+			_min = value;
+		if (value > _max)
+			_max = value;
+	}
+
+	/**
+	 * add
+	 * Adds every value recorded by other.
+	 */
+	public void add(EssMqHistogram other)
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			_counts[i] += other._counts[i];
+		_count += other._count;
+		_sum += other._sum;
+		_min = Math.min(_min, other._min);
+		_max = Math.max(_max, other._max);
+	}
+
+	/**
+	 * add
+	 * Adds counts kept elsewhere in this histogram's buckets (see
+	 * bucket()), with their sum, min and max.
+	 */
+	void add(AtomicLongArray counts, long sum, long min, long max)
+	{
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			long c = counts.get(i);
+			_counts[i] += c;
+			n += c;
+		}
+		if (n == 0)
+			return;
+
+		_count += n;
+		_sum += sum;
+		_min = Math.min(_min, min);
+		_max = Math.max(_max, max);
+	}
+
+	public void reset()
+	{
+		java.util.Arrays.fill(_counts, 0);
+		_count = 0;
+		_sum = 0;
+		_min = Long.MAX_VALUE;
+		_max = 0;
+	}
+
+	public long getCount() { return _count; }
+	public long getMin() { return _count == 0 ? 0 : _min; }
+	public long getMax() { return _max; }
+
+	public double getMean()
+	{
+		return _count == 0 ? 0 : (double) _sum / _count;
+	}
+
+	/**
+	 * getValueAtPercentile
+	 * The smallest value that percentile percent of the recorded values
+	 * are at or below, to the histogram's resolution. 0 when empty.
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		if (_count == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(percentile / 100.0 * _count);
+		if (rank < 1)
+			rank = 1;
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += _counts[i];
+			if (seen >= rank)
+				return Math.min(Math.max(highest(i), _min), _max);
+		}
+		return _max;
+	}
+
+	/**
+	 * summary
+	 * One line for the log: count, min, mean, the usual percentiles and
+	 * max, each followed by unit.
+	 */
+	public String summary(String unit)
+	{
+		return "n=" + _count +
+			" min=" + getMin() + unit +
+			" mean=" + Math.round(getMean()) + unit +
+			" p50=" + getValueAtPercentile(50) + unit +
+			" p90=" + getValueAtPercentile(90) + unit +
+			" p99=" + getValueAtPercentile(99) + unit +
+			" p99.9=" + getValueAtPercentile(99.9) + unit +
+			" max=" + getMax() + unit;
+	}
+
+	static int bucket(long value)
+	{
+		if (value < LINEAR)
+			return (int) value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * highest
+	 * The largest value that falls in the bucket.
+	 */
+	private static long highest(int bucket)
+	{
+		if (bucket < LINEAR)
+			return bucket;
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,333 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqIbmConnection
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: The IBM MQ transport: one queue manager connection owned by
+//           an EssMqClient pool.
+//
+//           The connection properties are passed to the MQQueueManager
+//           constructor instead of being written to the static
+//           MQEnvironment fields, so several clients pointing at
+//           different hosts can live in the same JVM.
+//
+//           A connection is only ever used by one thread at a time (the
+//           pool hands it out exclusively), so the queue handle cache
+//           below needs no locking. Syncpoint is per connection, which is
+//           the other reason connections are never shared.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Split out of EssMqConnection, which is now the transport
+//                interface. Put and depth moved here from EssMqClient.
+// 2026-10-19 amp Queue opens are timed for EssMqTimings.
+// 2026-10-19 amp Queue opens are flight recorder events (EssMqEvents).
+// 2026-10-19 amp Reports the open unit of work to EssMqConnection.
+//
+// --------------------------------------------------------------------------
+
+import java.util.*;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+class EssMqIbmConnection extends EssMqConnection
+{
+	private static final Logger _log = Logger.getLogger(EssMqIbmConnection.class);
+
+	// largest message a get will accept before it knows the real length
+	static final int PROBE_SIZE = 64 * 1024;
+
+	/**
+	 * TRANSPORT
+	 * Connects to a real queue manager. The default for EssMqClient.
+	 */
+	static final EssMqTransport TRANSPORT = new EssMqTransport()
+	{
+		public String getName() { return "mq"; }
+		public boolean isLocal() { return false; }
+
+		public EssMqConnection connect(String host, long port, String channel,
+									   String manager, EssMqMemoryBudget budget)
+			throws MQException
+		{
+			return new EssMqIbmConnection(host, port, channel, manager, budget);
+		}
+	};
+
+	private final MQQueueManager      _qMgr;
+	private final EssMqMemoryBudget   _budget;
+	private final Map<String, MQQueue> _queues = new HashMap<String, MQQueue>();
+
+	EssMqIbmConnection(String host, long port, String channel, String manager,
+					EssMqMemoryBudget budget)
+		throws MQException
+	{
+		_budget = budget;
+
+		_log.debug("Connecting to " + manager + " on " + host + "(" +
+				   port + ") channel " + channel);
+
+		Hashtable<String, Object> props = new Hashtable<String, Object>();
+		props.put(MQC.HOST_NAME_PROPERTY, host);
+		props.put(MQC.PORT_PROPERTY, Integer.valueOf((int) port));
+		props.put(MQC.CHANNEL_PROPERTY, channel);
+		props.put(MQC.TRANSPORT_PROPERTY, MQC.TRANSPORT_MQSERIES);
+
+		_qMgr = new MQQueueManager(manager, props);
+	}
+
+	/**
+	 * accessQueue
+	 * Returns an open handle for the queue, opening it on first use.
+	 * Handles stay open for the life of the connection.
+	 */
+	MQQueue accessQueue(String queue, int openOptions) throws MQException
+	{
+		MQQueue q = _queues.get(key(queue, openOptions));
+		if (q == null)
+		{
+			EssMqEvents.Open event = new EssMqEvents.Open();
+			event.begin();
+			long t0 = System.nanoTime();
+			try
+			{
+				q = _qMgr.accessQueue(queue, openOptions, null, null, null);
+			}
+			catch (MQException ex)
+			{
+				event.failed(queue, ex);
+				throw ex;
+			}
+			opened(System.nanoTime() - t0);
+			event.done(queue, 0);
+			_queues.put(key(queue, openOptions), q);
+			_log.debug("Opened queue " + queue + " options " + openOptions);
+		}
+		return q;
+	}
+
+	void put(String queue, MQMessage msg, MQPutMessageOptions pmo)
+		throws MQException
+	{
+		accessQueue(queue, MQC.MQOO_OUTPUT | MQC.MQOO_FAIL_IF_QUIESCING)
+			.put(msg, pmo);
+		if ((pmo.options & MQC.MQPMO_SYNCPOINT) != 0)
+			joined();
+	}
+
+	int depth(String queue) throws MQException
+	{
+		return accessQueue(queue, MQC.MQOO_INQUIRE | MQC.MQOO_FAIL_IF_QUIESCING)
+			.getCurrentDepth();
+	}
+
+	AsyncStatus getAsyncStatus() throws MQException
+	{
+		MQAsyncStatus status = _qMgr.getAsyncStatus();
+		return new AsyncStatus(status.putSuccessCount, status.putWarningCount,
+							   status.putFailureCount, status.reasonCode);
+	}
+
+	String openDynamic(String model, String prefix) throws MQException
+	{
+		int options = MQC.MQOO_INPUT_SHARED | MQC.MQOO_FAIL_IF_QUIESCING;
+		MQQueue q = _qMgr.accessQueue(model, options, null, prefix, null);
+		String name = q.name.trim();
+		_queues.put(key(name, options), q);
+		_log.debug("Opened dynamic queue " + name + " from " + model);
+		return name;
+	}
+
+	void closeQueue(String queue)
+	{
+		Iterator<Map.Entry<String, MQQueue>> it = _queues.entrySet().iterator();
+		while (it.hasNext())
+		{
+			Map.Entry<String, MQQueue> e = it.next();
+			if (!e.getKey().startsWith(queue + "/"))
+				continue;
+
+			it.remove();
+			try
+			{
+				e.getValue().close();
+			}
+			catch (MQException ex)
+			{
+				_log.debug("Error closing queue: " + ex.reasonCode);
+			}
+		}
+	}
+
+	private static String key(String queue, int openOptions)
+	{
+		return queue + "/" + openOptions;
+	}
+
+	/**
+	 * get
+	 * The message length is charged to the memory budget before a
+	 * large body is allocated.
+	 */
+	MQMessage get(String queue, byte[] msgId, byte[] correlId,
+				  int waitInterval)
+		throws MQException, InterruptedException
+	{
+		MQQueue q = accessQueue(queue, MQC.MQOO_INPUT_SHARED |
+								MQC.MQOO_FAIL_IF_QUIESCING);
+
+		for (;;)
+		{
+			MQGetMessageOptions gmo = new MQGetMessageOptions();
+			gmo.options = MQC.MQGMO_SYNCPOINT | MQC.MQGMO_FAIL_IF_QUIESCING;
+			if (waitInterval > 0)
+			{
+				gmo.options |= MQC.MQGMO_WAIT;
+				gmo.waitInterval = waitInterval;
+			}
+
+			MQMessage inMsg = new MQMessage();
+			gmo.matchOptions = MQC.MQMO_NONE;
+			if (msgId != null)
+			{
+				gmo.matchOptions |= MQC.MQMO_MATCH_MSG_ID;
+				inMsg.messageId = msgId;
+			}
+			if (correlId != null)
+			{
+				gmo.matchOptions |= MQC.MQMO_MATCH_CORREL_ID;
+				inMsg.correlationId = correlId;
+			}
+
+			// small messages come back from the first get. A larger one
+			// fails with 2080, leaving it on the queue and telling us
+			// its length, and is fetched by id once the budget allows.
+			boolean truncated = false;
+			try
+			{
+				q.get(inMsg, gmo, PROBE_SIZE);
+			}
+			catch (MQException ex)
+			{
+				if (ex.reasonCode != MQException.MQRC_TRUNCATED_MSG_FAILED)
+					throw ex;
+				truncated = true;
+			}
+
+			if (!truncated)
+			{
+				joined();
+				try
+				{
+					_budget.acquire(inMsg.getTotalMessageLength());
+				}
+				catch (InterruptedException ie)
+				{
+					// don't leave the message in the unit of work
+					backout();
+					throw ie;
+				}
+				return inMsg;
+			}
+
+			int length = inMsg.getTotalMessageLength();
+			_budget.acquire(length);
+
+			MQGetMessageOptions byId = new MQGetMessageOptions();
+			byId.options = MQC.MQGMO_SYNCPOINT | MQC.MQGMO_FAIL_IF_QUIESCING;
+			byId.matchOptions = MQC.MQMO_MATCH_MSG_ID;
+
+			MQMessage bigMsg = new MQMessage();
+			bigMsg.messageId = inMsg.messageId;
+			try
+			{
+				q.get(bigMsg, byId, length);
+				joined();
+				return bigMsg;
+			}
+			catch (MQException ex)
+			{
+				_budget.release(length);
+
+				// another consumer took it in the meantime
+				if (ex.reasonCode == MQException.MQRC_NO_MSG_AVAILABLE &&
+					msgId == null)
+					continue;
+				throw ex;
+			}
+		}
+	}
+
+	/**
+	 * browse
+	 * The browse cursor belongs to the cached handle.
+	 */
+	MQMessage browse(String queue, boolean first, int maxLength)
+		throws MQException
+	{
+		MQQueue q = accessQueue(queue, MQC.MQOO_BROWSE |
+								MQC.MQOO_FAIL_IF_QUIESCING);
+
+		MQGetMessageOptions gmo = new MQGetMessageOptions();
+		gmo.options = MQC.MQGMO_NO_WAIT | MQC.MQGMO_FAIL_IF_QUIESCING |
+			MQC.MQGMO_ACCEPT_TRUNCATED_MSG |
+			(first ? MQC.MQGMO_BROWSE_FIRST : MQC.MQGMO_BROWSE_NEXT);
+
+		MQMessage inMsg = new MQMessage();
+		try
+		{
+			q.get(inMsg, gmo, maxLength);
+		}
+		catch (MQException ex)
+		{
+			// a truncated browse is only a warning
+			if (ex.reasonCode != MQException.MQRC_TRUNCATED_MSG_ACCEPTED)
+				throw ex;
+		}
+		return inMsg;
+	}
+
+	void commit() throws MQException
+	{
+		_qMgr.commit();
+		settled();
+	}
+
+	void backout() throws MQException
+	{
+		_qMgr.backout();
+		settled();
+	}
+
+	/**
+	 * close
+	 * Closes every cached queue handle and disconnects. Errors are
+	 * logged and ignored since there is nothing left to recover.
+	 */
+	void close()
+	{
+		for (MQQueue q : _queues.values())
+		{
+			try
+			{
+				q.close();
+			}
+			catch (MQException ex)
+			{
+				_log.debug("Error closing queue: " + ex.reasonCode);
+			}
+		}
+		_queues.clear();
+
+		try
+		{
+			_qMgr.disconnect();
+		}
+		catch (MQException ex)
+		{
+			_log.debug("Error disconnecting: " + ex.reasonCode);
+		}
+	}
+}
@@ -0,0 +1,385 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqKeyedPoller
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Parallel EssMqPoll consumer that keeps messages with the
+//           same key in order.
+//
+//           The key is the message's groupId, its correlationId, or the
+//           first match of a regular expression in the first few KB of
+//           the body. Messages without a key (no group, no correlation
+//           id, no match) are independent and may run in any order.
+//
+//           A single browser thread walks the queue with a browse
+//           cursor. For each message it works out the key and hands the
+//           message id to an EssMqStripedExecutor lane. The lane then
+//           gets that one message by id on its own connection, writes
+//           it to the next sequenced output file and commits, exactly as
+//           the single-threaded poller does. Nothing is removed from the
+//           queue until it is safely on disk.
+//
+//           When a key is at its backlog limit the browser leaves its
+//           messages on the queue for the rest of the pass, so later
+//           messages for that key cannot overtake earlier ones, and
+//           carries on with other keys. Skipped messages are picked up
+//           when the browse starts again from the top of the queue.
+//           If a message fails (e.g. the file write), the rest of its
+//           key's backlog is dropped and the key is held until the
+//           next pass, which starts again with the failed message.
+//
+//           Every get takes a permit from getControl() (see
+//           EssMqPollControl), so pausing it over JMX holds the lanes
+//           and the browser, and lowering its concurrency leaves lanes
+//           idle.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Counts and throttles gets through an EssMqPollControl.
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqKeyedPoller implements Runnable
+{
+	public static final String KEY_GROUP   = "group";
+	public static final String KEY_CORREL  = "correl";
+	public static final String KEY_PAYLOAD = "payload:";
+
+	public static final int DEFAULT_BACKLOG = 16;
+
+	// how much of the body a payload key is looked for in
+	private static final int PAYLOAD_SCAN = 4096;
+
+	private static final int MODE_GROUP   = 0;
+	private static final int MODE_CORREL  = 1;
+	private static final int MODE_PAYLOAD = 2;
+
+	private static final Logger _log = Logger.getLogger(EssMqKeyedPoller.class);
+
+	private final EssMqClient          _client;
+	private final String               _queue;
+	private final int                  _mode;
+	private final Pattern              _pattern;
+	private final String               _filePrefix;
+	private final AtomicInteger        _sequence;
+	private final int                  _waitInterval;
+	private final EssMqStripedExecutor _executor;
+	private final EssMqPollControl     _control;
+
+	private final Set<String> _inFlight = ConcurrentHashMap.newKeySet();
+	private final Set<Object> _failedKeys = ConcurrentHashMap.newKeySet();
+	private final AtomicLong  _consumed = new AtomicLong();
+	private final Object      _progress = new Object();
+	private volatile boolean  _stopped;
+
+	/**
+	 * EssMqKeyedPoller
+	 * keySpec is "group", "correl" or "payload:<regex>". The client
+	 * needs threads + 1 connections: one per lane and one for the
+	 * browser. Output files are named filePrefix + sequence + ".xml".
+	 */
+	public EssMqKeyedPoller(EssMqClient client, String queue, String keySpec,
+							int threads, int perKeyBacklog,
+							String filePrefix, int firstSequence)
+	{
+		_client = client;
+		_queue = queue;
+		_filePrefix = filePrefix;
+		_sequence = new AtomicInteger(firstSequence);
+		_waitInterval = EssMqClient.DEFAULT_WAIT_INTERVAL;
+
+		if (keySpec.equalsIgnoreCase(KEY_GROUP))
+		{
+			_mode = MODE_GROUP;
+			_pattern = null;
+		}
+		else if (keySpec.equalsIgnoreCase(KEY_CORREL))
+		{
+			_mode = MODE_CORREL;
+			_pattern = null;
+		}
+		else if (keySpec.startsWith(KEY_PAYLOAD))
+		{
+			_mode = MODE_PAYLOAD;
+			_pattern = Pattern.compile(keySpec.substring(KEY_PAYLOAD.length()));
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown key: " + keySpec);
+		}
+
+		_executor = new EssMqStripedExecutor(threads, perKeyBacklog,
+											 "EssMqKeyedPoller-" + queue);
+		_control = new EssMqPollControl(queue, "keyed " + keySpec, threads);
+	}
+
+	public long getConsumed() { return _consumed.get(); }
+	public int getInFlight() { return _inFlight.size(); }
+	public int getSequence() { return _sequence.get(); }
+
+	/**
+	 * getControl
+	 * The counters, pause and concurrency of this poller; register()
+	 * it to publish them over JMX.
+	 */
+	public EssMqPollControl getControl() { return _control; }
+
+	/**
+	 * stop
+	 * Ends run() after the current browse and lets queued messages
+	 * finish.
+	 */
+	public void stop()
+	{
+		_stopped = true;
+		signal();
+	}
+
+	/**
+	 * run
+	 * The browse loop. Reconnects after MQ errors and returns once
+	 * stop() is called or the thread is interrupted.
+	 */
+	public void run()
+	{
+		while (!_stopped && !Thread.currentThread().isInterrupted())
+		{
+			EssMqConnection conn = null;
+			try
+			{
+				conn = _client.borrow();
+				browse(conn);
+			}
+			catch (MQException ex)
+			{
+				_log.error("Browse of " + _queue + " failed: completion code " +
+						   ex.completionCode + ", reason " + ex.reasonCode);
+				if (conn != null)
+					conn.failed(ex);
+				_control.failed(ex.reasonCode);
+				backoff(_waitInterval);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (IOException ie)
+			{
+				_log.error("Error reading message on " + _queue + ": " +
+						   ie.getMessage());
+				_control.failed(EssMqPoll.ESSMQ_FILEIOERROR);
+				backoff(_waitInterval);
+			}
+			finally
+			{
+				_client.release(conn);
+			}
+		}
+
+		try
+		{
+			_executor.shutdown(_waitInterval * 10L, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void browse(EssMqConnection conn)
+		throws MQException, IOException, InterruptedException
+	{
+		boolean first = true;
+		int dispatched = 0;
+		Set<Object> skipped = new HashSet<Object>();
+
+		while (!_stopped)
+		{
+			// paused: leave everything on the queue
+			while (_control.isPaused() && !_stopped)
+				awaitProgress();
+
+			if (first)
+			{
+				// a failed key may start again once its backlog is gone
+				skipped.clear();
+				for (Iterator<Object> it = _failedKeys.iterator(); it.hasNext(); )
+				{
+					if (_executor.backlog(it.next()) == 0)
+						it.remove();
+				}
+			}
+
+			MQMessage msg;
+			try
+			{
+				msg = conn.browse(_queue, first,
+								  _mode == MODE_PAYLOAD ? PAYLOAD_SCAN : 0);
+				first = false;
+			}
+			catch (MQException ex)
+			{
+				if (ex.reasonCode != MQException.MQRC_NO_MSG_AVAILABLE)
+					throw ex;
+
+				// end of the queue; start over, waiting first if this
+				// pass found nothing to do
+				if (dispatched == 0)
+					awaitProgress();
+				first = true;
+				dispatched = 0;
+				continue;
+			}
+
+			String id = EssMq.convertHexId(msg.messageId);
+			if (_inFlight.contains(id))
+				continue;
+
+			Object key = keyOf(msg, id);
+			if (skipped.contains(key) || _failedKeys.contains(key))
+			{
+				skipped.add(key);
+				continue;
+			}
+
+			while (_executor.isSaturated() && !_stopped)
+				awaitProgress();
+
+			_inFlight.add(id);
+			if (!_executor.trySubmit(key, new Consume(key, id, msg.messageId)))
+			{
+				// key is at its backlog limit; leave the rest of its
+				// messages for the next pass
+				_inFlight.remove(id);
+				skipped.add(key);
+				continue;
+			}
+			dispatched++;
+		}
+	}
+
+	/**
+	 * keyOf
+	 * Messages with no key get their own message id as the key.
+	 */
+	private Object keyOf(MQMessage msg, String id) throws IOException
+	{
+		byte[] raw;
+		switch (_mode)
+		{
+		case MODE_GROUP:
+			raw = msg.groupId;
+			break;
+		case MODE_CORREL:
+			raw = msg.correlationId;
+			break;
+		default:
+			byte[] head = new byte[Math.min(msg.getMessageLength(), PAYLOAD_SCAN)];
+			msg.readFully(head);
+			Matcher m = _pattern.matcher(new String(head));
+			if (!m.find())
+				return id;
+			return m.groupCount() > 0 ? m.group(1) : m.group();
+		}
+
+		if (raw == null || Arrays.equals(raw, MQC.MQGI_NONE))
+			return id;
+		return EssMq.convertHexId(raw);
+	}
+
+	private void awaitProgress() throws InterruptedException
+	{
+		synchronized (_progress)
+		{
+			_progress.wait(_waitInterval);
+		}
+	}
+
+	private void signal()
+	{
+		synchronized (_progress)
+		{
+			_progress.notifyAll();
+		}
+	}
+
+	private void backoff(long millis)
+	{
+		try
+		{
+			_control.backoff(millis);
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Consume
+	 * Runs on a lane: gets the browsed message by id, writes it to its
+	 * output file and commits.
+	 */
+	private final class Consume implements Runnable
+	{
+		private final Object _key;
+		private final String _id;
+		private final byte[] _msgId;
+
+		Consume(Object key, String id, byte[] msgId)
+		{
+			_key = key;
+			_id = id;
+			_msgId = msgId;
+		}
+
+		public void run()
+		{
+			try
+			{
+				// an earlier message for this key failed; this one
+				// must wait for it
+				if (_failedKeys.contains(_key))
+					return;
+
+				_control.begin();
+				String msgFile = _filePrefix + _sequence.getAndIncrement() + ".xml";
+				EssMqResult result = _client.get(_queue, _msgId,
+												 new File(msgFile).toPath(), 0);
+				_control.end(result);
+				if (result.isSuccess())
+				{
+					_consumed.incrementAndGet();
+					_log.debug("Wrote " + _id + " (key " + _key + ") to " + msgFile);
+				}
+				else if (!result.isNoMessage())
+				{
+					// another consumer taking it (2033) is not a failure
+					_log.error("Unable to consume " + _id + " (key " + _key +
+							   "): " + result);
+					_failedKeys.add(_key);
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				// shutting down; the message stays on the queue
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				_inFlight.remove(_id);
+				signal();
+			}
+		}
+	}
+}
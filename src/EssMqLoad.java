@@ -0,0 +1,823 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqLoad
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Load generator for a queue manager and channel.
+//
+//           Producer threads put messages to a queue and consumer
+//           threads get them off it, each over its own pooled connection
+//           (EssMqClient), for a set time or number of messages. Every
+//           message starts with a 16 byte header - the run id and the
+//           System.nanoTime() of its put - so a consumer in the same run
+//           can tell the end to end latency. Messages from anyone else
+//           are counted but not timed.
+//
+//           Producers are closed loop (each put follows the last one) or
+//           paced to a total rate. When paced, a put is timed from when
+//           it was due rather than when it was made, so a stall shows
+//           up as latency for every put it delayed and not only the one
+//           that was stuck.
+//
+//           Put, get and end to end latencies (microseconds) go into an
+//           EssMqHistogram per thread; every interval the reporter
+//           swaps them out, prints a line and adds them to the totals.
+//           Intervals inside the warm up are printed but not counted.
+//
+//           Usage:
+//
+//             EssMqLoad [--transport=mq|memory] queue [host port channel
+//                       manager] [-option:value ...]
+//
+//           See showArgs() for the options.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import com.ibm.mq.*;
+
+public class EssMqLoad
+{
+	public static final int  HEADER = 16;
+	public static final int  DEFAULT_THREADS = 1;
+	public static final int  DEFAULT_DURATION = 60;
+	public static final int  DEFAULT_INTERVAL = 5;
+	public static final int  DEFAULT_DRAIN = 10;
+	public static final String DEFAULT_SIZE = "1024";
+
+	// log4j config file location
+	public static final String _log_config = "EssMqLoad.xml";
+
+	// how long a consumer waits in a get, and so how quickly it
+	// notices the run is over
+	private static final int GET_WAIT = 1000;
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+
+	private static final Logger _log = Logger.getLogger(EssMqLoad.class);
+
+	private String  _queue;
+	private String  _host = "";
+	private long    _port;
+	private String  _channel = "";
+	private String  _qManager = "";
+	private int     _producers = DEFAULT_THREADS;
+	private int     _consumers = DEFAULT_THREADS;
+	private double  _rate;
+	private long    _count;
+	private int     _duration = DEFAULT_DURATION;
+	private int     _warmup;
+	private int     _interval = DEFAULT_INTERVAL;
+	private int     _drain = DEFAULT_DRAIN;
+	private int     _batch = 1;
+	private boolean _persistent;
+	private String  _sizeSpec = DEFAULT_SIZE;
+	private String  _summaryFile;
+
+	private final long _runId = new Random().nextLong();
+	private Sizes _sizes;
+	private EssMqClient _client;
+	private final List<Worker> _workers = new ArrayList<Worker>();
+	private final AtomicLong _sent = new AtomicLong();
+	private volatile boolean _producing = true;
+	private volatile boolean _consuming = true;
+
+	private final EssMqHistogram _putTotal = new EssMqHistogram();
+	private final EssMqHistogram _getTotal = new EssMqHistogram();
+	private final EssMqHistogram _e2eTotal = new EssMqHistogram();
+	private long _errorTotal;
+	private long _foreignTotal;
+	private long _measuredNanos;
+
+	public void setQueue(String q) { _queue = q; }
+	public void setHost(String h) { _host = h; }
+	public void setPort(long p) { _port = p; }
+	public void setChannel(String c) { _channel = c; }
+	public void setQueueManager(String m) { _qManager = m; }
+	public void setProducers(int n) { _producers = n; }
+	public void setConsumers(int n) { _consumers = n; }
+
+	/**
+	 * setRate
+	 * Total puts per second across the producers; 0 for closed loop.
+	 */
+	public void setRate(double rate) { _rate = rate; }
+
+	/**
+	 * setCount
+	 * Stops after this many puts instead of after the duration.
+	 */
+	public void setCount(long n) { _count = n; }
+	public void setDuration(int seconds) { _duration = seconds; }
+	public void setWarmup(int seconds) { _warmup = seconds; }
+	public void setInterval(int seconds) { _interval = seconds; }
+
+	/**
+	 * setDrain
+	 * The longest the consumers keep going once the producers stop.
+	 * They stop sooner if they find the queue empty.
+	 */
+	public void setDrain(int seconds) { _drain = seconds; }
+
+	/**
+	 * setBatch
+	 * Puts or gets per commit.
+	 */
+	public void setBatch(int n) { _batch = n; }
+	public void setPersistent(boolean p) { _persistent = p; }
+
+	/**
+	 * setSize
+	 * The message size distribution:
+	 *
+	 *   1024                   every message 1024 bytes
+	 *   256-65536              uniform between the two
+	 *   256:80,4096:15,65536:5 a weighted mix
+	 *
+	 * Sizes below HEADER are raised to it.
+	 */
+	public void setSize(String spec) { _sizeSpec = spec; }
+	public void setSummaryFile(String file) { _summaryFile = file; }
+
+	/**
+	 * Stats
+	 * One worker's latencies since the reporter last took them. The
+	 * lock is only ever contended by the reporter, once an interval.
+	 */
+	private static final class Stats
+	{
+		private EssMqHistogram _put = new EssMqHistogram();
+		private EssMqHistogram _get = new EssMqHistogram();
+		private EssMqHistogram _e2e = new EssMqHistogram();
+		private long _errors;
+		private long _foreign;
+
+		synchronized void put(long micros) { _put.record(micros); }
+
+		synchronized void got(long micros, long e2eMicros)
+		{
+			_get.record(micros);
+			if (e2eMicros >= 0)
+				_e2e.record(e2eMicros);
+			else
+				_foreign++;
+		}
+
+		synchronized void error() { _errors++; }
+
+		/**
+		 * drainTo
+		 * Adds everything to the interval totals and starts again.
+		 */
+		synchronized void drainTo(Interval into)
+		{
+			into._put.add(_put);
+			into._get.add(_get);
+			into._e2e.add(_e2e);
+			into._errors += _errors;
+			into._foreign += _foreign;
+			_put.reset();
+			_get.reset();
+			_e2e.reset();
+			_errors = 0;
+			_foreign = 0;
+		}
+	}
+
+	/**
+	 * Interval
+	 * Every worker's Stats for one reporting interval.
+	 */
+	private static final class Interval
+	{
+		final EssMqHistogram _put = new EssMqHistogram();
+		final EssMqHistogram _get = new EssMqHistogram();
+		final EssMqHistogram _e2e = new EssMqHistogram();
+		long _errors;
+		long _foreign;
+	}
+
+	/**
+	 * Sizes
+	 * See setSize().
+	 */
+	static final class Sizes
+	{
+		private final int[]    _sizes;
+		private final double[] _cumulative;
+		private final boolean  _uniform;
+		final int _max;
+
+		Sizes(String spec)
+		{
+			String s = spec.trim();
+			if (s.indexOf(':') < 0 && s.indexOf('-') > 0)
+			{
+				String[] range = s.split("-");
+				_sizes = new int[] { size(range[0]), size(range[1]) };
+				_cumulative = null;
+				_uniform = true;
+				if (_sizes[1] < _sizes[0])
+					throw new IllegalArgumentException("Bad size range: " + spec);
+			}
+			else
+			{
+				String[] parts = s.split(",");
+				_sizes = new int[parts.length];
+				_cumulative = new double[parts.length];
+				_uniform = false;
+				double total = 0;
+				for (int i = 0; i < parts.length; i++)
+				{
+					String[] sw = parts[i].split(":");
+					_sizes[i] = size(sw[0]);
+					total += sw.length > 1 ? Double.parseDouble(sw[1]) : 1;
+					_cumulative[i] = total;
+				}
+				for (int i = 0; i < parts.length; i++)
+					_cumulative[i] /= total;
+			}
+
+			int max = 0;
+			for (int size : _sizes)
+				max = Math.max(max, size);
+			_max = max;
+		}
+
+		int next(Random random)
+		{
+			if (_uniform)
+				return _sizes[0] + random.nextInt(_sizes[1] - _sizes[0] + 1);
+
+			if (_sizes.length == 1)
+				return _sizes[0];
+
+			double d = random.nextDouble();
+			for (int i = 0; i < _sizes.length - 1; i++)
+			{
+				if (d < _cumulative[i])
+					return _sizes[i];
+			}
+			return _sizes[_sizes.length - 1];
+		}
+
+		private static int size(String s)
+		{
+			return Math.max(HEADER, Integer.parseInt(s.trim()));
+		}
+	}
+
+	/**
+	 * Worker
+	 * A thread with its own connection. An MQ error is counted; one
+	 * that breaks the connection hands it back and, after a pause,
+	 * takes another.
+	 */
+	private abstract class Worker implements Runnable
+	{
+		final Stats _stats = new Stats();
+		EssMqConnection _conn;
+		int _uncommitted;
+
+		// when the last get found the queue empty
+		volatile long _emptyAt;
+
+		public void run()
+		{
+			try
+			{
+				while (running())
+				{
+					try
+					{
+						if (_conn == null)
+							_conn = _client.borrow();
+						step();
+					}
+					catch (MQException ex)
+					{
+						failed(ex);
+					}
+				}
+				commit();
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (Exception e)
+			{
+				_log.error("Load worker failed", e);
+			}
+			finally
+			{
+				_client.release(_conn);
+			}
+		}
+
+		abstract boolean running();
+
+		/**
+		 * step
+		 * One put or get.
+		 */
+		abstract void step() throws MQException, InterruptedException, IOException;
+
+		/**
+		 * counted
+		 * Commits once there are batch operations in the unit of work.
+		 */
+		void counted() throws MQException
+		{
+			if (++_uncommitted >= _batch)
+				commit();
+		}
+
+		void commit() throws MQException
+		{
+			if (_conn != null && _uncommitted > 0)
+			{
+				_conn.commit();
+				_uncommitted = 0;
+			}
+		}
+
+		void failed(MQException ex) throws MQException, InterruptedException
+		{
+			if (ex.reasonCode == MQException.MQRC_NO_MSG_AVAILABLE)
+			{
+				// don't sit on a part batch while the queue is idle
+				commit();
+				_emptyAt = System.nanoTime();
+				return;
+			}
+
+			_stats.error();
+			_uncommitted = 0;
+			if (_conn == null)
+			{
+				_log.error("Unable to connect, reason " + ex.reasonCode +
+						   ". Retrying.");
+				Thread.sleep(1000);
+				return;
+			}
+
+			_log.debug("MQ error in load worker: completion code " +
+					   ex.completionCode + ", reason " + ex.reasonCode);
+			_conn.failed(ex);
+			if (_conn.isBroken())
+			{
+				_log.error("Connection lost, reason " + ex.reasonCode +
+						   ". Reconnecting.");
+				_client.release(_conn);
+				_conn = null;
+				Thread.sleep(1000);
+			}
+		}
+	}
+
+	private final class Producer extends Worker
+	{
+		private final Random _random = new Random();
+		private final byte[] _fill;
+		private final MQMessage _msg = new MQMessage();
+		private final MQPutMessageOptions _pmo = new MQPutMessageOptions();
+		private final long _period;
+		private long _next;
+
+		Producer(int producers)
+		{
+			_fill = new byte[_sizes._max];
+			_random.nextBytes(_fill);
+			_period = _rate > 0 ? (long) (producers * 1e9 / _rate) : 0;
+			_next = System.nanoTime();
+
+			_msg.format = MQC.MQFMT_NONE;
+			_msg.persistence = _persistent ? MQC.MQPER_PERSISTENT :
+				MQC.MQPER_NOT_PERSISTENT;
+			_pmo.options = MQC.MQPMO_SYNCPOINT | MQC.MQPMO_NEW_MSG_ID |
+				MQC.MQPMO_FAIL_IF_QUIESCING;
+		}
+
+		boolean running()
+		{
+			return _producing;
+		}
+
+		void step() throws MQException, IOException
+		{
+			if (_count > 0 && _sent.incrementAndGet() > _count)
+			{
+				_producing = false;
+				return;
+			}
+
+			long start;
+			if (_period > 0)
+			{
+				start = _next;
+				_next += _period;
+				long wait;
+				while ((wait = start - System.nanoTime()) > 0)
+					LockSupport.parkNanos(wait);
+			}
+			else
+			{
+				start = System.nanoTime();
+			}
+
+			int size = _sizes.next(_random);
+			_msg.clearMessage();
+			_msg.writeLong(_runId);
+			_msg.writeLong(start);
+			_msg.write(_fill, 0, size - HEADER);
+
+			_conn.put(_queue, _msg, _pmo);
+			counted();
+			_stats.put((System.nanoTime() - start) / 1000);
+		}
+	}
+
+	private final class Consumer extends Worker
+	{
+		boolean running()
+		{
+			return _consuming;
+		}
+
+		void step() throws MQException, InterruptedException, IOException
+		{
+			long start = System.nanoTime();
+			MQMessage inMsg = _conn.get(_queue, GET_WAIT);
+			try
+			{
+				counted();
+				long now = System.nanoTime();
+
+				long e2e = -1;
+				if (inMsg.getMessageLength() >= HEADER && inMsg.readLong() == _runId)
+					e2e = (now - inMsg.readLong()) / 1000;
+				_stats.got((now - start) / 1000, e2e);
+			}
+			finally
+			{
+				_client.getMemoryBudget().release(inMsg.getTotalMessageLength());
+			}
+		}
+	}
+
+	/**
+	 * run
+	 * Runs the load and writes the summary. Returns false if it could
+	 * not start.
+	 */
+	public boolean run() throws InterruptedException
+	{
+		try
+		{
+			_sizes = new Sizes(_sizeSpec);
+		}
+		catch (RuntimeException re)
+		{
+			System.out.println("Bad size: " + _sizeSpec);
+			return false;
+		}
+
+		_client = new EssMqClient(EssMqClient.getDefaultTransport(), _host, _port,
+								  _channel, _qManager, _producers + _consumers);
+		System.out.println("EssMqLoad " + EssMqClient.getDefaultTransport().getName() +
+						   " " + _queue + ": " + _producers + " producers, " +
+						   _consumers + " consumers, " +
+						   (_rate > 0 ? _rate + " msg/s" : "closed loop") +
+						   ", size " + _sizeSpec + ", " +
+						   (_persistent ? "persistent" : "non-persistent") +
+						   ", batch " + _batch);
+
+		List<Thread> producers = new ArrayList<Thread>();
+		List<Thread> consumers = new ArrayList<Thread>();
+		for (int i = 0; i < _consumers; i++)
+			consumers.add(start(new Consumer(), "EssMqLoad-consumer-" + i));
+		for (int i = 0; i < _producers; i++)
+			producers.add(start(new Producer(_producers), "EssMqLoad-producer-" + i));
+
+		long t0 = System.nanoTime();
+		long end = _count > 0 ? Long.MAX_VALUE : t0 + _duration * 1000000000L;
+		long warm = t0 + _warmup * 1000000000L;
+		long last = t0;
+		long stopped = Long.MAX_VALUE;
+		long drainEnd = Long.MAX_VALUE;
+
+		try
+		{
+			for (;;)
+			{
+				long next = last + _interval * 1000000000L;
+				while (System.nanoTime() < next && !finished(producers, consumers))
+				{
+					long now = System.nanoTime();
+					if (_producing && now >= end)
+						_producing = false;
+					if (!_producing && stopped == Long.MAX_VALUE && !alive(producers))
+					{
+						stopped = now;
+						drainEnd = now + _drain * 1000000000L;
+					}
+					if (now >= drainEnd || drained(stopped))
+						_consuming = false;
+					Thread.sleep(Math.min(100, Math.max(1, (next - now) / 1000000)));
+				}
+
+				long now = System.nanoTime();
+				report(now - t0, now - last, last >= warm);
+				last = now;
+
+				if (finished(producers, consumers))
+					break;
+			}
+		}
+		finally
+		{
+			_producing = false;
+			_consuming = false;
+			join(producers);
+			join(consumers);
+			_client.close();
+		}
+
+		summary();
+		return true;
+	}
+
+	private Thread start(Worker w, String name)
+	{
+		_workers.add(w);
+		Thread t = new Thread(w, name);
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	/**
+	 * drained
+	 * True once every consumer has found the queue empty since the
+	 * producers stopped.
+	 */
+	private boolean drained(long stopped)
+	{
+		if (stopped == Long.MAX_VALUE)
+			return false;
+
+		for (Worker w : _workers)
+		{
+			if (w instanceof Consumer && w._emptyAt < stopped)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean alive(List<Thread> threads)
+	{
+		for (Thread t : threads)
+		{
+			if (t.isAlive())
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean finished(List<Thread> producers, List<Thread> consumers)
+	{
+		return !alive(producers) && !alive(consumers);
+	}
+
+	private static void join(List<Thread> threads) throws InterruptedException
+	{
+		for (Thread t : threads)
+			t.join();
+	}
+
+	/**
+	 * report
+	 * Prints one interval and, past the warm up, adds it to the totals.
+	 */
+	private void report(long elapsedNanos, long intervalNanos, boolean measured)
+	{
+		Interval iv = new Interval();
+		for (Worker w : _workers)
+			w._stats.drainTo(iv);
+
+		if (measured)
+		{
+			_putTotal.add(iv._put);
+			_getTotal.add(iv._get);
+			_e2eTotal.add(iv._e2e);
+			_errorTotal += iv._errors;
+			_foreignTotal += iv._foreign;
+			_measuredNanos += intervalNanos;
+		}
+
+		double secs = intervalNanos / 1e9;
+		System.out.println(String.format(
+			"%6.0fs%s put %8.0f/s p50 %6dus p99 %7dus | get %8.0f/s p50 %6dus " +
+			"p99 %7dus | e2e p50 %7dus p99 %8dus max %8dus | errors %d",
+			elapsedNanos / 1e9, measured ? " " : "*",
+			iv._put.getCount() / secs, iv._put.getValueAtPercentile(50),
+			iv._put.getValueAtPercentile(99),
+			iv._get.getCount() / secs, iv._get.getValueAtPercentile(50),
+			iv._get.getValueAtPercentile(99),
+			iv._e2e.getValueAtPercentile(50), iv._e2e.getValueAtPercentile(99),
+			iv._e2e.getMax(), iv._errors));
+	}
+
+	/**
+	 * summary
+	 * Prints the totals and, if asked, writes them to the summary file
+	 * as name=value lines.
+	 */
+	private void summary()
+	{
+		StringBuilder sb = new StringBuilder();
+		line(sb, "transport", EssMqClient.getDefaultTransport().getName());
+		line(sb, "queue", _queue);
+		line(sb, "producers", _producers);
+		line(sb, "consumers", _consumers);
+		line(sb, "rate", _rate > 0 ? String.valueOf(_rate) : "closed");
+		line(sb, "size", _sizeSpec);
+		line(sb, "persistent", _persistent);
+		line(sb, "batch", _batch);
+		line(sb, "seconds", String.format("%.3f", _measuredNanos / 1e9));
+		line(sb, "errors", _errorTotal);
+		line(sb, "foreign", _foreignTotal);
+		histogram(sb, "put", _putTotal);
+		histogram(sb, "get", _getTotal);
+		histogram(sb, "e2e", _e2eTotal);
+
+		System.out.println();
+		System.out.print(sb);
+
+		if (_summaryFile == null)
+			return;
+
+		try
+		{
+			Writer out = new FileWriter(_summaryFile);
+			try
+			{
+				out.write(sb.toString());
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		catch (IOException ie)
+		{
+			_log.error("Unable to write summary " + _summaryFile + ": " +
+					   ie.getMessage());
+		}
+	}
+
+	private void histogram(StringBuilder sb, String name, EssMqHistogram h)
+	{
+		line(sb, name + ".count", h.getCount());
+		if (_measuredNanos > 0)
+			line(sb, name + ".rate", String.format("%.1f", h.getCount() * 1e9 / _measuredNanos));
+		line(sb, name + ".min.us", h.getMin());
+		line(sb, name + ".mean.us", Math.round(h.getMean()));
+		for (double p : PERCENTILES)
+		{
+			String label = p == Math.floor(p) ? String.valueOf((long) p) :
+				String.valueOf(p);
+			line(sb, name + ".p" + label + ".us", h.getValueAtPercentile(p));
+		}
+		line(sb, name + ".max.us", h.getMax());
+	}
+
+	private static void line(StringBuilder sb, String name, Object value)
+	{
+		sb.append(name).append('=').append(value).append('\n');
+	}
+
+	/**
+	 * showArgs display the command line options for this program.
+	 */
+	private static void showArgs()
+	{
+		System.out.println("Syntax: EssMqLoad [--transport=mq|memory[:micros]] queue " +
+						   "[host port channel manager] [-option:value ...]\n");
+		System.out.println("-producers:n   producer threads (default 1)");
+		System.out.println("-consumers:n   consumer threads (default 1)");
+		System.out.println("-rate:n        total puts per second (default: closed loop)");
+		System.out.println("-duration:s    seconds to put for (default 60)");
+		System.out.println("-count:n       stop after n puts instead");
+		System.out.println("-warmup:s      seconds left out of the summary (default 0)");
+		System.out.println("-interval:s    seconds between reports (default 5)");
+		System.out.println("-drain:s       most seconds the consumers go on for (default 10)");
+		System.out.println("-size:spec     1024, 256-65536 or 256:80,4096:15,65536:5");
+		System.out.println("               (default 1024)");
+		System.out.println("-persistent    persistent messages (default non-persistent)");
+		System.out.println("-batch:n       puts or gets per commit (default 1)");
+		System.out.println("-summary:file  also write the summary to file");
+	}
+
+	/**
+	 * parseOption
+	 * Applies one -name[:value] option. Returns false if unknown.
+	 */
+	private boolean parseOption(String arg)
+	{
+		int colon = arg.indexOf(':');
+		String name = colon < 0 ? arg.substring(1) : arg.substring(1, colon);
+		String value = colon < 0 ? "" : arg.substring(colon + 1);
+
+		if (name.equals("producers"))
+			setProducers(Integer.parseInt(value));
+		else if (name.equals("consumers"))
+			setConsumers(Integer.parseInt(value));
+		else if (name.equals("rate"))
+			setRate(Double.parseDouble(value));
+		else if (name.equals("duration"))
+			setDuration(Integer.parseInt(value));
+		else if (name.equals("count"))
+			setCount(Long.parseLong(value));
+		else if (name.equals("warmup"))
+			setWarmup(Integer.parseInt(value));
+		else if (name.equals("interval"))
+			setInterval(Math.max(1, Integer.parseInt(value)));
+		else if (name.equals("drain"))
+			setDrain(Integer.parseInt(value));
+		else if (name.equals("size"))
+			setSize(value);
+		else if (name.equals("persistent"))
+			setPersistent(true);
+		else if (name.equals("batch"))
+			setBatch(Math.max(1, Integer.parseInt(value)));
+		else if (name.equals("summary"))
+			setSummaryFile(value);
+		else
+			return false;
+		return true;
+	}
+
+	/**
+	 * main
+	 */
+	public static void main(String [] args) throws InterruptedException
+	{
+		DOMConfigurator.configure(_log_config);
+		args = EssMqTransport.takeOption(args);
+
+		EssMqLoad load = new EssMqLoad();
+		List<String> positional = new ArrayList<String>();
+		for (String arg : args)
+		{
+			if (!arg.startsWith("-"))
+			{
+				positional.add(arg);
+				continue;
+			}
+
+			try
+			{
+				if (load.parseOption(arg))
+					continue;
+			}
+			catch (NumberFormatException nfe)
+			{
+				// reported below
+			}
+			System.out.println("Bad option: " + arg);
+			showArgs();
+			System.exit(-1);
+		}
+
+		boolean local = EssMqClient.getDefaultTransport().isLocal();
+		if (positional.size() != 1 && (local || positional.size() != 5))
+		{
+			showArgs();
+			System.exit(-1);
+		}
+
+		load.setQueue(positional.get(0));
+		if (positional.size() == 5)
+		{
+			load.setHost(positional.get(1));
+			load.setPort(Long.parseLong(positional.get(2)));
+			load.setChannel(positional.get(3));
+			load.setQueueManager(positional.get(4));
+		}
+
+		System.exit(load.run() ? 0 : -1);
+	}
+}
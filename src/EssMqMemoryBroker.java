@@ -0,0 +1,798 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqMemoryBroker
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: An in-process queue manager, for tests and benchmarks that
+//           should not need a real one (EssMqTransport "memory").
+//
+//               EssMqMemoryBroker broker = new EssMqMemoryBroker();
+//               EssMqClient mq = new EssMqClient(broker, 4);
+//
+//           It keeps to the MQ behaviour the clients depend on:
+//
+//           - gets are under syncpoint; a put is too when it asks for
+//             MQPMO_SYNCPOINT. Nothing is seen by other connections
+//             until commit, and backout puts got messages back in their
+//             place (with backoutCount raised).
+//           - a get waits up to its wait interval for a message, and
+//             fails with MQRC_NO_MSG_AVAILABLE (2033) after it.
+//           - gets can match on message id and correlation id. Both are
+//             indexed, so picking one reply out of many is not a scan.
+//           - message ids are made up by the broker ("AMQ " and the
+//             broker name, then a counter) unless the caller set one.
+//           - depth counts uncommitted puts and gets, as CURDEPTH does.
+//           - browse cursors and temporary dynamic queues belong to the
+//             connection.
+//           - closing a connection commits, as MQDISC does.
+//
+//           Queues are defined on first use unless setAutoDefine(false),
+//           in which case an unknown queue fails with 2085.
+//
+//           setLatencyMicros() adds a fixed delay to every call, to stand
+//           in for the round trip to a real queue manager.
+//
+//           setFailureRate() makes that fraction of puts, gets and
+//           commits fail as if the connection had dropped: the unit of
+//           work is backed out and the call, and every later one on the
+//           connection, fails with MQRC_CONNECTION_BROKEN (2009), so the
+//           client has to throw the connection away. getOpenConnections()
+//           counts the connections not yet closed, for EssMqSoak to
+//           check nothing leaks them.
+//
+//           Queues are kept in put order; priority is ignored. Group
+//           fields, expiry and message properties are carried but not
+//           acted on.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Carried group id, sequence number, flags, feedback and
+//                expiry through to the got message.
+// 2026-10-19 amp Carried message properties (e.g. traceparent).
+// 2026-10-19 amp Added setFailureRate() and getOpenConnections() for
+//                EssMqSoak.
+// 2026-10-19 amp Reports the open unit of work to EssMqConnection.
+//
+// --------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqMemoryBroker implements EssMqTransport
+{
+	public static final String DEFAULT_NAME = "ESSMQ.MEMORY";
+
+	private static final Logger _log = Logger.getLogger(EssMqMemoryBroker.class);
+
+	private static EssMqMemoryBroker _default;
+
+	private final String _name;
+	private final byte[] _idPrefix = new byte[16];
+	private final AtomicLong _sequence = new AtomicLong();
+	private final ConcurrentHashMap<String, MemQueue> _queues =
+		new ConcurrentHashMap<String, MemQueue>();
+	private final AtomicInteger _connections = new AtomicInteger();
+	private volatile long    _latencyNanos;
+	private volatile double  _failureRate;
+	private volatile boolean _autoDefine = true;
+
+	/**
+	 * Msg
+	 * A message as the broker holds it.
+	 */
+	private static final class Msg
+	{
+		final MemQueue _queue;
+		final long     _seq;
+		final byte[]   _body;
+		final byte[]   _msgId;
+		final byte[]   _correlId;
+		final String   _format;
+		final int      _type;
+		final int      _persistence;
+		final int      _priority;
+		final int      _encoding;
+		final int      _ccsid;
+		final String   _replyTo;
+		final String   _replyToManager;
+		final byte[]   _groupId;
+		final int      _groupSeq;
+		final int      _flags;
+		final int      _feedback;
+		final int      _expiry;
+		final long     _putTime;
+		int            _backoutCount;
+		Map<String, Object> _properties;	// null when there are none
+
+		Msg(MemQueue queue, long seq, byte[] body, MQMessage m, long putTime)
+		{
+			_queue = queue;
+			_seq = seq;
+			_body = body;
+			_msgId = m.messageId.clone();
+			_correlId = m.correlationId.clone();
+			_format = m.format;
+			_type = m.messageType;
+			_persistence = m.persistence;
+			_priority = m.priority;
+			_encoding = m.encoding;
+			_ccsid = m.characterSet;
+			_replyTo = m.replyToQueueName;
+			_replyToManager = m.replyToQueueManagerName;
+			_groupId = m.groupId.clone();
+			_groupSeq = m.messageSequenceNumber;
+			_flags = m.messageFlags;
+			_feedback = m.feedback;
+			_expiry = m.expiry;
+			_putTime = putTime;
+		}
+	}
+
+	/**
+	 * MemQueue
+	 * One queue. Committed messages are held in put order, with indexes
+	 * on message id and correlation id; ids that are all zero (MQMI_NONE,
+	 * MQCI_NONE) are not indexed. An index entry is the sequence number
+	 * (a Long), or a TreeSet of them for an id that is repeated, so the
+	 * usual unique ids cost no more than a map entry.
+	 */
+	private static final class MemQueue
+	{
+		final String _name;
+		final TreeMap<Long, Msg> _messages = new TreeMap<Long, Msg>();
+		final Map<ByteBuffer, Object> _byMsgId = new HashMap<ByteBuffer, Object>();
+		final Map<ByteBuffer, Object> _byCorrelId = new HashMap<ByteBuffer, Object>();
+		int _depth;
+		boolean _deleted;
+
+		MemQueue(String name)
+		{
+			_name = name;
+		}
+
+		/**
+		 * put
+		 * Counts the message and, unless it is held by a unit of work,
+		 * makes it visible.
+		 */
+		synchronized void put(Msg m, boolean visible)
+		{
+			_depth++;
+			if (visible)
+				insert(m);
+		}
+
+		/**
+		 * restore
+		 * Makes a message visible: a committed put or a backed out get.
+		 */
+		synchronized void restore(Msg m)
+		{
+			if (!_deleted)
+				insert(m);
+		}
+
+		/**
+		 * drop
+		 * A backed out put or a committed get.
+		 */
+		synchronized void drop()
+		{
+			_depth--;
+		}
+
+		synchronized int depth()
+		{
+			return _depth;
+		}
+
+		/**
+		 * take
+		 * Removes the first message that matches, waiting up to
+		 * waitMillis (forever if negative). Null if none came.
+		 */
+		synchronized Msg take(byte[] msgId, byte[] correlId, long waitMillis)
+			throws MQException, InterruptedException
+		{
+			long deadline = waitMillis < 0 ? Long.MAX_VALUE :
+				System.currentTimeMillis() + waitMillis;
+			for (;;)
+			{
+				if (_deleted)
+					throw new MQException(MQException.MQCC_FAILED,
+										  MQException.MQRC_Q_DELETED, _name);
+
+				Msg m = find(msgId, correlId);
+				if (m != null)
+				{
+					remove(m);
+					return m;
+				}
+
+				long left = deadline - System.currentTimeMillis();
+				if (left <= 0)
+					return null;
+				wait(Math.min(left, Long.MAX_VALUE / 2));
+			}
+		}
+
+		/**
+		 * after
+		 * The first visible message after seq (from the top if seq is
+		 * null), for browsing.
+		 */
+		synchronized Msg after(Long seq)
+		{
+			Map.Entry<Long, Msg> e = seq == null ? _messages.firstEntry() :
+				_messages.higherEntry(seq);
+			return e == null ? null : e.getValue();
+		}
+
+		synchronized void delete()
+		{
+			_deleted = true;
+			_messages.clear();
+			_byMsgId.clear();
+			_byCorrelId.clear();
+			notifyAll();
+		}
+
+		private Msg find(byte[] msgId, byte[] correlId)
+		{
+			if (msgId == null && correlId == null)
+			{
+				Map.Entry<Long, Msg> e = _messages.firstEntry();
+				return e == null ? null : e.getValue();
+			}
+
+			Collection<Long> candidates;
+			if (correlId != null && !isNone(correlId))
+				candidates = indexed(_byCorrelId, correlId);
+			else if (msgId != null && !isNone(msgId))
+				candidates = indexed(_byMsgId, msgId);
+			else
+				candidates = _messages.keySet();
+
+			for (Long seq : candidates)
+			{
+				Msg m = _messages.get(seq);
+				if ((msgId == null || Arrays.equals(msgId, m._msgId)) &&
+					(correlId == null || Arrays.equals(correlId, m._correlId)))
+					return m;
+			}
+			return null;
+		}
+
+		private void insert(Msg m)
+		{
+			_messages.put(m._seq, m);
+			index(_byMsgId, m._msgId, m._seq);
+			index(_byCorrelId, m._correlId, m._seq);
+			notifyAll();
+		}
+
+		private void remove(Msg m)
+		{
+			_messages.remove(m._seq);
+			unindex(_byMsgId, m._msgId, m._seq);
+			unindex(_byCorrelId, m._correlId, m._seq);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Collection<Long> indexed(Map<ByteBuffer, Object> index,
+												byte[] id)
+		{
+			Object seqs = index.get(ByteBuffer.wrap(id));
+			if (seqs == null)
+				return Collections.<Long>emptySet();
+			if (seqs instanceof Long)
+				return Collections.singleton((Long) seqs);
+			return (TreeSet<Long>) seqs;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static void index(Map<ByteBuffer, Object> index, byte[] id,
+								  long seq)
+		{
+			if (isNone(id))
+				return;
+
+			ByteBuffer key = ByteBuffer.wrap(id);
+			Object seqs = index.putIfAbsent(key, seq);
+			if (seqs == null)
+				return;
+
+			if (seqs instanceof Long)
+			{
+				TreeSet<Long> set = new TreeSet<Long>();
+				set.add((Long) seqs);
+				index.put(key, set);
+				seqs = set;
+			}
+			((TreeSet<Long>) seqs).add(seq);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static void unindex(Map<ByteBuffer, Object> index, byte[] id,
+									long seq)
+		{
+			if (isNone(id))
+				return;
+
+			ByteBuffer key = ByteBuffer.wrap(id);
+			Object seqs = index.get(key);
+			if (seqs instanceof Long)
+			{
+				if ((Long) seqs == seq)
+					index.remove(key);
+			}
+			else if (seqs != null)
+			{
+				TreeSet<Long> set = (TreeSet<Long>) seqs;
+				if (set.remove(seq) && set.isEmpty())
+					index.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Connection
+	 * A connection to the broker, with its own unit of work, browse
+	 * cursors and dynamic queues.
+	 */
+	private final class Connection extends EssMqConnection
+	{
+		private final EssMqMemoryBudget _budget;
+		private final List<Msg> _puts = new ArrayList<Msg>();
+		private final List<Msg> _gets = new ArrayList<Msg>();
+		private final Map<String, Long> _cursors = new HashMap<String, Long>();
+		private final Set<String> _dynamic = new HashSet<String>();
+		private int     _asyncPuts;
+		private boolean _closed;
+		private boolean _lost;
+
+		Connection(EssMqMemoryBudget budget)
+		{
+			_budget = budget;
+		}
+
+		void put(String queue, MQMessage msg, MQPutMessageOptions pmo)
+			throws MQException
+		{
+			delay();
+			MemQueue q = lookup(queue);
+			inject(queue);
+
+			byte[] body;
+			try
+			{
+				body = new byte[msg.getMessageLength()];
+				msg.seek(0);
+				msg.readFully(body);
+			}
+			catch (IOException ie)
+			{
+				throw new MQException(MQException.MQCC_FAILED,
+									  MQException.MQRC_DATA_LENGTH_ERROR, queue);
+			}
+
+			long seq = _sequence.incrementAndGet();
+			if ((pmo.options & MQC.MQPMO_NEW_MSG_ID) != 0 || isNone(msg.messageId))
+				msg.messageId = newId(seq);
+			if ((pmo.options & MQC.MQPMO_NEW_CORREL_ID) != 0)
+				msg.correlationId = newId(seq);
+
+			long now = System.currentTimeMillis();
+			GregorianCalendar putTime = new GregorianCalendar();
+			putTime.setTimeInMillis(now);
+			msg.putDateTime = putTime;
+
+			Msg m = new Msg(q, seq, body, msg, now);
+			m._properties = properties(msg);
+			boolean syncpoint = (pmo.options & MQC.MQPMO_SYNCPOINT) != 0;
+			q.put(m, !syncpoint);
+			if (syncpoint)
+			{
+				_puts.add(m);
+				joined();
+			}
+			if ((pmo.options & MQC.MQPMO_ASYNC_RESPONSE) != 0)
+				_asyncPuts++;
+		}
+
+		MQMessage get(String queue, byte[] msgId, byte[] correlId,
+					  int waitInterval)
+			throws MQException, InterruptedException
+		{
+			delay();
+			MemQueue q = lookup(queue);
+			inject(queue);
+			Msg m = q.take(msgId, correlId, waitInterval);
+			if (m == null)
+				throw new MQException(MQException.MQCC_FAILED,
+									  MQException.MQRC_NO_MSG_AVAILABLE, queue);
+			_gets.add(m);
+			joined();
+
+			MQMessage inMsg = toMessage(m, m._body.length);
+			try
+			{
+				_budget.acquire(inMsg.getTotalMessageLength());
+			}
+			catch (InterruptedException ie)
+			{
+				backout();
+				throw ie;
+			}
+			return inMsg;
+		}
+
+		MQMessage browse(String queue, boolean first, int maxLength)
+			throws MQException
+		{
+			delay();
+			Msg m = lookup(queue).after(first ? null : _cursors.get(queue));
+			if (m == null)
+				throw new MQException(MQException.MQCC_FAILED,
+									  MQException.MQRC_NO_MSG_AVAILABLE, queue);
+			_cursors.put(queue, m._seq);
+			return toMessage(m, Math.min(maxLength, m._body.length));
+		}
+
+		int depth(String queue) throws MQException
+		{
+			delay();
+			return lookup(queue).depth();
+		}
+
+		AsyncStatus getAsyncStatus() throws MQException
+		{
+			delay();
+			checkOpen();
+			AsyncStatus status = new AsyncStatus(_asyncPuts, 0, 0, 0);
+			_asyncPuts = 0;
+			return status;
+		}
+
+		String openDynamic(String model, String prefix) throws MQException
+		{
+			delay();
+			checkOpen();
+			String name = prefix.endsWith("*") ?
+				prefix.substring(0, prefix.length() - 1) +
+				Long.toHexString(System.nanoTime()) +
+				Long.toHexString(_sequence.incrementAndGet()) : prefix;
+			MemQueue q = new MemQueue(name);
+			if (_queues.putIfAbsent(name, q) != null)
+				throw new MQException(MQException.MQCC_FAILED,
+									  MQException.MQRC_OBJECT_ALREADY_EXISTS, name);
+			_dynamic.add(name);
+			_log.debug("Created dynamic queue " + name + " from " + model);
+			return name;
+		}
+
+		void closeQueue(String queue)
+		{
+			_cursors.remove(queue);
+			if (_dynamic.remove(queue))
+				deleteQueue(queue);
+		}
+
+		void commit() throws MQException
+		{
+			delay();
+			checkOpen();
+			// with nothing to lose a failed commit would leave the caller
+			// unsure whether an earlier put happened; only fail real ones
+			if (!_puts.isEmpty() || !_gets.isEmpty())
+				inject(null);
+			for (Msg m : _puts)
+				m._queue.restore(m);
+			for (Msg m : _gets)
+				m._queue.drop();
+			_puts.clear();
+			_gets.clear();
+			settled();
+		}
+
+		void backout() throws MQException
+		{
+			delay();
+			checkOpen();
+			undo();
+		}
+
+		/**
+		 * undo
+		 * Backs out the unit of work.
+		 */
+		private void undo()
+		{
+			for (Msg m : _puts)
+				m._queue.drop();
+			for (Msg m : _gets)
+			{
+				m._backoutCount++;
+				m._queue.restore(m);
+			}
+			_puts.clear();
+			_gets.clear();
+			settled();
+		}
+
+		void close()
+		{
+			if (_closed)
+				return;
+
+			try
+			{
+				if (!_lost)
+					commit();
+			}
+			catch (MQException ex)
+			{
+				_log.debug("Error committing on close: " + ex.reasonCode);
+			}
+			for (String queue : _dynamic)
+				deleteQueue(queue);
+			_dynamic.clear();
+			_closed = true;
+			_connections.decrementAndGet();
+		}
+
+		/**
+		 * inject
+		 * Drops the connection, at the failure rate: backs out the unit
+		 * of work and fails this and every later call with
+		 * MQRC_CONNECTION_BROKEN.
+		 */
+		private void inject(String queue) throws MQException
+		{
+			double rate = _failureRate;
+			if (rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate)
+				return;
+
+			undo();
+			_lost = true;
+			throw new MQException(MQException.MQCC_FAILED,
+								  MQException.MQRC_CONNECTION_BROKEN,
+								  queue != null ? queue : _name);
+		}
+
+		private MemQueue lookup(String queue) throws MQException
+		{
+			checkOpen();
+			return EssMqMemoryBroker.this.lookup(queue);
+		}
+
+		private void checkOpen() throws MQException
+		{
+			if (_closed)
+				throw new MQException(MQException.MQCC_FAILED,
+									  MQException.MQRC_HCONN_ERROR, _name);
+			if (_lost)
+				throw new MQException(MQException.MQCC_FAILED,
+									  MQException.MQRC_CONNECTION_BROKEN, _name);
+		}
+	}
+
+	public EssMqMemoryBroker()
+	{
+		this(DEFAULT_NAME);
+	}
+
+	public EssMqMemoryBroker(String name)
+	{
+		_name = name;
+
+		// message ids start "AMQ " and the first 12 bytes of the name,
+		// as a queue manager's do
+		Arrays.fill(_idPrefix, (byte) ' ');
+		byte[] amq = "AMQ ".getBytes(StandardCharsets.US_ASCII);
+		byte[] n = name.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(amq, 0, _idPrefix, 0, amq.length);
+		System.arraycopy(n, 0, _idPrefix, amq.length,
+						 Math.min(n.length, _idPrefix.length - amq.length));
+	}
+
+	/**
+	 * getDefault
+	 * The broker the "memory" transport name refers to, shared by the
+	 * whole JVM.
+	 */
+	public static synchronized EssMqMemoryBroker getDefault()
+	{
+		if (_default == null)
+			_default = new EssMqMemoryBroker();
+		return _default;
+	}
+
+	public String getName() { return "memory"; }
+	public boolean isLocal() { return true; }
+	public String getBrokerName() { return _name; }
+
+	/**
+	 * connect
+	 * The connection details are ignored.
+	 */
+	public EssMqConnection connect(String host, long port, String channel,
+								   String manager, EssMqMemoryBudget budget)
+	{
+		delay();
+		_connections.incrementAndGet();
+		return new Connection(budget);
+	}
+
+	public void setLatencyMicros(long micros) { _latencyNanos = micros * 1000; }
+	public long getLatencyMicros() { return _latencyNanos / 1000; }
+
+	/**
+	 * setFailureRate
+	 * The fraction (0 to 1) of puts, gets and commits of a unit of
+	 * work that fail with MQRC_CONNECTION_BROKEN. 0, the default, for
+	 * none.
+	 */
+	public void setFailureRate(double rate) { _failureRate = rate; }
+	public double getFailureRate() { return _failureRate; }
+
+	/**
+	 * getOpenConnections
+	 * Connections made and not yet closed.
+	 */
+	public int getOpenConnections() { return _connections.get(); }
+
+	public void setAutoDefine(boolean autoDefine) { _autoDefine = autoDefine; }
+
+	public void defineQueue(String queue)
+	{
+		queue = queue.trim();
+		_queues.putIfAbsent(queue, new MemQueue(queue));
+	}
+
+	/**
+	 * deleteQueue
+	 * Deletes the queue and its messages. Gets waiting on it fail with
+	 * MQRC_Q_DELETED.
+	 */
+	public void deleteQueue(String queue)
+	{
+		MemQueue q = _queues.remove(queue.trim());
+		if (q != null)
+			q.delete();
+	}
+
+	/**
+	 * getDepth
+	 * The depth of the queue, 0 if it does not exist.
+	 */
+	public int getDepth(String queue)
+	{
+		MemQueue q = _queues.get(queue.trim());
+		return q == null ? 0 : q.depth();
+	}
+
+	private MemQueue lookup(String queue) throws MQException
+	{
+		queue = queue.trim();
+		MemQueue q = _queues.get(queue);
+		if (q != null)
+			return q;
+
+		if (!_autoDefine)
+			throw new MQException(MQException.MQCC_FAILED,
+								  MQException.MQRC_UNKNOWN_OBJECT_NAME, queue);
+
+		q = new MemQueue(queue);
+		MemQueue raced = _queues.putIfAbsent(queue, q);
+		return raced != null ? raced : q;
+	}
+
+	/**
+	 * delay
+	 * The configured latency. Parks rather than sleeps, since sleep
+	 * rounds up to whole milliseconds.
+	 */
+	private void delay()
+	{
+		long nanos = _latencyNanos;
+		if (nanos <= 0)
+			return;
+
+		long end = System.nanoTime() + nanos;
+		long left;
+		while ((left = end - System.nanoTime()) > 0)
+			LockSupport.parkNanos(left);
+	}
+
+	private byte[] newId(long seq)
+	{
+		byte[] id = new byte[MQC.MQ_MSG_ID_LENGTH];
+		System.arraycopy(_idPrefix, 0, id, 0, _idPrefix.length);
+		ByteBuffer.wrap(id, _idPrefix.length, 8).putLong(seq);
+		return id;
+	}
+
+	private static MQMessage toMessage(Msg m, int length) throws MQException
+	{
+		MQMessage msg = new MQMessage();
+		msg.messageId = m._msgId.clone();
+		msg.correlationId = m._correlId.clone();
+		msg.format = m._format;
+		msg.messageType = m._type;
+		msg.persistence = m._persistence;
+		msg.priority = m._priority;
+		msg.encoding = m._encoding;
+		msg.characterSet = m._ccsid;
+		msg.replyToQueueName = m._replyTo;
+		msg.replyToQueueManagerName = m._replyToManager;
+		msg.groupId = m._groupId.clone();
+		msg.messageSequenceNumber = m._groupSeq;
+		msg.messageFlags = m._flags;
+		msg.feedback = m._feedback;
+		msg.expiry = m._expiry;
+		msg.backoutCount = m._backoutCount;
+
+		GregorianCalendar putTime = new GregorianCalendar();
+		putTime.setTimeInMillis(m._putTime);
+		msg.putDateTime = putTime;
+
+		if (m._properties != null)
+		{
+			for (Map.Entry<String, Object> e : m._properties.entrySet())
+				msg.setObjectProperty(e.getKey(), e.getValue());
+		}
+
+		try
+		{
+			msg.write(m._body, 0, length);
+			msg.seek(0);
+		}
+		catch (IOException ie)
+		{
+			throw new MQException(MQException.MQCC_FAILED,
+								  MQException.MQRC_UNEXPECTED_ERROR, m._queue._name);
+		}
+		return msg;
+	}
+
+	/**
+	 * properties
+	 * The message's properties, or null if it has none.
+	 */
+	private static Map<String, Object> properties(MQMessage msg)
+		throws MQException
+	{
+		Map<String, Object> properties = null;
+		Enumeration<String> names = msg.getPropertyNames("%");
+		while (names.hasMoreElements())
+		{
+			if (properties == null)
+				properties = new LinkedHashMap<String, Object>();
+			String name = names.nextElement();
+			properties.put(name, msg.getObjectProperty(name));
+		}
+		return properties;
+	}
+
+	private static boolean isNone(byte[] id)
+	{
+		for (int i = 0; i < id.length; i++)
+		{
+			if (id[i] != 0)
+				return false;
+		}
+		return true;
+	}
+}
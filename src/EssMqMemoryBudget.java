@@ -0,0 +1,254 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqMemoryBudget
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Process-wide limit on message bytes held in memory.
+//
+//           Every put and get charges the budget with the message length
+//           before the message body is allocated and gives it back when
+//           the body has been sent or handed off. A worker that would
+//           take the budget over its capacity waits for other workers to
+//           release instead of allocating, so running many workers
+//           slows them down rather than exhausting the heap.
+//
+//           A single message larger than the whole budget is allowed
+//           through on its own, once everything else has been released.
+//
+//           Waiters are served in the order they arrived, and no acquire
+//           goes ahead of one that is waiting, so a large message is not
+//           starved by a stream of small ones that each still fit.
+//
+//           Messages above the spill threshold are not returned from a
+//           get as byte arrays; EssMqClient streams them to a temporary
+//           file and the EssMqResult refers to the file.
+//
+//           The defaults can be set with system properties:
+//
+//             essmq.memory.budget   capacity in bytes (default 1/4 of
+//                                   the maximum heap)
+//             essmq.spill.threshold spill size in bytes (default 4MB)
+//             essmq.spill.dir       directory for spill files (default
+//                                   java.io.tmpdir)
+//
+//           The global() budget is published over JMX as
+//           EssMq:type=MemoryBudget (EssMqMemoryBudgetMXBean): use,
+//           peak, utilization and how often and how long workers have
+//           waited for it. EssMqPoll logs it with the timings.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Waiters are served first come, first served. Published
+//                over JMX and logged.
+//
+// --------------------------------------------------------------------------
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import javax.management.*;
+import org.apache.log4j.Logger;
+
+public class EssMqMemoryBudget implements EssMqMemoryBudgetMXBean
+{
+	public static final String BUDGET_PROPERTY    = "essmq.memory.budget";
+	public static final String SPILL_PROPERTY     = "essmq.spill.threshold";
+	public static final String SPILL_DIR_PROPERTY = "essmq.spill.dir";
+
+	public static final long DEFAULT_SPILL_THRESHOLD = 4L * 1024 * 1024;
+
+	private static final Logger _log = Logger.getLogger(EssMqMemoryBudget.class);
+
+	private static final EssMqMemoryBudget _global = new EssMqMemoryBudget(
+		Long.getLong(BUDGET_PROPERTY, Runtime.getRuntime().maxMemory() / 4),
+		Long.getLong(SPILL_PROPERTY, DEFAULT_SPILL_THRESHOLD),
+		new File(System.getProperty(SPILL_DIR_PROPERTY,
+									System.getProperty("java.io.tmpdir"))));
+
+	private final long _capacity;
+	private final long _spillThreshold;
+	private final File _spillDir;
+
+	// guarded by this
+	private final ArrayDeque<Object> _waiters = new ArrayDeque<Object>();
+	private long _used;
+	private long _peak;
+	private long _waits;
+	private long _waitNanos;
+
+	public EssMqMemoryBudget(long capacity, long spillThreshold, File spillDir)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive");
+
+		_capacity = capacity;
+		_spillThreshold = spillThreshold;
+		_spillDir = spillDir;
+	}
+
+	/**
+	 * global
+	 * The budget shared by every client in the JVM.
+	 */
+	public static EssMqMemoryBudget global() { return _global; }
+
+	public long getCapacity() { return _capacity; }
+	public long getSpillThreshold() { return _spillThreshold; }
+	public File getSpillDir() { return _spillDir; }
+
+	/**
+	 * shouldSpill
+	 * True when a message of this length should go to a spill file.
+	 */
+	public boolean shouldSpill(long bytes)
+	{
+		return _spillThreshold > 0 && bytes > _spillThreshold;
+	}
+
+	/**
+	 * acquire
+	 * Charges bytes to the budget, waiting while that would exceed the
+	 * capacity or while others are already waiting. The caller passes
+	 * the same number to release().
+	 */
+	public void acquire(long bytes) throws InterruptedException
+	{
+		if (bytes <= 0)
+			return;
+
+		// an oversized message waits until it has the budget to itself
+		long charge = Math.min(bytes, _capacity);
+
+		synchronized (this)
+		{
+			if (!_waiters.isEmpty() || _used + charge > _capacity)
+			{
+				Object ticket = new Object();
+				_waiters.addLast(ticket);
+				long t0 = System.nanoTime();
+				_waits++;
+				_log.debug("Waiting for " + charge + " bytes of memory budget (" +
+						   _used + " of " + _capacity + " in use, " +
+						   (_waiters.size() - 1) + " ahead)");
+				boolean served = false;
+				try
+				{
+					while (_waiters.peekFirst() != ticket ||
+						   _used + charge > _capacity)
+						wait();
+					served = true;
+				}
+				finally
+				{
+					_waiters.remove(ticket);
+					_waitNanos += System.nanoTime() - t0;
+
+					// interrupted: whoever was behind may be first now
+					if (!served)
+						notifyAll();
+				}
+			}
+
+			_used += charge;
+			if (_used > _peak)
+				_peak = _used;
+
+			// the next in line may fit as well
+			if (!_waiters.isEmpty())
+				notifyAll();
+		}
+	}
+
+	/**
+	 * release
+	 * Returns bytes previously charged by acquire().
+	 */
+	public synchronized void release(long bytes)
+	{
+		if (bytes <= 0)
+			return;
+
+		_used -= Math.min(bytes, _capacity);
+		notifyAll();
+	}
+
+	public synchronized long getUsed() { return _used; }
+	public synchronized long getPeak() { return _peak; }
+
+	/**
+	 * getWaiting
+	 * Workers currently blocked on the budget.
+	 */
+	public synchronized int getWaiting() { return _waiters.size(); }
+
+	/**
+	 * getWaits
+	 * How many acquires have had to wait since start up.
+	 */
+	public synchronized long getWaits() { return _waits; }
+
+	public synchronized long getWaitNanos() { return _waitNanos; }
+	public synchronized double getWaitMillis() { return _waitNanos / 1e6; }
+
+	/**
+	 * getUtilization
+	 * Fraction of the capacity in use, 0.0 to 1.0.
+	 */
+	public synchronized double getUtilization()
+	{
+		return (double) _used / _capacity;
+	}
+
+	public synchronized String toString()
+	{
+		return "EssMqMemoryBudget[used=" + _used + ", capacity=" + _capacity +
+			", peak=" + _peak + ", waiting=" + _waiters.size() + ", waits=" +
+			_waits + "]";
+	}
+
+	/**
+	 * log
+	 * Logs the use and waits at INFO, if that is enabled.
+	 */
+	public void log(Logger log)
+	{
+		if (!log.isInfoEnabled())
+			return;
+
+		synchronized (this)
+		{
+			log.info(String.format(
+				"Memory budget: %d of %d bytes in use (%.1f%%), peak %d, " +
+				"%d waits for %.1fms, %d waiting",
+				_used, _capacity, 100.0 * _used / _capacity, _peak, _waits,
+				_waitNanos / 1e6, _waiters.size()));
+		}
+	}
+
+	/**
+	 * register
+	 * Publishes the budget on the platform MBean server as
+	 * EssMq:type=MemoryBudget, unless something already is. A failure
+	 * is logged and otherwise ignored.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("EssMq:type=MemoryBudget");
+			synchronized (EssMqMemoryBudget.class)
+			{
+				if (!server.isRegistered(name))
+					server.registerMBean(this, name);
+			}
+		}
+		catch (JMException je)
+		{
+			_log.warn("Unable to register the memory budget MBean: " +
+					  je.getMessage());
+		}
+	}
+}
@@ -0,0 +1,56 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqMemoryBudgetMXBean
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssMqMemoryBudget.global() over JMX, registered as
+//           EssMq:type=MemoryBudget.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+public interface EssMqMemoryBudgetMXBean
+{
+	long getCapacity();
+	long getSpillThreshold();
+
+	/**
+	 * getUsed
+	 * Message bytes charged to the budget now.
+	 */
+	long getUsed();
+
+	/**
+	 * getPeak
+	 * The most ever charged at once.
+	 */
+	long getPeak();
+
+	/**
+	 * getUtilization
+	 * Fraction of the capacity in use, 0.0 to 1.0.
+	 */
+	double getUtilization();
+
+	/**
+	 * getWaiting
+	 * Workers blocked on the budget now.
+	 */
+	int getWaiting();
+
+	/**
+	 * getWaits
+	 * How many acquires have had to wait since start up.
+	 */
+	long getWaits();
+
+	/**
+	 * getWaitMillis
+	 * The total time those acquires waited.
+	 */
+	double getWaitMillis();
+}
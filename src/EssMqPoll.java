@@ -11,15 +11,37 @@
 //           The "reason codes" reference for MQSeries can be found at:
 //           http://www-306.ibm.com/software/integration/mqfamily/
 //             library/manuals99/csqzak/csqzak1w.htm#HDRREASON
+//
+//           While polling, the counters, backoff and last message time
+//           are published over JMX as EssMq:type=EssMqPoll,queue="<queue>",
+//           with pause, resume and concurrency operations; see
+//           EssMqPollControl for connecting remotely.
 // 
 // M O D I F I C A T I O N   H I S T O R Y
 // ---------------------------------------
 // Date       By  Description
 // ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Rebuilt on EssMqClient. The poll loop keeps one
+//                connection open and only sleeps when the queue is empty.
+// 2026-10-19 amp Added keyed parallel mode (EssMqKeyedPoller).
+// 2026-10-19 amp Logs the put and get phase timings (EssMqTimings) on
+//                SIGUSR1, on exit and after a manifest run.
+// 2026-10-19 amp Polling is watched and controlled over JMX
+//                (EssMqPollControl); errors back off exponentially.
+// 2026-10-19 amp Logs how long messages were on the queue
+//                (EssMqResidency) with the timings.
+// 2026-10-19 amp Logs the memory budget with the timings.
+// 2026-10-19 amp processManifest closes the manifest, the .out file and
+//                the message file on every path, and writes an error line
+//                instead of throwing when a get fails.
+// 2026-10-19 amp Takes --transport= like EssMq.
+// 2026-10-19 amp The timings are logged on demand by the logTimings
+//                operation of the EssMqPoll bean instead of on SIGUSR1.
 // 
 // --------------------------------------------------------------------------
 
 import java.io.*;
+import java.nio.file.Files;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -51,6 +73,11 @@ public class EssMqPoll
 	// log4j config file location
 	public static final String _log_config = "EssMqPoll.xml";
 
+	// sleeps between gets: while the queue is empty, and after errors
+	public static final long IDLE_SLEEP = 500;
+	public static final long MIN_ERROR_BACKOFF = 500;
+	public static final long MAX_ERROR_BACKOFF = 30000;
+
 	// private member variables...
 
 	// private OSEnvironment os;
@@ -61,7 +88,6 @@ public class EssMqPoll
 	private String  _qManager;
 	private String  _queue;
 	private String  _msgFile;
-	private File    _file;
 	private String  _outFile;
 	private boolean _isPost;  // is this a post operation?
 	private String  _msgId;
@@ -91,7 +117,7 @@ public class EssMqPoll
 	public void setQueue(String q) { _queue = q;}
 	public String getQueue() { return _queue;}
 	public void setMessageFile(String fil) { _msgFile = fil;}
-	public String getMessageFile() { return _msgFile + _sequence++ + ".xml"; }
+	public String getMessageFile() { return _msgFile + _sequence + ".xml"; }
 	public String getMessageId() { return _msgId;}
 	public void setMessageId(String msg) { _msgId = msg;}
 
@@ -141,6 +167,23 @@ public class EssMqPoll
 	}
 
 
+	/**
+	 * newClient
+	 */
+	EssMqClient newClient()
+	{
+		return new EssMqClient(getHost(), getPort(), getChannel(),
+							   getQueueManager(), 1);
+	}
+
+	private void setResult(EssMqResult result)
+	{
+		setMessageId(result.getMessageId());
+		setErrorCode(result.getCompletionCode());
+		setReasonCode(result.getReasonCode());
+		setExceptionSource(result.getExceptionSource());
+	}
+
 	// putMessage()
 	// This method writes the data in the message file
 	// to the specified queue.
@@ -148,235 +191,159 @@ public class EssMqPoll
 	public boolean putMessage()
 	{
 		_log.debug("putMessage()");
+		EssMqClient client = newClient();
 		try
 		{
-			mqSetup();
-
-			_log.debug("Returned from mqSetup()");
-			_log.debug("Creating Queue Manager");
-
-			MQQueueManager qMgr = new MQQueueManager(getQueueManager());
-
-			_log.debug("Created the Queue Manager");
-
-			// Setup the open options to open the queue for output and
-			// additionally we have set the option to fail if the queue 
-			// manager is quiescing.
-			int openOptions = MQC.MQOO_OUTPUT | MQC.MQOO_FAIL_IF_QUIESCING;
+			EssMqResult result = client.put(getQueue(),
+											new File(_msgFile).toPath(), "");
+			setResult(result);
 
-			MQQueue queue = qMgr.accessQueue(getQueue(),
-											 openOptions,
-											 null,
-											 null,
-											 null);
-
-			_log.debug("Called accessQueue() on the queue manager");
-
-			MQPutMessageOptions pmo = new MQPutMessageOptions();
-			MQMessage outMsg = new MQMessage();
-			outMsg.format = MQC.MQFMT_STRING;
-			outMsg.messageId = MQC.MQMI_NONE;
-
-			_log.debug("Opening input file [" + 
-					   _msgFile + "] for reading.");
-
-			_file = new File(_msgFile);
-			FileInputStream fis = new FileInputStream(_file);
-			byte[] buffer = new byte[8192];
-			int bytes_read = 0;
-
-			// write the line we just read. limit the output
-			// to the number of bytes read. If you don't, 
-			// the full length of the buffer will be written
-			// resulting in padding of zeros (nulls) on the queue
-			// which is not pretty.
-
-			_log.debug("Reading file and writing to message object.");
-
-			while ((bytes_read = fis.read(buffer)) != -1)
-				outMsg.write(buffer, 0, bytes_read);
-
-			// now we put the message on the queue
-			_log.debug("Putting the message on the queue");
-			queue.put(outMsg, pmo);
-
-			// get the message id
-			byte[] msgid = outMsg.messageId;
-			String smsg = convertHexId(msgid);
-			_log.debug("The message id was " + smsg);
-			setMessageId(smsg);
-
-			// commit the transaction
-			_log.debug("Committing the transaction");
-			qMgr.commit();
+			if (!result.isSuccess())
+			{
+				dump();
+				return false;
+			}
 
 			_log.info("Message successfully written to queue:" +
 					  getQueue());
-
-			// Close the Queue and Queue manager objects.
-			_log.debug("Closing queue");
-			queue.close();
-			_log.debug("Disconnecting from queue manager");
-			qMgr.disconnect();
+			return true;
 		}
-		catch (FileNotFoundException fe)
+		finally
 		{
-			_log.error("Unable to read specified file: " + _msgFile +
-					   ". " + fe.getMessage());
-
-			setErrorCode(ESSMQ_FILENOTFOUND);
-			setReasonCode(0);
-			dump();
-			return false;
-
+			client.close();
 		}
-		catch(IOException ie)
+	}
+
+	/**
+	 * getMessage
+	 */
+	public String getMessage()
+	{
+		EssMqClient client = newClient();
+		try
 		{
-			_log.error("Error reading from file: " + _msgFile +
-					   "." + ie.getMessage());
+			EssMqResult result = receive(client);
+			if (!result.isSuccess())
+				return null;
 
-			setErrorCode(ESSMQ_FILEIOERROR);
-			setReasonCode(0);
-			dump();
-			return false;
+			// the legacy contract returns the body as well as writing it
+			return new String(Files.readAllBytes(result.getFile()));
 		}
-		catch (MQException ex)
+		catch (IOException ie)
 		{
-			_log.error("An MQ error occurred: Completion Code is: " + 
-					   ex.completionCode + "\n\tThe reason code is: " + 
-					   ex.reasonCode + "\n\tException source: " +
-					   ex.exceptionSource);
-
-			setErrorCode(ex.completionCode);
-			setReasonCode(ex.reasonCode);
-			setExceptionSource(ex.exceptionSource.toString());
-
-			dump();
-
-			return false;
+			_log.error("Unable to read back " + getMessageFile() + ": " +
+					   ie.getMessage());
+			return null;
 		}
-		catch (Exception e)
+		finally
 		{
-			_log.error("EssMqPoll.putMessage(). Error: " +
-					   e.getMessage());
-
-			return false;
+			client.close();
 		}
-		return true;
 	}
 
 	/**
-	 * mqSetup
-	 * 
+	 * receive
+	 * Gets one message into the next sequenced output file. The
+	 * sequence only moves on when a message was actually written.
 	 */
-	private void mqSetup()
+	private EssMqResult receive(EssMqClient client)
 	{
-		_log.debug("mqSetup() : setting host (" +
-				   getHost() + "), channel (" + getChannel() +
-				   "), and properties");
-
-		MQEnvironment.hostname = getHost();
-		MQEnvironment.channel  = getChannel();
-		MQEnvironment.properties.put(MQC.TRANSPORT_PROPERTY, 
-									 MQC.TRANSPORT_MQSERIES);
-	}
+		String msgFile = getMessageFile();
+		EssMqResult result = client.get(getQueue(), new File(msgFile).toPath(),
+										EssMqClient.DEFAULT_WAIT_INTERVAL);
+		setResult(result);
 
+		if (result.isSuccess())
+		{
+			_sequence++;
+			_log.debug("Finished retrieving message from queue into " + msgFile);
+		}
+		return result;
+	}
 
 	/**
-	 * getMessage
+	 * poll
+	 * Consumes the queue one message at a time until the thread is
+	 * interrupted: drains it, sleeps while it is empty, and backs off
+	 * for longer and longer (to MAX_ERROR_BACKOFF) while gets fail.
 	 */
-	public String getMessage()
+	public void poll(EssMqPollControl control)
 	{
-		String msgString = null;
-
+		EssMqClient client = newClient();
+		long backoff = MIN_ERROR_BACKOFF;
 		try
 		{
-			mqSetup();
-
-			// Connection to the Queue Manager
-			MQQueueManager qMgr = new MQQueueManager(getQueueManager());
-
-			_log.debug("Created the Queue Manager");
-
-			int openOptions = MQC.MQOO_INPUT_SHARED | MQC.MQOO_FAIL_IF_QUIESCING;
-
-			// Open the queue
-			MQQueue queue = qMgr.accessQueue(getQueue(),
-					 openOptions,
-					 null, 
-					 null,
-					 null);
-
-			_log.debug("Called accessQueue() on the response queue");
-
-			// Set the put message options
-			MQGetMessageOptions gmo = new MQGetMessageOptions();
-			gmo.options = gmo.options + MQC.MQGMO_SYNCPOINT;
-			gmo.options = gmo.options + MQC.MQGMO_FAIL_IF_QUIESCING;
-			gmo.waitInterval = 3000;
-
-			MQMessage inMsg = new MQMessage();
-
-			// get the message from the queue on to the message buffer
-			queue.get(inMsg, gmo);
-
-			// read the User data from the message
-			msgString = inMsg.readString(inMsg.getMessageLength());
-
-			writeToFile(msgString);			 // write to specified file
-			qMgr.commit();					 // commit the transaction
+			for (;;)
+			{
+				_log.debug("Calling getMessage()");
+				control.begin();
+				EssMqResult result = receive(client);
+				control.end(result);
 
-			// close the queue and queue manager objects
-			_log.debug("Closing queue...");
-			queue.close();
-			_log.debug("Disconnecting...");
-			qMgr.disconnect();
+				if (result.isSuccess())
+				{
+					backoff = MIN_ERROR_BACKOFF;
+					continue;	// drain the queue before sleeping
+				}
 
-			_log.debug("Finished retrieving message from queue");
-		}
-		catch (MQException ex)
-		{
-			_log.error("An MQ Error Occurred: Completion code is : \t" +
-							   ex.completionCode + "\n\n The Reason Code is: \t" + 
-							   ex.reasonCode);
-			ex.printStackTrace();
-			setErrorCode(ex.completionCode);
-			setReasonCode(ex.reasonCode);
-			setExceptionSource(ex.exceptionSource.toString());
+				if (result.isNoMessage())
+				{
+					backoff = MIN_ERROR_BACKOFF;
+					_log.debug("Sleeping .5 seconds");
+					control.backoff(IDLE_SLEEP);
+				}
+				else
+				{
+					_log.debug("Backing off " + backoff + "ms");
+					control.backoff(backoff);
+					backoff = Math.min(backoff * 2, MAX_ERROR_BACKOFF);
+				}
+			}
 		}
-		catch(IOException ie)
+		catch (InterruptedException e)
 		{
-			_log.error("File IO error writing to file: " + getMessageFile());
-			setErrorCode(ESSMQ_FILEIOERROR);
-			setReasonCode(0);
+			_log.debug("Interruped...");
 		}
-		catch (Exception e)
+		finally
 		{
-			e.printStackTrace();
-			setErrorCode(ESSMQ_ERR_UNKNOWN);
-			setReasonCode(0);
-			setExceptionSource(e.getMessage());
+			client.close();
 		}
-		return msgString;
 	}
 
-	private void writeToFile(String msg)
+	/**
+	 * pollKeyed
+	 * Consumes the queue with threads parallel consumers, keeping
+	 * messages with the same key in order. See EssMqKeyedPoller.
+	 */
+	public void pollKeyed(String keySpec, int threads, int backlog)
 	{
-	    String msgFile = getMessageFile();
-	    try
+		_log.debug("Polling " + getQueue() + " by " + keySpec + " with " +
+				   threads + " threads");
+
+		// one connection per consumer plus one for the browser
+		EssMqClient client = new EssMqClient(getHost(), getPort(), getChannel(),
+											 getQueueManager(), threads + 1);
+		try
 		{
-		_log.debug("Writing output to: " + msgFile);
-		BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(msgFile));
-
-		os.write(msg.getBytes());
-		os.close();
-	    }
-	    catch (IOException e)
-	    {
-		_log.error("Error writing to file: " + msgFile);
-		setErrorCode(ESSMQ_FILEIOERROR);
-		setReasonCode(0);
-	    }
+			EssMqKeyedPoller poller = new EssMqKeyedPoller(client, getQueue(),
+														   keySpec, threads,
+														   backlog, _msgFile,
+														   _sequence);
+			poller.getControl().register();
+			try
+			{
+				poller.run();
+			}
+			finally
+			{
+				poller.getControl().unregister();
+			}
+			_sequence = poller.getSequence();
+		}
+		finally
+		{
+			client.close();
+		}
 	}
 
 	/**
@@ -404,14 +371,55 @@ public class EssMqPoll
 	 */
 	private static void showArgs()
 	{
-		System.out.println("Syntax: EssMqPoll [-f:manifest | operation queue msgfile] " +
-						   "[host] [port] [channel] [manager]\n");
-
+		System.out.println("Syntax: EssMqPoll [--transport=mq|memory[:micros]] " +
+						   "[-f:manifest | operation queue msgfile] " +
+						   "[host] [port] [channel] [manager] " +
+						   "[key] [threads] [backlog]\n");
+
+		System.out.println("--transport  mq (the default) or memory, an in-process");
+		System.out.println("           broker for testing that lasts as long as the run;");
+		System.out.println("           host, port, channel and manager are then not needed");
 		System.out.println("queue      the queue name");
 		System.out.println("host       host name of the MQ server");
 		System.out.println("port       port number to connect to");
 		System.out.println("channel    MQ Channel");
 		System.out.println("manager    Queue manager name");
+		System.out.println("key        consume in parallel, in order per key. One of");
+		System.out.println("           group, correl or payload:<regex>");
+		System.out.println("threads    number of parallel consumers (default 4)");
+		System.out.println("backlog    messages queued per key (default " +
+						   EssMqKeyedPoller.DEFAULT_BACKLOG + ")");
+		System.out.println("\nCounters and pause/resume/concurrency controls are " +
+						   "published over JMX (jconsole).");
+	}
+
+	/**
+	 * logTimings
+	 * The put and get phases, how long the messages got in the last
+	 * minute had been on their queues, and the memory budget.
+	 */
+	static void logTimings()
+	{
+		EssMqTimings.global().log(_log);
+		EssMqResidency.global().log(_log);
+		EssMqMemoryBudget.global().log(_log);
+	}
+
+	/**
+	 * logTimingsOnExit
+	 * Logs the timings once more on the way out. While polling they are
+	 * logged on demand by the logTimings operation of the EssMqPoll
+	 * bean (EssMqPollControl).
+	 */
+	private static void logTimingsOnExit()
+	{
+		Runtime.getRuntime().addShutdownHook(new Thread("EssMqPoll-timings")
+		{
+			public void run()
+			{
+				logTimings();
+			}
+		});
 	}
 
 	private void initInstance()
@@ -429,10 +437,12 @@ public class EssMqPoll
 	{
 		File f_in = new File(infile);
 		File f_out = new File(infile + ".out");
+		BufferedReader in = null;
+		BufferedWriter out = null;
 		try
 		{
-			BufferedReader in = new BufferedReader(new FileReader(f_in));
-			BufferedWriter out = new BufferedWriter(new FileWriter(f_out));
+			in = new BufferedReader(new FileReader(f_in));
+			out = new BufferedWriter(new FileWriter(f_out));
 
 			String line = null;
 			int linenum = 0;
@@ -463,14 +473,24 @@ public class EssMqPoll
 
 				if (args[0].equalsIgnoreCase("get"))
 				{
+					BufferedWriter fout = null;
 					try
 					{
 						String tmp = getMessage();
+						if (tmp == null)
+						{
+							// write error line to output file...
+							out.write(args[2] + "," +
+									  getErrorCode() + "," +
+									  getReasonCode() + "\n");
+							continue;
+						}
+
 						// write message to output file
-						BufferedWriter fout = new BufferedWriter(new FileWriter(args[2]));
+						fout = new BufferedWriter(new FileWriter(args[2]));
 						fout.write(tmp);
-						fout.flush();
 						fout.close();
+						fout = null;
 
 						// write "success" line to output file...
 						out.write(args[2] + ",0," + 
@@ -483,6 +503,10 @@ public class EssMqPoll
 								  ESSMQ_MANIFESTFILEIOERROR + "," + 
 								  ie.getMessage() + "\n");
 					}
+					finally
+					{
+						EssMqClient.closeQuietly(fout);
+					}
 				}
 				else if (args[0].equalsIgnoreCase("put"))
 				{
@@ -500,8 +524,8 @@ public class EssMqPoll
 					}
 				}
 			}
-			out.flush();
 			out.close();
+			out = null;
 		}
 		catch (FileNotFoundException fnf)
 		{
@@ -517,6 +541,12 @@ public class EssMqPoll
 
 			return ESSMQ_MANIFESTFILEIOERROR;
 		}
+		finally
+		{
+			EssMqClient.closeQuietly(in);
+			EssMqClient.closeQuietly(out);
+			logTimings();
+		}
 		return 0;
 	}
 
@@ -531,6 +561,9 @@ public class EssMqPoll
 	{
 		_log.debug("Checking environment settings.");
 
+		// nothing to connect to
+		if (EssMqClient.getDefaultTransport().isLocal())
+			return true;
 
 		if(getHost().length() == 0)
 		{
@@ -569,6 +602,7 @@ public class EssMqPoll
 		System.out.println("EssMqPoll\n");
 
 		EssMqPoll mq = new EssMqPoll();
+		args = EssMqTransport.takeOption(args);
 
 		if (args.length == 0)
 		{
@@ -577,7 +611,7 @@ public class EssMqPoll
 		}
 
 			// this is not a call with manifest file
-			if (args.length < 3)
+			if (args.length < 3 && !EssMqClient.getDefaultTransport().isLocal())
 			{
 				// got to have three args minimum
 				showArgs();
@@ -602,25 +636,26 @@ public class EssMqPoll
 			}
 
 			mq.dump();
+			logTimingsOnExit();
 
-			for(;;)
+			if (args.length > 5)
 			{
-			    _log.debug("Calling getMessage()");
-			    mq.getMessage();
-
-			    _log.debug("Sleeping .5 seconds");
-
-			    try
-			    {
-				Thread.sleep(500);//sleep .5 seconds
-			    }
-			    catch(InterruptedException e)
-			    {
-				_log.debug("Interruped...");
-				break;
-			    }
+				int threads = 4;
+				int backlog = EssMqKeyedPoller.DEFAULT_BACKLOG;
+				if (args.length > 6)
+					threads = Integer.parseInt(args[6]);
+				if (args.length > 7)
+					backlog = Integer.parseInt(args[7]);
+
+				mq.pollKeyed(args[5], threads, backlog);
+				System.exit(0);
 			}
 
+			EssMqPollControl control = new EssMqPollControl(mq.getQueue(), "single", 1);
+			control.register();
+			mq.poll(control);
+			control.unregister();
+
 		System.exit(0);
 	}
 }
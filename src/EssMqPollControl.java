@@ -0,0 +1,276 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqPollControl
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Live counters and controls for a long-running EssMqPoll,
+//           published as a JMX MBean (EssMqPollMXBean) so jconsole,
+//           VisualVM or any other JMX client can watch and tune it
+//           without debug logging:
+//
+//             EssMq:type=EssMqPoll,queue="<queue>"   this class
+//             EssMq:type=Timings                     put and get phase
+//                                                    latencies
+//                                                    (EssMqTimings)
+//             EssMq:type=Residency                   time on the queue
+//                                                    (EssMqResidency)
+//             EssMq:type=MemoryBudget                message bytes held
+//                                                    (EssMqMemoryBudget)
+//
+//           The pollers take a permit (begin()) for every get and give
+//           it back (end()) with the outcome. The permit is what pause()
+//           and setConcurrency() act on: while paused, or while as many
+//           gets as the concurrency allows are running, begin() waits.
+//
+//           For a remote connection start the JVM with the usual
+//           options, e.g.
+//
+//             -Dcom.sun.management.jmxremote.port=9010
+//             -Dcom.sun.management.jmxremote.authenticate=true
+//             -Dcom.sun.management.jmxremote.ssl=true
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Added the queue residency.
+// 2026-10-19 amp Also registers the memory budget.
+// 2026-10-19 amp Added the logTimings operation.
+// 2026-10-19 amp resume() and setConcurrency() cut a backoff short.
+//
+// --------------------------------------------------------------------------
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.*;
+import org.apache.log4j.Logger;
+
+public class EssMqPollControl implements EssMqPollMXBean
+{
+	private static final Logger _log = Logger.getLogger(EssMqPollControl.class);
+
+	private final String _queue;
+	private final String _mode;
+	private final int    _maxConcurrency;
+
+	private final AtomicLong _messages = new AtomicLong();
+	private final AtomicLong _bytes = new AtomicLong();
+	private final AtomicLong _empty = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private final ConcurrentHashMap<String, AtomicLong> _reasons =
+		new ConcurrentHashMap<String, AtomicLong>();
+	private volatile long _backoff;
+	private volatile long _lastMessage;
+
+	// guarded by this
+	private boolean _paused;
+	private int     _concurrency;
+	private int     _active;
+	private int     _changes;
+
+	private ObjectName _name;
+
+	public EssMqPollControl(String queue, String mode, int maxConcurrency)
+	{
+		_queue = queue;
+		_mode = mode;
+		_maxConcurrency = maxConcurrency;
+		_concurrency = maxConcurrency;
+	}
+
+	/**
+	 * register
+	 * Publishes this control and EssMqTimings.global() on the platform
+	 * MBean server. A failure is logged; the poller runs regardless.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			_name = new ObjectName("EssMq:type=EssMqPoll,queue=" +
+								   ObjectName.quote(_queue));
+			server.registerMBean(this, _name);
+			EssMqTimings.global().register();
+			EssMqResidency.global().register();
+			EssMqMemoryBudget.global().register();
+		}
+		catch (JMException je)
+		{
+			_log.warn("Unable to register the EssMqPoll MBean: " + je.getMessage());
+			_name = null;
+		}
+	}
+
+	public void unregister()
+	{
+		if (_name == null)
+			return;
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+		}
+		catch (JMException je)
+		{
+			_log.debug("Unable to unregister " + _name + ": " + je.getMessage());
+		}
+		_name = null;
+	}
+
+	/**
+	 * begin
+	 * Waits until a get may start: not paused, and fewer than the
+	 * concurrency running.
+	 */
+	public synchronized void begin() throws InterruptedException
+	{
+		while (_paused || _active >= _concurrency)
+			wait();
+		_active++;
+	}
+
+	/**
+	 * end
+	 * Gives back the permit from begin() and counts the outcome.
+	 */
+	public void end(EssMqResult result)
+	{
+		synchronized (this)
+		{
+			_active--;
+			notifyAll();
+		}
+
+		if (result.isSuccess())
+		{
+			_messages.incrementAndGet();
+			_lastMessage = System.currentTimeMillis();
+			if (result.getFile() != null)
+				_bytes.addAndGet(result.getFile().toFile().length());
+			else
+				_bytes.addAndGet(result.getDataLength());
+		}
+		else if (result.isNoMessage())
+		{
+			_empty.incrementAndGet();
+		}
+		else
+		{
+			failed(result.getReasonCode() != 0 ? result.getReasonCode() :
+				   result.getCompletionCode());
+		}
+	}
+
+	/**
+	 * failed
+	 * Counts an error outside a get, e.g. a failed browse.
+	 */
+	public void failed(int reason)
+	{
+		_errors.incrementAndGet();
+		String key = String.valueOf(reason);
+		AtomicLong n = _reasons.get(key);
+		if (n == null)
+		{
+			_reasons.putIfAbsent(key, new AtomicLong());
+			n = _reasons.get(key);
+		}
+		n.incrementAndGet();
+	}
+
+	/**
+	 * backoff
+	 * Sleeps for millis, showing it as the current backoff, unless
+	 * resumed or given more concurrency first.
+	 */
+	public synchronized void backoff(long millis) throws InterruptedException
+	{
+		_backoff = millis;
+		try
+		{
+			// end() notifies too, so wait for a change of controls
+			int changes = _changes;
+			long deadline = System.nanoTime() + millis * 1000000L;
+			long left = millis;
+			while (left > 0 && changes == _changes)
+			{
+				wait(left);
+				left = (deadline - System.nanoTime()) / 1000000L;
+			}
+		}
+		finally
+		{
+			_backoff = 0;
+		}
+	}
+
+	public String getQueue() { return _queue; }
+	public String getMode() { return _mode; }
+	public long getMessagesConsumed() { return _messages.get(); }
+	public long getBytesConsumed() { return _bytes.get(); }
+	public long getEmptyGets() { return _empty.get(); }
+	public long getErrors() { return _errors.get(); }
+
+	public Map<String, Long> getReasonCodes()
+	{
+		Map<String, Long> codes = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> e : _reasons.entrySet())
+			codes.put(e.getKey(), e.getValue().get());
+		return codes;
+	}
+
+	public long getBackoffMillis() { return _backoff; }
+	public long getLastMessageTime() { return _lastMessage; }
+
+	public long getSecondsSinceLastMessage()
+	{
+		long last = _lastMessage;
+		return last == 0 ? -1 : (System.currentTimeMillis() - last) / 1000;
+	}
+
+	public EssMqResidency.Snapshot getResidency()
+	{
+		return EssMqResidency.global().getSnapshot(_queue);
+	}
+
+	public synchronized boolean isPaused() { return _paused; }
+
+	public synchronized void pause()
+	{
+		if (!_paused)
+			_log.info("Polling of " + _queue + " paused");
+		_paused = true;
+	}
+
+	public synchronized void resume()
+	{
+		if (_paused)
+			_log.info("Polling of " + _queue + " resumed");
+		_paused = false;
+		_changes++;
+		notifyAll();
+	}
+
+	public synchronized int getConcurrency() { return _concurrency; }
+
+	public synchronized void setConcurrency(int n)
+	{
+		if (n < 1 || n > _maxConcurrency)
+			throw new IllegalArgumentException("Concurrency must be between 1 and " +
+											   _maxConcurrency);
+		_log.info("Concurrency of " + _queue + " set to " + n);
+		_concurrency = n;
+		_changes++;
+		notifyAll();
+	}
+
+	public int getMaxConcurrency() { return _maxConcurrency; }
+
+	public void logTimings()
+	{
+		EssMqPoll.logTimings();
+	}
+}
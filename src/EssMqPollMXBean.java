@@ -0,0 +1,110 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqPollMXBean
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: What a running EssMqPoll shows over JMX (see EssMqPollControl),
+//           registered as EssMq:type=EssMqPoll,queue="<queue>".
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Added logTimings().
+//
+// --------------------------------------------------------------------------
+
+import java.util.Map;
+
+public interface EssMqPollMXBean
+{
+	String getQueue();
+
+	/**
+	 * getMode
+	 * "single", or "keyed <key>" for the parallel poller.
+	 */
+	String getMode();
+
+	long getMessagesConsumed();
+	long getBytesConsumed();
+
+	/**
+	 * getEmptyGets
+	 * Gets that found no message (2033).
+	 */
+	long getEmptyGets();
+
+	/**
+	 * getErrors
+	 * Gets that failed for any other reason.
+	 */
+	long getErrors();
+
+	/**
+	 * getReasonCodes
+	 * getErrors() by reason code (or by EssMq error code for failures
+	 * that were not MQ's, such as -102 for a file write).
+	 */
+	Map<String, Long> getReasonCodes();
+
+	/**
+	 * getBackoffMillis
+	 * How long the poller is sleeping for right now: 0 while it is
+	 * working, the idle sleep while the queue is empty, longer after
+	 * errors.
+	 */
+	long getBackoffMillis();
+
+	/**
+	 * getLastMessageTime
+	 * When the last message was consumed, in epoch milliseconds; 0 if
+	 * none has been.
+	 */
+	long getLastMessageTime();
+
+	/**
+	 * getSecondsSinceLastMessage
+	 * -1 if no message has been consumed.
+	 */
+	long getSecondsSinceLastMessage();
+
+	/**
+	 * getResidency
+	 * How long the messages consumed in the last minute were on the
+	 * queue (see EssMqResidency); null before the first.
+	 */
+	EssMqResidency.Snapshot getResidency();
+
+	boolean isPaused();
+
+	/**
+	 * pause
+	 * Stops taking messages once the gets in hand are done. Nothing is
+	 * lost: the messages stay on the queue.
+	 */
+	void pause();
+	void resume();
+
+	/**
+	 * getConcurrency
+	 * How many gets may run at once.
+	 */
+	int getConcurrency();
+
+	/**
+	 * setConcurrency
+	 * Between 1 and getMaxConcurrency() (the number of threads the
+	 * poller was started with). Lowering it lets the gets in hand
+	 * finish.
+	 */
+	void setConcurrency(int n);
+	int getMaxConcurrency();
+
+	/**
+	 * logTimings
+	 * Logs the put and get phase timings, the queue residency and the
+	 * memory budget now, as EssMqPoll does on exit.
+	 */
+	void logTimings();
+}
@@ -0,0 +1,357 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqPublisher
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: java.util.concurrent.Flow.Publisher over a queue.
+//
+//           This is the EssMqPoll get loop turned inside out: instead of
+//           getting a message every half second and writing it to a
+//           file, a get is only issued while the subscriber has
+//           outstanding demand, and the message goes straight to
+//           onNext().
+//
+//           Each subscription has its own connection from the client
+//           pool and does its gets under syncpoint. A message is
+//           committed after onNext() returns for it, or, in batch mode,
+//           once the subscriber's outstanding demand has been delivered
+//           (capped at MAX_BATCH messages). cancel() backs out anything
+//           not yet committed, including a message whose onNext() is
+//           still running, so a cancelled message is left on the queue.
+//
+//           If onNext() throws, the uncommitted messages are backed out
+//           and the subscription is cancelled.
+//
+//           A message too large for the memory budget reaches onNext()
+//           as a spill file, which the subscriber owns once the message
+//           is committed. If it is backed out instead the message will
+//           be delivered again, so its spill file is deleted.
+//
+//           Gets block for up to the wait interval, so the executor
+//           should not be a shared compute pool. The default executor
+//           runs each active subscription on its own daemon thread.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Deletes the spill files of backed out messages.
+// 2026-10-19 amp Counts a get before reading its body, so that a failed
+//                read backs it out.
+//
+// --------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqPublisher implements Flow.Publisher<EssMqResult>
+{
+	// most uncommitted messages a batch mode subscription will hold
+	public static final int MAX_BATCH = 1000;
+
+	private static final Logger _log = Logger.getLogger(EssMqPublisher.class);
+
+	private static final Executor DEFAULT_EXECUTOR =
+		Executors.newCachedThreadPool(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "EssMqPublisher");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+	private final EssMqClient _client;
+	private final String      _queue;
+	private final int         _waitInterval;
+	private final boolean     _batchCommit;
+	private final Executor    _executor;
+
+	public EssMqPublisher(EssMqClient client, String queue)
+	{
+		this(client, queue, EssMqClient.DEFAULT_WAIT_INTERVAL, false,
+			 DEFAULT_EXECUTOR);
+	}
+
+	/**
+	 * EssMqPublisher
+	 * waitInterval (milliseconds) is how long each get waits on an
+	 * empty queue, and so how quickly a cancel is noticed while idle.
+	 * batchCommit selects demand-sized units of work instead of a
+	 * commit per message.
+	 */
+	public EssMqPublisher(EssMqClient client, String queue, int waitInterval,
+						  boolean batchCommit, Executor executor)
+	{
+		if (waitInterval < 1)
+			throw new IllegalArgumentException("waitInterval must be positive");
+
+		_client = client;
+		_queue = queue;
+		_waitInterval = waitInterval;
+		_batchCommit = batchCommit;
+		_executor = executor;
+	}
+
+	public String getQueue() { return _queue; }
+
+	public void subscribe(Flow.Subscriber<? super EssMqResult> subscriber)
+	{
+		if (subscriber == null)
+			throw new NullPointerException("subscriber");
+
+		QueueSubscription s = new QueueSubscription(subscriber);
+		subscriber.onSubscribe(s);
+	}
+
+	/**
+	 * QueueSubscription
+	 * request() and cancel() only record the signal and schedule the
+	 * drain loop; everything that touches the connection runs in
+	 * drain(), one executor task at a time.
+	 */
+	private final class QueueSubscription implements Flow.Subscription, Runnable
+	{
+		private final Flow.Subscriber<? super EssMqResult> _subscriber;
+		private final AtomicLong    _demand = new AtomicLong();
+		private final AtomicInteger _wip = new AtomicInteger();
+		private volatile boolean    _cancelled;
+		private volatile Throwable  _badRequest;
+
+		// only touched by the drain loop
+		private EssMqConnection _conn;
+		private int             _uncommitted;
+		private boolean         _done;
+
+		// spill files of the uncommitted messages
+		private final List<Path> _spills = new ArrayList<Path>();
+
+		QueueSubscription(Flow.Subscriber<? super EssMqResult> subscriber)
+		{
+			_subscriber = subscriber;
+		}
+
+		public void request(long n)
+		{
+			if (n <= 0)
+			{
+				_badRequest = new IllegalArgumentException(
+					"request must be positive (rule 3.9): " + n);
+			}
+			else
+			{
+				long current, next;
+				do
+				{
+					current = _demand.get();
+					next = current + n;
+					if (next < 0)
+						next = Long.MAX_VALUE;
+				}
+				while (!_demand.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		public void cancel()
+		{
+			_cancelled = true;
+			schedule();
+		}
+
+		private void schedule()
+		{
+			if (_wip.getAndIncrement() == 0)
+				_executor.execute(this);
+		}
+
+		public void run()
+		{
+			int missed = 1;
+			do
+			{
+				drain();
+				missed = _wip.addAndGet(-missed);
+			}
+			while (missed != 0);
+		}
+
+		private void drain()
+		{
+			if (_done)
+				return;
+
+			if (_badRequest != null)
+			{
+				fail(_badRequest);
+				return;
+			}
+
+			try
+			{
+				while (!_cancelled && _demand.get() > 0)
+				{
+					if (_conn == null)
+						_conn = _client.borrow();
+
+					long start = System.currentTimeMillis();
+					long t0 = System.nanoTime();
+
+					MQMessage inMsg;
+					try
+					{
+						inMsg = _conn.get(_queue, _waitInterval);
+					}
+					catch (MQException ex)
+					{
+						if (ex.reasonCode != MQException.MQRC_NO_MSG_AVAILABLE)
+							throw ex;
+
+						// queue is empty, don't sit on a partial batch
+						commit();
+						continue;
+					}
+
+					// in the unit of work from here on, even if the read fails
+					_uncommitted++;
+
+					// large bodies are spilled to a file, see EssMqMemoryBudget
+					EssMqResult result;
+					try
+					{
+						result = _client.readBody(_queue, inMsg, null, start, t0);
+					}
+					finally
+					{
+						_client.getMemoryBudget().release(
+							inMsg.getTotalMessageLength());
+					}
+
+					if (result.isSpilled())
+						_spills.add(result.getFile());
+					_demand.decrementAndGet();
+
+					try
+					{
+						_subscriber.onNext(result);
+					}
+					catch (Throwable t)
+					{
+						_log.error("Subscriber to " + _queue +
+								   " failed in onNext, backing out: " + t);
+						_cancelled = true;
+						break;
+					}
+
+					if (_cancelled)
+						break;
+
+					if (!_batchCommit || _demand.get() == 0 ||
+						_uncommitted >= MAX_BATCH)
+					{
+						commit();
+					}
+				}
+
+				if (_cancelled)
+					finish();
+			}
+			catch (MQException ex)
+			{
+				_log.error("Get from " + _queue + " failed: completion code " +
+						   ex.completionCode + ", reason " + ex.reasonCode);
+				fail(ex);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+				fail(ie);
+			}
+			catch (Exception e)
+			{
+				fail(e);
+			}
+		}
+
+		private void commit() throws MQException
+		{
+			if (_uncommitted == 0)
+				return;
+
+			_conn.commit();
+			_log.debug("Committed " + _uncommitted + " messages from " + _queue);
+			_uncommitted = 0;
+			_spills.clear();
+		}
+
+		/**
+		 * deleteSpills
+		 * Deletes the spill files of messages that were backed out.
+		 */
+		private void deleteSpills()
+		{
+			for (Path spill : _spills)
+			{
+				try
+				{
+					Files.deleteIfExists(spill);
+				}
+				catch (IOException ie)
+				{
+					_log.warn("Unable to delete spill file " + spill + ": " +
+							  ie.getMessage());
+				}
+			}
+			_spills.clear();
+		}
+
+		/**
+		 * finish
+		 * Backs out whatever was not committed and gives the connection
+		 * back. The subscription is dead afterwards.
+		 */
+		private void finish()
+		{
+			_done = true;
+			if (_conn == null)
+				return;
+
+			// backed out below or, if the connection is lost, by the
+			// queue manager
+			deleteSpills();
+
+			if (_uncommitted > 0)
+			{
+				try
+				{
+					_conn.backout();
+					_log.info("Backed out " + _uncommitted +
+							  " messages on " + _queue);
+				}
+				catch (MQException ex)
+				{
+					_conn.failed(ex);
+				}
+				_uncommitted = 0;
+			}
+
+			_client.release(_conn);
+			_conn = null;
+		}
+
+		private void fail(Throwable t)
+		{
+			if (t instanceof MQException && _conn != null)
+				_conn.failed((MQException) t);
+
+			finish();
+			_subscriber.onError(t);
+		}
+	}
+}
@@ -0,0 +1,445 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqReplay
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Puts the messages in an EssMqArchive (see EssMqCapture) to a
+//           queue, with the gaps between them that they originally had.
+//
+//           Each message is due at its original put time less the first
+//           message's, divided by the speed (-speed:10 replays ten times
+//           faster; -speed:max does not wait at all), after the replay
+//           started. The lateness of each put - how long after it was
+//           due it was made - is reported at the end, which is how far
+//           short of the original timing the replay fell.
+//
+//           Messages are put by -threads threads, each with its own
+//           connection. Every message with the same group key goes to the
+//           same thread, which puts them in archive order, so ordering
+//           holds within a group but not across groups. The key is the
+//           group id (the default), the correlation id, or nothing
+//           (-group:none); messages whose key is all zeros have no group
+//           and are spread over the threads in turn.
+//
+//           The message body and MQMD are put as captured, but with a new
+//           message id unless -keepids. Identity context (user id, put
+//           application, put time) is the queue manager's to set.
+//
+//           Usage:
+//
+//             EssMqReplay [--transport=mq|memory] archive queue [host port
+//                         channel manager] [-option:value ...]
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+import com.ibm.mq.*;
+
+public class EssMqReplay
+{
+	public static final int GROUP_NONE = 0;
+	public static final int GROUP_ID = 1;
+	public static final int GROUP_CORRELID = 2;
+
+	// log4j config file location
+	public static final String _log_config = "EssMqReplay.xml";
+
+	// records waiting for each thread
+	private static final int BACKLOG = 1024;
+
+	private static final Logger _log = Logger.getLogger(EssMqReplay.class);
+
+	// marks the end of the archive in a thread's backlog
+	private static final EssMqArchive.Record END = new EssMqArchive.Record();
+
+	private String  _archive;
+	private String  _queue;
+	private String  _host = "";
+	private long    _port;
+	private String  _channel = "";
+	private String  _qManager = "";
+	private double  _speed = 1;
+	private int     _threads = 1;
+	private int     _group = GROUP_ID;
+	private boolean _keepIds;
+
+	private EssMqClient _client;
+	private long _elapsedNanos;
+	private final AtomicLong _put = new AtomicLong();
+	private final AtomicLong _errors = new AtomicLong();
+	private final EssMqHistogram _lateness = new EssMqHistogram();
+
+	public void setArchive(String file) { _archive = file; }
+	public void setQueue(String q) { _queue = q; }
+	public void setHost(String h) { _host = h; }
+	public void setPort(long p) { _port = p; }
+	public void setChannel(String c) { _channel = c; }
+	public void setQueueManager(String m) { _qManager = m; }
+
+	/**
+	 * setSpeed
+	 * How many times faster than the original to replay; 0 for as fast
+	 * as it will go.
+	 */
+	public void setSpeed(double speed) { _speed = speed; }
+	public void setThreads(int n) { _threads = n; }
+
+	/**
+	 * setGroup
+	 * GROUP_ID, GROUP_CORRELID or GROUP_NONE.
+	 */
+	public void setGroup(int group) { _group = group; }
+	public void setKeepIds(boolean keep) { _keepIds = keep; }
+
+	public long getPut() { return _put.get(); }
+	public long getErrors() { return _errors.get(); }
+
+	/**
+	 * getLateness
+	 * A copy of how late each put was, in microseconds.
+	 */
+	public EssMqHistogram getLateness()
+	{
+		EssMqHistogram copy = new EssMqHistogram();
+		synchronized (_lateness)
+		{
+			copy.add(_lateness);
+		}
+		return copy;
+	}
+
+	/**
+	 * Scheduled
+	 * A record and the System.nanoTime() it is due.
+	 */
+	private static final class Scheduled
+	{
+		final EssMqArchive.Record _record;
+		final long _due;
+
+		Scheduled(EssMqArchive.Record record, long due)
+		{
+			_record = record;
+			_due = due;
+		}
+	}
+
+	/**
+	 * Putter
+	 * One replay thread: puts its backlog in order, each message when it
+	 * is due.
+	 */
+	private final class Putter implements Runnable
+	{
+		final BlockingQueue<Scheduled> _backlog =
+			new ArrayBlockingQueue<Scheduled>(BACKLOG);
+		private final MQPutMessageOptions _pmo = new MQPutMessageOptions();
+		private final EssMqHistogram _late = new EssMqHistogram();
+		private EssMqConnection _conn;
+
+		Putter()
+		{
+			_pmo.options = MQC.MQPMO_NO_SYNCPOINT | MQC.MQPMO_FAIL_IF_QUIESCING |
+				(_keepIds ? 0 : MQC.MQPMO_NEW_MSG_ID);
+		}
+
+		public void run()
+		{
+			try
+			{
+				for (;;)
+				{
+					Scheduled s = _backlog.take();
+					if (s._record == END)
+						break;
+
+					long wait;
+					while ((wait = s._due - System.nanoTime()) > 0)
+						LockSupport.parkNanos(wait);
+					if (_speed > 0)
+						_late.record((System.nanoTime() - s._due) / 1000);
+
+					put(s._record);
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				_client.release(_conn);
+				synchronized (_lateness)
+				{
+					_lateness.add(_late);
+				}
+			}
+		}
+
+		private void put(EssMqArchive.Record r) throws InterruptedException
+		{
+			try
+			{
+				if (_conn == null)
+					_conn = _client.borrow();
+				_conn.put(_queue, r.toMessage(), _pmo);
+				_put.incrementAndGet();
+			}
+			catch (MQException ex)
+			{
+				_errors.incrementAndGet();
+				_log.error("Put to " + _queue + " failed: completion code " +
+						   ex.completionCode + ", reason " + ex.reasonCode);
+				if (_conn != null)
+				{
+					_conn.failed(ex);
+					if (_conn.isBroken())
+					{
+						_client.release(_conn);
+						_conn = null;
+					}
+				}
+			}
+			catch (IOException ie)
+			{
+				_errors.incrementAndGet();
+				_log.error("Unable to build message: " + ie.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * replay
+	 * Replays the archive and returns true if every message was put.
+	 * Errors are logged and counted (getErrors()); the replay goes on
+	 * past them.
+	 */
+	public boolean replay() throws InterruptedException
+	{
+		_client = new EssMqClient(EssMqClient.getDefaultTransport(), _host, _port,
+								  _channel, _qManager, _threads);
+
+		List<Putter> putters = new ArrayList<Putter>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < _threads; i++)
+		{
+			Putter p = new Putter();
+			putters.add(p);
+			Thread t = new Thread(p, "EssMqReplay-" + i);
+			t.setDaemon(true);
+			t.start();
+			threads.add(t);
+		}
+
+		EssMqArchive.Reader in = null;
+		boolean ok = false;
+		long start = System.nanoTime();
+		try
+		{
+			in = new EssMqArchive.Reader(_archive);
+
+			long base = -1;
+			long next = 0;
+			EssMqArchive.Record r;
+			while ((r = in.read()) != null)
+			{
+				if (base < 0)
+					base = r.putTime;
+
+				long due = start;
+				if (_speed > 0 && r.putTime >= base)
+					due += (long) ((r.putTime - base) * 1000000L / _speed);
+
+				byte[] key = key(r);
+				int thread;
+				if (key == null)
+					thread = (int) (next++ % _threads);
+				else
+					thread = (Arrays.hashCode(key) & 0x7fffffff) % _threads;
+				putters.get(thread)._backlog.put(new Scheduled(r, due));
+			}
+			ok = true;
+		}
+		catch (IOException ie)
+		{
+			_log.error("Unable to read " + _archive + ": " + ie.getMessage());
+		}
+		finally
+		{
+			if (in != null)
+			{
+				try
+				{
+					in.close();
+				}
+				catch (IOException ie)
+				{
+					// nothing more to read
+				}
+			}
+
+			for (Putter p : putters)
+				p._backlog.put(new Scheduled(END, 0));
+			for (Thread t : threads)
+				t.join();
+			_client.close();
+			_elapsedNanos = System.nanoTime() - start;
+		}
+
+		return ok && _errors.get() == 0;
+	}
+
+	/**
+	 * getElapsedNanos
+	 * How long the last replay took.
+	 */
+	public long getElapsedNanos() { return _elapsedNanos; }
+
+	/**
+	 * key
+	 * The record's group key, or null if it is in no group.
+	 */
+	private byte[] key(EssMqArchive.Record r)
+	{
+		byte[] key;
+		switch (_group)
+		{
+		case GROUP_ID:
+			key = r.groupId;
+			break;
+		case GROUP_CORRELID:
+			key = r.correlationId;
+			break;
+		default:
+			return null;
+		}
+
+		for (byte b : key)
+		{
+			if (b != 0)
+				return key;
+		}
+		return null;
+	}
+
+	/**
+	 * parseSpeed
+	 * "1", "10x", "0.5" or "max" (0).
+	 */
+	static double parseSpeed(String s)
+	{
+		if (s.equalsIgnoreCase("max"))
+			return 0;
+		if (s.endsWith("x") || s.endsWith("X"))
+			s = s.substring(0, s.length() - 1);
+
+		double speed = Double.parseDouble(s);
+		if (speed <= 0)
+			throw new NumberFormatException("speed must be positive: " + s);
+		return speed;
+	}
+
+	/**
+	 * showArgs display the command line options for this program.
+	 */
+	private static void showArgs()
+	{
+		System.out.println("Syntax: EssMqReplay [--transport=mq|memory] archive queue " +
+						   "[host port channel manager] [-option:value ...]\n");
+		System.out.println("-speed:n       1 (as captured, the default), 10, 0.5, ... or max");
+		System.out.println("-threads:n     put threads (default 1)");
+		System.out.println("-group:key     groupid (default), correlid or none: the");
+		System.out.println("               messages whose order is kept");
+		System.out.println("-keepids       put with the captured message ids");
+	}
+
+	/**
+	 * main
+	 */
+	public static void main(String [] args) throws InterruptedException
+	{
+		DOMConfigurator.configure(_log_config);
+		args = EssMqTransport.takeOption(args);
+
+		EssMqReplay replay = new EssMqReplay();
+		List<String> positional = new ArrayList<String>();
+		for (String arg : args)
+		{
+			if (!arg.startsWith("-"))
+			{
+				positional.add(arg);
+				continue;
+			}
+
+			int colon = arg.indexOf(':');
+			String name = colon < 0 ? arg.substring(1) : arg.substring(1, colon);
+			String value = colon < 0 ? "" : arg.substring(colon + 1);
+			try
+			{
+				if (name.equals("speed"))
+					replay.setSpeed(parseSpeed(value));
+				else if (name.equals("threads"))
+					replay.setThreads(Math.max(1, Integer.parseInt(value)));
+				else if (name.equals("group") && value.equalsIgnoreCase("groupid"))
+					replay.setGroup(GROUP_ID);
+				else if (name.equals("group") && value.equalsIgnoreCase("correlid"))
+					replay.setGroup(GROUP_CORRELID);
+				else if (name.equals("group") && value.equalsIgnoreCase("none"))
+					replay.setGroup(GROUP_NONE);
+				else if (name.equals("keepids"))
+					replay.setKeepIds(true);
+				else
+					name = null;
+			}
+			catch (NumberFormatException nfe)
+			{
+				name = null;
+			}
+
+			if (name == null)
+			{
+				System.out.println("Bad option: " + arg);
+				showArgs();
+				System.exit(-1);
+			}
+		}
+
+		boolean local = EssMqClient.getDefaultTransport().isLocal();
+		if (positional.size() != 2 && (local || positional.size() != 6))
+		{
+			showArgs();
+			System.exit(-1);
+		}
+
+		replay.setArchive(positional.get(0));
+		replay.setQueue(positional.get(1));
+		if (positional.size() == 6)
+		{
+			replay.setHost(positional.get(2));
+			replay.setPort(Long.parseLong(positional.get(3)));
+			replay.setChannel(positional.get(4));
+			replay.setQueueManager(positional.get(5));
+		}
+
+		boolean ok = replay.replay();
+		System.out.println(String.format(
+			"Replayed %d messages to %s in %.3fs, %d errors; late by p50 %dus " +
+			"p99 %dus max %dus", replay.getPut(), positional.get(1),
+			replay.getElapsedNanos() / 1e9, replay.getErrors(),
+			replay.getLateness().getValueAtPercentile(50),
+			replay.getLateness().getValueAtPercentile(99),
+			replay.getLateness().getMax()));
+		System.exit(ok ? 0 : -1);
+	}
+}
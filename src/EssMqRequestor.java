@@ -0,0 +1,602 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqRequestor
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Request/reply over MQ with many requests in flight.
+//
+//           Each request is put with MQMT_REQUEST, the reply queue as
+//           its replyToQueueName and a message id made up here, so the
+//           reply (whose correlation id is, by MQ convention, the
+//           request's message id) can be expected before the put is
+//           even issued. request() returns a future that completes
+//           with the reply, or with a TimeoutException.
+//
+//           Replies are matched in one of two ways:
+//
+//           shared  one consumer thread gets every message from the
+//                   reply queue and hands it to the waiting request
+//                   through a concurrent map keyed by correlation id.
+//                   Timeouts are kept on a timing wheel, so a request
+//                   costs a map entry and a wheel slot, not a thread.
+//                   With no reply queue given the consumer creates a
+//                   temporary dynamic queue, deleted when the requestor
+//                   is closed. This is the high throughput mode.
+//                   A reply that cannot be read is backed out and got
+//                   again. If the connection is lost the consumer
+//                   reconnects; requests fail at once until it has, and
+//                   those waiting on a temporary queue fail with it.
+//
+//           match   each request waits for its own reply with a get
+//                   that matches on correlation id
+//                   (MQMO_MATCH_CORREL_ID), on a pooled thread and
+//                   connection. Safe on a reply queue shared with other
+//                   processes; in flight requests are bounded by the
+//                   client's connections.
+//
+//           Round trip times (put to reply, in microseconds) are kept in
+//           an EssMqHistogram.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp The reply consumer backs out a reply it fails to read
+//                and reconnects after losing its connection, instead of
+//                stopping for good.
+//
+// --------------------------------------------------------------------------
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqRequestor implements AutoCloseable
+{
+	public static final String DEFAULT_MODEL_QUEUE = "SYSTEM.DEFAULT.MODEL.QUEUE";
+	public static final String DEFAULT_DYNAMIC_PREFIX = "ESSMQ.REPLY.*";
+	public static final long   DEFAULT_TIMEOUT_MILLIS = 30000;
+
+	// timing wheel resolution and size; timeouts up to TICK * WHEEL
+	// milliseconds take a single pass
+	static final long TICK_MILLIS = 10;
+	static final int  WHEEL = 512;
+
+	// how long the reply consumer blocks in a get, and so how long
+	// close() can take
+	private static final int POLL_MILLIS = 500;
+
+	private static final Logger _log = Logger.getLogger(EssMqRequestor.class);
+
+	private final EssMqClient _client;
+	private final String      _requestQueue;
+	private final boolean     _shared;
+	private final boolean     _dynamic;
+	private volatile String   _replyQueue;
+
+	// message ids are this prefix and a counter
+	private final byte[]      _idPrefix = new byte[16];
+	private final AtomicLong  _counter = new AtomicLong();
+
+	private final ConcurrentHashMap<String, Pending> _pending =
+		new ConcurrentHashMap<String, Pending>();
+	private final EssMqHistogram _latency = new EssMqHistogram();
+	private final AtomicLong _timeouts = new AtomicLong();
+	private final AtomicLong _unmatched = new AtomicLong();
+
+	// shared mode
+	private final List<Queue<Pending>> _wheel;
+	private volatile long _tick;
+	private ScheduledExecutorService _timer;
+	private Thread _consumer;
+	private EssMqConnection _conn;
+	private volatile Exception _failure;
+
+	// match mode
+	private final ExecutorService _waiters;
+
+	private volatile boolean _closed;
+
+	private static final class Pending
+	{
+		final String _key;
+		final CompletableFuture<EssMqResult> _future =
+			new CompletableFuture<EssMqResult>();
+		final long _sent = System.nanoTime();
+		long _deadline;
+
+		Pending(String key)
+		{
+			_key = key;
+		}
+	}
+
+	/**
+	 * EssMqRequestor
+	 * Shared mode. replyQueue null means a temporary dynamic queue made
+	 * from DEFAULT_MODEL_QUEUE.
+	 */
+	public EssMqRequestor(EssMqClient client, String requestQueue,
+						  String replyQueue)
+		throws MQException, InterruptedException
+	{
+		this(client, requestQueue, replyQueue, true);
+	}
+
+	/**
+	 * EssMqRequestor
+	 * shared picks the mode (see above). Match mode needs a reply
+	 * queue, since a temporary dynamic queue can only be read by the
+	 * connection that created it.
+	 */
+	public EssMqRequestor(EssMqClient client, String requestQueue,
+						  String replyQueue, boolean shared)
+		throws MQException, InterruptedException
+	{
+		if (!shared && replyQueue == null)
+			throw new IllegalArgumentException("match mode needs a reply queue");
+
+		_client = client;
+		_requestQueue = requestQueue;
+		_shared = shared;
+		new SecureRandom().nextBytes(_idPrefix);
+
+		if (!shared)
+		{
+			_replyQueue = replyQueue;
+			_dynamic = false;
+			_wheel = null;
+			_waiters = Executors.newCachedThreadPool(daemon("EssMqRequestor-wait"));
+			return;
+		}
+
+		_waiters = null;
+		_dynamic = replyQueue == null;
+		_wheel = new ArrayList<Queue<Pending>>(WHEEL);
+		for (int i = 0; i < WHEEL; i++)
+			_wheel.add(new ConcurrentLinkedQueue<Pending>());
+
+		_replyQueue = replyQueue;
+		connect();
+
+		_timer = Executors.newSingleThreadScheduledExecutor(daemon("EssMqRequestor-timer"));
+		_timer.scheduleAtFixedRate(new Runnable()
+		{
+			public void run()
+			{
+				tick();
+			}
+		}, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+		_consumer = daemon("EssMqRequestor-replies").newThread(new Runnable()
+		{
+			public void run()
+			{
+				consume();
+			}
+		});
+		_consumer.start();
+
+		_log.debug("Requests to " + requestQueue + ", replies on " + _replyQueue);
+	}
+
+	public String getRequestQueue() { return _requestQueue; }
+	public String getReplyQueue() { return _replyQueue; }
+	public int getInFlight() { return _pending.size(); }
+	public long getTimeouts() { return _timeouts.get(); }
+
+	/**
+	 * getUnmatched
+	 * Replies that arrived for no waiting request, e.g. after their
+	 * request timed out. Shared mode only.
+	 */
+	public long getUnmatched() { return _unmatched.get(); }
+
+	/**
+	 * getLatency
+	 * A copy of the round trip times so far, in microseconds.
+	 */
+	public EssMqHistogram getLatency()
+	{
+		EssMqHistogram copy = new EssMqHistogram();
+		synchronized (_latency)
+		{
+			copy.add(_latency);
+		}
+		return copy;
+	}
+
+	public CompletableFuture<EssMqResult> request(byte[] data, long timeoutMillis)
+	{
+		return request(ByteBuffer.wrap(data), timeoutMillis);
+	}
+
+	/**
+	 * request
+	 * Puts the request and returns the future reply. The put itself is
+	 * done before this returns (shared mode) so the buffer may be
+	 * reused; a failed put completes the future with the MQException.
+	 */
+	public CompletableFuture<EssMqResult> request(ByteBuffer data,
+												  final long timeoutMillis)
+	{
+		if (_closed)
+			throw new IllegalStateException("EssMqRequestor is closed");
+
+		final byte[] msgId = newMessageId();
+		final Pending p = new Pending(EssMq.convertHexId(msgId));
+
+		if (!_shared)
+		{
+			final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+			copy.put(data.duplicate()).flip();
+			_waiters.execute(new Runnable()
+			{
+				public void run()
+				{
+					matchReply(p, msgId, copy, timeoutMillis);
+				}
+			});
+			return p._future;
+		}
+
+		if (_failure != null)
+		{
+			p._future.completeExceptionally(_failure);
+			return p._future;
+		}
+
+		// waiting before the put, since the reply can beat put() back
+		_pending.put(p._key, p);
+		schedule(p, timeoutMillis);
+
+		EssMqResult put = _client.put(_requestQueue, data, _replyQueue, msgId);
+		if (!put.isSuccess() && _pending.remove(p._key, p))
+		{
+			p._future.completeExceptionally(
+				new MQException(put.getCompletionCode(), put.getReasonCode(), this));
+		}
+		return p._future;
+	}
+
+	/**
+	 * close
+	 * Stops taking replies and fails the requests still waiting. A
+	 * temporary reply queue is deleted.
+	 */
+	public void close()
+	{
+		_closed = true;
+
+		if (!_shared)
+		{
+			_waiters.shutdownNow();
+			return;
+		}
+
+		_timer.shutdownNow();
+		try
+		{
+			_consumer.join(POLL_MILLIS * 4);
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+		failAll(new CancellationException("EssMqRequestor closed"));
+	}
+
+	/**
+	 * matchReply
+	 * Match mode: put, then wait for the reply with a correlation id get.
+	 */
+	private void matchReply(Pending p, byte[] msgId, ByteBuffer data,
+							long timeoutMillis)
+	{
+		EssMqResult put = _client.put(_requestQueue, data, _replyQueue, msgId);
+		if (!put.isSuccess())
+		{
+			p._future.completeExceptionally(
+				new MQException(put.getCompletionCode(), put.getReasonCode(), this));
+			return;
+		}
+
+		EssMqResult reply = _client.getReply(_replyQueue, msgId,
+											 (int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+		if (reply.isSuccess())
+		{
+			record(p);
+			p._future.complete(reply);
+		}
+		else if (reply.isNoMessage())
+		{
+			_timeouts.incrementAndGet();
+			p._future.completeExceptionally(timeout(p));
+		}
+		else
+		{
+			p._future.completeExceptionally(
+				new MQException(reply.getCompletionCode(), reply.getReasonCode(), this));
+		}
+	}
+
+	/**
+	 * connect
+	 * Borrows the connection the consumer keeps and, without a reply
+	 * queue, creates the temporary queue on it.
+	 */
+	private void connect() throws MQException, InterruptedException
+	{
+		EssMqConnection conn = _client.borrow();
+		if (_dynamic)
+		{
+			try
+			{
+				_replyQueue = conn.openDynamic(DEFAULT_MODEL_QUEUE, DEFAULT_DYNAMIC_PREFIX);
+			}
+			catch (MQException ex)
+			{
+				conn.failed(ex);
+				_client.release(conn);
+				throw ex;
+			}
+		}
+		_conn = conn;
+		_failure = null;
+	}
+
+	/**
+	 * consume
+	 * Shared mode: takes every reply off the queue and completes the
+	 * request it answers, until the requestor is closed.
+	 */
+	private void consume()
+	{
+		try
+		{
+			while (!_closed)
+			{
+				try
+				{
+					if (_conn == null)
+					{
+						connect();
+						_log.info("Reconnected; replies on " + _replyQueue);
+					}
+					take();
+				}
+				catch (MQException ex)
+				{
+					_log.error("Get from " + _replyQueue + " failed: completion code " +
+							   ex.completionCode + ", reason " + ex.reasonCode);
+					if (_conn != null)
+					{
+						_conn.failed(ex);
+						if (_conn.isBroken())
+							lost(ex);
+					}
+					if (!pause())
+						return;
+				}
+				catch (InterruptedException ie)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (Exception e)
+				{
+					// e.g. a large reply that could not be spilled; it is
+					// backed out and got again
+					_log.error("Reply consumer on " + _replyQueue + " failed: " + e);
+					backout();
+					if (!pause())
+						return;
+				}
+			}
+		}
+		finally
+		{
+			if (_conn != null)
+			{
+				// closing a dynamic queue deletes it
+				if (_dynamic)
+					_conn.closeQueue(_replyQueue);
+				_client.release(_conn);
+				_conn = null;
+			}
+		}
+	}
+
+	/**
+	 * take
+	 * Gets one reply, if there is one, and completes its request.
+	 */
+	private void take() throws Exception
+	{
+		long start = System.currentTimeMillis();
+		long t0 = System.nanoTime();
+
+		MQMessage inMsg;
+		try
+		{
+			inMsg = _conn.get(_replyQueue, null, null, POLL_MILLIS);
+		}
+		catch (MQException ex)
+		{
+			if (ex.reasonCode == MQException.MQRC_NO_MSG_AVAILABLE)
+				return;
+			throw ex;
+		}
+
+		EssMqResult result;
+		try
+		{
+			result = _client.readBody(_replyQueue, inMsg, null, start, t0);
+			_conn.commit();
+		}
+		finally
+		{
+			_client.getMemoryBudget().release(inMsg.getTotalMessageLength());
+		}
+
+		Pending p = _pending.remove(EssMq.convertHexId(inMsg.correlationId));
+		if (p == null)
+		{
+			_unmatched.incrementAndGet();
+			_log.debug("No request waiting for reply " + result.getMessageId());
+			if (result.isSpilled())
+				result.getFile().toFile().delete();
+			return;
+		}
+
+		record(p);
+		p._future.complete(result);
+	}
+
+	/**
+	 * lost
+	 * Gives up a broken connection. Requests fail at once until the
+	 * consumer has reconnected, and the replies to a temporary queue
+	 * went with it.
+	 */
+	private void lost(MQException ex)
+	{
+		_client.release(_conn);
+		_conn = null;
+		_failure = ex;
+		if (_dynamic)
+			failAll(ex);
+	}
+
+	/**
+	 * backout
+	 * Puts back the reply got but not read, so that the connection
+	 * holds no unit of work.
+	 */
+	private void backout()
+	{
+		if (_conn == null)
+			return;
+		try
+		{
+			_conn.backout();
+		}
+		catch (MQException ex)
+		{
+			_conn.failed(ex);
+			if (_conn.isBroken())
+				lost(ex);
+		}
+	}
+
+	/**
+	 * pause
+	 * Waits a little before trying again after an error. False if the
+	 * consumer was interrupted.
+	 */
+	private boolean pause()
+	{
+		try
+		{
+			Thread.sleep(POLL_MILLIS);
+			return true;
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * schedule
+	 * Puts the request on the wheel. One tick is added since the timer
+	 * may be moving past the current slot while this runs.
+	 */
+	private void schedule(Pending p, long timeoutMillis)
+	{
+		long ticks = (timeoutMillis + TICK_MILLIS - 1) / TICK_MILLIS;
+		p._deadline = _tick + Math.max(1, ticks) + 1;
+		_wheel.get((int) (p._deadline % WHEEL)).add(p);
+	}
+
+	/**
+	 * tick
+	 * Runs on the timer: times out the requests due in the next slot.
+	 * Those answered already are just dropped from it.
+	 */
+	private void tick()
+	{
+		long now = ++_tick;
+		Iterator<Pending> it = _wheel.get((int) (now % WHEEL)).iterator();
+		while (it.hasNext())
+		{
+			Pending p = it.next();
+			if (p._future.isDone())
+			{
+				it.remove();
+			}
+			else if (p._deadline <= now)
+			{
+				it.remove();
+				if (_pending.remove(p._key, p))
+				{
+					_timeouts.incrementAndGet();
+					p._future.completeExceptionally(timeout(p));
+				}
+			}
+		}
+	}
+
+	private void failAll(Exception e)
+	{
+		for (Pending p : _pending.values())
+		{
+			if (_pending.remove(p._key, p))
+				p._future.completeExceptionally(e);
+		}
+	}
+
+	private void record(Pending p)
+	{
+		long micros = (System.nanoTime() - p._sent) / 1000;
+		synchronized (_latency)
+		{
+			_latency.record(micros);
+		}
+	}
+
+	private TimeoutException timeout(Pending p)
+	{
+		return new TimeoutException("No reply to " + p._key + " on " + _replyQueue);
+	}
+
+	/**
+	 * newMessageId
+	 * 16 random bytes for this requestor, then a counter.
+	 */
+	private byte[] newMessageId()
+	{
+		byte[] id = new byte[MQC.MQ_MSG_ID_LENGTH];
+		System.arraycopy(_idPrefix, 0, id, 0, _idPrefix.length);
+		ByteBuffer.wrap(id, _idPrefix.length, 8).putLong(_counter.incrementAndGet());
+		return id;
+	}
+
+	private static ThreadFactory daemon(final String name)
+	{
+		return new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
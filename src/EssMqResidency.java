@@ -0,0 +1,283 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqResidency
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: How long consumed messages sat on each queue, over the last
+//           minute, so consumer lag shows up (and can be alerted on)
+//           before the depth moves.
+//
+//           residency   put time (MQMD) to the get returning it
+//           durable     the get returning it to the commit after its
+//                       file was written, i.e. until it is off the
+//                       queue and safe
+//
+//           EssMqClient records every message it gets in the global()
+//           instance. The window is SLOTS slots of SLOT_MILLIS each; as
+//           a slot comes round again it is emptied, so the percentiles
+//           are always of roughly the last minute.
+//
+//           The put time is the queue manager's clock (to 1/100s), the
+//           get time this JVM's, so residency is only as good as the two
+//           clocks agree. A put time after the get time, which can only
+//           be skew, counts as a residency of 0 and is counted as
+//           skewed, with the largest such gap reported as how far ahead
+//           the queue manager's clock looks; a consumer whose skewed
+//           count keeps rising needs its clock (or the queue manager's)
+//           fixing before its residency can be believed. Messages with
+//           no put time are left out of the residency. The durable time
+//           is measured on this JVM's monotonic clock only.
+//
+//           Published over JMX as EssMq:type=Residency
+//           (EssMqResidencyMXBean).
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.*;
+import org.apache.log4j.Logger;
+
+public class EssMqResidency implements EssMqResidencyMXBean
+{
+	public static final int  SLOTS = 6;
+	public static final long SLOT_MILLIS = 10000;
+
+	private static final Logger _log = Logger.getLogger(EssMqResidency.class);
+
+	private static final EssMqResidency _global = new EssMqResidency();
+
+	private final ConcurrentHashMap<String, Window> _queues =
+		new ConcurrentHashMap<String, Window>();
+
+	/**
+	 * Window
+	 * One queue's slots. Residency is kept in milliseconds, the
+	 * durable time in microseconds.
+	 */
+	private static final class Window
+	{
+		private final EssMqHistogram[] _residency = new EssMqHistogram[SLOTS];
+		private final EssMqHistogram[] _durable = new EssMqHistogram[SLOTS];
+		private final long[] _skewed = new long[SLOTS];
+		private final long[] _ahead = new long[SLOTS];
+
+		// the slot number (time / SLOT_MILLIS) each slot holds
+		private final long[] _slot = new long[SLOTS];
+
+		Window()
+		{
+			for (int i = 0; i < SLOTS; i++)
+			{
+				_residency[i] = new EssMqHistogram();
+				_durable[i] = new EssMqHistogram();
+				_slot[i] = -1;
+			}
+		}
+
+		synchronized void record(long now, long putTime, long durableNanos)
+		{
+			int i = slot(now);
+			if (putTime > 0)
+			{
+				long residency = now - putTime;
+				if (residency < 0)
+				{
+					_skewed[i]++;
+					_ahead[i] = Math.max(_ahead[i], -residency);
+					residency = 0;
+				}
+				_residency[i].record(residency);
+			}
+			_durable[i].record(durableNanos / 1000);
+		}
+
+		private int slot(long now)
+		{
+			long n = now / SLOT_MILLIS;
+			int i = (int) (n % SLOTS);
+			if (_slot[i] != n)
+			{
+				_residency[i].reset();
+				_durable[i].reset();
+				_skewed[i] = 0;
+				_ahead[i] = 0;
+				_slot[i] = n;
+			}
+			return i;
+		}
+
+		synchronized Snapshot snapshot(long now)
+		{
+			Snapshot s = new Snapshot();
+			long n = now / SLOT_MILLIS;
+			for (int i = 0; i < SLOTS; i++)
+			{
+				if (_slot[i] <= n - SLOTS)
+					continue;
+
+				s._residency.add(_residency[i]);
+				s._durable.add(_durable[i]);
+				s._skewed += _skewed[i];
+				s._ahead = Math.max(s._ahead, _ahead[i]);
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * Snapshot
+	 * One queue's window as JMX shows it. Residency is in
+	 * milliseconds, the durable time in fractional milliseconds.
+	 */
+	public static final class Snapshot
+	{
+		private final EssMqHistogram _residency = new EssMqHistogram();
+		private final EssMqHistogram _durable = new EssMqHistogram();
+		private long _skewed;
+		private long _ahead;
+
+		public long getMessages() { return _durable.getCount(); }
+		public long getResidencyP50() { return _residency.getValueAtPercentile(50); }
+		public long getResidencyP90() { return _residency.getValueAtPercentile(90); }
+		public long getResidencyP99() { return _residency.getValueAtPercentile(99); }
+		public long getResidencyMax() { return _residency.getMax(); }
+		public double getDurableP50() { return _durable.getValueAtPercentile(50) / 1000.0; }
+		public double getDurableP99() { return _durable.getValueAtPercentile(99) / 1000.0; }
+		public double getDurableMax() { return _durable.getMax() / 1000.0; }
+
+		/**
+		 * getSkewed
+		 * Messages put "after" they were got.
+		 */
+		public long getSkewed() { return _skewed; }
+
+		/**
+		 * getClockAheadMillis
+		 * How far ahead of this JVM the queue manager's clock looks; 0
+		 * when no message was skewed.
+		 */
+		public long getClockAheadMillis() { return _ahead; }
+	}
+
+	/**
+	 * global
+	 * The residency every EssMqClient records into.
+	 */
+	public static EssMqResidency global() { return _global; }
+
+	/**
+	 * record
+	 * Records a message got from queue at gotAt (epoch milliseconds)
+	 * with the MQMD put time putTime (0 if it had none), and durable
+	 * durableNanos later.
+	 */
+	public void record(String queue, long putTime, long gotAt, long durableNanos)
+	{
+		Window w = _queues.get(queue);
+		if (w == null)
+		{
+			_queues.putIfAbsent(queue, new Window());
+			w = _queues.get(queue);
+		}
+		w.record(gotAt, putTime, durableNanos);
+	}
+
+	/**
+	 * getSnapshot
+	 * The queue's last minute, or null if nothing has been got from it.
+	 */
+	public Snapshot getSnapshot(String queue)
+	{
+		Window w = _queues.get(queue);
+		return w == null ? null : w.snapshot(System.currentTimeMillis());
+	}
+
+	public Map<String, Snapshot> getQueues()
+	{
+		long now = System.currentTimeMillis();
+		Map<String, Snapshot> queues = new TreeMap<String, Snapshot>();
+		for (Map.Entry<String, Window> e : _queues.entrySet())
+			queues.put(e.getKey(), e.getValue().snapshot(now));
+		return queues;
+	}
+
+	public String getTable() { return table(); }
+
+	/**
+	 * table
+	 * A line for each queue that has had a message in the window. Empty
+	 * if none has.
+	 */
+	public String table()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Snapshot> e : getQueues().entrySet())
+		{
+			Snapshot s = e.getValue();
+			if (s.getMessages() == 0)
+				continue;
+
+			if (sb.length() == 0)
+			{
+				sb.append(String.format("%-24s %8s %9s %9s %9s %9s %10s %10s %7s%n",
+										"queue (ms)", "count", "res p50",
+										"res p90", "res p99", "res max",
+										"dur p50", "dur p99", "skewed"));
+			}
+			sb.append(String.format("%-24s %8d %9d %9d %9d %9d %10.1f %10.1f %7d%n",
+									e.getKey(), s.getMessages(),
+									s.getResidencyP50(), s.getResidencyP90(),
+									s.getResidencyP99(), s.getResidencyMax(),
+									s.getDurableP50(), s.getDurableP99(),
+									s.getSkewed()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * log
+	 * Logs the table at INFO, if that is enabled and any queue has had
+	 * a message in the window.
+	 */
+	public void log(Logger log)
+	{
+		if (!log.isInfoEnabled())
+			return;
+
+		String table = table();
+		if (table.length() > 0)
+			log.info("Queue residency, last " + SLOTS * SLOT_MILLIS / 1000 + "s:\n" +
+					 table);
+	}
+
+	/**
+	 * register
+	 * Publishes the residency on the platform MBean server as
+	 * EssMq:type=Residency, unless something already is. A failure is
+	 * logged and otherwise ignored.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("EssMq:type=Residency");
+			synchronized (EssMqResidency.class)
+			{
+				if (!server.isRegistered(name))
+					server.registerMBean(this, name);
+			}
+		}
+		catch (JMException je)
+		{
+			_log.warn("Unable to register the residency MBean: " + je.getMessage());
+		}
+	}
+}
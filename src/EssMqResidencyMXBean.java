@@ -0,0 +1,32 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqResidencyMXBean
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssMqResidency.global() over JMX, registered as
+//           EssMq:type=Residency.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.util.Map;
+
+public interface EssMqResidencyMXBean
+{
+	/**
+	 * getQueues
+	 * The last minute of each queue messages have been got from, by
+	 * queue name.
+	 */
+	Map<String, EssMqResidency.Snapshot> getQueues();
+
+	/**
+	 * getTable
+	 * The same as the table logged by EssMqPoll.
+	 */
+	String getTable();
+}
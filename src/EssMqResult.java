@@ -0,0 +1,184 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqResult
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Immutable outcome of a single EssMqClient operation.
+//
+//           The completion code is the MQ completion code for MQ errors
+//           and one of the EssMq.ESSMQ_* constants for local (file)
+//           errors, which mirrors what EssMq.getErrorCode() has always
+//           reported.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Added the put time of a message returned by a get.
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.nio.file.Path;
+import com.ibm.mq.MQException;
+
+public final class EssMqResult
+{
+	private final String  _queue;
+	private final String  _msgId;
+	private final byte[]  _data;
+	private final Path    _file;
+	private final boolean _spilled;
+	private final int     _depth;
+	private final int     _completionCode;
+	private final int     _reasonCode;
+	private final String  _exceptionSource;
+	private final long    _putTime;
+	private final long    _startTime;
+	private final long    _elapsedNanos;
+
+	private EssMqResult(String queue, String msgId, byte[] data, Path file,
+						boolean spilled, int depth,
+						int completionCode, int reasonCode,
+						String exceptionSource, long putTime,
+						long startTime, long elapsedNanos)
+	{
+		_queue = queue;
+		_msgId = msgId;
+		_data = data;
+		_file = file;
+		_spilled = spilled;
+		_depth = depth;
+		_completionCode = completionCode;
+		_reasonCode = reasonCode;
+		_exceptionSource = exceptionSource;
+		_putTime = putTime;
+		_startTime = startTime;
+		_elapsedNanos = elapsedNanos;
+	}
+
+	static EssMqResult put(String queue, String msgId,
+						   long startTime, long elapsedNanos)
+	{
+		return new EssMqResult(queue, msgId, null, null, false, -1,
+							   MQException.MQCC_OK, MQException.MQRC_NONE, "",
+							   0, startTime, elapsedNanos);
+	}
+
+	static EssMqResult got(String queue, String msgId, byte[] data, Path file,
+						   boolean spilled, long putTime, long startTime,
+						   long elapsedNanos)
+	{
+		return new EssMqResult(queue, msgId, data, file, spilled, -1,
+							   MQException.MQCC_OK, MQException.MQRC_NONE, "",
+							   putTime, startTime, elapsedNanos);
+	}
+
+	static EssMqResult depth(String queue, int depth,
+							 long startTime, long elapsedNanos)
+	{
+		return new EssMqResult(queue, "", null, null, false, depth,
+							   MQException.MQCC_OK, MQException.MQRC_NONE, "",
+							   0, startTime, elapsedNanos);
+	}
+
+	static EssMqResult failure(String queue, int completionCode,
+							   int reasonCode, String exceptionSource,
+							   long startTime, long elapsedNanos)
+	{
+		return new EssMqResult(queue, "", null, null, false, -1,
+							   completionCode, reasonCode, exceptionSource,
+							   0, startTime, elapsedNanos);
+	}
+
+	public String getQueue() { return _queue; }
+	public String getMessageId() { return _msgId; }
+	public int getDepth() { return _depth; }
+	public int getCompletionCode() { return _completionCode; }
+	public int getReasonCode() { return _reasonCode; }
+	public String getExceptionSource() { return _exceptionSource; }
+
+	/**
+	 * getPutTime
+	 * Wall clock time (milliseconds) at which the message returned by a
+	 * get was put, from its message descriptor; 0 if not known.
+	 */
+	public long getPutTime() { return _putTime; }
+
+	/**
+	 * getStartTime
+	 * Wall clock time (milliseconds) at which the operation started.
+	 */
+	public long getStartTime() { return _startTime; }
+
+	/**
+	 * getElapsedNanos
+	 * Time taken by the whole operation, including waiting for a
+	 * pooled connection.
+	 */
+	public long getElapsedNanos() { return _elapsedNanos; }
+
+	public boolean isSuccess()
+	{
+		return _completionCode == MQException.MQCC_OK;
+	}
+
+	/**
+	 * isNoMessage
+	 * True when a get found the queue empty (MQRC 2033).
+	 */
+	public boolean isNoMessage()
+	{
+		return _reasonCode == MQException.MQRC_NO_MSG_AVAILABLE;
+	}
+
+	/**
+	 * getData
+	 * A copy of the message body returned by a get, or null when the
+	 * body went to a file (see getFile()).
+	 */
+	public byte[] getData()
+	{
+		return _data == null ? null : _data.clone();
+	}
+
+	public int getDataLength()
+	{
+		return _data == null ? 0 : _data.length;
+	}
+
+	/**
+	 * getFile
+	 * The file a get wrote the body to, either the one asked for or a
+	 * spill file. Null when the body is in getData().
+	 */
+	public Path getFile() { return _file; }
+
+	/**
+	 * isSpilled
+	 * True when the body was too large to keep in memory and was
+	 * written to a temporary file. The caller owns, and deletes, the
+	 * file.
+	 */
+	public boolean isSpilled() { return _spilled; }
+
+	/**
+	 * openData
+	 * Reads the body wherever it is.
+	 */
+	public InputStream openData() throws IOException
+	{
+		if (_data != null)
+			return new ByteArrayInputStream(_data);
+		if (_file != null)
+			return new BufferedInputStream(new FileInputStream(_file.toFile()));
+		return new ByteArrayInputStream(new byte[0]);
+	}
+
+	public String toString()
+	{
+		return "EssMqResult[queue=" + _queue + ", msgId=" + _msgId +
+			", cc=" + _completionCode + ", rc=" + _reasonCode +
+			", elapsed=" + (_elapsedNanos / 1000) + "us]";
+	}
+}
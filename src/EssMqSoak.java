@@ -0,0 +1,719 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqSoak
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Soak test of the command line paths, for the leaks and slow
+//           decay a short run never shows.
+//
+//           Worker threads drive EssMq and EssMqPoll the way the batch
+//           jobs do - a new object, and so a new client and connection,
+//           for every put and get - against an in-process
+//           EssMqMemoryBroker, while another thread runs EssMq and
+//           EssMqPoll manifests. Failures are injected throughout: the
+//           broker drops connections at the failure rate (see
+//           EssMqMemoryBroker.setFailureRate()), and the workers now and
+//           then put a file that is not there, get into a directory
+//           that is not there and run a manifest that is not there.
+//
+//           Every interval the reporter prints the operations per
+//           second, the open file descriptors, the broker's open
+//           connections and the heap used after a GC. Descriptors are
+//           the most seen in the interval, checked every 100ms and never
+//           straight after a GC, since a stream left open is closed when
+//           it is collected; the fewer the collections the more a leak
+//           shows, so give it a large young generation (-Xmn). At the
+//           end the intervals after the warm up are split in thirds and
+//           the median of the last third is compared with the first; the
+//           run fails if descriptors, connections or heap have grown, or
+//           throughput has fallen, by more than the allowance below. It
+//           also fails if the descriptors ever went FD_ALLOWANCE past
+//           what the workers can hold open at once, if a thread died, if
+//           a connection is left open once the workers have stopped, or
+//           if a queue's depth is not the puts that worked less the gets
+//           that worked (nothing lost, nothing got twice), or if there
+//           were too few intervals after the warm up to split in thirds.
+//
+//           Usage:
+//
+//             EssMqSoak [-option:value ...]
+//
+//           See showArgs() for the options. Exits 0 if the run passed.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp A run too short to check for trends fails, and a
+//                -duration that cannot be long enough is refused.
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+
+public class EssMqSoak
+{
+	public static final String QUEUE = "SOAK.Q";
+	public static final String MANIFEST_QUEUE = "SOAK.M";
+
+	public static final int    DEFAULT_DURATION = 600;
+	public static final int    DEFAULT_THREADS = 4;
+	public static final double DEFAULT_FAILURES = 0.001;
+	public static final int    DEFAULT_INTERVAL = 10;
+	public static final int    DEFAULT_WARMUP = 2;
+	public static final int    DEFAULT_LINES = 20;
+
+	// how far the last third may drift from the first (and, for
+	// descriptors, how far past the workers' own any sample may be)
+	public static final int    FD_ALLOWANCE = 8;
+	public static final double HEAP_GROWTH = 1.25;
+	public static final long   HEAP_ALLOWANCE = 16L << 20;
+	public static final double THROUGHPUT_FLOOR = 0.8;
+
+	// log4j config file location
+	public static final String _log_config = "EssMqSoak.xml";
+
+	// a file failure every this many worker cycles
+	private static final int FILE_FAILURE_EVERY = 97;
+
+	// gets a worker tries in one cycle for the messages it is owed
+	private static final int GET_TRIES = 3;
+
+	private static final Logger _log = Logger.getLogger(EssMqSoak.class);
+
+	private int    _duration = DEFAULT_DURATION;
+	private long   _opLimit;
+	private int    _threads = DEFAULT_THREADS;
+	private double _failures = DEFAULT_FAILURES;
+	private int    _interval = DEFAULT_INTERVAL;
+	private int    _warmup = DEFAULT_WARMUP;
+	private int    _lines = DEFAULT_LINES;
+	private File   _dir;
+
+	private final EssMqMemoryBroker _broker = new EssMqMemoryBroker("ESSMQ.SOAK");
+	private byte[] _body;
+	private volatile boolean _running = true;
+
+	private final AtomicLong _ops = new AtomicLong();
+	private final AtomicLong _failed = new AtomicLong();
+	private final AtomicLong _puts = new AtomicLong();
+	private final AtomicLong _gets = new AtomicLong();
+	private final AtomicLong _manifestPuts = new AtomicLong();
+	private final AtomicLong _manifestGets = new AtomicLong();
+	private final AtomicLong _died = new AtomicLong();
+	private long _idleFds;
+
+	private final List<Sample> _samples = new ArrayList<Sample>();
+
+	public void setDuration(int seconds) { _duration = seconds; }
+
+	/**
+	 * setOps
+	 * Stops after this many operations instead of after the duration.
+	 */
+	public void setOps(long n) { _opLimit = n; }
+	public void setThreads(int n) { _threads = n; }
+
+	/**
+	 * setFailures
+	 * The fraction of puts, gets and commits the broker fails.
+	 */
+	public void setFailures(double rate) { _failures = rate; }
+	public void setInterval(int seconds) { _interval = seconds; }
+
+	/**
+	 * setWarmup
+	 * Intervals left out of the trend checks, while the JIT and the
+	 * pools settle.
+	 */
+	public void setWarmup(int intervals) { _warmup = intervals; }
+	public void setLines(int n) { _lines = n; }
+	public void setDir(File dir) { _dir = dir; }
+
+	/**
+	 * Sample
+	 * One interval.
+	 */
+	private static final class Sample
+	{
+		double _rate;
+		long   _fds;
+		long   _connections;
+		long   _heap;
+		long   _failed;
+	}
+
+	/**
+	 * Worker
+	 * Puts a message and gets one back, a new EssMq or EssMqPoll each
+	 * time. Only gets as many as its puts that worked, so the queue is
+	 * never empty when it gets and no get sits out its wait interval.
+	 */
+	private final class Worker implements Runnable
+	{
+		private final File _msgFile;
+		private final File _home;
+		private long _owed;
+		private long _cycle;
+
+		Worker(int n) throws IOException
+		{
+			_home = new File(_dir, "w" + n);
+			_home.mkdirs();
+			_msgFile = new File(_home, "msg.xml");
+			Files.write(_msgFile.toPath(), _body);
+		}
+
+		public void run()
+		{
+			while (more())
+			{
+				_cycle++;
+				if (put(_msgFile))
+					_owed++;
+
+				if (_cycle % FILE_FAILURE_EVERY == 0)
+					fileFailures();
+
+				for (int i = 0; i < GET_TRIES && _owed > 0 && _running; i++)
+				{
+					if ((_cycle + i) % 2 == 0 ? get() : poll())
+						_owed--;
+				}
+			}
+		}
+
+		private boolean put(File file)
+		{
+			EssMq mq = newEssMq();
+			mq.setQueue(QUEUE);
+			mq.setMessageFile(file.getPath());
+			boolean ok = mq.putMessage();
+			counted(ok, _puts);
+			return ok;
+		}
+
+		private boolean get()
+		{
+			File out = new File(_home, "got.xml");
+			EssMq mq = newEssMq();
+			mq.setQueue(QUEUE);
+			mq.setMessageFile(out.getPath());
+			boolean ok = mq.getMessage() != null;
+			counted(ok, _gets);
+			out.delete();
+			return ok;
+		}
+
+		private boolean poll()
+		{
+			EssMqPoll mq = new EssMqPoll();
+			mq.setHost("");
+			mq.setChannel("");
+			mq.setQueueManager("");
+			mq.setQueue(QUEUE);
+			mq.setMessageFile(new File(_home, "poll_").getPath());
+			String out = mq.getMessageFile();
+			boolean ok = mq.getMessage() != null;
+			counted(ok, _gets);
+			new File(out).delete();
+			return ok;
+		}
+
+		/**
+		 * fileFailures
+		 * A put of a file that is not there, and a get into a directory
+		 * that is not there. Both should fail and leave the message.
+		 */
+		private void fileFailures()
+		{
+			put(new File(_home, "missing.xml"));
+
+			if (_owed == 0)
+				return;
+
+			EssMq mq = newEssMq();
+			mq.setQueue(QUEUE);
+			mq.setMessageFile(new File(_home, "missing/got.xml").getPath());
+			boolean ok = mq.getMessage() != null;
+			counted(ok, _gets);
+			if (ok)
+				_owed--;
+		}
+	}
+
+	/**
+	 * ManifestWorker
+	 * Runs manifests of alternating puts and gets, and an invalid
+	 * line, through EssMq and EssMqPoll in turn, then one that is not
+	 * there. Counts the puts and gets that worked from the .out file.
+	 */
+	private final class ManifestWorker implements Runnable
+	{
+		public void run()
+		{
+			for (long round = 0; more(); round++)
+			{
+				File home = new File(_dir, "m" + round);
+				try
+				{
+					manifest(home, round % 2 == 0);
+				}
+				catch (IOException ie)
+				{
+					_log.error("Manifest round " + round + " failed: " +
+							   ie.getMessage());
+					_failed.incrementAndGet();
+				}
+				finally
+				{
+					delete(home);
+				}
+
+				// a manifest that is not there
+				EssMq mq = newEssMq();
+				int rc = mq.processManifest(new File(home, "none").getPath());
+				_ops.incrementAndGet();
+				if (rc != EssMq.ESSMQ_MANIFESTNOTFOUND)
+				{
+					_log.error("Missing manifest returned " + rc);
+					_failed.incrementAndGet();
+				}
+			}
+		}
+
+		private void manifest(File home, boolean essMq) throws IOException
+		{
+			home.mkdirs();
+			File manifest = new File(home, "manifest");
+			Writer w = new BufferedWriter(new FileWriter(manifest));
+			try
+			{
+				for (int i = 0; i < _lines; i++)
+				{
+					File put = new File(home, "put-" + i + ".xml");
+					Files.write(put.toPath(), _body);
+					w.write("put," + MANIFEST_QUEUE + "," + put.getPath() + "\n");
+					w.write("get," + MANIFEST_QUEUE + "," +
+							new File(home, "get-" + i + ".xml").getPath() + "\n");
+				}
+				w.write("not a manifest line\n");
+			}
+			finally
+			{
+				w.close();
+			}
+
+			int rc;
+			if (essMq)
+			{
+				rc = newEssMq().processManifest(manifest.getPath());
+			}
+			else
+			{
+				EssMqPoll mq = new EssMqPoll();
+				mq.setHost("");
+				mq.setChannel("");
+				mq.setQueueManager("");
+				rc = mq.processManifest(manifest.getPath());
+			}
+			if (rc != 0)
+				throw new IOException("processManifest returned " + rc);
+
+			BufferedReader in = new BufferedReader(new FileReader(manifest.getPath() + ".out"));
+			try
+			{
+				String line;
+				while ((line = in.readLine()) != null)
+				{
+					_ops.incrementAndGet();
+					String[] fields = line.split(",");
+					boolean ok = fields.length >= 2 && fields[1].equals("0");
+					String name = new File(fields[0]).getName();
+					if (name.startsWith("put-"))
+						counted(ok, _manifestPuts);
+					else if (name.startsWith("get-"))
+						counted(ok, _manifestGets);
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+	}
+
+	private EssMq newEssMq()
+	{
+		EssMq mq = new EssMq();
+		mq.setHost("");
+		mq.setChannel("");
+		mq.setQueueManager("");
+		return mq;
+	}
+
+	private void counted(boolean ok, AtomicLong worked)
+	{
+		_ops.incrementAndGet();
+		if (ok)
+			worked.incrementAndGet();
+		else
+			_failed.incrementAndGet();
+	}
+
+	private boolean more()
+	{
+		return _running && (_opLimit <= 0 || _ops.get() < _opLimit);
+	}
+
+	/**
+	 * run
+	 * Runs the soak and checks it. Returns true if it passed.
+	 */
+	public boolean run() throws IOException, InterruptedException
+	{
+		if (_dir == null)
+			_dir = Files.createTempDirectory("essmqsoak").toFile();
+		_dir.mkdirs();
+
+		_body = new byte[1024];
+		Arrays.fill(_body, (byte) 'x');
+		_idleFds = openFileDescriptors();
+
+		_broker.setFailureRate(_failures);
+		EssMqClient.setDefaultTransport(_broker);
+
+		System.out.println(String.format(
+			"Soak: %d threads, failure rate %s, %s, in %s",
+			_threads, _failures,
+			_opLimit > 0 ? _opLimit + " operations" : _duration + "s", _dir));
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < _threads; i++)
+			threads.add(start(new Worker(i), "soak-" + i));
+		threads.add(start(new ManifestWorker(), "soak-manifest"));
+
+		long t0 = System.nanoTime();
+		long end = t0 + _duration * 1000000000L;
+		long intervalNanos = _interval * 1000000000L;
+		long next = t0 + intervalNanos;
+		long lastOps = 0;
+		long lastFailed = 0;
+		long lastAt = t0;
+		long peakFds = -1;
+		while (more() && (_opLimit > 0 || System.nanoTime() < end))
+		{
+			long now = System.nanoTime();
+			if (now < next)
+			{
+				peakFds = Math.max(peakFds, openFileDescriptors());
+				Thread.sleep(Math.min(100, Math.max(1, (next - now) / 1000000)));
+				continue;
+			}
+
+			long ops = _ops.get();
+			long failed = _failed.get();
+			Sample s = sample();
+			s._fds = Math.max(s._fds, peakFds);
+			peakFds = -1;
+			s._rate = (ops - lastOps) * 1e9 / (now - lastAt);
+			s._failed = failed - lastFailed;
+			_samples.add(s);
+			report(s, now - t0, _samples.size() > _warmup);
+
+			lastOps = ops;
+			lastFailed = failed;
+			lastAt = now;
+			next += intervalNanos;
+		}
+
+		_running = false;
+		for (Thread t : threads)
+			t.join();
+
+		boolean passed = check();
+		if (passed)
+			delete(_dir);
+		return passed;
+	}
+
+	/**
+	 * start
+	 * Starts a worker thread. One that dies is reported and fails the
+	 * run.
+	 */
+	private Thread start(Runnable r, String name)
+	{
+		Thread t = new Thread(r, name);
+		t.setDaemon(true);
+		t.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+		{
+			public void uncaughtException(Thread t, Throwable e)
+			{
+				_log.error(t.getName() + " died", e);
+				System.out.println(t.getName() + " died: " + e);
+				_died.incrementAndGet();
+			}
+		});
+		t.start();
+		return t;
+	}
+
+	private Sample sample()
+	{
+		Sample s = new Sample();
+		s._fds = openFileDescriptors();
+		System.gc();
+		s._connections = _broker.getOpenConnections();
+		s._heap = heapAfterGc();
+		return s;
+	}
+
+	/**
+	 * heapAfterGc
+	 * The heap in use after the last collection, which unlike the heap
+	 * in use now does not depend on what has been allocated since.
+	 */
+	private static long heapAfterGc()
+	{
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+		{
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (pool.getType() == MemoryType.HEAP && usage != null)
+				used += usage.getUsed();
+		}
+		return used;
+	}
+
+	/**
+	 * openFileDescriptors
+	 * The process's open file descriptors, or -1 where the JVM cannot
+	 * tell (not Unix).
+	 */
+	private static long openFileDescriptors()
+	{
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.UnixOperatingSystemMXBean)
+			return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+		return -1;
+	}
+
+	private static void report(Sample s, long elapsedNanos, boolean measured)
+	{
+		System.out.println(String.format(
+			"%6.0fs%s %9.0f ops/s | fds %5d | connections %3d | heap %7.1fMB | failed %d",
+			elapsedNanos / 1e9, measured ? " " : "*", s._rate, s._fds,
+			s._connections, s._heap / 1048576.0, s._failed));
+	}
+
+	/**
+	 * check
+	 * The end of run checks. Prints each failure; true if there were
+	 * none.
+	 */
+	private boolean check()
+	{
+		boolean passed = true;
+
+		System.out.println();
+		System.out.println(String.format(
+			"operations %d, failed %d, puts %d, gets %d, manifest puts %d, gets %d",
+			_ops.get(), _failed.get(), _puts.get(), _gets.get(),
+			_manifestPuts.get(), _manifestGets.get()));
+
+		List<Sample> measured = _samples.subList(Math.min(_warmup, _samples.size()),
+												  _samples.size());
+		int third = measured.size() / 3;
+		if (third == 0)
+		{
+			// no trend checked is not a trend passed
+			passed = verify("intervals after the warm up", false,
+							measured.size() + ", need 3 to check for trends; " +
+							"run for longer or with a shorter -interval");
+		}
+		else
+		{
+			List<Sample> first = measured.subList(0, third);
+			List<Sample> last = measured.subList(measured.size() - third, measured.size());
+
+			long fds0 = median(first, "fds");
+			long fds1 = median(last, "fds");
+			if (fds0 >= 0)
+				passed &= verify("open file descriptors", fds1 <= fds0 + FD_ALLOWANCE,
+								 fds0 + " -> " + fds1);
+
+			// each worker holds at most one connection at a time
+			long conns0 = median(first, "connections");
+			long conns1 = median(last, "connections");
+			passed &= verify("open connections", conns1 <= conns0 + _threads + 1,
+							 conns0 + " -> " + conns1);
+
+			long heap0 = median(first, "heap");
+			long heap1 = median(last, "heap");
+			passed &= verify("heap after GC",
+							 heap1 <= heap0 * HEAP_GROWTH + HEAP_ALLOWANCE,
+							 String.format("%.1fMB -> %.1fMB", heap0 / 1048576.0,
+										   heap1 / 1048576.0));
+
+			long rate0 = median(first, "rate");
+			long rate1 = median(last, "rate");
+			passed &= verify("throughput", rate1 >= rate0 * THROUGHPUT_FLOOR,
+							 rate0 + " -> " + rate1 + " ops/s");
+		}
+
+		if (_idleFds >= 0)
+		{
+			// a worker has its message file or got file open, and a
+			// manifest run the manifest, its .out and a message file
+			long most = 0;
+			for (Sample s : measured)
+				most = Math.max(most, s._fds);
+			long allowed = _idleFds + _threads + 3 + FD_ALLOWANCE;
+			passed &= verify("most file descriptors", most <= allowed,
+							 most + ", idle " + _idleFds + ", allowed " + allowed);
+		}
+
+		passed &= verify("threads died", _died.get() == 0, String.valueOf(_died.get()));
+		passed &= verify("connections closed at the end",
+						 _broker.getOpenConnections() == 0,
+						 String.valueOf(_broker.getOpenConnections()));
+		passed &= verify(QUEUE + " depth", _broker.getDepth(QUEUE) ==
+						 _puts.get() - _gets.get(),
+						 _broker.getDepth(QUEUE) + ", expected " +
+						 (_puts.get() - _gets.get()));
+		passed &= verify(MANIFEST_QUEUE + " depth", _broker.getDepth(MANIFEST_QUEUE) ==
+						 _manifestPuts.get() - _manifestGets.get(),
+						 _broker.getDepth(MANIFEST_QUEUE) + ", expected " +
+						 (_manifestPuts.get() - _manifestGets.get()));
+
+		System.out.println(passed ? "PASSED" : "FAILED");
+		return passed;
+	}
+
+	private static boolean verify(String what, boolean ok, String detail)
+	{
+		System.out.println(String.format("%-32s %-4s %s", what, ok ? "ok" : "FAIL", detail));
+		return ok;
+	}
+
+	private static long median(List<Sample> samples, String field)
+	{
+		long[] values = new long[samples.size()];
+		for (int i = 0; i < values.length; i++)
+		{
+			Sample s = samples.get(i);
+			if (field.equals("fds"))
+				values[i] = s._fds;
+			else if (field.equals("connections"))
+				values[i] = s._connections;
+			else if (field.equals("heap"))
+				values[i] = s._heap;
+			else
+				values[i] = Math.round(s._rate);
+		}
+		Arrays.sort(values);
+		return values[values.length / 2];
+	}
+
+	private static void delete(File f)
+	{
+		File[] children = f.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+				delete(child);
+		}
+		f.delete();
+	}
+
+	/**
+	 * showArgs display the command line options for this program.
+	 */
+	private static void showArgs()
+	{
+		System.out.println("Syntax: EssMqSoak [-option:value ...]\n");
+		System.out.println("-duration:s    seconds to run for (default 600)");
+		System.out.println("-ops:n         stop after n operations instead");
+		System.out.println("-threads:n     put and get threads (default 4)");
+		System.out.println("-failures:r    fraction of MQ calls that fail (default 0.001)");
+		System.out.println("-interval:s    seconds between samples (default 10)");
+		System.out.println("-warmup:n      intervals left out of the checks (default 2)");
+		System.out.println("-lines:n       puts (and gets) per manifest (default 20)");
+		System.out.println("-dir:path      working directory (default a temporary one,");
+		System.out.println("               deleted if the run passes)");
+	}
+
+	/**
+	 * parseOption
+	 * Applies one -name[:value] option. Returns false if unknown.
+	 */
+	private boolean parseOption(String arg)
+	{
+		int colon = arg.indexOf(':');
+		String name = colon < 0 ? arg.substring(1) : arg.substring(1, colon);
+		String value = colon < 0 ? "" : arg.substring(colon + 1);
+
+		if (name.equals("duration"))
+			setDuration(Integer.parseInt(value));
+		else if (name.equals("ops"))
+			setOps(Long.parseLong(value));
+		else if (name.equals("threads"))
+			setThreads(Math.max(1, Integer.parseInt(value)));
+		else if (name.equals("failures"))
+			setFailures(Double.parseDouble(value));
+		else if (name.equals("interval"))
+			setInterval(Math.max(1, Integer.parseInt(value)));
+		else if (name.equals("warmup"))
+			setWarmup(Integer.parseInt(value));
+		else if (name.equals("lines"))
+			setLines(Math.max(1, Integer.parseInt(value)));
+		else if (name.equals("dir") && value.length() > 0)
+			setDir(new File(value));
+		else
+			return false;
+		return true;
+	}
+
+	/**
+	 * main
+	 */
+	public static void main(String [] args) throws IOException, InterruptedException
+	{
+		DOMConfigurator.configure(_log_config);
+
+		EssMqSoak soak = new EssMqSoak();
+		for (String arg : args)
+		{
+			try
+			{
+				if (arg.startsWith("-") && soak.parseOption(arg))
+					continue;
+			}
+			catch (NumberFormatException nfe)
+			{
+				// reported below
+			}
+			System.out.println("Bad option: " + arg);
+			showArgs();
+			System.exit(-1);
+		}
+
+		if (soak._opLimit == 0 && soak._duration / soak._interval < soak._warmup + 3)
+		{
+			System.out.println("-duration must cover the warm up and at least 3 " +
+							   "more intervals (" + (soak._warmup + 3) * soak._interval +
+							   "s at -interval:" + soak._interval + ")");
+			showArgs();
+			System.exit(-1);
+		}
+
+		System.exit(soak.run() ? 0 : -1);
+	}
+}
@@ -0,0 +1,164 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqStripedExecutor
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Runs tasks in parallel while keeping tasks with the same key
+//           in submission order.
+//
+//           Each key hashes to one of a fixed number of lanes and every
+//           lane is a single thread, so tasks for a key run one after
+//           another in the order they were submitted while different
+//           lanes run at the same time.
+//
+//           Each key may only have perKeyBacklog tasks queued or
+//           running. trySubmit() refuses a task for a key at its limit
+//           instead of blocking, so the caller can move on to other
+//           keys, and one hot key can take at most perKeyBacklog slots
+//           in its lane. The total number of queued tasks is capped at
+//           lanes * perKeyBacklog.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+class EssMqStripedExecutor
+{
+	private final ExecutorService[] _lanes;
+	private final int               _perKeyBacklog;
+	private final int               _maxPending;
+	private final AtomicInteger     _pending = new AtomicInteger();
+	private final ConcurrentHashMap<Object, Integer> _backlog =
+		new ConcurrentHashMap<Object, Integer>();
+
+	EssMqStripedExecutor(int lanes, int perKeyBacklog, final String name)
+	{
+		if (lanes < 1 || perKeyBacklog < 1)
+			throw new IllegalArgumentException("lanes and perKeyBacklog must be positive");
+
+		_perKeyBacklog = perKeyBacklog;
+		_maxPending = lanes * perKeyBacklog;
+		_lanes = new ExecutorService[lanes];
+		for (int i = 0; i < lanes; i++)
+		{
+			final String laneName = name + "-" + i;
+			_lanes[i] = Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, laneName);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	int getLanes() { return _lanes.length; }
+
+	/**
+	 * isSaturated
+	 * True when the total backlog is at its cap; trySubmit() will
+	 * refuse every key until tasks complete.
+	 */
+	boolean isSaturated() { return _pending.get() >= _maxPending; }
+
+	int getPending() { return _pending.get(); }
+
+	/**
+	 * backlog
+	 * Tasks queued or running for the key.
+	 */
+	int backlog(Object key)
+	{
+		Integer n = _backlog.get(key);
+		return n == null ? 0 : n.intValue();
+	}
+
+	/**
+	 * trySubmit
+	 * Queues the task behind earlier tasks for the same key.
+	 *
+	 * @return false, without queueing, when the key or the executor is
+	 *         at its backlog limit
+	 */
+	boolean trySubmit(final Object key, final Runnable task)
+	{
+		if (_pending.incrementAndGet() > _maxPending)
+		{
+			_pending.decrementAndGet();
+			return false;
+		}
+
+		final boolean[] accepted = new boolean[1];
+		_backlog.compute(key, new BiFunction<Object, Integer, Integer>()
+		{
+			public Integer apply(Object k, Integer n)
+			{
+				int count = n == null ? 0 : n.intValue();
+				if (count >= _perKeyBacklog)
+					return n;
+				accepted[0] = true;
+				return Integer.valueOf(count + 1);
+			}
+		});
+
+		if (!accepted[0])
+		{
+			_pending.decrementAndGet();
+			return false;
+		}
+
+		lane(key).execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					task.run();
+				}
+				finally
+				{
+					_backlog.computeIfPresent(key, new BiFunction<Object, Integer, Integer>()
+					{
+						public Integer apply(Object k, Integer n)
+						{
+							return n.intValue() <= 1 ? null : Integer.valueOf(n.intValue() - 1);
+						}
+					});
+					_pending.decrementAndGet();
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * shutdown
+	 * Stops accepting tasks and waits for the queued ones to finish.
+	 */
+	void shutdown(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		for (ExecutorService lane : _lanes)
+			lane.shutdown();
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (ExecutorService lane : _lanes)
+			lane.awaitTermination(Math.max(0, deadline - System.nanoTime()),
+								  TimeUnit.NANOSECONDS);
+	}
+
+	private ExecutorService lane(Object key)
+	{
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return _lanes[(h & 0x7fffffff) % _lanes.length];
+	}
+}
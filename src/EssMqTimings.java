@@ -0,0 +1,325 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqTimings
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Where the time in a put or get goes, phase by phase.
+//
+//           connect     borrowing a pooled connection: waiting for one
+//                       and connecting if none is idle
+//           open        opening a queue that was not already open
+//           read        filling the message (reading the message file)
+//           put, get    the MQPUT or MQGET itself, less any open
+//           write       writing the got message to its file
+//           commit      the syncpoint
+//           disconnect  closing a connection
+//
+//           EssMqClient records every phase of every call in the
+//           global() instance, so the totals cover EssMq, EssMqPoll
+//           and anything else in the JVM.
+//
+//           Each thread records into its own stripe of counters, in
+//           the buckets EssMqHistogram uses, with plain ordered stores
+//           (no locks, no compare and set), so recording costs a
+//           nanoTime() call and a few stores. Readers add the stripes
+//           up into EssMqHistogram copies whenever they like; a copy
+//           taken while a thread is recording may be a sample or two
+//           out, which for a report does not matter. Stripes of threads
+//           that have ended are folded into one so pooled threads that
+//           come and go do not pile up.
+//
+//           Times are kept in nanoseconds and reported in microseconds.
+//
+//           register() publishes the global() timings over JMX as
+//           EssMq:type=Timings (EssMqTimingsMXBean).
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Published over JMX (EssMqTimingsMXBean).
+//
+// --------------------------------------------------------------------------
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import javax.management.*;
+import org.apache.log4j.Logger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class EssMqTimings implements EssMqTimingsMXBean
+{
+	public static final int CONNECT    = 0;
+	public static final int OPEN       = 1;
+	public static final int READ       = 2;
+	public static final int PUT        = 3;
+	public static final int GET        = 4;
+	public static final int WRITE      = 5;
+	public static final int COMMIT     = 6;
+	public static final int DISCONNECT = 7;
+	public static final int PHASES     = 8;
+
+	private static final String[] NAMES = {
+		"connect", "open", "read", "put", "get", "write", "commit", "disconnect"
+	};
+
+	private static final Logger _log = Logger.getLogger(EssMqTimings.class);
+
+	private static final EssMqTimings _global = new EssMqTimings();
+
+	private final ConcurrentLinkedQueue<Stripe> _stripes =
+		new ConcurrentLinkedQueue<Stripe>();
+	private final ThreadLocal<Stripe> _stripe = new ThreadLocal<Stripe>()
+	{
+		protected Stripe initialValue()
+		{
+			Stripe s = new Stripe(Thread.currentThread());
+			_stripes.add(s);
+			return s;
+		}
+	};
+
+	// what the stripes of ended threads had recorded
+	private final EssMqHistogram[] _retired = new EssMqHistogram[PHASES];
+
+	/**
+	 * Recorder
+	 * One phase of one thread. Only the owning thread writes.
+	 */
+	private static final class Recorder
+	{
+		final AtomicLongArray _counts = new AtomicLongArray(EssMqHistogram.BUCKETS);
+		final AtomicLong _sum = new AtomicLong();
+		final AtomicLong _min = new AtomicLong(Long.MAX_VALUE);
+		final AtomicLong _max = new AtomicLong();
+
+		void record(long nanos)
+		{
+			int b = EssMqHistogram.bucket(nanos);
+			_counts.lazySet(b, _counts.get(b) + 1);
+			_sum.lazySet(_sum.get() + nanos);
+			if (nanos < _min.get())
+				_min.lazySet(nanos);
+			if (nanos > _max.get())
+				_max.lazySet(nanos);
+		}
+
+		void addTo(EssMqHistogram h)
+		{
+			h.add(_counts, _sum.get(), _min.get(), _max.get());
+		}
+	}
+
+	/**
+	 * Stripe
+	 * One thread's recorders, made on first use of each phase.
+	 */
+	private static final class Stripe
+	{
+		final Thread _owner;
+		final AtomicReferenceArray<Recorder> _recorders =
+			new AtomicReferenceArray<Recorder>(PHASES);
+
+		Stripe(Thread owner)
+		{
+			_owner = owner;
+		}
+
+		Recorder recorder(int phase)
+		{
+			Recorder r = _recorders.get(phase);
+			if (r == null)
+			{
+				r = new Recorder();
+				_recorders.set(phase, r);
+			}
+			return r;
+		}
+	}
+
+	/**
+	 * Phase
+	 * One phase's latencies, in microseconds, as JMX shows them.
+	 */
+	public static final class Phase
+	{
+		private final EssMqHistogram _h;
+
+		Phase(EssMqHistogram h)
+		{
+			_h = h;
+		}
+
+		public long getCount() { return _h.getCount(); }
+		public double getMean() { return _h.getMean() / 1000; }
+		public double getP50() { return _h.getValueAtPercentile(50) / 1000.0; }
+		public double getP90() { return _h.getValueAtPercentile(90) / 1000.0; }
+		public double getP99() { return _h.getValueAtPercentile(99) / 1000.0; }
+		public double getP999() { return _h.getValueAtPercentile(99.9) / 1000.0; }
+		public double getMax() { return _h.getMax() / 1000.0; }
+	}
+
+	public EssMqTimings()
+	{
+		for (int i = 0; i < PHASES; i++)
+			_retired[i] = new EssMqHistogram();
+	}
+
+	/**
+	 * global
+	 * The timings every EssMqClient records into.
+	 */
+	public static EssMqTimings global() { return _global; }
+
+	public static String getPhaseName(int phase) { return NAMES[phase]; }
+
+	/**
+	 * record
+	 * Records the time since start (a System.nanoTime()) against the
+	 * phase and returns the time now, to start the next phase from.
+	 */
+	public long record(int phase, long start)
+	{
+		long now = System.nanoTime();
+		recordNanos(phase, now - start);
+		return now;
+	}
+
+	public void recordNanos(int phase, long nanos)
+	{
+		_stripe.get().recorder(phase).record(Math.max(0, nanos));
+	}
+
+	/**
+	 * getHistogram
+	 * A copy of everything recorded for the phase, in nanoseconds.
+	 */
+	public EssMqHistogram getHistogram(int phase)
+	{
+		EssMqHistogram h = new EssMqHistogram();
+		synchronized (_retired)
+		{
+			retire();
+			h.add(_retired[phase]);
+
+			for (Stripe s : _stripes)
+			{
+				Recorder r = s._recorders.get(phase);
+				if (r != null)
+					r.addTo(h);
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * retire
+	 * Folds the stripes of threads that have ended into _retired. The
+	 * caller holds the _retired lock, which only readers take.
+	 */
+	private void retire()
+	{
+		for (Iterator<Stripe> i = _stripes.iterator(); i.hasNext(); )
+		{
+			Stripe s = i.next();
+			if (s._owner.isAlive())
+				continue;
+
+			for (int phase = 0; phase < PHASES; phase++)
+			{
+				Recorder r = s._recorders.get(phase);
+				if (r != null)
+					r.addTo(_retired[phase]);
+			}
+			i.remove();
+		}
+	}
+
+	/**
+	 * table
+	 * The summary table: a line for each phase that has been recorded,
+	 * with its count and latencies in microseconds. Empty if nothing
+	 * has been.
+	 */
+	public String table()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int phase = 0; phase < PHASES; phase++)
+		{
+			EssMqHistogram h = getHistogram(phase);
+			if (h.getCount() == 0)
+				continue;
+
+			if (sb.length() == 0)
+			{
+				sb.append(String.format("%-10s %9s %10s %10s %10s %10s %10s %10s%n",
+										"phase (us)", "count", "mean", "p50",
+										"p90", "p99", "p99.9", "max"));
+			}
+			sb.append(String.format("%-10s %9d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+									NAMES[phase], h.getCount(), h.getMean() / 1000,
+									h.getValueAtPercentile(50) / 1000.0,
+									h.getValueAtPercentile(90) / 1000.0,
+									h.getValueAtPercentile(99) / 1000.0,
+									h.getValueAtPercentile(99.9) / 1000.0,
+									h.getMax() / 1000.0));
+		}
+		return sb.toString();
+	}
+
+	public String getTable() { return table(); }
+
+	public Map<String, Phase> getPhases()
+	{
+		Map<String, Phase> phases = new LinkedHashMap<String, Phase>();
+		for (int phase = 0; phase < PHASES; phase++)
+		{
+			EssMqHistogram h = getHistogram(phase);
+			if (h.getCount() > 0)
+				phases.put(NAMES[phase], new Phase(h));
+		}
+		return phases;
+	}
+
+	/**
+	 * register
+	 * Publishes these timings on the platform MBean server as
+	 * EssMq:type=Timings, unless something already is. A failure is
+	 * logged and otherwise ignored.
+	 */
+	public void register()
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("EssMq:type=Timings");
+			synchronized (EssMqTimings.class)
+			{
+				if (!server.isRegistered(name))
+					server.registerMBean(this, name);
+			}
+		}
+		catch (JMException je)
+		{
+			_log.warn("Unable to register the timings MBean: " + je.getMessage());
+		}
+	}
+
+	/**
+	 * log
+	 * Logs the table at INFO, if that is enabled and anything has been
+	 * recorded.
+	 */
+	public void log(Logger log)
+	{
+		if (!log.isInfoEnabled())
+			return;
+
+		String table = table();
+		if (table.length() > 0)
+			log.info("Put and get phases:\n" + table);
+	}
+}
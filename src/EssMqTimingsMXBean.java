@@ -0,0 +1,31 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqTimingsMXBean
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: EssMqTimings.global() over JMX, registered as
+//           EssMq:type=Timings.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import java.util.Map;
+
+public interface EssMqTimingsMXBean
+{
+	/**
+	 * getPhases
+	 * The latencies of each phase recorded so far, by phase name.
+	 */
+	Map<String, EssMqTimings.Phase> getPhases();
+
+	/**
+	 * getTable
+	 * The same as the table logged after a run.
+	 */
+	String getTable();
+}
@@ -0,0 +1,450 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqTrace
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: W3C trace context (https://www.w3.org/TR/trace-context/)
+//           carried across the queue, so a trace does not stop at an
+//           MQ hop.
+//
+//           Off unless the JVM is started with -Dessmq.trace=<file>.
+//           Then every put through EssMqClient gets a "traceparent"
+//           message property naming its put span, and every message
+//           got that has one is traced on from it:
+//
+//             put <queue>        producer span, the put and its commit
+//               on <queue>       the message's time on the queue: its
+//                                MQMD put time to the get returning it
+//               consume <queue>  consumer span, the get returning to
+//                                the commit after the body was written
+//
+//           Spans are appended to the file one per line, each line an
+//           OTLP/JSON ExportTraceServiceRequest, which is what the
+//           OpenTelemetry collector's otlpjsonfile receiver reads, so
+//           the collector can ship them on over OTLP to any backend.
+//           -Dessmq.trace.service=<name> sets service.name (default
+//           EssMq).
+//
+//           A put span is the child of the caller's trace when there is
+//           one: the context given to setParent() on the putting thread,
+//           else -Dessmq.traceparent=<traceparent> or the TRACEPARENT
+//           environment variable, which is how a traced process that
+//           runs EssMq passes its own on. Otherwise the put starts a new
+//           trace. A parent that is not sampled (flags 00) is carried on
+//           but no spans of it are written.
+//
+//           Queue managers that hand properties to non-JMS readers as
+//           an MQRFH2 header (PROPCTL) still carry traceparent; the MQ
+//           classes read it back as a property either way.
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+// 2026-10-19 amp Put spans take the caller's traceparent as parent, and
+//                unsampled traces are not written.
+//
+// --------------------------------------------------------------------------
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.log4j.Logger;
+import com.ibm.mq.*;
+
+public class EssMqTrace
+{
+	public static final String PROPERTY = "essmq.trace";
+	public static final String SERVICE_PROPERTY = "essmq.trace.service";
+	public static final String PARENT_PROPERTY = "essmq.traceparent";
+	public static final String PARENT_VARIABLE = "TRACEPARENT";
+	public static final String TRACEPARENT = "traceparent";
+
+	// OTLP span kinds
+	private static final int KIND_INTERNAL = 1;
+	private static final int KIND_PRODUCER = 4;
+	private static final int KIND_CONSUMER = 5;
+
+	private static final Logger _log = Logger.getLogger(EssMqTrace.class);
+
+	private static final EssMqTrace _global = new EssMqTrace(
+		System.getProperty(PROPERTY), System.getProperty(SERVICE_PROPERTY, "EssMq"));
+
+	private static final ThreadLocal<Context> _parent = new ThreadLocal<Context>();
+
+	private final String  _file;
+	private final String  _service;
+	private final Context _defaultParent;
+
+	// guarded by this
+	private Writer  _out;
+	private boolean _failed;
+
+	/**
+	 * Context
+	 * A traceparent: the trace and the span to parent the next span on.
+	 */
+	public static final class Context
+	{
+		final String _traceId;
+		final String _spanId;
+		final boolean _sampled;
+
+		Context(String traceId, String spanId, boolean sampled)
+		{
+			_traceId = traceId;
+			_spanId = spanId;
+			_sampled = sampled;
+		}
+
+		public String getTraceId() { return _traceId; }
+		public String getSpanId() { return _spanId; }
+		public boolean isSampled() { return _sampled; }
+
+		/**
+		 * parse
+		 * A version 00 traceparent, or null if it is not one.
+		 */
+		public static Context parse(String traceparent)
+		{
+			if (traceparent == null)
+				return null;
+
+			String[] parts = traceparent.trim().split("-");
+			if (parts.length < 4 || !parts[0].equals("00") ||
+				!isHex(parts[1], 32) || !isHex(parts[2], 16) ||
+				!isHex(parts[3], 2) || isZero(parts[1]) || isZero(parts[2]))
+				return null;
+
+			return new Context(parts[1], parts[2],
+							   (Integer.parseInt(parts[3], 16) & 1) != 0);
+		}
+
+		public String toString()
+		{
+			return "00-" + _traceId + "-" + _spanId + (_sampled ? "-01" : "-00");
+		}
+	}
+
+	/**
+	 * Span
+	 * One span, written when it ends.
+	 */
+	final class Span
+	{
+		private final String _traceId;
+		private final String _spanId = newId(16);
+		private final String _parentId;
+		private final boolean _sampled;
+		private final String _name;
+		private final int    _kind;
+		private final String _queue;
+		private long   _start = now();
+		private String _messageId;
+
+		Span(Context parent, String name, int kind, String queue)
+		{
+			_traceId = parent == null ? newId(32) : parent._traceId;
+			_parentId = parent == null ? null : parent._spanId;
+			_sampled = parent == null || parent._sampled;
+			_name = name;
+			_kind = kind;
+			_queue = queue;
+		}
+
+		Context context()
+		{
+			return new Context(_traceId, _spanId, _sampled);
+		}
+
+		void setMessageId(String messageId) { _messageId = messageId; }
+
+		/**
+		 * end
+		 * Ends the span now and writes it; a completion code other
+		 * than MQCC_OK marks it as an error.
+		 */
+		void end(int completionCode, int reasonCode)
+		{
+			write(this, now(), completionCode, reasonCode);
+		}
+	}
+
+	EssMqTrace(String file, String service)
+	{
+		_file = file;
+		_service = service;
+		_defaultParent = file == null ? null : defaultParent();
+	}
+
+	/**
+	 * defaultParent
+	 * The traceparent this process was started with, if any.
+	 */
+	private static Context defaultParent()
+	{
+		String traceparent = System.getProperty(PARENT_PROPERTY);
+		if (traceparent == null)
+			traceparent = System.getenv(PARENT_VARIABLE);
+		if (traceparent == null || traceparent.trim().length() == 0)
+			return null;
+
+		Context parent = Context.parse(traceparent);
+		if (parent == null)
+			_log.warn("Ignoring traceparent " + traceparent + ": not a version 00 traceparent");
+		return parent;
+	}
+
+	/**
+	 * global
+	 * The tracing set up by the essmq.trace system property.
+	 */
+	public static EssMqTrace global() { return _global; }
+
+	public boolean isEnabled() { return _file != null; }
+
+	/**
+	 * setParent
+	 * Parents the puts this thread makes on parent, until it is set
+	 * back to null.
+	 */
+	public static void setParent(Context parent)
+	{
+		if (parent == null)
+			_parent.remove();
+		else
+			_parent.set(parent);
+	}
+
+	/**
+	 * startPut
+	 * Starts the put span for msg under the thread's parent, or else
+	 * the process's (see above), and sets its traceparent property.
+	 * Returns null when tracing is off.
+	 */
+	Span startPut(String queue, MQMessage msg)
+	{
+		Context parent = _parent.get();
+		return startPut(queue, msg, parent != null ? parent : _defaultParent);
+	}
+
+	/**
+	 * startPut
+	 * As above, as a child of parent, or the root of a new trace if
+	 * parent is null.
+	 */
+	Span startPut(String queue, MQMessage msg, Context parent)
+	{
+		if (!isEnabled())
+			return null;
+
+		Span span = new Span(parent, "put " + queue, KIND_PRODUCER, queue);
+		try
+		{
+			msg.setStringProperty(TRACEPARENT, span.context().toString());
+		}
+		catch (MQException ex)
+		{
+			_log.debug("Unable to set traceparent: reason " + ex.reasonCode);
+		}
+		return span;
+	}
+
+	/**
+	 * extract
+	 * The traceparent of a message got, or null if it has none or
+	 * tracing is off.
+	 */
+	public Context extract(MQMessage msg)
+	{
+		if (!isEnabled())
+			return null;
+
+		try
+		{
+			return Context.parse(msg.getStringProperty(TRACEPARENT));
+		}
+		catch (MQException ex)
+		{
+			// MQRC_PROPERTY_NOT_AVAILABLE: not traced
+			return null;
+		}
+	}
+
+	/**
+	 * consumed
+	 * Writes the residency and consume spans of a message got at gotAt
+	 * (now(), when the get returned) and now safely consumed, or not
+	 * (completion and reason code). Nothing if parent is null or not
+	 * sampled.
+	 */
+	void consumed(Context parent, String queue, String messageId, long putTime,
+				  long gotAt, int completionCode, int reasonCode)
+	{
+		if (parent == null || !parent._sampled)
+			return;
+
+		if (putTime > 0)
+		{
+			Span residency = new Span(parent, "on " + queue, KIND_INTERNAL, queue);
+			// the put time is the queue manager's clock; never before the get
+			residency._start = Math.min(putTime * 1000000L, gotAt);
+			residency._messageId = messageId;
+			write(residency, gotAt, MQException.MQCC_OK, 0);
+		}
+
+		Span consume = new Span(parent, "consume " + queue, KIND_CONSUMER, queue);
+		consume._start = gotAt;
+		consume._messageId = messageId;
+		consume.end(completionCode, reasonCode);
+	}
+
+	/**
+	 * now
+	 * The time, in nanoseconds since the epoch.
+	 */
+	static long now()
+	{
+		Instant now = Instant.now();
+		return now.getEpochSecond() * 1000000000L + now.getNano();
+	}
+
+	private void write(Span span, long end, int completionCode, int reasonCode)
+	{
+		if (!span._sampled)
+			return;
+
+		StringBuilder sb = new StringBuilder(512);
+		sb.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[");
+		attribute(sb, "service.name", _service);
+		sb.append("]},\"scopeSpans\":[{\"scope\":{\"name\":\"EssMq\"},\"spans\":[{");
+		sb.append("\"traceId\":\"").append(span._traceId).append('"');
+		sb.append(",\"spanId\":\"").append(span._spanId).append('"');
+		if (span._parentId != null)
+			sb.append(",\"parentSpanId\":\"").append(span._parentId).append('"');
+		sb.append(",\"name\":");
+		quote(sb, span._name);
+		sb.append(",\"kind\":").append(span._kind);
+		sb.append(",\"startTimeUnixNano\":\"").append(span._start).append('"');
+		sb.append(",\"endTimeUnixNano\":\"").append(Math.max(end, span._start)).append('"');
+		sb.append(",\"attributes\":[");
+		attribute(sb, "messaging.system", "ibmmq");
+		sb.append(',');
+		attribute(sb, "messaging.destination.name", span._queue);
+		if (span._messageId != null && span._messageId.length() > 0)
+		{
+			sb.append(',');
+			attribute(sb, "messaging.message.id", span._messageId);
+		}
+		if (completionCode != MQException.MQCC_OK)
+		{
+			sb.append(',');
+			attribute(sb, "essmq.completion_code", String.valueOf(completionCode));
+			sb.append(',');
+			attribute(sb, "essmq.reason_code", String.valueOf(reasonCode));
+		}
+		sb.append("],\"status\":{\"code\":");
+		sb.append(completionCode == MQException.MQCC_OK ? 1 : 2);
+		sb.append("}}]}]}]}\n");
+
+		synchronized (this)
+		{
+			if (_failed)
+				return;
+
+			try
+			{
+				if (_out == null)
+				{
+					_out = new BufferedWriter(new OutputStreamWriter(
+						new FileOutputStream(_file, true), StandardCharsets.UTF_8));
+				}
+				_out.write(sb.toString());
+				_out.flush();
+			}
+			catch (IOException ie)
+			{
+				// one error, not one per message
+				_log.error("Unable to write spans to " + _file + ": " +
+						   ie.getMessage() + ". Tracing stopped.");
+				_failed = true;
+			}
+		}
+	}
+
+	private static void attribute(StringBuilder sb, String key, String value)
+	{
+		sb.append("{\"key\":\"").append(key).append("\",\"value\":{\"stringValue\":");
+		quote(sb, value);
+		sb.append("}}");
+	}
+
+	private static void quote(StringBuilder sb, String s)
+	{
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		sb.append('"');
+	}
+
+	private static boolean isHex(String s, int length)
+	{
+		if (s.length() != length)
+			return false;
+
+		for (int i = 0; i < length; i++)
+		{
+			char c = s.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * isZero
+	 * An id of all zeros is not valid.
+	 */
+	private static boolean isZero(String id)
+	{
+		for (int i = 0; i < id.length(); i++)
+		{
+			if (id.charAt(i) != '0')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * newId
+	 * A random, non-zero id of length hex digits.
+	 */
+	private static String newId(int length)
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i += 16)
+		{
+			long bits;
+			do
+			{
+				bits = random.nextLong();
+			}
+			while (bits == 0);
+			String hex = Long.toHexString(bits);
+			for (int pad = hex.length(); pad < 16; pad++)
+				sb.append('0');
+			sb.append(hex);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,85 @@
+// --------------------------------------------------------------------------
+// Class:    EssMqTransport
+// Author:   Andrew Pierce
+// Date:     October 19, 2026
+// Abstract: Where an EssMqClient gets its connections from.
+//
+//           mq       a real queue manager (EssMqIbmConnection), the
+//                    default
+//           memory   the in-process EssMqMemoryBroker, for tests and
+//                    benchmarks; "memory:<micros>" adds that much latency
+//                    to every call
+//
+//           The command line tools take --transport=<name> as their
+//           first argument (see takeOption()).
+//
+// M O D I F I C A T I O N   H I S T O R Y
+// ---------------------------------------
+// Date       By  Description
+// ---------- --- -----------------------------------------------------------
+// 2026-10-19 amp Initial revision
+//
+// --------------------------------------------------------------------------
+
+import com.ibm.mq.MQException;
+
+public interface EssMqTransport
+{
+	String OPTION = "--transport=";
+
+	String getName();
+
+	/**
+	 * isLocal
+	 * True when there is no server, so host, port, channel and queue
+	 * manager are not needed.
+	 */
+	boolean isLocal();
+
+	/**
+	 * connect
+	 * Opens a connection whose gets charge the given budget.
+	 */
+	EssMqConnection connect(String host, long port, String channel,
+							String manager, EssMqMemoryBudget budget)
+		throws MQException;
+
+	/**
+	 * forName
+	 * The transport named on the command line.
+	 */
+	static EssMqTransport forName(String name)
+	{
+		if (name.equalsIgnoreCase("mq"))
+			return EssMqIbmConnection.TRANSPORT;
+
+		if (name.equalsIgnoreCase("memory"))
+			return EssMqMemoryBroker.getDefault();
+
+		if (name.toLowerCase().startsWith("memory:"))
+		{
+			EssMqMemoryBroker broker = EssMqMemoryBroker.getDefault();
+			broker.setLatencyMicros(Long.parseLong(name.substring(7)));
+			return broker;
+		}
+
+		throw new IllegalArgumentException("Unknown transport: " + name);
+	}
+
+	/**
+	 * takeOption
+	 * If the first argument is --transport=<name>, makes that transport
+	 * the default for new clients and returns the remaining arguments.
+	 * Otherwise returns args as they are.
+	 */
+	static String[] takeOption(String[] args)
+	{
+		if (args.length == 0 || !args[0].startsWith(OPTION))
+			return args;
+
+		EssMqClient.setDefaultTransport(forName(args[0].substring(OPTION.length())));
+		String[] rest = new String[args.length - 1];
+		System.arraycopy(args, 1, rest, 0, rest.length);
+		return rest;
+	}
+}